@@ -36,6 +36,7 @@ import com.jme3.app.state.AppState;
 import com.jme3.app.state.AppStateManager;
 import com.jme3.bullet.PhysicsSpace.BroadphaseType;
 import com.jme3.math.Vector3f;
+import com.jme3.profile.FrameProfiler;
 import com.jme3.renderer.RenderManager;
 import java.util.concurrent.*;
 import java.util.logging.Level;
@@ -60,6 +61,8 @@ public class BulletAppState implements AppState, PhysicsTickListener {
     protected boolean active = true;
     protected float tpf;
     protected Future physicsFuture;
+    // the profiler of the render manager, known once render() was called
+    private FrameProfiler profiler;
 
     /**
      * Creates a new BulletAppState running a PhysicsSpace for physics simulation,
@@ -197,7 +200,9 @@ public class BulletAppState implements AppState, PhysicsTickListener {
             return;
         }
 //        if (threadingType != ThreadingType.DETACHED) {
+            if (profiler != null) profiler.begin("Physics events");
             pSpace.distributeEvents();
+            if (profiler != null) profiler.end();
 //        }
         this.tpf = tpf;
     }
@@ -206,16 +211,21 @@ public class BulletAppState implements AppState, PhysicsTickListener {
         if (!active) {
             return;
         }
+        profiler = rm.getProfiler();
         if (threadingType == ThreadingType.PARALLEL) {
             physicsFuture = executor.submit(parallelPhysicsUpdate);
         } else if (threadingType == ThreadingType.SEQUENTIAL) {
+            if (profiler != null) profiler.begin("Physics");
             pSpace.update(active ? tpf * speed : 0);
+            if (profiler != null) profiler.end();
         } else {
         }
     }
 
     public void postRender() {
         if (physicsFuture != null) {
+            // only the wait is measured, the physics thread is not profiled
+            if (profiler != null) profiler.begin("Physics wait");
             try {
                 physicsFuture.get();
                 physicsFuture = null;
@@ -224,6 +234,7 @@ public class BulletAppState implements AppState, PhysicsTickListener {
             } catch (ExecutionException ex) {
                 Logger.getLogger(BulletAppState.class.getName()).log(Level.SEVERE, null, ex);
             }
+            if (profiler != null) profiler.end();
         }
     }
 
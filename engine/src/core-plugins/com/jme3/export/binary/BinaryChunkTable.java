@@ -0,0 +1,310 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.export.binary;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+
+/**
+ * The table of independent chunks appended to a J3O file by a chunked 
+ * {@link BinaryExporter}, which lets the {@link BinaryImporter} read 
+ * the chunks in parallel.
+ * <p>
+ * A chunk is a subgraph, e.g. a child of the root node, with all the 
+ * objects reachable from it which are not reachable from any other chunk.
+ * The objects reachable from several chunks are shared, they are read
+ * first so that the chunks only look them up. Since an object reachable
+ * from a shared object is reachable from the same chunks, reading a shared
+ * object never reads the objects of a chunk.
+ * <p>
+ * The table follows the object data section, older importers ignore it:
+ * <pre>
+ * number of shared objects, followed by their ids
+ * number of chunks, followed by the id and data size of each chunk
+ * size of the table in bytes, excluding this field and the signature
+ * signature
+ * </pre>
+ */
+final class BinaryChunkTable {
+
+    public static final int SIGNATURE = 0x4A4D4531; // "JME1"
+
+    private static final int SHARED = -1;
+
+    /**
+     * The ids of the shared objects, in ascending order.
+     */
+    int[] sharedIds;
+
+    /**
+     * The ids of the heads of the chunks, with the size of their data.
+     */
+    int[] chunkIds;
+    int[] chunkSizes;
+
+    // references between the objects while exporting, indexed by id
+    private int[][] references;
+    private int[] referenceCounts;
+
+    /**
+     * Creates an empty table to record the references while exporting.
+     */
+    public BinaryChunkTable() {
+        references = new int[64][];
+        referenceCounts = new int[64];
+    }
+
+    private BinaryChunkTable(int[] sharedIds, int[] chunkIds, int[] chunkSizes) {
+        this.sharedIds = sharedIds;
+        this.chunkIds = chunkIds;
+        this.chunkSizes = chunkSizes;
+    }
+
+    /**
+     * Records that the object <code>from</code> refers to the object 
+     * <code>to</code>.
+     */
+    public void addReference(int from, int to) {
+        if (from >= references.length) {
+            int n = Math.max(from + 1, references.length * 2);
+            int[][] newReferences = new int[n][];
+            int[] newCounts = new int[n];
+            System.arraycopy(references, 0, newReferences, 0, references.length);
+            System.arraycopy(referenceCounts, 0, newCounts, 0, references.length);
+            references = newReferences;
+            referenceCounts = newCounts;
+        }
+        int[] list = references[from];
+        int count = referenceCounts[from];
+        if (list == null) {
+            list = references[from] = new int[4];
+        } else if (count == list.length) {
+            int[] newList = new int[count * 2];
+            System.arraycopy(list, 0, newList, 0, count);
+            list = references[from] = newList;
+        }
+        list[count] = to;
+        referenceCounts[from] = count + 1;
+    }
+
+    private int[] push(int[] stack, int size, int id) {
+        if (size == stack.length) {
+            int[] newStack = new int[size * 2];
+            System.arraycopy(stack, 0, newStack, 0, size);
+            stack = newStack;
+        }
+        stack[size] = id;
+        return stack;
+    }
+
+    /**
+     * Marks an object and all the objects reachable from it as shared.
+     */
+    private void markShared(int[] owners, int id, int[] stack) {
+        int size = 0;
+        stack = push(stack, size++, id);
+        while (size > 0) {
+            int current = stack[--size];
+            if (owners[current] == SHARED) {
+                continue;
+            }
+            owners[current] = SHARED;
+            if (current < references.length && references[current] != null) {
+                for (int i = 0; i < referenceCounts[current]; i++) {
+                    stack = push(stack, size++, references[current][i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes the chunks from the recorded references.
+     * 
+     * @param heads The ids of the heads of the chunks
+     * @param idCount The number of ids used, the ids start at 1
+     * @param lengths The data size of each object, indexed by id
+     * @return false if there are less than two independent chunks.
+     */
+    public boolean build(int[] heads, int idCount, int[] lengths) {
+        // 0 for unreached objects, the chunk index + 1 for the objects of
+        // a chunk, or SHARED
+        int[] owners = new int[idCount];
+        int[] stack = new int[64];
+        for (int c = 0; c < heads.length; c++) {
+            int owner = c + 1;
+            int size = 0;
+            stack = push(stack, size++, heads[c]);
+            while (size > 0) {
+                int current = stack[--size];
+                if (owners[current] == owner || owners[current] == SHARED) {
+                    continue;
+                }
+                if (owners[current] != 0) {
+                    // reached by another chunk
+                    markShared(owners, current, new int[64]);
+                    continue;
+                }
+                owners[current] = owner;
+                if (current < references.length && references[current] != null) {
+                    for (int i = 0; i < referenceCounts[current]; i++) {
+                        stack = push(stack, size++, references[current][i]);
+                    }
+                }
+            }
+        }
+        references = null;
+        referenceCounts = null;
+
+        int[] sizes = new int[heads.length];
+        int sharedCount = 0;
+        for (int id = 1; id < idCount; id++) {
+            if (owners[id] == SHARED) {
+                sharedCount++;
+            } else if (owners[id] > 0) {
+                sizes[owners[id] - 1] += lengths[id];
+            }
+        }
+        sharedIds = new int[sharedCount];
+        for (int id = 1, i = 0; id < idCount; id++) {
+            if (owners[id] == SHARED) {
+                sharedIds[i++] = id;
+            }
+        }
+
+        // a head can be shared, e.g. if it is referenced by another chunk
+        int chunkCount = 0;
+        for (int c = 0; c < heads.length; c++) {
+            if (owners[heads[c]] == c + 1) {
+                chunkCount++;
+            }
+        }
+        chunkIds = new int[chunkCount];
+        chunkSizes = new int[chunkCount];
+        for (int c = 0, i = 0; c < heads.length; c++) {
+            if (owners[heads[c]] == c + 1) {
+                chunkIds[i] = heads[c];
+                chunkSizes[i] = sizes[c];
+                i++;
+            }
+        }
+        return chunkCount > 1;
+    }
+
+    public void write(OutputStream os) throws IOException {
+        os.write(ByteUtils.convertToBytes(sharedIds.length));
+        for (int id : sharedIds) {
+            os.write(ByteUtils.convertToBytes(id));
+        }
+        os.write(ByteUtils.convertToBytes(chunkIds.length));
+        for (int i = 0; i < chunkIds.length; i++) {
+            os.write(ByteUtils.convertToBytes(chunkIds[i]));
+            os.write(ByteUtils.convertToBytes(chunkSizes[i]));
+        }
+        os.write(ByteUtils.convertToBytes(8 + sharedIds.length * 4 + chunkIds.length * 8));
+        os.write(ByteUtils.convertToBytes(SIGNATURE));
+    }
+
+    /**
+     * Reads the table at the end of the data section of a file.
+     * 
+     * @param data The data section
+     * @param locations The location table of the file, to validate the ids
+     * @return The table or null if the file does not have one.
+     */
+    public static BinaryChunkTable read(ByteBuffer data, Map<Integer, Integer> locations) {
+        int end = data.limit();
+        if (end < 16 || data.getInt(end - 4) != SIGNATURE) {
+            return null;
+        }
+        int size = data.getInt(end - 8);
+        if (size < 8 || size > end - 8) {
+            return null;
+        }
+        int index = end - 8 - size;
+        int sharedCount = data.getInt(index);
+        if (sharedCount < 0 || 8 + sharedCount * 4L > size) {
+            return null;
+        }
+        int[] sharedIds = new int[sharedCount];
+        for (int i = 0; i < sharedCount; i++) {
+            sharedIds[i] = data.getInt(index + 4 + i * 4);
+        }
+        index += 4 + sharedCount * 4;
+        int chunkCount = data.getInt(index);
+        if (chunkCount < 0 || 8 + sharedCount * 4L + chunkCount * 8L != size) {
+            return null;
+        }
+        int[] chunkIds = new int[chunkCount];
+        int[] chunkSizes = new int[chunkCount];
+        for (int i = 0; i < chunkCount; i++) {
+            chunkIds[i] = data.getInt(index + 4 + i * 8);
+            chunkSizes[i] = data.getInt(index + 8 + i * 8);
+        }
+
+        // the last bytes of a file without a table could look like one
+        for (int id : sharedIds) {
+            if (!locations.containsKey(id)) {
+                return null;
+            }
+        }
+        for (int id : chunkIds) {
+            if (!locations.containsKey(id)) {
+                return null;
+            }
+        }
+        return new BinaryChunkTable(sharedIds, chunkIds, chunkSizes);
+    }
+
+    /**
+     * @return The ids of the chunks, the largest first.
+     */
+    public int[] getChunksBySize() {
+        Integer[] order = new Integer[chunkIds.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+                return chunkSizes[b] < chunkSizes[a] ? -1 : (chunkSizes[b] == chunkSizes[a] ? 0 : 1);
+            }
+        });
+        int[] ids = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            ids[i] = chunkIds[order[i]];
+        }
+        return ids;
+    }
+}
@@ -36,10 +36,13 @@ import com.jme3.export.JmeExporter;
 import com.jme3.export.Savable;
 import com.jme3.export.SavableClassUtil;
 import com.jme3.math.FastMath;
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
 import java.io.*;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -160,6 +163,14 @@ public class BinaryExporter implements JmeExporter {
 
     public static boolean debug = false;
     public static boolean useFastBufs = true;
+
+    private boolean streaming = false;
+    private File spillDirectory;
+    private BinarySpillFile spill;
+
+    private boolean chunked = false;
+    private BinaryChunkTable chunkTable;
+    private int currentId;
       
     public BinaryExporter() {
     }
@@ -168,7 +179,66 @@ public class BinaryExporter implements JmeExporter {
         return new BinaryExporter();
     }
 
+    /**
+     * Enables or disables streaming. When streaming, the data of each
+     * savable is moved to a temporary file as soon as it has been written,
+     * and buffers are written to it directly, instead of keeping all the 
+     * data in memory until the end of the export. The output is the same.
+     * <p>
+     * The temporary file is created next to the exported file, or in the
+     * default temporary directory when exporting to a stream.
+     * 
+     * @param streaming true to use a temporary file
+     */
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    /**
+     * Enables or disables the table of independent chunks. When enabled
+     * and the exported object is a <code>Node</code>, each child of the node
+     * which does not share objects with the other children, apart from
+     * objects shared by several of them, is listed as a chunk which the 
+     * {@link BinaryImporter} can read in parallel with the other chunks.
+     * <p>
+     * The table is appended to the data, so the files can still be read
+     * by importers which do not know it.
+     * 
+     * @param chunked true to write the table of chunks
+     */
+    public void setChunked(boolean chunked) {
+        this.chunked = chunked;
+    }
+
+    public boolean isChunked() {
+        return chunked;
+    }
+
+    BinarySpillFile getSpillFile() {
+        return spill;
+    }
+
     public boolean save(Savable object, OutputStream os) throws IOException {
+        if (!streaming) {
+            return write(object, os);
+        }
+        spill = new BinarySpillFile(spillDirectory);
+        try {
+            return write(object, os);
+        } finally {
+            // drop the capsules which refer to the file
+            contentTable.clear();
+            contentKeys.clear();
+            spill.close();
+            spill = null;
+        }
+    }
+
+    private boolean write(Savable object, OutputStream os) throws IOException {
         // reset some vars
         aliasCount = 1;
         idCount = 1;
@@ -176,6 +246,8 @@ public class BinaryExporter implements JmeExporter {
         contentTable.clear();
         locationTable.clear();
         contentKeys.clear();
+        chunkTable = chunked ? new BinaryChunkTable() : null;
+        currentId = 0;
         
         // write signature and version
         os.write(ByteUtils.convertToBytes(FormatVersion.SIGNATURE));
@@ -228,9 +300,10 @@ public class BinaryExporter implements JmeExporter {
             }
         }
 
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        // write out data to a seperate stream
+        // compute the location of each piece of data, the data is written
+        // after the location table
         int location = 0;
+        ArrayList<Savable> savedKeys = new ArrayList<Savable>(contentKeys.size());
         // keep track of location for each piece
         HashMap<String, ArrayList<BinaryIdContentPair>> alreadySaved = new HashMap<String, ArrayList<BinaryIdContentPair>>(
                 contentTable.size());
@@ -252,14 +325,10 @@ public class BinaryExporter implements JmeExporter {
                 alreadySaved.put(savableName + getChunk(pair), bucket);
             }
             bucket.add(pair);
-            byte[] aliasBytes = fixClassAlias(classes.get(savableName).alias, aliasSize);
-            out.write(aliasBytes);
+            savedKeys.add(savable);
             location += aliasSize;
-            BinaryOutputCapsule cap = contentTable.get(savable).getContent();
-            out.write(ByteUtils.convertToBytes(cap.bytes.length));
             location += 4; // length of bytes
-            out.write(cap.bytes);
-            location += cap.bytes.length;
+            location += pair.getContent().getLength();
         }
 
         // write out location table
@@ -279,9 +348,22 @@ public class BinaryExporter implements JmeExporter {
         // write out root id
         os.write(ByteUtils.convertToBytes(id));
 
-        // append stream to the output stream
-        out.writeTo(os);
-
+        // write out data
+        OutputStream out = new BufferedOutputStream(os, 65536);
+        for (Savable savable : savedKeys) {
+            byte[] aliasBytes = fixClassAlias(classes.get(savable.getClass().getName()).alias, aliasSize);
+            out.write(aliasBytes);
+            BinaryOutputCapsule cap = contentTable.get(savable).getContent();
+            out.write(ByteUtils.convertToBytes(cap.getLength()));
+            cap.writeTo(out);
+        }
+        if (chunkTable != null) {
+            if (buildChunkTable(object)) {
+                chunkTable.write(out);
+            }
+            chunkTable = null;
+        }
+        out.flush();
 
         out = null;
         os = null;
@@ -298,7 +380,43 @@ public class BinaryExporter implements JmeExporter {
         return true;
     }
 
+    /**
+     * Computes the chunks, one per child of the root node that was written.
+     * 
+     * @return false if there are no independent chunks.
+     */
+    private boolean buildChunkTable(Savable root) {
+        if (!(root instanceof Node)) {
+            return false;
+        }
+        List<Spatial> children = ((Node) root).getChildren();
+        int[] heads = new int[children.size()];
+        int headCount = 0;
+        for (int i = 0; i < heads.length; i++) {
+            // some nodes do not write their children, e.g. AssetLinkNode
+            BinaryIdContentPair pair = contentTable.get(children.get(i));
+            if (pair != null) {
+                heads[headCount++] = pair.getId();
+            }
+        }
+        if (headCount < heads.length) {
+            int[] written = new int[headCount];
+            System.arraycopy(heads, 0, written, 0, headCount);
+            heads = written;
+        }
+        int[] lengths = new int[idCount];
+        for (Savable savable : contentKeys) {
+            BinaryIdContentPair pair = contentTable.get(savable);
+            lengths[pair.getId()] = pair.getContent().getLength();
+        }
+        return chunkTable.build(heads, idCount, lengths);
+    }
+
     protected String getChunk(BinaryIdContentPair pair) {
+        if (pair.getContent().bytes == null) {
+            // spilled data, use its length and hash instead
+            return "#" + pair.getContent().getLength() + "#" + pair.getContent().hashCode();
+        }
         return new String(pair.getContent().bytes, 0, Math.min(64, pair
                 .getContent().bytes.length));
     }
@@ -332,9 +450,13 @@ public class BinaryExporter implements JmeExporter {
         }
 
         FileOutputStream fos = new FileOutputStream(f);
-        boolean rVal = save(object, fos);
-        fos.close();
-        return rVal;
+        spillDirectory = parentDirectory;
+        try {
+            return save(object, fos);
+        } finally {
+            spillDirectory = null;
+            fos.close();
+        }
     }
 
     public BinaryOutputCapsule getCapsule(Savable object) {
@@ -365,14 +487,27 @@ public class BinaryExporter implements JmeExporter {
 
         // is object in contentTable?
         if (contentTable.get(object) != null) {
-            return (contentTable.get(object).getId());
+            int id = contentTable.get(object).getId();
+            if (chunkTable != null && currentId > 0) {
+                chunkTable.addReference(currentId, id);
+            }
+            return id;
         }
         BinaryIdContentPair newPair = generateIdContentPair(bco);
         BinaryIdContentPair old = contentTable.put(object, newPair);
         if (old == null) {
             contentKeys.add(object);
         }
-        object.write(this);
+        int parentId = currentId;
+        if (chunkTable != null && parentId > 0) {
+            chunkTable.addReference(parentId, newPair.getId());
+        }
+        currentId = newPair.getId();
+        try {
+            object.write(this);
+        } finally {
+            currentId = parentId;
+        }
         newPair.getContent().finish();
         return newPair.getId();
 
@@ -35,11 +35,18 @@ import com.jme3.asset.AssetInfo;
 import com.jme3.asset.AssetManager;
 import com.jme3.export.*;
 import com.jme3.math.FastMath;
+import com.jme3.util.WorkerPool;
 import java.io.*;
 import java.net.URL;
+import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.IdentityHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -68,14 +75,43 @@ public final class BinaryImporter implements JmeImporter {
 
     public static boolean debug = false;
 
-    private byte[] dataArray;
+    private ByteBuffer data;
     private int aliasWidth;
     private int formatVersion;
 
     private static final boolean fastRead = ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN;
+
+    private static boolean memoryMappedByDefault = false;
+
+    private boolean memoryMapped = memoryMappedByDefault;
+    private boolean zeroCopyBuffers = false;
+    private boolean lazy;
+    private boolean parallel = true;
+
+    /**
+     * The objects read before the chunks, when reading a chunk.
+     */
+    private HashMap<Integer, Savable> sharedContentTable;
     
     public BinaryImporter() {
     }
+
+    /**
+     * Creates an importer to read a chunk of the file loaded by the
+     * given importer.
+     */
+    private BinaryImporter(BinaryImporter parent) {
+        assetManager = parent.assetManager;
+        classes = parent.classes;
+        locationTable = parent.locationTable;
+        sharedContentTable = parent.contentTable;
+        data = parent.data;
+        aliasWidth = parent.aliasWidth;
+        formatVersion = parent.formatVersion;
+        memoryMapped = parent.memoryMapped;
+        zeroCopyBuffers = parent.zeroCopyBuffers;
+        lazy = parent.lazy;
+    }
     
     public int getFormatVersion(){
         return formatVersion;
@@ -85,6 +121,77 @@ public final class BinaryImporter implements JmeImporter {
         return fastRead;
     }
 
+    /**
+     * Sets whether new importers map files into memory, see
+     * {@link #setMemoryMapped(boolean) }. This also applies to the
+     * importers created by the asset manager to load J3O files.
+     */
+    public static void setMemoryMappedByDefault(boolean memoryMapped) {
+        memoryMappedByDefault = memoryMapped;
+    }
+
+    public static boolean isMemoryMappedByDefault() {
+        return memoryMappedByDefault;
+    }
+
+    /**
+     * Enables or disables memory mapping of the files loaded from a
+     * <code>FileInputStream</code> or a <code>File</code>.
+     * <p>
+     * A mapped file is not copied onto the heap, and the fields of each
+     * savable are only decoded when they are read. This reduces both the 
+     * loading time and the memory used while loading large files.
+     * Other streams are always read into memory. Files larger than
+     * 2 GB cannot be mapped and are read into memory as well.
+     * 
+     * @param memoryMapped true to map files into memory
+     */
+    public void setMemoryMapped(boolean memoryMapped) {
+        this.memoryMapped = memoryMapped;
+    }
+
+    public boolean isMemoryMapped() {
+        return memoryMapped;
+    }
+
+    /**
+     * Enables or disables zero-copy buffers. When enabled and the file 
+     * is memory mapped, the float, int, short and byte buffers read from 
+     * the file (e.g. vertex data) are views of the mapped file instead
+     * of copies. Only used on little endian platforms, 
+     * see {@link #canUseFastBuffers() }.
+     * <p>
+     * The buffers are <b>read-only</b>: meshes which are modified at 
+     * runtime, e.g. animated by software skinning, must not be loaded 
+     * with zero-copy buffers. The file stays mapped as long as the buffers
+     * are referenced.
+     * 
+     * @param zeroCopyBuffers true to use views of the mapped file
+     */
+    public void setZeroCopyBuffers(boolean zeroCopyBuffers) {
+        this.zeroCopyBuffers = zeroCopyBuffers;
+    }
+
+    public boolean isZeroCopyBuffers() {
+        return zeroCopyBuffers;
+    }
+
+    /**
+     * Enables or disables parallel loading. When enabled, the chunks
+     * listed in the table of a chunked file, see 
+     * {@link BinaryExporter#setChunked(boolean) }, are read in parallel by
+     * the {@link WorkerPool}. Enabled by default.
+     * 
+     * @param parallel true to read the chunks in parallel
+     */
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    public boolean isParallel() {
+        return parallel;
+    }
+
     public static BinaryImporter getInstance() {
         return new BinaryImporter();
     }
@@ -131,7 +238,16 @@ public final class BinaryImporter implements JmeImporter {
 
     public Savable load(InputStream is, ReadListener listener, ByteArrayOutputStream baos) throws IOException {
         contentTable.clear();
-        BufferedInputStream bis = new BufferedInputStream(is);
+        MappedByteBuffer mapped = null;
+        if (memoryMapped && is instanceof FileInputStream) {
+            mapped = map((FileInputStream) is);
+        }
+        InputStream bis;
+        if (mapped != null) {
+            bis = new ByteBufferInputStream(mapped);
+        } else {
+            bis = new BufferedInputStream(is);
+        }
         
         int numClasses;
         
@@ -223,33 +339,140 @@ public final class BinaryImporter implements JmeImporter {
         bytes += 8;
         if (listener != null) listener.readBytes(bytes);
 
-        if (baos == null) {
-                baos = new ByteArrayOutputStream(bytes);
+        if (mapped != null) {
+            // the data starts where the header ends
+            data = mapped.slice();
+            if (listener != null) listener.readBytes(data.limit());
         } else {
-                baos.reset();
-        }
-        int size = -1;
-        byte[] cache = new byte[4096];
-        while((size = bis.read(cache)) != -1) {
-            baos.write(cache, 0, size);
-            if (listener != null) listener.readBytes(size);
+            if (baos == null) {
+                    baos = new ByteArrayOutputStream(bytes);
+            } else {
+                    baos.reset();
+            }
+            int size = -1;
+            byte[] cache = new byte[4096];
+            while((size = bis.read(cache)) != -1) {
+                baos.write(cache, 0, size);
+                if (listener != null) listener.readBytes(size);
+            }
+
+            data = ByteBuffer.wrap(baos.toByteArray());
+            baos = null;
         }
         bis = null;
+        lazy = mapped != null;
 
-        dataArray = baos.toByteArray();
-        baos = null;
+        BinaryChunkTable chunkTable = null;
+        if (parallel) {
+            chunkTable = BinaryChunkTable.read(data, locationTable);
+            if (chunkTable != null) {
+                readChunks(chunkTable);
+            }
+        }
 
         Savable rVal = readObject(id);
         if (debug) {
             logger.info("Importer Stats: ");
             logger.log(Level.INFO, "Tags: {0}", numClasses);
             logger.log(Level.INFO, "Objects: {0}", numLocs);
-            logger.log(Level.INFO, "Data Size: {0}", dataArray.length);
+            logger.log(Level.INFO, "Data Size: {0}", data.limit());
+            logger.log(Level.INFO, "Memory Mapped: {0}", lazy);
+            if (chunkTable != null) {
+                logger.log(Level.INFO, "Chunks: {0}", chunkTable.chunkIds.length);
+                logger.log(Level.INFO, "Shared Objects: {0}", chunkTable.sharedIds.length);
+            }
         }
-        dataArray = null;
+        data = null;
         return rVal;
     }
 
+    /**
+     * Reads the shared objects, then the chunks in parallel. The objects
+     * are added to the content table, where the root object finds them.
+     */
+    private void readChunks(BinaryChunkTable chunkTable) {
+        // the shared objects never refer to the objects of a chunk
+        for (int sharedId : chunkTable.sharedIds) {
+            readObject(sharedId);
+        }
+
+        final int[] chunkIds = chunkTable.getChunksBySize();
+        final AtomicInteger next = new AtomicInteger();
+        int taskCount = Math.min(chunkIds.length, WorkerPool.getThreadCount() + 1);
+        final BinaryImporter[] importers = new BinaryImporter[taskCount];
+        ArrayList<Runnable> tasks = new ArrayList<Runnable>(taskCount);
+        for (int i = 0; i < taskCount; i++) {
+            final BinaryImporter importer = new BinaryImporter(this);
+            importers[i] = importer;
+            tasks.add(new Runnable() {
+                public void run() {
+                    // the largest chunks are read first
+                    for (int c = next.getAndIncrement(); c < chunkIds.length; 
+                            c = next.getAndIncrement()) {
+                        importer.readObject(chunkIds[c]);
+                    }
+                }
+            });
+        }
+        WorkerPool.invokeAll(tasks);
+
+        for (BinaryImporter importer : importers) {
+            contentTable.putAll(importer.contentTable);
+        }
+    }
+
+    /**
+     * Maps the rest of the file into memory.
+     * 
+     * @return The mapped file or null if it cannot be mapped.
+     */
+    private static MappedByteBuffer map(FileInputStream fis) {
+        try {
+            FileChannel channel = fis.getChannel();
+            long position = channel.position();
+            long size = channel.size() - position;
+            if (size > Integer.MAX_VALUE) {
+                logger.log(Level.FINE, "File too large to be mapped: {0} bytes", size);
+                return null;
+            }
+            // the mapping stays valid after the stream is closed
+            return channel.map(MapMode.READ_ONLY, position, size);
+        } catch (IOException ex) {
+            logger.log(Level.FINE, "Cannot map file, reading it into memory instead", ex);
+            return null;
+        }
+    }
+
+    /**
+     * Reads the header of a mapped file.
+     */
+    private static final class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        public ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            len = Math.min(len, buffer.remaining());
+            buffer.get(b, off, len);
+            return len;
+        }
+    }
+
     public Savable load(URL f) throws IOException {
         return load(f, null);
     }
@@ -296,7 +519,7 @@ public final class BinaryImporter implements JmeImporter {
     protected String readString(int length, int offset) throws IOException {
         byte[] data = new byte[length];
         for(int j = 0; j < length; j++) {
-            data[j] = dataArray[j+offset];
+            data[j] = this.data.get(j+offset);
         }
 
         return new String(data);
@@ -307,6 +530,9 @@ public final class BinaryImporter implements JmeImporter {
         if(contentTable.get(id) != null) {
             return contentTable.get(id);
         }
+        if(sharedContentTable != null && sharedContentTable.get(id) != null) {
+            return sharedContentTable.get(id);
+        }
 
         try {
             int loc = locationTable.get(id);
@@ -321,7 +547,7 @@ public final class BinaryImporter implements JmeImporter {
                 return null;
             }
 
-            int dataLength = ByteUtils.convertIntFromBytes(dataArray, loc);
+            int dataLength = data.getInt(loc);
             loc+=4;
 
             Savable out = null;
@@ -332,7 +558,11 @@ public final class BinaryImporter implements JmeImporter {
             }
 
             BinaryInputCapsule cap = new BinaryInputCapsule(this, out, bco);
-            cap.setContent(dataArray, loc, loc+dataLength);
+            if (lazy) {
+                cap.setLazyContent(data, loc, loc+dataLength);
+            } else {
+                cap.setContent(data, loc, loc+dataLength);
+            }
 
             capsuleTable.put(out, cap);
             contentTable.put(id, out);
@@ -39,6 +39,7 @@ import com.jme3.util.IntMap;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
 import java.nio.ShortBuffer;
@@ -64,199 +65,345 @@ final class BinaryInputCapsule implements InputCapsule {
 
     protected int index = 0;
 
+    /**
+     * The content of a lazily decoded capsule, along with the aliases of
+     * the fields not decoded yet and their offsets in the content.
+     */
+    private ByteBuffer lazyContent;
+    private byte[] lazyAliases;
+    private int[] lazyOffsets;
+    private int lazyCount;
+
+    /**
+     * Returned by {@link #readValue(java.nio.ByteBuffer, byte) } for the
+     * fields of unknown type, which are skipped.
+     */
+    private static final Object UNKNOWN_TYPE = new Object();
+
     public BinaryInputCapsule(BinaryImporter importer, Savable savable, BinaryClassObject bco) {
         this.importer = importer;
         this.cObj = bco;
         this.savable = savable;
     }
 
-    public void setContent(byte[] content, int start, int limit) {
+    /**
+     * Decodes all the fields of the capsule.
+     * 
+     * @param content The data of the file
+     * @param start The offset of the first field
+     * @param limit The offset after the last field
+     */
+    public void setContent(ByteBuffer content, int start, int limit) {
         fieldData = new HashMap<Byte, Object>();
         for (index = start; index < limit;) {
-            byte alias = content[index];
+            byte alias = content.get(index);
 
             index++;
 
             try {
                 byte type = cObj.aliasFields.get(alias).type;
-                Object value = null;
-
-                switch (type) {
-                    case BinaryClassField.BITSET: {
-                        value = readBitSet(content);
-                        break;
-                    }
-                    case BinaryClassField.BOOLEAN: {
-                        value = readBoolean(content);
-                        break;
-                    }
-                    case BinaryClassField.BOOLEAN_1D: {
-                        value = readBooleanArray(content);
-                        break;
-                    }
-                    case BinaryClassField.BOOLEAN_2D: {
-                        value = readBooleanArray2D(content);
-                        break;
-                    }
-                    case BinaryClassField.BYTE: {
-                        value = readByte(content);
-                        break;
-                    }
-                    case BinaryClassField.BYTE_1D: {
-                        value = readByteArray(content);
-                        break;
-                    }
-                    case BinaryClassField.BYTE_2D: {
-                        value = readByteArray2D(content);
-                        break;
-                    }
-                    case BinaryClassField.BYTEBUFFER: {
-                        value = readByteBuffer(content);
-                        break;
-                    }
-                    case BinaryClassField.DOUBLE: {
-                        value = readDouble(content);
-                        break;
-                    }
-                    case BinaryClassField.DOUBLE_1D: {
-                        value = readDoubleArray(content);
-                        break;
-                    }
-                    case BinaryClassField.DOUBLE_2D: {
-                        value = readDoubleArray2D(content);
-                        break;
-                    }
-                    case BinaryClassField.FLOAT: {
-                        value = readFloat(content);
-                        break;
-                    }
-                    case BinaryClassField.FLOAT_1D: {
-                        value = readFloatArray(content);
-                        break;
-                    }
-                    case BinaryClassField.FLOAT_2D: {
-                        value = readFloatArray2D(content);
-                        break;
-                    }
-                    case BinaryClassField.FLOATBUFFER: {
-                        value = readFloatBuffer(content);
-                        break;
-                    }
-                    case BinaryClassField.FLOATBUFFER_ARRAYLIST: {
-                        value = readFloatBufferArrayList(content);
-                        break;
-                    }
-                    case BinaryClassField.BYTEBUFFER_ARRAYLIST: {
-                        value = readByteBufferArrayList(content);
-                        break;
-                    }
-                    case BinaryClassField.INT: {
-                        value = readInt(content);
-                        break;
-                    }
-                    case BinaryClassField.INT_1D: {
-                        value = readIntArray(content);
-                        break;
-                    }
-                    case BinaryClassField.INT_2D: {
-                        value = readIntArray2D(content);
-                        break;
-                    }
-                    case BinaryClassField.INTBUFFER: {
-                        value = readIntBuffer(content);
-                        break;
-                    }
-                    case BinaryClassField.LONG: {
-                        value = readLong(content);
-                        break;
-                    }
-                    case BinaryClassField.LONG_1D: {
-                        value = readLongArray(content);
-                        break;
-                    }
-                    case BinaryClassField.LONG_2D: {
-                        value = readLongArray2D(content);
-                        break;
-                    }
-                    case BinaryClassField.SAVABLE: {
-                        value = readSavable(content);
-                        break;
-                    }
-                    case BinaryClassField.SAVABLE_1D: {
-                        value = readSavableArray(content);
-                        break;
-                    }
-                    case BinaryClassField.SAVABLE_2D: {
-                        value = readSavableArray2D(content);
-                        break;
-                    }
-                    case BinaryClassField.SAVABLE_ARRAYLIST: {
-                        value = readSavableArray(content);
-                        break;
-                    }
-                    case BinaryClassField.SAVABLE_ARRAYLIST_1D: {
-                        value = readSavableArray2D(content);
-                        break;
-                    }
-                    case BinaryClassField.SAVABLE_ARRAYLIST_2D: {
-                        value = readSavableArray3D(content);
-                        break;
-                    }
-                    case BinaryClassField.SAVABLE_MAP: {
-                        value = readSavableMap(content);
-                        break;
-                    }
-                    case BinaryClassField.STRING_SAVABLE_MAP: {
-                        value = readStringSavableMap(content);
-                        break;
-                    }
-                    case BinaryClassField.INT_SAVABLE_MAP: {
-                        value = readIntSavableMap(content);
-                        break;
-                    }
-                    case BinaryClassField.SHORT: {
-                        value = readShort(content);
-                        break;
-                    }
-                    case BinaryClassField.SHORT_1D: {
-                        value = readShortArray(content);
-                        break;
-                    }
-                    case BinaryClassField.SHORT_2D: {
-                        value = readShortArray2D(content);
-                        break;
-                    }
-                    case BinaryClassField.SHORTBUFFER: {
-                        value = readShortBuffer(content);
-                        break;
-                    }
-                    case BinaryClassField.STRING: {
-                        value = readString(content);
-                        break;
-                    }
-                    case BinaryClassField.STRING_1D: {
-                        value = readStringArray(content);
-                        break;
-                    }
-                    case BinaryClassField.STRING_2D: {
-                        value = readStringArray2D(content);
-                        break;
-                    }
-
-                    default:
-                        // skip put statement
-                        continue;
+                Object value = readValue(content, type);
+                if (value == UNKNOWN_TYPE) {
+                    // skip put statement
+                    continue;
                 }
 
                 fieldData.put(alias, value);
 
             } catch (IOException e) {
                 logger.logp(Level.SEVERE, this.getClass().toString(),
-                        "setContent(byte[] content)", "Exception", e);
+                        "setContent(ByteBuffer content)", "Exception", e);
+            }
+        }
+    }
+
+    /**
+     * Only locates the fields of the capsule, each field is decoded 
+     * the first time it is read. The content must not change until the 
+     * savable has been read.
+     * 
+     * @param content The data of the file
+     * @param start The offset of the first field
+     * @param limit The offset after the last field
+     */
+    public void setLazyContent(ByteBuffer content, int start, int limit) {
+        fieldData = new HashMap<Byte, Object>();
+        lazyContent = content;
+        lazyAliases = new byte[cObj.aliasFields.size()];
+        lazyOffsets = new int[lazyAliases.length];
+        lazyCount = 0;
+        for (index = start; index < limit;) {
+            byte alias = content.get(index);
+
+            index++;
+
+            try {
+                byte type = cObj.aliasFields.get(alias).type;
+                int offset = index;
+                if (!skipValue(content, type)) {
+                    continue;
+                }
+                if (lazyCount == lazyAliases.length) {
+                    // a field written twice, the last value wins like
+                    // when decoding eagerly
+                    int n = lazyCount * 2 + 1;
+                    byte[] aliases = new byte[n];
+                    int[] offsets = new int[n];
+                    System.arraycopy(lazyAliases, 0, aliases, 0, lazyCount);
+                    System.arraycopy(lazyOffsets, 0, offsets, 0, lazyCount);
+                    lazyAliases = aliases;
+                    lazyOffsets = offsets;
+                }
+                lazyAliases[lazyCount] = alias;
+                lazyOffsets[lazyCount] = offset;
+                lazyCount++;
+            } catch (IOException e) {
+                logger.logp(Level.SEVERE, this.getClass().toString(),
+                        "setLazyContent(ByteBuffer content)", "Exception", e);
+            }
+        }
+    }
+
+    /**
+     * Checks if a field was saved, decoding it if it was not read yet.
+     */
+    private boolean hasField(BinaryClassField field) {
+        if (fieldData.containsKey(field.alias)) {
+            return true;
+        }
+        // search backwards so that the last value of a field wins
+        for (int i = lazyCount - 1; i >= 0; i--) {
+            if (lazyAliases[i] == field.alias) {
+                index = lazyOffsets[i];
+                try {
+                    fieldData.put(field.alias, readValue(lazyContent, field.type));
+                } catch (IOException e) {
+                    logger.logp(Level.SEVERE, this.getClass().toString(),
+                            "hasField(BinaryClassField field)", "Exception", e);
+                    return false;
+                }
+                return true;
             }
         }
+        return false;
     }
-    
+
+    /**
+     * Decodes the value of a field at the current index.
+     * 
+     * @return The value or {@link #UNKNOWN_TYPE} if the type is unknown.
+     */
+    protected Object readValue(ByteBuffer content, byte type) throws IOException {
+        switch (type) {
+            case BinaryClassField.BITSET: return readBitSet(content);
+            case BinaryClassField.BOOLEAN: return readBoolean(content);
+            case BinaryClassField.BOOLEAN_1D: return readBooleanArray(content);
+            case BinaryClassField.BOOLEAN_2D: return readBooleanArray2D(content);
+            case BinaryClassField.BYTE: return readByte(content);
+            case BinaryClassField.BYTE_1D: return readByteArray(content);
+            case BinaryClassField.BYTE_2D: return readByteArray2D(content);
+            case BinaryClassField.BYTEBUFFER: return readByteBuffer(content);
+            case BinaryClassField.DOUBLE: return readDouble(content);
+            case BinaryClassField.DOUBLE_1D: return readDoubleArray(content);
+            case BinaryClassField.DOUBLE_2D: return readDoubleArray2D(content);
+            case BinaryClassField.FLOAT: return readFloat(content);
+            case BinaryClassField.FLOAT_1D: return readFloatArray(content);
+            case BinaryClassField.FLOAT_2D: return readFloatArray2D(content);
+            case BinaryClassField.FLOATBUFFER: return readFloatBuffer(content);
+            case BinaryClassField.FLOATBUFFER_ARRAYLIST: return readFloatBufferArrayList(content);
+            case BinaryClassField.BYTEBUFFER_ARRAYLIST: return readByteBufferArrayList(content);
+            case BinaryClassField.INT: return readInt(content);
+            case BinaryClassField.INT_1D: return readIntArray(content);
+            case BinaryClassField.INT_2D: return readIntArray2D(content);
+            case BinaryClassField.INTBUFFER: return readIntBuffer(content);
+            case BinaryClassField.LONG: return readLong(content);
+            case BinaryClassField.LONG_1D: return readLongArray(content);
+            case BinaryClassField.LONG_2D: return readLongArray2D(content);
+            case BinaryClassField.SAVABLE: return readSavable(content);
+            case BinaryClassField.SAVABLE_1D: return readSavableArray(content);
+            case BinaryClassField.SAVABLE_2D: return readSavableArray2D(content);
+            case BinaryClassField.SAVABLE_ARRAYLIST: return readSavableArray(content);
+            case BinaryClassField.SAVABLE_ARRAYLIST_1D: return readSavableArray2D(content);
+            case BinaryClassField.SAVABLE_ARRAYLIST_2D: return readSavableArray3D(content);
+            case BinaryClassField.SAVABLE_MAP: return readSavableMap(content);
+            case BinaryClassField.STRING_SAVABLE_MAP: return readStringSavableMap(content);
+            case BinaryClassField.INT_SAVABLE_MAP: return readIntSavableMap(content);
+            case BinaryClassField.SHORT: return readShort(content);
+            case BinaryClassField.SHORT_1D: return readShortArray(content);
+            case BinaryClassField.SHORT_2D: return readShortArray2D(content);
+            case BinaryClassField.SHORTBUFFER: return readShortBuffer(content);
+            case BinaryClassField.STRING: return readString(content);
+            case BinaryClassField.STRING_1D: return readStringArray(content);
+            case BinaryClassField.STRING_2D: return readStringArray2D(content);
+
+            default:
+                return UNKNOWN_TYPE;
+        }
+    }
+
+    /**
+     * Moves the index past the value of a field without decoding it.
+     * 
+     * @return False if the type is unknown.
+     */
+    protected boolean skipValue(ByteBuffer content, byte type) throws IOException {
+        switch (type) {
+            case BinaryClassField.BOOLEAN:
+            case BinaryClassField.BYTE:
+                index += 1;
+                break;
+            case BinaryClassField.SHORT:
+                index += 2;
+                break;
+            case BinaryClassField.FLOAT:
+                index += 4;
+                break;
+            case BinaryClassField.DOUBLE:
+                index += 8;
+                break;
+            case BinaryClassField.INT:
+            case BinaryClassField.SAVABLE:
+                readInt(content);
+                break;
+            case BinaryClassField.LONG:
+                readLong(content);
+                break;
+            case BinaryClassField.BITSET:
+            case BinaryClassField.BOOLEAN_1D:
+            case BinaryClassField.BYTE_1D:
+            case BinaryClassField.BYTEBUFFER:
+            case BinaryClassField.STRING:
+                skipArray(content, 1);
+                break;
+            case BinaryClassField.SHORT_1D:
+            case BinaryClassField.SHORTBUFFER:
+                skipArray(content, 2);
+                break;
+            case BinaryClassField.FLOAT_1D:
+            case BinaryClassField.FLOATBUFFER:
+            case BinaryClassField.INTBUFFER:
+                skipArray(content, 4);
+                break;
+            case BinaryClassField.DOUBLE_1D:
+                skipArray(content, 8);
+                break;
+            case BinaryClassField.BOOLEAN_2D:
+            case BinaryClassField.BYTE_2D:
+            case BinaryClassField.BYTEBUFFER_ARRAYLIST:
+            case BinaryClassField.STRING_1D:
+                skipArray2D(content, 1);
+                break;
+            case BinaryClassField.SHORT_2D:
+                skipArray2D(content, 2);
+                break;
+            case BinaryClassField.FLOAT_2D:
+            case BinaryClassField.FLOATBUFFER_ARRAYLIST:
+                skipArray2D(content, 4);
+                break;
+            case BinaryClassField.DOUBLE_2D:
+                skipArray2D(content, 8);
+                break;
+            case BinaryClassField.STRING_2D: {
+                int length = readInt(content);
+                if (length == BinaryOutputCapsule.NULL_OBJECT)
+                    break;
+                for (int x = 0; x < length; x++)
+                    skipArray2D(content, 1);
+                break;
+            }
+            case BinaryClassField.INT_1D:
+            case BinaryClassField.SAVABLE_1D:
+            case BinaryClassField.SAVABLE_ARRAYLIST:
+                skipIntArray(content);
+                break;
+            case BinaryClassField.LONG_1D: {
+                int length = readInt(content);
+                if (length == BinaryOutputCapsule.NULL_OBJECT)
+                    break;
+                for (int x = 0; x < length; x++)
+                    readLong(content);
+                break;
+            }
+            case BinaryClassField.INT_2D:
+            case BinaryClassField.SAVABLE_2D:
+            case BinaryClassField.SAVABLE_ARRAYLIST_1D:
+            case BinaryClassField.SAVABLE_MAP:
+                skipIntArray2D(content);
+                break;
+            case BinaryClassField.LONG_2D: {
+                int length = readInt(content);
+                if (length == BinaryOutputCapsule.NULL_OBJECT)
+                    break;
+                for (int x = 0; x < length; x++)
+                    skipValue(content, BinaryClassField.LONG_1D);
+                break;
+            }
+            case BinaryClassField.SAVABLE_ARRAYLIST_2D: {
+                int length = readInt(content);
+                if (length == BinaryOutputCapsule.NULL_OBJECT)
+                    break;
+                for (int x = 0; x < length; x++)
+                    skipIntArray2D(content);
+                break;
+            }
+            case BinaryClassField.STRING_SAVABLE_MAP: {
+                int elements = readInt(content);
+                if (elements == BinaryOutputCapsule.NULL_OBJECT)
+                    break;
+                skipArray2D(content, 1);
+                skipIntArray(content);
+                break;
+            }
+            case BinaryClassField.INT_SAVABLE_MAP: {
+                int elements = readInt(content);
+                if (elements == BinaryOutputCapsule.NULL_OBJECT)
+                    break;
+                skipIntArray(content);
+                skipIntArray(content);
+                break;
+            }
+            default:
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Skips an array of fixed size elements, or a string.
+     */
+    private void skipArray(ByteBuffer content, int elementSize) throws IOException {
+        int length = readInt(content);
+        if (length != BinaryOutputCapsule.NULL_OBJECT)
+            index += length * elementSize;
+    }
+
+    private void skipArray2D(ByteBuffer content, int elementSize) throws IOException {
+        int length = readInt(content);
+        if (length == BinaryOutputCapsule.NULL_OBJECT)
+            return;
+        for (int x = 0; x < length; x++)
+            skipArray(content, elementSize);
+    }
+
+    /**
+     * Skips an array of deflated ints, e.g. savable IDs.
+     */
+    private void skipIntArray(ByteBuffer content) throws IOException {
+        int length = readInt(content);
+        if (length == BinaryOutputCapsule.NULL_OBJECT)
+            return;
+        for (int x = 0; x < length; x++)
+            readInt(content);
+    }
+
+    private void skipIntArray2D(ByteBuffer content) throws IOException {
+        int length = readInt(content);
+        if (length == BinaryOutputCapsule.NULL_OBJECT)
+            return;
+        for (int x = 0; x < length; x++)
+            skipIntArray(content);
+    }
+
     public int getSavableVersion(Class<? extends Savable> desiredClass){
         return SavableClassUtil.getSavedSavableVersion(savable, desiredClass, 
                                             cObj.classHierarchyVersions, importer.getFormatVersion());
@@ -264,14 +411,14 @@ final class BinaryInputCapsule implements InputCapsule {
 
     public BitSet readBitSet(String name, BitSet defVal) throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field))
             return defVal;
         return (BitSet) fieldData.get(field.alias);
     }
 
     public boolean readBoolean(String name, boolean defVal) throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field))
             return defVal;
         return ((Boolean) fieldData.get(field.alias)).booleanValue();
     }
@@ -279,7 +426,7 @@ final class BinaryInputCapsule implements InputCapsule {
     public boolean[] readBooleanArray(String name, boolean[] defVal)
             throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field))
             return defVal;
         return (boolean[]) fieldData.get(field.alias);
     }
@@ -287,21 +434,21 @@ final class BinaryInputCapsule implements InputCapsule {
     public boolean[][] readBooleanArray2D(String name, boolean[][] defVal)
             throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field))
             return defVal;
         return (boolean[][]) fieldData.get(field.alias);
     }
 
     public byte readByte(String name, byte defVal) throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field))
             return defVal;
         return ((Byte) fieldData.get(field.alias)).byteValue();
     }
 
     public byte[] readByteArray(String name, byte[] defVal) throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field))
             return defVal;
         return (byte[]) fieldData.get(field.alias);
     }
@@ -309,7 +456,7 @@ final class BinaryInputCapsule implements InputCapsule {
     public byte[][] readByteArray2D(String name, byte[][] defVal)
             throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field))
             return defVal;
         return (byte[][]) fieldData.get(field.alias);
     }
@@ -317,7 +464,7 @@ final class BinaryInputCapsule implements InputCapsule {
     public ByteBuffer readByteBuffer(String name, ByteBuffer defVal)
             throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field))
             return defVal;
         return (ByteBuffer) fieldData.get(field.alias);
     }
@@ -326,14 +473,14 @@ final class BinaryInputCapsule implements InputCapsule {
     public ArrayList<ByteBuffer> readByteBufferArrayList(String name,
             ArrayList<ByteBuffer> defVal) throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field))
             return defVal;
         return (ArrayList<ByteBuffer>) fieldData.get(field.alias);
     }
 
     public double readDouble(String name, double defVal) throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field))
             return defVal;
         return ((Double) fieldData.get(field.alias)).doubleValue();
     }
@@ -341,7 +488,7 @@ final class BinaryInputCapsule implements InputCapsule {
     public double[] readDoubleArray(String name, double[] defVal)
             throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field))
             return defVal;
         return (double[]) fieldData.get(field.alias);
     }
@@ -349,14 +496,14 @@ final class BinaryInputCapsule implements InputCapsule {
     public double[][] readDoubleArray2D(String name, double[][] defVal)
             throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field))
             return defVal;
         return (double[][]) fieldData.get(field.alias);
     }
 
     public float readFloat(String name, float defVal) throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field))
             return defVal;
         return ((Float) fieldData.get(field.alias)).floatValue();
     }
@@ -364,7 +511,7 @@ final class BinaryInputCapsule implements InputCapsule {
     public float[] readFloatArray(String name, float[] defVal)
             throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field))
             return defVal;
         return (float[]) fieldData.get(field.alias);
     }
@@ -372,7 +519,7 @@ final class BinaryInputCapsule implements InputCapsule {
     public float[][] readFloatArray2D(String name, float[][] defVal)
             throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field))
             return defVal;
         return (float[][]) fieldData.get(field.alias);
     }
@@ -380,7 +527,7 @@ final class BinaryInputCapsule implements InputCapsule {
     public FloatBuffer readFloatBuffer(String name, FloatBuffer defVal)
             throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field))
             return defVal;
         return (FloatBuffer) fieldData.get(field.alias);
     }
@@ -389,21 +536,21 @@ final class BinaryInputCapsule implements InputCapsule {
     public ArrayList<FloatBuffer> readFloatBufferArrayList(String name,
             ArrayList<FloatBuffer> defVal) throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field))
             return defVal;
         return (ArrayList<FloatBuffer>) fieldData.get(field.alias);
     }
 
     public int readInt(String name, int defVal) throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field))
             return defVal;
         return ((Integer) fieldData.get(field.alias)).intValue();
     }
 
     public int[] readIntArray(String name, int[] defVal) throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field))
             return defVal;
         return (int[]) fieldData.get(field.alias);
     }
@@ -411,7 +558,7 @@ final class BinaryInputCapsule implements InputCapsule {
     public int[][] readIntArray2D(String name, int[][] defVal)
             throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field))
             return defVal;
         return (int[][]) fieldData.get(field.alias);
     }
@@ -419,21 +566,21 @@ final class BinaryInputCapsule implements InputCapsule {
     public IntBuffer readIntBuffer(String name, IntBuffer defVal)
             throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field))
             return defVal;
         return (IntBuffer) fieldData.get(field.alias);
     }
 
     public long readLong(String name, long defVal) throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field))
             return defVal;
         return ((Long) fieldData.get(field.alias)).longValue();
     }
 
     public long[] readLongArray(String name, long[] defVal) throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field))
             return defVal;
         return (long[]) fieldData.get(field.alias);
     }
@@ -441,14 +588,14 @@ final class BinaryInputCapsule implements InputCapsule {
     public long[][] readLongArray2D(String name, long[][] defVal)
             throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field))
             return defVal;
         return (long[][]) fieldData.get(field.alias);
     }
 
     public Savable readSavable(String name, Savable defVal) throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field))
             return defVal;
         Object value = fieldData.get(field.alias);
         if (value == null)
@@ -464,7 +611,7 @@ final class BinaryInputCapsule implements InputCapsule {
     public Savable[] readSavableArray(String name, Savable[] defVal)
             throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field))
             return defVal;
         Object[] values = (Object[]) fieldData.get(field.alias);
         if (values instanceof ID[]) {
@@ -491,7 +638,7 @@ final class BinaryInputCapsule implements InputCapsule {
     public Savable[][] readSavableArray2D(String name, Savable[][] defVal)
             throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null ||!fieldData.containsKey(field.alias))
+        if (field == null ||!hasField(field))
             return defVal;
         Object[][] values = (Object[][]) fieldData.get(field.alias);
         if (values instanceof ID[][]) {
@@ -510,7 +657,7 @@ final class BinaryInputCapsule implements InputCapsule {
     public Savable[][][] readSavableArray3D(String name, Savable[][][] defVal)
             throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field))
             return defVal;
         Object[][][] values = (Object[][][]) fieldData.get(field.alias);
         if (values instanceof ID[][][]) {
@@ -579,7 +726,7 @@ final class BinaryInputCapsule implements InputCapsule {
     public ArrayList readSavableArrayList(String name, ArrayList defVal)
             throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field))
             return defVal;
         Object value = fieldData.get(field.alias);
         if (value instanceof ID[]) {
@@ -594,7 +741,7 @@ final class BinaryInputCapsule implements InputCapsule {
     public ArrayList[] readSavableArrayListArray(String name, ArrayList[] defVal)
             throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field))
             return defVal;
         Object value = fieldData.get(field.alias);
         if (value instanceof ID[][]) {
@@ -616,7 +763,7 @@ final class BinaryInputCapsule implements InputCapsule {
     public ArrayList[][] readSavableArrayListArray2D(String name,
             ArrayList[][] defVal) throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field))
             return defVal;
         Object value = fieldData.get(field.alias);
         if (value instanceof ID[][][]) {
@@ -642,7 +789,7 @@ final class BinaryInputCapsule implements InputCapsule {
     public Map<? extends Savable, ? extends Savable> readSavableMap(String name, Map<? extends Savable, ? extends Savable> defVal)
             throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field))
             return defVal;
         Object value = fieldData.get(field.alias);
         if (value instanceof ID[][]) {
@@ -658,7 +805,7 @@ final class BinaryInputCapsule implements InputCapsule {
     public Map<String, ? extends Savable> readStringSavableMap(String name, Map<String, ? extends Savable> defVal)
             throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field))
             return defVal;
         Object value = fieldData.get(field.alias);
         if (value instanceof StringIDMap) {
@@ -675,7 +822,7 @@ final class BinaryInputCapsule implements InputCapsule {
     public IntMap<? extends Savable> readIntSavableMap(String name, IntMap<? extends Savable> defVal)
             throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field))
             return defVal;
         Object value = fieldData.get(field.alias);
         if (value instanceof IntIDMap) {
@@ -690,7 +837,7 @@ final class BinaryInputCapsule implements InputCapsule {
 
     public short readShort(String name, short defVal) throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field))
             return defVal;
         return ((Short) fieldData.get(field.alias)).shortValue();
     }
@@ -698,7 +845,7 @@ final class BinaryInputCapsule implements InputCapsule {
     public short[] readShortArray(String name, short[] defVal)
             throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field))
             return defVal;
         return (short[]) fieldData.get(field.alias);
     }
@@ -706,7 +853,7 @@ final class BinaryInputCapsule implements InputCapsule {
     public short[][] readShortArray2D(String name, short[][] defVal)
             throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field))
             return defVal;
         return (short[][]) fieldData.get(field.alias);
     }
@@ -714,14 +861,14 @@ final class BinaryInputCapsule implements InputCapsule {
     public ShortBuffer readShortBuffer(String name, ShortBuffer defVal)
             throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field))
             return defVal;
         return (ShortBuffer) fieldData.get(field.alias);
     }
 
     public String readString(String name, String defVal) throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field))
             return defVal;
         return (String) fieldData.get(field.alias);
     }
@@ -729,7 +876,7 @@ final class BinaryInputCapsule implements InputCapsule {
     public String[] readStringArray(String name, String[] defVal)
             throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field))
             return defVal;
         return (String[]) fieldData.get(field.alias);
     }
@@ -737,26 +884,26 @@ final class BinaryInputCapsule implements InputCapsule {
     public String[][] readStringArray2D(String name, String[][] defVal)
             throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field))
             return defVal;
         return (String[][]) fieldData.get(field.alias);
     }
 
     // byte primitive
 
-    protected byte readByte(byte[] content) throws IOException {
-        byte value = content[index];
+    protected byte readByte(ByteBuffer content) throws IOException {
+        byte value = content.get(index);
         index++;
         return value;
     }
 
-    protected byte readByteForBuffer(byte[] content) throws IOException {
-        byte value = content[index];
+    protected byte readByteForBuffer(ByteBuffer content) throws IOException {
+        byte value = content.get(index);
         index++;
         return value;
     }
 
-    protected byte[] readByteArray(byte[] content) throws IOException {
+    protected byte[] readByteArray(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -766,7 +913,7 @@ final class BinaryInputCapsule implements InputCapsule {
         return value;
     }
 
-    protected byte[][] readByteArray2D(byte[] content) throws IOException {
+    protected byte[][] readByteArray2D(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -778,27 +925,26 @@ final class BinaryInputCapsule implements InputCapsule {
 
     // int primitive
 
-    protected int readIntForBuffer(byte[] content){
-        int number = ((content[index+3] & 0xFF) << 24)
-                   + ((content[index+2] & 0xFF) << 16)
-                   + ((content[index+1] & 0xFF) << 8)
-                   +  (content[index]   & 0xFF);
+    protected int readIntForBuffer(ByteBuffer content){
+        int number = ((content.get(index+3) & 0xFF) << 24)
+                   + ((content.get(index+2) & 0xFF) << 16)
+                   + ((content.get(index+1) & 0xFF) << 8)
+                   +  (content.get(index)   & 0xFF);
         index += 4;
         return number;
     }
 
-    protected int readInt(byte[] content) throws IOException {
-        byte[] bytes = inflateFrom(content, index);
-        index += 1 + bytes.length;
-        bytes = ByteUtils.rightAlignBytes(bytes, 4);
-        int value = ByteUtils.convertIntFromBytes(bytes);
+    protected int readInt(ByteBuffer content) throws IOException {
+        int length = inflatedLength(content, index);
+        int value = (int) inflateFrom(content, index);
+        index += 1 + length;
         if (value == BinaryOutputCapsule.NULL_OBJECT
                 || value == BinaryOutputCapsule.DEFAULT_OBJECT)
             index -= 4;
         return value;
     }
 
-    protected int[] readIntArray(byte[] content) throws IOException {
+    protected int[] readIntArray(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -808,7 +954,7 @@ final class BinaryInputCapsule implements InputCapsule {
         return value;
     }
 
-    protected int[][] readIntArray2D(byte[] content) throws IOException {
+    protected int[][] readIntArray2D(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -820,18 +966,18 @@ final class BinaryInputCapsule implements InputCapsule {
 
     // float primitive
 
-    protected float readFloat(byte[] content) throws IOException {
-        float value = ByteUtils.convertFloatFromBytes(content, index);
+    protected float readFloat(ByteBuffer content) throws IOException {
+        float value = content.getFloat(index);
         index += 4;
         return value;
     }
 
-    protected float readFloatForBuffer(byte[] content) throws IOException {
+    protected float readFloatForBuffer(ByteBuffer content) throws IOException {
         int number = readIntForBuffer(content);
         return Float.intBitsToFloat(number);
     }
 
-    protected float[] readFloatArray(byte[] content) throws IOException {
+    protected float[] readFloatArray(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -841,7 +987,7 @@ final class BinaryInputCapsule implements InputCapsule {
         return value;
     }
 
-    protected float[][] readFloatArray2D(byte[] content) throws IOException {
+    protected float[][] readFloatArray2D(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -853,13 +999,13 @@ final class BinaryInputCapsule implements InputCapsule {
 
     // double primitive
 
-    protected double readDouble(byte[] content) throws IOException {
-        double value = ByteUtils.convertDoubleFromBytes(content, index);
+    protected double readDouble(ByteBuffer content) throws IOException {
+        double value = content.getDouble(index);
         index += 8;
         return value;
     }
 
-    protected double[] readDoubleArray(byte[] content) throws IOException {
+    protected double[] readDoubleArray(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -869,7 +1015,7 @@ final class BinaryInputCapsule implements InputCapsule {
         return value;
     }
 
-    protected double[][] readDoubleArray2D(byte[] content) throws IOException {
+    protected double[][] readDoubleArray2D(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -881,15 +1027,14 @@ final class BinaryInputCapsule implements InputCapsule {
 
     // long primitive
 
-    protected long readLong(byte[] content) throws IOException {
-        byte[] bytes = inflateFrom(content, index);
-        index += 1 + bytes.length;
-        bytes = ByteUtils.rightAlignBytes(bytes, 8);
-        long value = ByteUtils.convertLongFromBytes(bytes);
+    protected long readLong(ByteBuffer content) throws IOException {
+        int length = inflatedLength(content, index);
+        long value = inflateFrom(content, index);
+        index += 1 + length;
         return value;
     }
 
-    protected long[] readLongArray(byte[] content) throws IOException {
+    protected long[] readLongArray(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -899,7 +1044,7 @@ final class BinaryInputCapsule implements InputCapsule {
         return value;
     }
 
-    protected long[][] readLongArray2D(byte[] content) throws IOException {
+    protected long[][] readLongArray2D(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -911,20 +1056,20 @@ final class BinaryInputCapsule implements InputCapsule {
 
     // short primitive
 
-    protected short readShort(byte[] content) throws IOException {
-        short value = ByteUtils.convertShortFromBytes(content, index);
+    protected short readShort(ByteBuffer content) throws IOException {
+        short value = content.getShort(index);
         index += 2;
         return value;
     }
 
-    protected short readShortForBuffer(byte[] content) throws IOException {
-        short number = (short) ((content[index+0] & 0xFF)
-                             + ((content[index+1] & 0xFF) << 8));
+    protected short readShortForBuffer(ByteBuffer content) throws IOException {
+        short number = (short) ((content.get(index+0) & 0xFF)
+                             + ((content.get(index+1) & 0xFF) << 8));
         index += 2;
         return number;
     }
 
-    protected short[] readShortArray(byte[] content) throws IOException {
+    protected short[] readShortArray(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -934,7 +1079,7 @@ final class BinaryInputCapsule implements InputCapsule {
         return value;
     }
 
-    protected short[][] readShortArray2D(byte[] content) throws IOException {
+    protected short[][] readShortArray2D(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -946,13 +1091,13 @@ final class BinaryInputCapsule implements InputCapsule {
 
     // boolean primitive
 
-    protected boolean readBoolean(byte[] content) throws IOException {
-        boolean value = ByteUtils.convertBooleanFromBytes(content, index);
+    protected boolean readBoolean(ByteBuffer content) throws IOException {
+        boolean value = content.get(index) != 0;
         index += 1;
         return value;
     }
 
-    protected boolean[] readBooleanArray(byte[] content) throws IOException {
+    protected boolean[] readBooleanArray(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -962,7 +1107,7 @@ final class BinaryInputCapsule implements InputCapsule {
         return value;
     }
 
-    protected boolean[][] readBooleanArray2D(byte[] content) throws IOException {
+    protected boolean[][] readBooleanArray2D(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -995,7 +1140,7 @@ final class BinaryInputCapsule implements InputCapsule {
     private final static int UTF8_ILLEGAL = 10; // not an UTF8 string
 
     // String
-    protected String readString(byte[] content) throws IOException {
+    protected String readString(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -1035,7 +1180,7 @@ final class BinaryInputCapsule implements InputCapsule {
         int utf8State = UTF8_START;
         int b;
         for (int x = 0; x < length; x++) {
-            bytes[x] =  content[index++];
+            bytes[x] =  content.get(index++);
             b = (int) bytes[x] & 0xFF; // unsign our byte
 
             switch (utf8State) {
@@ -1097,7 +1242,7 @@ final class BinaryInputCapsule implements InputCapsule {
         }
     }
 
-    protected String[] readStringArray(byte[] content) throws IOException {
+    protected String[] readStringArray(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -1107,7 +1252,7 @@ final class BinaryInputCapsule implements InputCapsule {
         return value;
     }
 
-    protected String[][] readStringArray2D(byte[] content) throws IOException {
+    protected String[][] readStringArray2D(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -1119,7 +1264,7 @@ final class BinaryInputCapsule implements InputCapsule {
 
     // BitSet
 
-    protected BitSet readBitSet(byte[] content) throws IOException {
+    protected BitSet readBitSet(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -1131,25 +1276,39 @@ final class BinaryInputCapsule implements InputCapsule {
 
     // INFLATOR for int and long
 
-    protected static byte[] inflateFrom(byte[] contents, int index) {
-        byte firstByte = contents[index];
-        if (firstByte == BinaryOutputCapsule.NULL_OBJECT)
-            return ByteUtils.convertToBytes(BinaryOutputCapsule.NULL_OBJECT);
-        else if (firstByte == BinaryOutputCapsule.DEFAULT_OBJECT)
-            return ByteUtils.convertToBytes(BinaryOutputCapsule.DEFAULT_OBJECT);
-        else if (firstByte == 0)
-            return new byte[0];
-        else {
-            byte[] rVal = new byte[firstByte];
-            for (int x = 0; x < rVal.length; x++)
-                rVal[x] = contents[x + 1 + index];
-            return rVal;
-        }
+    /**
+     * @return The number of bytes following the first byte of a 
+     * deflated int or long.
+     */
+    protected static int inflatedLength(ByteBuffer contents, int index) throws IOException {
+        byte firstByte = contents.get(index);
+        if (firstByte == BinaryOutputCapsule.NULL_OBJECT
+                || firstByte == BinaryOutputCapsule.DEFAULT_OBJECT)
+            return 4;
+        else if (firstByte < 0 || firstByte > 8)
+            throw new IOException("Invalid deflated number length: " + firstByte);
+        return firstByte;
+    }
+
+    /**
+     * Reads a deflated int or long without allocating, the bytes are
+     * right aligned as the value was written big endian without its 
+     * leading zeros. The magic values are read as the bytes of an int.
+     */
+    protected static long inflateFrom(ByteBuffer contents, int index) {
+        byte firstByte = contents.get(index);
+        if (firstByte == BinaryOutputCapsule.NULL_OBJECT
+                || firstByte == BinaryOutputCapsule.DEFAULT_OBJECT)
+            return firstByte & 0xFFFFFFFFL;
+        long value = 0;
+        for (int x = 0; x < firstByte; x++)
+            value = (value << 8) | (contents.get(x + 1 + index) & 0xFF);
+        return value;
     }
 
     // BinarySavable
 
-    protected ID readSavable(byte[] content) throws IOException {
+    protected ID readSavable(ByteBuffer content) throws IOException {
         int id = readInt(content);
         if (id == BinaryOutputCapsule.NULL_OBJECT) {
             return null;
@@ -1160,7 +1319,7 @@ final class BinaryInputCapsule implements InputCapsule {
 
     // BinarySavable array
 
-    protected ID[] readSavableArray(byte[] content) throws IOException {
+    protected ID[] readSavableArray(ByteBuffer content) throws IOException {
         int elements = readInt(content);
         if (elements == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -1171,7 +1330,7 @@ final class BinaryInputCapsule implements InputCapsule {
         return rVal;
     }
 
-    protected ID[][] readSavableArray2D(byte[] content) throws IOException {
+    protected ID[][] readSavableArray2D(ByteBuffer content) throws IOException {
         int elements = readInt(content);
         if (elements == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -1182,7 +1341,7 @@ final class BinaryInputCapsule implements InputCapsule {
         return rVal;
     }
 
-    protected ID[][][] readSavableArray3D(byte[] content) throws IOException {
+    protected ID[][][] readSavableArray3D(ByteBuffer content) throws IOException {
         int elements = readInt(content);
         if (elements == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -1195,7 +1354,7 @@ final class BinaryInputCapsule implements InputCapsule {
 
     // BinarySavable map
 
-    protected ID[][] readSavableMap(byte[] content) throws IOException {
+    protected ID[][] readSavableMap(ByteBuffer content) throws IOException {
         int elements = readInt(content);
         if (elements == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -1206,7 +1365,7 @@ final class BinaryInputCapsule implements InputCapsule {
         return rVal;
     }
 
-    protected StringIDMap readStringSavableMap(byte[] content) throws IOException {
+    protected StringIDMap readStringSavableMap(ByteBuffer content) throws IOException {
         int elements = readInt(content);
         if (elements == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -1218,7 +1377,7 @@ final class BinaryInputCapsule implements InputCapsule {
         return rVal;
     }
 
-    protected IntIDMap readIntSavableMap(byte[] content) throws IOException {
+    protected IntIDMap readIntSavableMap(ByteBuffer content) throws IOException {
         int elements = readInt(content);
         if (elements == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -1233,7 +1392,7 @@ final class BinaryInputCapsule implements InputCapsule {
 
     // ArrayList<FloatBuffer>
 
-    protected ArrayList<FloatBuffer> readFloatBufferArrayList(byte[] content)
+    protected ArrayList<FloatBuffer> readFloatBufferArrayList(ByteBuffer content)
             throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT) {
@@ -1248,7 +1407,7 @@ final class BinaryInputCapsule implements InputCapsule {
 
     // ArrayList<ByteBuffer>
 
-    protected ArrayList<ByteBuffer> readByteBufferArrayList(byte[] content)
+    protected ArrayList<ByteBuffer> readByteBufferArrayList(ByteBuffer content)
             throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT) {
@@ -1262,18 +1421,35 @@ final class BinaryInputCapsule implements InputCapsule {
     }
 
     // NIO BUFFERS
+
+    /**
+     * Reads the data of a buffer stored in native order. If the content
+     * is a memory mapped file and zero-copy buffers are enabled, the
+     * returned buffer is a read-only view of the content, otherwise the 
+     * data is copied into a new direct buffer.
+     */
+    protected ByteBuffer readBufferBytes(ByteBuffer content, int length) {
+        ByteBuffer source = content.duplicate();
+        source.limit(index + length);
+        source.position(index);
+        index += length;
+        if (content.isDirect() && importer.isZeroCopyBuffers()) {
+            return source.slice().order(ByteOrder.nativeOrder());
+        }
+        ByteBuffer value = BufferUtils.createByteBuffer(length);
+        value.put(source).rewind();
+        return value;
+    }
+
     // float buffer
 
-    protected FloatBuffer readFloatBuffer(byte[] content) throws IOException {
+    protected FloatBuffer readFloatBuffer(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
 
         if (BinaryImporter.canUseFastBuffers()){
-            ByteBuffer value = BufferUtils.createByteBuffer(length * 4);
-            value.put(content, index, length * 4).rewind();
-            index += length * 4;
-            return value.asFloatBuffer();
+            return readBufferBytes(content, length * 4).asFloatBuffer();
         }else{
             FloatBuffer value = BufferUtils.createFloatBuffer(length);
             for (int x = 0; x < length; x++) {
@@ -1286,16 +1462,13 @@ final class BinaryInputCapsule implements InputCapsule {
 
     // int buffer
 
-    protected IntBuffer readIntBuffer(byte[] content) throws IOException {
+    protected IntBuffer readIntBuffer(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
 
         if (BinaryImporter.canUseFastBuffers()){
-            ByteBuffer value = BufferUtils.createByteBuffer(length * 4);
-            value.put(content, index, length * 4).rewind();
-            index += length * 4;
-            return value.asIntBuffer();
+            return readBufferBytes(content, length * 4).asIntBuffer();
         }else{
             IntBuffer value = BufferUtils.createIntBuffer(length);
             for (int x = 0; x < length; x++) {
@@ -1308,16 +1481,13 @@ final class BinaryInputCapsule implements InputCapsule {
 
     // byte buffer
 
-    protected ByteBuffer readByteBuffer(byte[] content) throws IOException {
+    protected ByteBuffer readByteBuffer(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
 
         if (BinaryImporter.canUseFastBuffers()){
-            ByteBuffer value = BufferUtils.createByteBuffer(length);
-            value.put(content, index, length).rewind();
-            index += length;
-            return value;
+            return readBufferBytes(content, length);
         }else{
             ByteBuffer value = BufferUtils.createByteBuffer(length);
             for (int x = 0; x < length; x++) {
@@ -1330,16 +1500,13 @@ final class BinaryInputCapsule implements InputCapsule {
 
     // short buffer
 
-    protected ShortBuffer readShortBuffer(byte[] content) throws IOException {
+    protected ShortBuffer readShortBuffer(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
 
         if (BinaryImporter.canUseFastBuffers()){
-            ByteBuffer value = BufferUtils.createByteBuffer(length * 2);
-            value.put(content, index, length * 2).rewind();
-            index += length * 2;
-            return value.asShortBuffer();
+            return readBufferBytes(content, length * 2).asShortBuffer();
         }else{
             ShortBuffer value = BufferUtils.createShortBuffer(length);
             for (int x = 0; x < length; x++) {
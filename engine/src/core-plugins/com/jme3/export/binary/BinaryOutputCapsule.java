@@ -37,6 +37,7 @@ import com.jme3.util.IntMap;
 import com.jme3.util.IntMap.Entry;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
@@ -57,15 +58,32 @@ final class BinaryOutputCapsule implements OutputCapsule {
     public static byte[] NULL_BYTES = new byte[] { (byte) -1 };
     public static byte[] DEFAULT_BYTES = new byte[] { (byte) -2 };
 
+    /**
+     * The size above which the data of a capsule is moved to the spill file
+     * when the exporter is streaming.
+     */
+    private static final int SPILL_THRESHOLD = 16384;
+
     protected ByteArrayOutputStream baos;
     protected byte[] bytes;
     protected BinaryExporter exporter;
     protected BinaryClassObject cObj;
 
+    /**
+     * When streaming, the data is written to the spill file in segments,
+     * stored as pairs of position and length, instead of the bytes array.
+     */
+    protected BinarySpillFile spill;
+    private long[] segments;
+    private int segmentCount;
+    private int length;
+    private int hash = 1;
+
     public BinaryOutputCapsule(BinaryExporter exporter, BinaryClassObject bco) {
         this.baos = new ByteArrayOutputStream();
         this.exporter = exporter;
         this.cObj = bco;
+        this.spill = exporter.getSpillFile();
     }
 
     public void write(byte value, String name, byte defVal) throws IOException {
@@ -389,6 +407,9 @@ final class BinaryOutputCapsule implements OutputCapsule {
     }
 
     protected void writeAlias(String name, byte fieldType) throws IOException {
+        if (spill != null && baos.size() >= SPILL_THRESHOLD) {
+            endSpill(beginSpill());
+        }
         if (cObj.nameFields.get(name) == null)
             generateAlias(name, fieldType);
 
@@ -409,7 +430,15 @@ final class BinaryOutputCapsule implements OutputCapsule {
         if (!(arg0 instanceof BinaryOutputCapsule))
             return false;
 
-        byte[] other = ((BinaryOutputCapsule) arg0).bytes;
+        BinaryOutputCapsule capsule = (BinaryOutputCapsule) arg0;
+        if (bytes == null || capsule.bytes == null) {
+            try {
+                return spilledEquals(capsule);
+            } catch (IOException ex) {
+                throw new IllegalStateException("Cannot read the spill file", ex);
+            }
+        }
+        byte[] other = capsule.bytes;
         if (bytes.length != other.length)
             return false;
         return Arrays.equals(bytes, other);
@@ -418,19 +447,130 @@ final class BinaryOutputCapsule implements OutputCapsule {
     @Override
     public int hashCode() {
         int hash = 7;
+        if (bytes == null) {
+            // same as Arrays.hashCode on the spilled data
+            return 23 * hash + this.hash;
+        }
         hash = 23 * hash + Arrays.hashCode(this.bytes);
         return hash;
     }
 
-    public void finish() {
+    public void finish() throws IOException {
         // renamed to finish as 'finalize' in java.lang.Object should not be
         // overridden like this
         // - finalize should not be called directly but is called by garbage
         // collection!!!
-        bytes = baos.toByteArray();
+        if (spill != null) {
+            endSpill(beginSpill());
+        } else {
+            bytes = baos.toByteArray();
+        }
         baos = null;
     }
 
+    /**
+     * @return The number of bytes of data, once finished.
+     */
+    public int getLength() {
+        return bytes != null ? bytes.length : length;
+    }
+
+    /**
+     * Writes the data of the finished capsule.
+     */
+    public void writeTo(OutputStream os) throws IOException {
+        if (bytes != null) {
+            os.write(bytes);
+            return;
+        }
+        for (int i = 0; i < segmentCount; i++) {
+            spill.copyTo(segments[i * 2], segments[i * 2 + 1], os);
+        }
+    }
+
+    /**
+     * Moves the bytes written so far to the spill file, the data written 
+     * to the spill file next up to {@link #endSpill(long) } is also part
+     * of the capsule.
+     * 
+     * @return The position of the data in the spill file
+     */
+    private long beginSpill() throws IOException {
+        long start = spill.getPosition();
+        spill.setHash(hash);
+        baos.writeTo(spill);
+        baos.reset();
+        return start;
+    }
+
+    private void endSpill(long start) {
+        hash = spill.getHash();
+        long end = spill.getPosition();
+        if (end == start) {
+            return;
+        }
+        length += (int) (end - start);
+        if (segmentCount > 0 && segments[segmentCount * 2 - 2] 
+                + segments[segmentCount * 2 - 1] == start) {
+            // contiguous with the previous segment
+            segments[segmentCount * 2 - 1] += end - start;
+            return;
+        }
+        if (segments == null) {
+            segments = new long[2];
+        } else if (segmentCount * 2 == segments.length) {
+            long[] newSegments = new long[segments.length * 2];
+            System.arraycopy(segments, 0, newSegments, 0, segments.length);
+            segments = newSegments;
+        }
+        segments[segmentCount * 2] = start;
+        segments[segmentCount * 2 + 1] = end - start;
+        segmentCount++;
+    }
+
+    /**
+     * Reads spilled data of the capsule.
+     * 
+     * @param offset The offset in the data of the capsule
+     */
+    private void readSpilled(int offset, byte[] b, int len) throws IOException {
+        int off = 0;
+        for (int i = 0; i < segmentCount && len > 0; i++) {
+            long segmentLength = segments[i * 2 + 1];
+            if (offset >= segmentLength) {
+                offset -= segmentLength;
+                continue;
+            }
+            int n = (int) Math.min(len, segmentLength - offset);
+            spill.read(segments[i * 2] + offset, b, off, n);
+            off += n;
+            len -= n;
+            offset = 0;
+        }
+    }
+
+    private boolean spilledEquals(BinaryOutputCapsule other) throws IOException {
+        if (bytes != null || other.bytes != null) {
+            return false;
+        }
+        if (length != other.length || hash != other.hash) {
+            return false;
+        }
+        byte[] a = new byte[Math.min(length, 8192)];
+        byte[] b = new byte[a.length];
+        for (int offset = 0; offset < length; offset += a.length) {
+            int n = Math.min(a.length, length - offset);
+            readSpilled(offset, a, n);
+            other.readSpilled(offset, b, n);
+            for (int i = 0; i < n; i++) {
+                if (a[i] != b[i]) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
     // byte primitive
 
     protected void write(byte value) throws IOException {
@@ -876,8 +1016,15 @@ final class BinaryOutputCapsule implements OutputCapsule {
         value.rewind();
         int length = value.limit();
         write(length);
-        for (int x = 0; x < length; x++) {
-            writeForBuffer(value.get());
+        if (spill != null) {
+            // straight from the buffer to the spill file
+            long start = beginSpill();
+            spill.write(value);
+            endSpill(start);
+        } else {
+            for (int x = 0; x < length; x++) {
+                writeForBuffer(value.get());
+            }
         }
         value.rewind();
     }
@@ -892,9 +1039,15 @@ final class BinaryOutputCapsule implements OutputCapsule {
         value.rewind();
         int length = value.limit();
         write(length);
-
-        for (int x = 0; x < length; x++) {
-            writeForBuffer(value.get());
+        if (spill != null) {
+            // straight from the buffer to the spill file
+            long start = beginSpill();
+            spill.write(value);
+            endSpill(start);
+        } else {
+            for (int x = 0; x < length; x++) {
+                writeForBuffer(value.get());
+            }
         }
         value.rewind();
     }
@@ -909,8 +1062,15 @@ final class BinaryOutputCapsule implements OutputCapsule {
         value.rewind();
         int length = value.limit();
         write(length);
-        for (int x = 0; x < length; x++) {
-            writeForBuffer(value.get());
+        if (spill != null) {
+            // straight from the buffer to the spill file
+            long start = beginSpill();
+            spill.write(value);
+            endSpill(start);
+        } else {
+            for (int x = 0; x < length; x++) {
+                writeForBuffer(value.get());
+            }
         }
         value.rewind();
     }
@@ -925,8 +1085,15 @@ final class BinaryOutputCapsule implements OutputCapsule {
         value.rewind();
         int length = value.limit();
         write(length);
-        for (int x = 0; x < length; x++) {
-            writeForBuffer(value.get());
+        if (spill != null) {
+            // straight from the buffer to the spill file
+            long start = beginSpill();
+            spill.write(value);
+            endSpill(start);
+        } else {
+            for (int x = 0; x < length; x++) {
+                writeForBuffer(value.get());
+            }
         }
         value.rewind();
     }
@@ -0,0 +1,260 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.export.binary;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A temporary file holding the data of the capsules written by a streaming
+ * {@link BinaryExporter}, so that the data does not have to stay in memory
+ * until the whole object graph has been processed.
+ * <p>
+ * The file keeps a running hash of the bytes written, computed like 
+ * <code>Arrays.hashCode(byte[])</code>, which the capsules use to find 
+ * duplicates without reading their data back.
+ */
+final class BinarySpillFile extends OutputStream {
+
+    private static final int BUFFER_SIZE = 65536;
+
+    private final File file;
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private byte[] copyBuffer;
+    private long position;
+    private int hash;
+
+    public BinarySpillFile(File directory) throws IOException {
+        file = File.createTempFile("jme3export", ".tmp", directory);
+        raf = new RandomAccessFile(file, "rw");
+        channel = raf.getChannel();
+        buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * @return The length of the file, including the bytes not flushed yet.
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    public int getHash() {
+        return hash;
+    }
+
+    public void setHash(int hash) {
+        this.hash = hash;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (!buffer.hasRemaining()) {
+            flushBuffer();
+        }
+        buffer.put((byte) b);
+        hash = 31 * hash + (byte) b;
+        position++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        int h = hash;
+        for (int i = off, end = off + len; i < end; i++) {
+            h = 31 * h + b[i];
+        }
+        hash = h;
+        position += len;
+        while (len > 0) {
+            if (!buffer.hasRemaining()) {
+                flushBuffer();
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.put(b, off, n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    private int hashInt(int h, int value) {
+        h = 31 * h + (byte) value;
+        h = 31 * h + (byte) (value >> 8);
+        h = 31 * h + (byte) (value >> 16);
+        return 31 * h + (byte) (value >> 24);
+    }
+
+    /**
+     * Writes the remaining floats of the buffer in little endian order,
+     * like {@link BinaryOutputCapsule#writeForBuffer(float) }.
+     */
+    public void write(FloatBuffer value) throws IOException {
+        int h = hash;
+        position += value.remaining() * 4L;
+        while (value.hasRemaining()) {
+            if (buffer.remaining() < 4) {
+                flushBuffer();
+            }
+            for (int n = Math.min(value.remaining(), buffer.remaining() / 4); n > 0; n--) {
+                int bits = Float.floatToIntBits(value.get());
+                buffer.putInt(bits);
+                h = hashInt(h, bits);
+            }
+        }
+        hash = h;
+    }
+
+    /**
+     * Writes the remaining ints of the buffer in little endian order.
+     */
+    public void write(IntBuffer value) throws IOException {
+        int h = hash;
+        position += value.remaining() * 4L;
+        while (value.hasRemaining()) {
+            if (buffer.remaining() < 4) {
+                flushBuffer();
+            }
+            for (int n = Math.min(value.remaining(), buffer.remaining() / 4); n > 0; n--) {
+                int bits = value.get();
+                buffer.putInt(bits);
+                h = hashInt(h, bits);
+            }
+        }
+        hash = h;
+    }
+
+    /**
+     * Writes the remaining shorts of the buffer in little endian order.
+     */
+    public void write(ShortBuffer value) throws IOException {
+        int h = hash;
+        position += value.remaining() * 2L;
+        while (value.hasRemaining()) {
+            if (buffer.remaining() < 2) {
+                flushBuffer();
+            }
+            for (int n = Math.min(value.remaining(), buffer.remaining() / 2); n > 0; n--) {
+                short bits = value.get();
+                buffer.putShort(bits);
+                h = 31 * (31 * h + (byte) bits) + (byte) (bits >> 8);
+            }
+        }
+        hash = h;
+    }
+
+    /**
+     * Writes the remaining bytes of the buffer.
+     */
+    public void write(ByteBuffer value) throws IOException {
+        int h = hash;
+        position += value.remaining();
+        while (value.hasRemaining()) {
+            if (!buffer.hasRemaining()) {
+                flushBuffer();
+            }
+            for (int n = Math.min(value.remaining(), buffer.remaining()); n > 0; n--) {
+                byte b = value.get();
+                buffer.put(b);
+                h = 31 * h + b;
+            }
+        }
+        hash = h;
+    }
+
+    private void flushBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Reads bytes written previously.
+     * 
+     * @param position The position of the first byte in the file
+     */
+    public void read(long position, byte[] b, int off, int len) throws IOException {
+        if (buffer.position() > 0) {
+            flushBuffer();
+        }
+        ByteBuffer dst = ByteBuffer.wrap(b, off, len);
+        while (dst.hasRemaining()) {
+            int n = channel.read(dst, position);
+            if (n < 0) {
+                throw new EOFException();
+            }
+            position += n;
+        }
+    }
+
+    /**
+     * Copies bytes written previously to the given stream.
+     * 
+     * @param position The position of the first byte in the file
+     */
+    public void copyTo(long position, long length, OutputStream os) throws IOException {
+        if (copyBuffer == null) {
+            copyBuffer = new byte[BUFFER_SIZE];
+        }
+        while (length > 0) {
+            int n = (int) Math.min(length, copyBuffer.length);
+            read(position, copyBuffer, 0, n);
+            os.write(copyBuffer, 0, n);
+            position += n;
+            length -= n;
+        }
+    }
+
+    /**
+     * Closes and deletes the file.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            raf.close();
+        } finally {
+            if (!file.delete()) {
+                file.deleteOnExit();
+            }
+        }
+    }
+}
@@ -34,17 +34,11 @@ package com.jme3.scene.plugins;
 import com.jme3.asset.*;
 import com.jme3.material.Material;
 import com.jme3.material.MaterialList;
-import com.jme3.math.Vector2f;
-import com.jme3.math.Vector3f;
 import com.jme3.renderer.queue.RenderQueue.Bucket;
 import com.jme3.scene.*;
 import com.jme3.scene.Mesh.Mode;
 import com.jme3.scene.VertexBuffer.Type;
-import com.jme3.scene.mesh.IndexBuffer;
-import com.jme3.scene.mesh.IndexIntBuffer;
-import com.jme3.scene.mesh.IndexShortBuffer;
 import com.jme3.util.BufferUtils;
-import com.jme3.util.IntMap;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
@@ -58,28 +52,41 @@ import java.util.logging.Logger;
 
 /**
  * Reads OBJ format models.
+ * <p>
+ * The file is tokenized directly from its bytes and the vertex attributes
+ * are kept in primitive arrays, so that no objects are created per vertex
+ * or face. The vertices of each mesh are deduplicated as they are read, 
+ * then the mesh buffers are filled in one go.
  */
 public final class OBJLoader implements AssetLoader {
 
     private static final Logger logger = Logger.getLogger(OBJLoader.class.getName());
 
-    protected final ArrayList<Vector3f> verts = new ArrayList<Vector3f>();
-    protected final ArrayList<Vector2f> texCoords = new ArrayList<Vector2f>();
-    protected final ArrayList<Vector3f> norms = new ArrayList<Vector3f>();
-    
-    protected final ArrayList<Face> faces = new ArrayList<Face>();
-    protected final HashMap<String, ArrayList<Face>> matFaces = new HashMap<String, ArrayList<Face>>();
+    private static final int BUFFER_SIZE = 65536;
+
+    private static final double[] POWERS_OF_TEN = new double[23];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    protected float[] verts;
+    protected float[] texCoords;
+    protected float[] norms;
+    protected int vertCount;
+    protected int texCoordCount;
+    protected int normCount;
+
+    protected MeshBuilder faces;
+    protected final HashMap<String, MeshBuilder> matFaces = new HashMap<String, MeshBuilder>();
     
     protected String currentMatName;
-    protected String currentObjectName;
 
-    protected final HashMap<Vertex, Integer> vertIndexMap = new HashMap<Vertex, Integer>(100);
-    protected final IntMap<Vertex> indexVertMap = new IntMap<Vertex>(100);
-    protected int curIndex    = 0;
-    protected int objectIndex = 0;
     protected int geomIndex   = 0;
 
-    protected Scanner scan;
     protected ModelKey key;
     protected AssetManager assetManager;
     protected MaterialList matList;
@@ -87,240 +94,563 @@ public final class OBJLoader implements AssetLoader {
     protected String objName;
     protected Node objNode;
 
-    protected static class Vertex {
+    // tokenizer state, c is the current character or -1 at the end
+    private InputStream in;
+    private byte[] buffer;
+    private int position;
+    private int limit;
+    private int c;
+    private int line;
+    private byte[] scratch = new byte[64];
+
+    // corners of the current face
+    private int[] faceVerts = new int[4];
+    private int[] faceTexCoords = new int[4];
+    private int[] faceNorms = new int[4];
+    private int[] faceIndices = new int[4];
+
+    /**
+     * The vertices and triangles of a mesh. The vertices are
+     * deduplicated with an open addressing hash table.
+     */
+    protected static class MeshBuilder {
+
+        private static final int HAS_TEXCOORD = 1;
+        private static final int HAS_NORMAL = 2;
+
+        float[] positions = new float[3 * 256];
+        float[] texCoords = new float[2 * 256];
+        float[] normals = new float[3 * 256];
+        byte[] flags = new byte[256];
+        int[] hashes = new int[256];
+        int vertexCount;
+        boolean hasTexCoords;
+        boolean hasNormals;
+
+        int[] indices = new int[3 * 256];
+        int indexCount;
+
+        // vertex index + 1, 0 for empty slots
+        private int[] table = new int[512];
+
+        private static boolean same(float a, float b) {
+            // same as Float.compare(a, b) == 0, like Vector3f.equals
+            return Float.floatToIntBits(a) == Float.floatToIntBits(b);
+        }
 
-        Vector3f v;
-        Vector2f vt;
-        Vector3f vn;
-        int index;
+        private void grow() {
+            int n = vertexCount * 2;
+            positions = copyOf(positions, n * 3);
+            texCoords = copyOf(texCoords, n * 2);
+            normals = copyOf(normals, n * 3);
+            byte[] newFlags = new byte[n];
+            System.arraycopy(flags, 0, newFlags, 0, vertexCount);
+            flags = newFlags;
+            hashes = copyOf(hashes, n);
+        }
 
-        @Override
-        public boolean equals(Object obj) {
-            if (obj == null) {
-                return false;
+        private void rehash() {
+            table = new int[table.length * 2];
+            int mask = table.length - 1;
+            for (int i = 0; i < vertexCount; i++) {
+                int slot = hashes[i] & mask;
+                while (table[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                table[slot] = i + 1;
             }
-            if (getClass() != obj.getClass()) {
-                return false;
+        }
+
+        /**
+         * Finds or adds a vertex.
+         * 
+         * @param tc The offset of the texture coordinate, or -1
+         * @param n The offset of the normal, or -1
+         * @return The index of the vertex in the mesh.
+         */
+        public int addVertex(float[] verts, int v, float[] texCoords, int tc, float[] norms, int n) {
+            int flag = (tc >= 0 ? HAS_TEXCOORD : 0) | (n >= 0 ? HAS_NORMAL : 0);
+            float x = verts[v], y = verts[v + 1], z = verts[v + 2];
+            float u = 0, w = 0, nx = 0, ny = 0, nz = 0;
+            int hash = Float.floatToIntBits(x);
+            hash = hash * 31 + Float.floatToIntBits(y);
+            hash = hash * 31 + Float.floatToIntBits(z);
+            if (tc >= 0) {
+                u = texCoords[tc];
+                w = texCoords[tc + 1];
+                hash = hash * 31 + Float.floatToIntBits(u);
+                hash = hash * 31 + Float.floatToIntBits(w);
             }
-            final Vertex other = (Vertex) obj;
-            if (this.v != other.v && (this.v == null || !this.v.equals(other.v))) {
-                return false;
+            if (n >= 0) {
+                nx = norms[n];
+                ny = norms[n + 1];
+                nz = norms[n + 2];
+                hash = hash * 31 + Float.floatToIntBits(nx);
+                hash = hash * 31 + Float.floatToIntBits(ny);
+                hash = hash * 31 + Float.floatToIntBits(nz);
             }
-            if (this.vt != other.vt && (this.vt == null || !this.vt.equals(other.vt))) {
-                return false;
+            hash = (hash ^ flag) * 0x9E3779B9;
+            hash ^= hash >>> 16;
+
+            int mask = table.length - 1;
+            int slot = hash & mask;
+            while (table[slot] != 0) {
+                int i = table[slot] - 1;
+                if (hashes[i] == hash && flags[i] == flag
+                        && same(positions[i * 3], x) && same(positions[i * 3 + 1], y)
+                        && same(positions[i * 3 + 2], z)
+                        && ((flag & HAS_TEXCOORD) == 0
+                            || (same(this.texCoords[i * 2], u) && same(this.texCoords[i * 2 + 1], w)))
+                        && ((flag & HAS_NORMAL) == 0
+                            || (same(normals[i * 3], nx) && same(normals[i * 3 + 1], ny) 
+                                && same(normals[i * 3 + 2], nz)))) {
+                    return i;
+                }
+                slot = (slot + 1) & mask;
             }
-            if (this.vn != other.vn && (this.vn == null || !this.vn.equals(other.vn))) {
-                return false;
+
+            int i = vertexCount;
+            if (i == hashes.length) {
+                grow();
+            }
+            positions[i * 3] = x;
+            positions[i * 3 + 1] = y;
+            positions[i * 3 + 2] = z;
+            this.texCoords[i * 2] = u;
+            this.texCoords[i * 2 + 1] = w;
+            normals[i * 3] = nx;
+            normals[i * 3 + 1] = ny;
+            normals[i * 3 + 2] = nz;
+            flags[i] = (byte) flag;
+            hashes[i] = hash;
+            hasTexCoords |= tc >= 0;
+            hasNormals |= n >= 0;
+            vertexCount++;
+            table[slot] = i + 1;
+            if (vertexCount * 2 > table.length) {
+                rehash();
             }
-            return true;
+            return i;
         }
 
-        @Override
-        public int hashCode() {
-            int hash = 5;
-            hash = 53 * hash + (this.v != null ? this.v.hashCode() : 0);
-            hash = 53 * hash + (this.vt != null ? this.vt.hashCode() : 0);
-            hash = 53 * hash + (this.vn != null ? this.vn.hashCode() : 0);
-            return hash;
+        public void addTriangle(int v0, int v1, int v2) {
+            if (indexCount + 3 > indices.length) {
+                indices = copyOf(indices, indices.length * 2);
+            }
+            indices[indexCount++] = v0;
+            indices[indexCount++] = v1;
+            indices[indexCount++] = v2;
         }
-    }
-    
-    protected static class Face {
-        Vertex[] verticies;
-    }
-    
-    protected class ObjectGroup {
-        
-        final String objectName;
-        
-        public ObjectGroup(String objectName){
-            this.objectName = objectName;
+
+        /**
+         * Splits a quad along its shortest diagonal.
+         */
+        public void addQuad(int v0, int v1, int v2, int v3) {
+            // same as Vector3f.distanceSquared
+            double dx = positions[v0 * 3] - positions[v2 * 3];
+            double dy = positions[v0 * 3 + 1] - positions[v2 * 3 + 1];
+            double dz = positions[v0 * 3 + 2] - positions[v2 * 3 + 2];
+            float d1 = (float) (dx * dx + dy * dy + dz * dz);
+            dx = positions[v1 * 3] - positions[v3 * 3];
+            dy = positions[v1 * 3 + 1] - positions[v3 * 3 + 1];
+            dz = positions[v1 * 3 + 2] - positions[v3 * 3 + 2];
+            float d2 = (float) (dx * dx + dy * dy + dz * dz);
+            if (d1 < d2) {
+                // put an edge in v0, v2
+                addTriangle(v0, v1, v3);
+                addTriangle(v1, v2, v3);
+            } else {
+                // put an edge in v1, v3
+                addTriangle(v0, v1, v2);
+                addTriangle(v0, v2, v3);
+            }
         }
-        
-        public Spatial createGeometry(){
-            Node groupNode = new Node(objectName);
-            
-//            if (matFaces.size() > 0){
-//                for (Entry<String, ArrayList<Face>> entry : matFaces.entrySet()){
-//                    ArrayList<Face> materialFaces = entry.getValue();
-//                    if (materialFaces.size() > 0){
-//                        Geometry geom = createGeometry(materialFaces, entry.getKey());
-//                        objNode.attachChild(geom);
-//                    }
-//                }
-//            }else if (faces.size() > 0){
-//                // generate final geometry
-//                Geometry geom = createGeometry(faces, null);
-//                objNode.attachChild(geom);
-//            }
-            
-            return groupNode;
+
+        public Mesh createMesh() {
+            Mesh m = new Mesh();
+            m.setMode(Mode.Triangles);
+
+            FloatBuffer posBuf = BufferUtils.createFloatBuffer(vertexCount * 3);
+            posBuf.put(positions, 0, vertexCount * 3).clear();
+
+            if (hasNormals) {
+                FloatBuffer normBuf = BufferUtils.createFloatBuffer(vertexCount * 3);
+                normBuf.put(normals, 0, vertexCount * 3).clear();
+                m.setBuffer(VertexBuffer.Type.Normal, 3, normBuf);
+            }
+            if (hasTexCoords) {
+                FloatBuffer tcBuf = BufferUtils.createFloatBuffer(vertexCount * 2);
+                tcBuf.put(texCoords, 0, vertexCount * 2).clear();
+                m.setBuffer(VertexBuffer.Type.TexCoord, 2, tcBuf);
+            }
+
+            if (vertexCount >= 65536) {
+                // too many verticies: use intbuffer instead of shortbuffer
+                IntBuffer ib = BufferUtils.createIntBuffer(indexCount);
+                ib.put(indices, 0, indexCount).clear();
+                m.setBuffer(VertexBuffer.Type.Index, 3, ib);
+            } else {
+                ShortBuffer sb = BufferUtils.createShortBuffer(indexCount);
+                for (int i = 0; i < indexCount; i++) {
+                    sb.put((short) indices[i]);
+                }
+                sb.clear();
+                m.setBuffer(VertexBuffer.Type.Index, 3, sb);
+            }
+
+            m.setBuffer(VertexBuffer.Type.Position, 3, posBuf);
+            // index buffer and others were set on creation
+
+            m.setStatic();
+            m.updateBound();
+            m.updateCounts();
+            return m;
         }
     }
 
+    private static float[] copyOf(float[] array, int length) {
+        float[] copy = new float[length];
+        System.arraycopy(array, 0, copy, 0, Math.min(array.length, length));
+        return copy;
+    }
+
+    private static int[] copyOf(int[] array, int length) {
+        int[] copy = new int[length];
+        System.arraycopy(array, 0, copy, 0, Math.min(array.length, length));
+        return copy;
+    }
+
     public void reset(){
-        verts.clear();
-        texCoords.clear();
-        norms.clear();
-        faces.clear();
+        verts = new float[3 * 1024];
+        texCoords = new float[2 * 1024];
+        norms = new float[3 * 1024];
+        vertCount = 0;
+        texCoordCount = 0;
+        normCount = 0;
+        faces = new MeshBuilder();
         matFaces.clear();
 
-        vertIndexMap.clear();
-        indexVertMap.clear();
-
         currentMatName = null;
         matList = null;
-        curIndex = 0;
         geomIndex = 0;
-        scan = null;
+        line = 1;
     }
 
-    protected void findVertexIndex(Vertex vert){
-        Integer index = vertIndexMap.get(vert);
-        if (index != null){
-            vert.index = index.intValue();
-        }else{
-            vert.index = curIndex++;
-            vertIndexMap.put(vert, vert.index);
-            indexVertMap.put(vert.index, vert);
+    // TOKENIZER
+
+    private void advance() throws IOException {
+        if (position == limit) {
+            limit = in.read(buffer, 0, buffer.length);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                c = -1;
+                return;
+            }
         }
+        c = buffer[position++] & 0xFF;
     }
 
-    protected Face[] quadToTriangle(Face f){
-        assert f.verticies.length == 4;
-
-        Face[] t = new Face[]{ new Face(), new Face() };
-        t[0].verticies = new Vertex[3];
-        t[1].verticies = new Vertex[3];
-
-        Vertex v0 = f.verticies[0];
-        Vertex v1 = f.verticies[1];
-        Vertex v2 = f.verticies[2];
-        Vertex v3 = f.verticies[3];
-
-        // find the pair of verticies that is closest to each over
-        // v0 and v2
-        // OR
-        // v1 and v3
-        float d1 = v0.v.distanceSquared(v2.v);
-        float d2 = v1.v.distanceSquared(v3.v);
-        if (d1 < d2){
-            // put an edge in v0, v2
-            t[0].verticies[0] = v0;
-            t[0].verticies[1] = v1;
-            t[0].verticies[2] = v3;
-
-            t[1].verticies[0] = v1;
-            t[1].verticies[1] = v2;
-            t[1].verticies[2] = v3;
-        }else{
-            // put an edge in v1, v3
-            t[0].verticies[0] = v0;
-            t[0].verticies[1] = v1;
-            t[0].verticies[2] = v2;
+    private static boolean isBlank(int c) {
+        return c == ' ' || c == '\t' || c == '\r' || c == '\f';
+    }
 
-            t[1].verticies[0] = v0;
-            t[1].verticies[1] = v2;
-            t[1].verticies[2] = v3;
+    private static boolean isEnd(int c) {
+        return c == '\n' || c == -1 || c == '#';
+    }
+
+    private void skipBlanks() throws IOException {
+        while (isBlank(c)) {
+            advance();
         }
+    }
 
-        return t;
+    /**
+     * Skips the rest of the line, including the line feed.
+     */
+    private void nextStatement() throws IOException {
+        while (c != '\n' && c != -1) {
+            advance();
+        }
+        if (c == '\n') {
+            line++;
+            advance();
+        }
     }
 
-    private ArrayList<Vertex> vertList = new ArrayList<Vertex>();
+    /**
+     * Appends the current character to the scratch array.
+     * 
+     * @return The new length.
+     */
+    private int append(int length) throws IOException {
+        if (length == scratch.length) {
+            byte[] newScratch = new byte[length * 2];
+            System.arraycopy(scratch, 0, newScratch, 0, length);
+            scratch = newScratch;
+        }
+        scratch[length++] = (byte) c;
+        advance();
+        return length;
+    }
 
-    protected void readFace(){
-        Face f = new Face();
-        vertList.clear();
+    /**
+     * Reads the next word into the scratch array.
+     * 
+     * @return The length of the word.
+     */
+    private int readWord() throws IOException {
+        skipBlanks();
+        int length = 0;
+        while (!isBlank(c) && !isEnd(c)) {
+            length = append(length);
+        }
+        return length;
+    }
 
-        String line = scan.nextLine().trim();
-        String[] verticies = line.split("\\s");
-        for (String vertex : verticies){
-            int v = 0;
-            int vt = 0;
-            int vn = 0;
+    private String readString() throws IOException {
+        return new String(scratch, 0, readWord(), "UTF-8");
+    }
+
+    private String readRestOfLine() throws IOException {
+        int length = 0;
+        while (c != '\n' && c != -1) {
+            length = append(length);
+        }
+        return new String(scratch, 0, length, "UTF-8");
+    }
 
-            String[] split = vertex.split("/");
-            if (split.length == 1){
-                v = Integer.parseInt(split[0].trim());
-            }else if (split.length == 2){
-                v = Integer.parseInt(split[0].trim());
-                vt = Integer.parseInt(split[1].trim());
-            }else if (split.length == 3 && !split[1].equals("")){
-                v = Integer.parseInt(split[0].trim());
-                vt = Integer.parseInt(split[1].trim());
-                vn = Integer.parseInt(split[2].trim());
-            }else if (split.length == 3){
-                v = Integer.parseInt(split[0].trim());
-                vn = Integer.parseInt(split[2].trim());
+    private boolean isWord(int length, String word) {
+        if (length != word.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (scratch[i] != word.charAt(i)) {
+                return false;
             }
-            
-            if (v < 0) {
-                v = verts.size() + v + 1;
+        }
+        return true;
+    }
+
+    /**
+     * Reads a float without creating a String, unless it cannot be 
+     * correctly rounded with double arithmetics, e.g. when it has too many 
+     * digits. The characters are kept in the scratch array in that case.
+     * A missing value is read as 0.
+     */
+    private float readFloat() throws IOException {
+        skipBlanks();
+        if (isEnd(c)) {
+            return 0;
+        }
+        int length = 0;
+        boolean negative = false;
+        boolean valid = false;
+        boolean exact = true;
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        if (c == '-' || c == '+') {
+            negative = c == '-';
+            length = append(length);
+        }
+        while (c >= '0' && c <= '9') {
+            if (mantissa != 0 || c != '0') {
+                if (++digits > 18) {
+                    exact = false;
+                } else {
+                    mantissa = mantissa * 10 + (c - '0');
+                }
             }
-            if (vt < 0) {
-                vt = texCoords.size() + vt + 1;
+            valid = true;
+            length = append(length);
+        }
+        if (c == '.') {
+            length = append(length);
+            while (c >= '0' && c <= '9') {
+                if (mantissa != 0 || c != '0') {
+                    if (++digits > 18) {
+                        exact = false;
+                    } else {
+                        mantissa = mantissa * 10 + (c - '0');
+                    }
+                }
+                exponent--;
+                valid = true;
+                length = append(length);
             }
-            if (vn < 0) {
-                vn = norms.size() + vn + 1;
+        }
+        if (valid && (c == 'e' || c == 'E')) {
+            length = append(length);
+            boolean negativeExponent = false;
+            if (c == '-' || c == '+') {
+                negativeExponent = c == '-';
+                length = append(length);
             }
-
-            Vertex vx = new Vertex();
-            vx.v = verts.get(v - 1);
-
-            if (vt > 0)
-                vx.vt = texCoords.get(vt - 1);
-
-            if (vn > 0)
-                vx.vn = norms.get(vn - 1);
-
-            vertList.add(vx);
+            int value = 0;
+            valid = false;
+            while (c >= '0' && c <= '9') {
+                value = Math.min(value * 10 + (c - '0'), 100000);
+                valid = true;
+                length = append(length);
+            }
+            exponent += negativeExponent ? -value : value;
         }
-
-        if (vertList.size() > 4 || vertList.size() <= 2) {
-            logger.warning("Edge or polygon detected in OBJ. Ignored.");
-            return;
+        if (!valid || !exact || (!isBlank(c) && !isEnd(c))) {
+            // e.g. NaN or Infinity
+            return readFloatString(length);
         }
-
-        f.verticies = new Vertex[vertList.size()];
-        for (int i = 0; i < vertList.size(); i++){
-            f.verticies[i] = vertList.get(i);
+        if (mantissa == 0) {
+            return negative ? -0f : 0f;
+        }
+        double value;
+        if (mantissa > (1L << 53) || exponent < -22 || exponent > 22) {
+            return readFloatString(length);
+        } else if (exponent < 0) {
+            // one correctly rounded operation on exact doubles
+            value = mantissa / POWERS_OF_TEN[-exponent];
+        } else {
+            value = mantissa * POWERS_OF_TEN[exponent];
+        }
+        // the double is correctly rounded, and so is the float unless the
+        // double landed exactly halfway between two floats: the exact value
+        // may then be on either side, and rounding it twice can be wrong
+        float result = (float) value;
+        double error = value - result;
+        if (error != 0) {
+            int bits = Float.floatToIntBits(result);
+            float neighbour = Float.intBitsToFloat(error > 0 ? bits + 1 : bits - 1);
+            if ((result + (double) neighbour) * 0.5 == value) {
+                return readFloatString(length);
+            }
         }
+        return negative ? -result : result;
+    }
 
-        if (matList != null && matFaces.containsKey(currentMatName)){
-            matFaces.get(currentMatName).add(f);
-        }else{
-            faces.add(f); // faces that belong to the default material
+    /**
+     * Reads the rest of a float and parses it as a String.
+     * 
+     * @param length The length of the part read already into the scratch array
+     */
+    private float readFloatString(int length) throws IOException {
+        while (!isBlank(c) && !isEnd(c)) {
+            length = append(length);
+        }
+        String value = new String(scratch, 0, length, "ISO-8859-1");
+        try {
+            return Float.parseFloat(value);
+        } catch (NumberFormatException ex) {
+            throw new IOException("Invalid number '" + value + "' in OBJ on line " + line);
         }
     }
 
-    protected Vector3f readVector3(){
-        Vector3f v = new Vector3f();
+    /**
+     * Reads an index of a face.
+     * 
+     * @return The index or 0 if there is none.
+     */
+    private int readIndex() throws IOException {
+        boolean negative = false;
+        if (c == '-') {
+            negative = true;
+            advance();
+        }
+        int value = 0;
+        while (c >= '0' && c <= '9') {
+            value = value * 10 + (c - '0');
+            advance();
+        }
+        return negative ? -value : value;
+    }
 
-        v.set(Float.parseFloat(scan.next()),
-              Float.parseFloat(scan.next()),
-              Float.parseFloat(scan.next()));
+    // STATEMENTS
 
-        return v;
+    private float[] readVector(float[] array, int count, int components) throws IOException {
+        if ((count + 1) * components > array.length) {
+            array = copyOf(array, array.length * 2);
+        }
+        int offset = count * components;
+        for (int i = 0; i < components; i++) {
+            array[offset + i] = readFloat();
+        }
+        return array;
     }
 
-    protected Vector2f readVector2(){
-        Vector2f v = new Vector2f();
+    /**
+     * Converts an index of a face to the offset of the attribute.
+     * 
+     * @return The offset or -1 for no attribute.
+     */
+    private int toOffset(int index, int count, int components, String name) throws IOException {
+        if (index < 0) {
+            index = count + index + 1;
+        } else if (index == 0) {
+            return -1;
+        }
+        if (index < 1 || index > count) {
+            throw new IOException("Invalid " + name + " index in OBJ on line " + line);
+        }
+        return (index - 1) * components;
+    }
 
-        String line = scan.nextLine().trim();
-        String[] split = line.split("\\s+");
-        v.setX( Float.parseFloat(split[0].trim()) );
-        v.setY( Float.parseFloat(split[1].trim()) );
+    protected void readFace() throws IOException {
+        int count = 0;
+        while (true) {
+            skipBlanks();
+            if (isEnd(c)) {
+                break;
+            }
+            if (count == faceVerts.length) {
+                faceVerts = copyOf(faceVerts, count * 2);
+                faceTexCoords = copyOf(faceTexCoords, count * 2);
+                faceNorms = copyOf(faceNorms, count * 2);
+                faceIndices = copyOf(faceIndices, count * 2);
+            }
+            int v = readIndex();
+            int vt = 0;
+            int vn = 0;
+            if (c == '/') {
+                advance();
+                vt = readIndex();
+                if (c == '/') {
+                    advance();
+                    vn = readIndex();
+                }
+            }
+            if (!isBlank(c) && !isEnd(c)) {
+                throw new IOException("Invalid face in OBJ on line " + line);
+            }
+            faceVerts[count] = v;
+            faceTexCoords[count] = vt;
+            faceNorms[count] = vn;
+            count++;
+        }
 
-//        v.setX(scan.nextFloat());
-//        if (scan.hasNextFloat()){
-//            v.setY(scan.nextFloat());
-//            if (scan.hasNextFloat()){
-//                scan.nextFloat(); // ignore
-//            }
-//        }
+        if (count > 4 || count <= 2) {
+            logger.warning("Edge or polygon detected in OBJ. Ignored.");
+            return;
+        }
 
-        return v;
+        MeshBuilder mesh;
+        if (matList != null && matFaces.containsKey(currentMatName)){
+            mesh = matFaces.get(currentMatName);
+        }else{
+            mesh = faces; // faces that belong to the default material
+        }
+        for (int i = 0; i < count; i++) {
+            int v = toOffset(faceVerts[i], vertCount, 3, "vertex");
+            if (v < 0) {
+                throw new IOException("Missing vertex index in OBJ on line " + line);
+            }
+            int vt = toOffset(faceTexCoords[i], texCoordCount, 2, "texture coordinate");
+            int vn = toOffset(faceNorms[i], normCount, 3, "normal");
+            faceIndices[i] = mesh.addVertex(verts, v, texCoords, vt, norms, vn);
+        }
+        if (count == 4) {
+            mesh.addQuad(faceIndices[0], faceIndices[1], faceIndices[2], faceIndices[3]);
+        } else {
+            mesh.addTriangle(faceIndices[0], faceIndices[1], faceIndices[2]);
+        }
     }
 
     protected void loadMtlLib(String name) throws IOException{
@@ -339,69 +669,55 @@ public final class OBJLoader implements AssetLoader {
         if (matList != null){
             // create face lists for every material
             for (String matName : matList.keySet()){
-                matFaces.put(matName, new ArrayList<Face>());
+                matFaces.put(matName, new MeshBuilder());
             }
         }
     }
 
-    protected boolean nextStatement(){
-        try {
-            scan.skip(".*\r{0,1}\n");
-            return true;
-        } catch (NoSuchElementException ex){
-            // EOF
-            return false;
-        }
-    }
-
     protected boolean readLine() throws IOException{
-        if (!scan.hasNext()){
+        skipBlanks();
+        if (c == -1){
             return false;
         }
 
-        String cmd = scan.next();
-        if (cmd.startsWith("#")){
-            // skip entire comment until next line
-            return nextStatement();
-        }else if (cmd.equals("v")){
+        int length = readWord();
+        if (length == 0){
+            // empty line or comment
+        }else if (isWord(length, "v")){
             // vertex position
-            verts.add(readVector3());
-        }else if (cmd.equals("vn")){
+            verts = readVector(verts, vertCount++, 3);
+        }else if (isWord(length, "vn")){
             // vertex normal
-            norms.add(readVector3());
-        }else if (cmd.equals("vt")){
+            norms = readVector(norms, normCount++, 3);
+        }else if (isWord(length, "vt")){
             // texture coordinate
-            texCoords.add(readVector2());
-        }else if (cmd.equals("f")){
+            texCoords = readVector(texCoords, texCoordCount++, 2);
+        }else if (isWord(length, "f")){
             // face, can be triangle, quad, or polygon (unsupported)
             readFace();
-        }else if (cmd.equals("usemtl")){
+        }else if (isWord(length, "usemtl")){
             // use material from MTL lib for the following faces
-            currentMatName = scan.next();
-//            if (!matList.containsKey(currentMatName))
-//                throw new IOException("Cannot locate material " + currentMatName + " in MTL file!");
-            
-        }else if (cmd.equals("mtllib")){
+            currentMatName = readString();
+        }else if (isWord(length, "mtllib")){
             // specify MTL lib to use for this OBJ file
-            String mtllib = scan.nextLine().trim();
+            String mtllib = readRestOfLine().trim();
             loadMtlLib(mtllib);
-        }else if (cmd.equals("s") || cmd.equals("g")){
-            return nextStatement();
-        }else{
-            // skip entire command until next line
-            logger.log(Level.WARNING, "Unknown statement in OBJ! {0}", cmd);
-            return nextStatement();
-        }     
+        }else if (!isWord(length, "s") && !isWord(length, "g")){
+            logger.log(Level.WARNING, "Unknown statement in OBJ! {0}", 
+                    new String(scratch, 0, length, "ISO-8859-1"));
+        }
 
+        // skip the rest of the line, e.g. comments
+        nextStatement();
         return true;
     }
 
-    protected Geometry createGeometry(ArrayList<Face> faceList, String matName) throws IOException{
-        if (faceList.isEmpty())
+    protected Geometry createGeometry(MeshBuilder faceList, String matName) throws IOException{
+        if (faceList.indexCount == 0)
             throw new IOException("No geometry data to generate mesh");
 
         // Create mesh from the faces
-        Mesh mesh = constructMesh(faceList);
+        Mesh mesh = faceList.createMesh();
         
         Geometry geom = new Geometry(objName + "-geom-" + (geomIndex++), mesh);
         
@@ -430,123 +746,6 @@ public final class OBJLoader implements AssetLoader {
         return geom;
     }
 
-    protected Mesh constructMesh(ArrayList<Face> faceList){
-        Mesh m = new Mesh();
-        m.setMode(Mode.Triangles);
-
-        boolean hasTexCoord = false;
-        boolean hasNormals  = false;
-
-        ArrayList<Face> newFaces = new ArrayList<Face>(faceList.size());
-        for (int i = 0; i < faceList.size(); i++){
-            Face f = faceList.get(i);
-
-            for (Vertex v : f.verticies){
-                findVertexIndex(v);
-
-                if (!hasTexCoord && v.vt != null)
-                    hasTexCoord = true;
-                if (!hasNormals && v.vn != null)
-                    hasNormals = true;
-            }
-
-            if (f.verticies.length == 4){
-                Face[] t = quadToTriangle(f);
-                newFaces.add(t[0]);
-                newFaces.add(t[1]);
-            }else{
-                newFaces.add(f);
-            }
-        }
-
-        FloatBuffer posBuf  = BufferUtils.createFloatBuffer(vertIndexMap.size() * 3);
-        FloatBuffer normBuf = null;
-        FloatBuffer tcBuf   = null;
-
-        if (hasNormals){
-            normBuf = BufferUtils.createFloatBuffer(vertIndexMap.size() * 3);
-            m.setBuffer(VertexBuffer.Type.Normal, 3, normBuf);
-        }
-        if (hasTexCoord){
-            tcBuf = BufferUtils.createFloatBuffer(vertIndexMap.size() * 2);
-            m.setBuffer(VertexBuffer.Type.TexCoord, 2, tcBuf);
-        }
-
-        IndexBuffer indexBuf = null;
-        if (vertIndexMap.size() >= 65536){
-            // too many verticies: use intbuffer instead of shortbuffer
-            IntBuffer ib = BufferUtils.createIntBuffer(newFaces.size() * 3);
-            m.setBuffer(VertexBuffer.Type.Index, 3, ib);
-            indexBuf = new IndexIntBuffer(ib);
-        }else{
-            ShortBuffer sb = BufferUtils.createShortBuffer(newFaces.size() * 3);
-            m.setBuffer(VertexBuffer.Type.Index, 3, sb);
-            indexBuf = new IndexShortBuffer(sb);
-        }
-
-        int numFaces = newFaces.size();
-        for (int i = 0; i < numFaces; i++){
-            Face f = newFaces.get(i);
-            if (f.verticies.length != 3)
-                continue;
-
-            Vertex v0 = f.verticies[0];
-            Vertex v1 = f.verticies[1];
-            Vertex v2 = f.verticies[2];
-
-            posBuf.position(v0.index * 3);
-            posBuf.put(v0.v.x).put(v0.v.y).put(v0.v.z);
-            posBuf.position(v1.index * 3);
-            posBuf.put(v1.v.x).put(v1.v.y).put(v1.v.z);
-            posBuf.position(v2.index * 3);
-            posBuf.put(v2.v.x).put(v2.v.y).put(v2.v.z);
-
-            if (normBuf != null){
-                if (v0.vn != null){
-                    normBuf.position(v0.index * 3);
-                    normBuf.put(v0.vn.x).put(v0.vn.y).put(v0.vn.z);
-                    normBuf.position(v1.index * 3);
-                    normBuf.put(v1.vn.x).put(v1.vn.y).put(v1.vn.z);
-                    normBuf.position(v2.index * 3);
-                    normBuf.put(v2.vn.x).put(v2.vn.y).put(v2.vn.z);
-                }
-            }
-
-            if (tcBuf != null){
-                if (v0.vt != null){
-                    tcBuf.position(v0.index * 2);
-                    tcBuf.put(v0.vt.x).put(v0.vt.y);
-                    tcBuf.position(v1.index * 2);
-                    tcBuf.put(v1.vt.x).put(v1.vt.y);
-                    tcBuf.position(v2.index * 2);
-                    tcBuf.put(v2.vt.x).put(v2.vt.y);
-                }
-            }
-
-            int index = i * 3; // current face * 3 = current index
-            indexBuf.put(index,   v0.index);
-            indexBuf.put(index+1, v1.index);
-            indexBuf.put(index+2, v2.index);
-        }
-
-        m.setBuffer(VertexBuffer.Type.Position, 3, posBuf);
-        // index buffer and others were set on creation
-
-        m.setStatic();
-        m.updateBound();
-        m.updateCounts();
-        //m.setInterleaved();
-
-        // clear data generated face statements
-        // to prepare for next mesh
-        vertIndexMap.clear();
-        indexVertMap.clear();
-        curIndex = 0;
-
-        return m;
-    }
-
-    @SuppressWarnings("empty-statement")
     public Object load(AssetInfo info) throws IOException{
         reset();
         
@@ -566,33 +765,43 @@ public final class OBJLoader implements AssetLoader {
         if (!(info.getKey() instanceof ModelKey))
             throw new IllegalArgumentException("Model assets must be loaded using a ModelKey");
 
-        InputStream in = null; 
         try {
             in = info.openStream();
-            
-            scan = new Scanner(in);
-            scan.useLocale(Locale.US);
+            if (buffer == null) {
+                buffer = new byte[BUFFER_SIZE];
+            }
+            position = 0;
+            limit = 0;
+            advance();
 
             while (readLine());
         } finally {
             if (in != null){
                 in.close();
+                in = null;
             }
         }
         
+        // the attributes are not needed anymore
+        verts = null;
+        texCoords = null;
+        norms = null;
+
         if (matFaces.size() > 0){
-            for (Entry<String, ArrayList<Face>> entry : matFaces.entrySet()){
-                ArrayList<Face> materialFaces = entry.getValue();
-                if (materialFaces.size() > 0){
+            for (Entry<String, MeshBuilder> entry : matFaces.entrySet()){
+                MeshBuilder materialFaces = entry.getValue();
+                if (materialFaces.indexCount > 0){
                     Geometry geom = createGeometry(materialFaces, entry.getKey());
                     objNode.attachChild(geom);
                 }
             }
-        }else if (faces.size() > 0){
+        }else if (faces.indexCount > 0){
             // generate final geometry
             Geometry geom = createGeometry(faces, null);
             objNode.attachChild(geom);
         }
+        faces = null;
+        matFaces.clear();
 
         if (objNode.getQuantity() == 1)
             // only 1 geometry, so no need to send node
@@ -41,6 +41,7 @@ import com.jme3.scene.VertexBuffer.Type;
 import com.jme3.scene.control.AbstractControl;
 import com.jme3.scene.control.Control;
 import com.jme3.util.TempVars;
+import com.jme3.util.WorkerPool;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.FloatBuffer;
@@ -68,6 +69,14 @@ public class SkeletonControl extends AbstractControl implements Cloneable {
      * if they are visible in at least one camera.
      */
     private boolean wasMeshUpdated = false;
+    /**
+     * Split software skinning across the worker pool.
+     */
+    private boolean parallelSkinning = false;
+    /**
+     * Minimum number of vertices skinned by one parallel task.
+     */
+    private static final int VERTICES_PER_TASK = 2048;
 
     /**
      * Serialization only. Do not use.
@@ -156,6 +165,12 @@ public class SkeletonControl extends AbstractControl implements Cloneable {
     @Override
     protected void controlRender(RenderManager rm, ViewPort vp) {
         if (!wasMeshUpdated) {
+            if (parallelSkinning) {
+                parallelSkinUpdate(skeleton.computeSkinningMatrices());
+                wasMeshUpdated = true;
+                return;
+            }
+            
             resetToBind(); // reset morph meshes to bind pose
 
             Matrix4f[] offsetMatrices = skeleton.computeSkinningMatrices();
@@ -226,6 +241,7 @@ public class SkeletonControl extends AbstractControl implements Cloneable {
         clone.setSpatial(clonedNode);
 
         clone.skeleton = ctrl.getSkeleton();
+        clone.parallelSkinning = parallelSkinning;
         // Fix animated targets for the cloned node
         clone.targets = findTargets(clonedNode);
 
@@ -267,6 +283,27 @@ public class SkeletonControl extends AbstractControl implements Cloneable {
         return n;
     }
 
+    /**
+     * Enables or disables parallel software skinning.
+     * When enabled, the vertices of the target meshes are split in ranges
+     * that are skinned concurrently on the {@link WorkerPool}, directly
+     * from the bind pose buffers. The result is identical to the
+     * serial skinning.
+     * 
+     * @param parallelSkinning true to skin on multiple threads
+     */
+    public void setParallelSkinning(boolean parallelSkinning) {
+        this.parallelSkinning = parallelSkinning;
+    }
+
+    /**
+     * @return true if parallel software skinning is enabled
+     * @see #setParallelSkinning(boolean) 
+     */
+    public boolean isParallelSkinning() {
+        return parallelSkinning;
+    }
+
     /**
      * returns the skeleton of this control
      * @return 
@@ -568,12 +605,213 @@ public class SkeletonControl extends AbstractControl implements Cloneable {
 
     }
 
+    /**
+     * Skins all targets on the worker pool. Each task reads a range of
+     * vertices from the bind pose buffers and writes it to the position,
+     * normal and tangent buffers, so no reset to bind pose is needed.
+     * 
+     * @param offsetMatrices the offset matrices to apply
+     */
+    private void parallelSkinUpdate(Matrix4f[] offsetMatrices) {
+        ArrayList<SkinningTask> tasks = new ArrayList<SkinningTask>();
+        for (Mesh mesh : targets) {
+            int maxWeightsPerVert = mesh.getMaxNumWeights();
+            if (maxWeightsPerVert <= 0) {
+                throw new IllegalStateException("Max weights per vert is incorrectly set!");
+            }
+            
+            FloatBuffer bwBuff = (FloatBuffer) mesh.getBuffer(Type.BoneWeight).getData();
+            ByteBuffer biBuff = (ByteBuffer) mesh.getBuffer(Type.BoneIndex).getData();
+            if (!biBuff.hasArray() || !bwBuff.hasArray()) {
+                mesh.prepareForAnim(true); // prepare for software animation
+            }
+            
+            int vertexCount = mesh.getVertexCount();
+            for (int start = 0; start < vertexCount; start += VERTICES_PER_TASK) {
+                int end = Math.min(vertexCount, start + VERTICES_PER_TASK);
+                tasks.add(new SkinningTask(mesh, offsetMatrices, start, end));
+            }
+        }
+        
+        WorkerPool.invokeAll(tasks);
+        
+        for (Mesh mesh : targets) {
+            VertexBuffer vb = mesh.getBuffer(Type.Position);
+            VertexBuffer nb = mesh.getBuffer(Type.Normal);
+            VertexBuffer tb = mesh.getBuffer(Type.Tangent);
+            vb.updateData(vb.getData());
+            nb.updateData(nb.getData());
+            if (tb != null && mesh.getBuffer(Type.BindPoseTangent) != null) {
+                tb.updateData(tb.getData());
+            }
+        }
+    }
+    
+    /**
+     * Skins a range of vertices of a mesh, the same way as 
+     * {@link #applySkinning(com.jme3.scene.Mesh, com.jme3.math.Matrix4f[]) } 
+     * and {@link #applySkinningTangents(com.jme3.scene.Mesh, com.jme3.math.Matrix4f[], com.jme3.scene.VertexBuffer) }.
+     * The buffers are duplicated so that tasks working on different
+     * ranges of the same mesh do not share buffer positions.
+     */
+    private static final class SkinningTask implements Runnable {
+        
+        private final Matrix4f[] offsetMatrices;
+        private final int maxWeightsPerVert;
+        private final float[] weights;
+        private final byte[] indices;
+        private final FloatBuffer bindPos, bindNorm, bindTan;
+        private final FloatBuffer pos, norm, tan;
+        private final int start, end;
+        
+        SkinningTask(Mesh mesh, Matrix4f[] offsetMatrices, int start, int end) {
+            this.offsetMatrices = offsetMatrices;
+            this.maxWeightsPerVert = mesh.getMaxNumWeights();
+            this.weights = ((FloatBuffer) mesh.getBuffer(Type.BoneWeight).getData()).array();
+            this.indices = ((ByteBuffer) mesh.getBuffer(Type.BoneIndex).getData()).array();
+            this.bindPos = (FloatBuffer) mesh.getBuffer(Type.BindPosePosition).getData();
+            this.bindNorm = (FloatBuffer) mesh.getBuffer(Type.BindPoseNormal).getData();
+            this.pos = (FloatBuffer) mesh.getBuffer(Type.Position).getData();
+            this.norm = (FloatBuffer) mesh.getBuffer(Type.Normal).getData();
+            VertexBuffer bindTangents = mesh.getBuffer(Type.BindPoseTangent);
+            VertexBuffer tangents = mesh.getBuffer(Type.Tangent);
+            if (bindTangents != null && tangents != null) {
+                this.bindTan = (FloatBuffer) bindTangents.getData();
+                this.tan = (FloatBuffer) tangents.getData();
+            } else {
+                this.bindTan = null;
+                this.tan = null;
+            }
+            this.start = start;
+            this.end = end;
+        }
+
+        public void run() {
+            FloatBuffer srcPos = bindPos.duplicate();
+            FloatBuffer srcNorm = bindNorm.duplicate();
+            FloatBuffer dstPos = pos.duplicate();
+            FloatBuffer dstNorm = norm.duplicate();
+            FloatBuffer srcTan = bindTan != null ? bindTan.duplicate() : null;
+            FloatBuffer dstTan = tan != null ? tan.duplicate() : null;
+            
+            srcPos.clear().position(start * 3);
+            srcNorm.clear().position(start * 3);
+            dstPos.clear().position(start * 3);
+            dstNorm.clear().position(start * 3);
+            if (srcTan != null) {
+                srcTan.clear().position(start * 4);
+                dstTan.clear().position(start * 4);
+            }
+            
+            int fourMinusMaxWeights = 4 - maxWeightsPerVert;
+            
+            TempVars vars = TempVars.get();
+            float[] posBuf = vars.skinPositions;
+            float[] normBuf = vars.skinNormals;
+            float[] tanBuf = vars.skinTangents;
+            int blockVerts = posBuf.length / 3;
+            
+            for (int blockStart = start; blockStart < end; blockStart += blockVerts) {
+                int verts = Math.min(blockVerts, end - blockStart);
+                srcPos.get(posBuf, 0, verts * 3);
+                srcNorm.get(normBuf, 0, verts * 3);
+                if (srcTan != null) {
+                    srcTan.get(tanBuf, 0, verts * 4);
+                }
+                
+                int idxWeights = blockStart * 4;
+                int idxPositions = 0;
+                int idxTangents = 0;
+                for (int vert = verts - 1; vert >= 0; vert--) {
+                    // Skip this vertex if the first weight is zero.
+                    if (weights[idxWeights] == 0) {
+                        idxPositions += 3;
+                        idxTangents += 4;
+                        idxWeights += 4;
+                        continue;
+                    }
+                    
+                    float nmx = normBuf[idxPositions];
+                    float vtx = posBuf[idxPositions++];
+                    float nmy = normBuf[idxPositions];
+                    float vty = posBuf[idxPositions++];
+                    float nmz = normBuf[idxPositions];
+                    float vtz = posBuf[idxPositions++];
+                    
+                    float rx = 0, ry = 0, rz = 0, rnx = 0, rny = 0, rnz = 0;
+                    
+                    if (srcTan == null) {
+                        for (int w = maxWeightsPerVert - 1; w >= 0; w--) {
+                            float weight = weights[idxWeights];
+                            Matrix4f mat = offsetMatrices[indices[idxWeights++]];
+
+                            rx += (mat.m00 * vtx + mat.m01 * vty + mat.m02 * vtz + mat.m03) * weight;
+                            ry += (mat.m10 * vtx + mat.m11 * vty + mat.m12 * vtz + mat.m13) * weight;
+                            rz += (mat.m20 * vtx + mat.m21 * vty + mat.m22 * vtz + mat.m23) * weight;
+
+                            rnx += (nmx * mat.m00 + nmy * mat.m01 + nmz * mat.m02) * weight;
+                            rny += (nmx * mat.m10 + nmy * mat.m11 + nmz * mat.m12) * weight;
+                            rnz += (nmx * mat.m20 + nmy * mat.m21 + nmz * mat.m22) * weight;
+                        }
+                    } else {
+                        float tnx = tanBuf[idxTangents];
+                        float tny = tanBuf[idxTangents + 1];
+                        float tnz = tanBuf[idxTangents + 2];
+                        float rtx = 0, rty = 0, rtz = 0;
+                        
+                        for (int w = maxWeightsPerVert - 1; w >= 0; w--) {
+                            float weight = weights[idxWeights];
+                            Matrix4f mat = offsetMatrices[indices[idxWeights++]];
+
+                            rx += (mat.m00 * vtx + mat.m01 * vty + mat.m02 * vtz + mat.m03) * weight;
+                            ry += (mat.m10 * vtx + mat.m11 * vty + mat.m12 * vtz + mat.m13) * weight;
+                            rz += (mat.m20 * vtx + mat.m21 * vty + mat.m22 * vtz + mat.m23) * weight;
+
+                            rnx += (nmx * mat.m00 + nmy * mat.m01 + nmz * mat.m02) * weight;
+                            rny += (nmx * mat.m10 + nmy * mat.m11 + nmz * mat.m12) * weight;
+                            rnz += (nmx * mat.m20 + nmy * mat.m21 + nmz * mat.m22) * weight;
+
+                            rtx += (tnx * mat.m00 + tny * mat.m01 + tnz * mat.m02) * weight;
+                            rty += (tnx * mat.m10 + tny * mat.m11 + tnz * mat.m12) * weight;
+                            rtz += (tnx * mat.m20 + tny * mat.m21 + tnz * mat.m22) * weight;
+                        }
+                        
+                        // the 4th component of the tangent is not transformed
+                        tanBuf[idxTangents] = rtx;
+                        tanBuf[idxTangents + 1] = rty;
+                        tanBuf[idxTangents + 2] = rtz;
+                    }
+                    idxTangents += 4;
+
+                    idxWeights += fourMinusMaxWeights;
+
+                    idxPositions -= 3;
+                    normBuf[idxPositions] = rnx;
+                    posBuf[idxPositions++] = rx;
+                    normBuf[idxPositions] = rny;
+                    posBuf[idxPositions++] = ry;
+                    normBuf[idxPositions] = rnz;
+                    posBuf[idxPositions++] = rz;
+                }
+                
+                dstPos.put(posBuf, 0, verts * 3);
+                dstNorm.put(normBuf, 0, verts * 3);
+                if (dstTan != null) {
+                    dstTan.put(tanBuf, 0, verts * 4);
+                }
+            }
+            
+            vars.release();
+        }
+    }
+
     @Override
     public void write(JmeExporter ex) throws IOException {
         super.write(ex);
         OutputCapsule oc = ex.getCapsule(this);
         oc.write(targets, "targets", null);
         oc.write(skeleton, "skeleton", null);
+        oc.write(parallelSkinning, "parallelSkinning", false);
     }
 
     @Override
@@ -586,5 +824,6 @@ public class SkeletonControl extends AbstractControl implements Cloneable {
             System.arraycopy(sav, 0, targets, 0, sav.length);
         }
         skeleton = (Skeleton) in.readSavable("skeleton", null);
+        parallelSkinning = in.readBoolean("parallelSkinning", false);
     }
 }
@@ -33,11 +33,13 @@ package com.jme3.app;
 
 import com.jme3.app.state.AppStateManager;
 import com.jme3.asset.AssetManager;
+import com.jme3.asset.DesktopAssetManager;
 import com.jme3.audio.AudioContext;
 import com.jme3.audio.AudioRenderer;
 import com.jme3.audio.Listener;
 import com.jme3.input.*;
 import com.jme3.math.Vector3f;
+import com.jme3.profile.FrameProfiler;
 import com.jme3.renderer.Camera;
 import com.jme3.renderer.RenderManager;
 import com.jme3.renderer.Renderer;
@@ -91,6 +93,7 @@ public class Application implements SystemListener {
     protected TouchInput touchInput;
     protected InputManager inputManager;
     protected AppStateManager stateManager;
+    protected FrameProfiler profiler;
 
     private final ConcurrentLinkedQueue<AppTask<?>> taskQueue = new ConcurrentLinkedQueue<AppTask<?>>();
 
@@ -212,6 +215,31 @@ public class Application implements SystemListener {
         return timer;
     }
 
+    /**
+     * Sets the profiler recording where the time of each frame goes,
+     * see {@link StatsAppState#setDisplayProfiler(boolean) } to display it. 
+     * Profiling is disabled by default.
+     * 
+     * @param profiler The profiler, or null to disable profiling
+     */
+    public void setProfiler(FrameProfiler profiler){
+        if (this.profiler != null) {
+            this.profiler.endFrame();
+        }
+        this.profiler = profiler;
+
+        if (renderManager != null) {
+            renderManager.setProfiler(profiler);
+        }
+    }
+
+    /**
+     * @return The profiler, or null if profiling is disabled.
+     */
+    public FrameProfiler getProfiler(){
+        return profiler;
+    }
+
     private void initDisplay(){
         // aquire important objects
         // from the context
@@ -251,6 +279,7 @@ public class Application implements SystemListener {
         renderManager = new RenderManager(renderer);
         //Remy - 09/14/2010 setted the timer in the renderManager
         renderManager.setTimer(timer);
+        renderManager.setProfiler(profiler);
         viewPort = renderManager.createMainView("Default", cam);
         viewPort.setClearFlags(true, true, true);
 
@@ -497,6 +526,10 @@ public class Application implements SystemListener {
         if (assetManager == null){
             initAssetManager();
         }
+        if (assetManager instanceof DesktopAssetManager){
+            // Asynchronous load callbacks are run on the render thread
+            ((DesktopAssetManager) assetManager).getThreadingManager().setApplication(this);
+        }
 
         initDisplay();
         initCamera();
@@ -594,7 +627,13 @@ public class Application implements SystemListener {
         // Make sure the audio renderer is available to callables
         AudioContext.setAudioRenderer(audioRenderer);
 
+        // The previous frame ends here, buffer swap included
+        FrameProfiler prof = profiler;
+        if (prof != null) prof.beginFrame();
+
+        if (prof != null) prof.begin("Tasks");
         runQueuedTasks();
+        if (prof != null) prof.end();
 
         if (speed == 0 || paused)
             return;
@@ -602,11 +641,15 @@ public class Application implements SystemListener {
         timer.update();
 
         if (inputEnabled){
+            if (prof != null) prof.begin("Input");
             inputManager.update(timer.getTimePerFrame());
+            if (prof != null) prof.end();
         }
 
         if (audioRenderer != null){
+            if (prof != null) prof.begin("Audio");
             audioRenderer.update(timer.getTimePerFrame());
+            if (prof != null) prof.end();
         }
 
         // user code here..
@@ -0,0 +1,292 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.app;
+
+import com.jme3.asset.AssetManager;
+import com.jme3.font.BitmapFont;
+import com.jme3.font.BitmapText;
+import com.jme3.material.Material;
+import com.jme3.material.RenderState.BlendMode;
+import com.jme3.math.ColorRGBA;
+import com.jme3.profile.FrameProfiler;
+import com.jme3.renderer.RenderManager;
+import com.jme3.renderer.ViewPort;
+import com.jme3.renderer.queue.RenderQueue.Bucket;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.scene.VertexBuffer.Type;
+import com.jme3.scene.control.Control;
+import com.jme3.util.BufferUtils;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+
+/**
+ * The <code>ProfilerView</code> displays the last frame recorded by a
+ * {@link FrameProfiler} as a flame graph: each section is drawn as a bar
+ * as long as the time it took, on top of the section it is nested in.
+ * The bars are labeled with the name and duration of the sections 
+ * when they are wide enough.
+ * <p>
+ * The view is refreshed a few times per second, see 
+ * {@link #setUpdateInterval(float) }, and the full width corresponds to
+ * a fixed duration, see {@link #setFrameTime(float) }, so that 
+ * consecutive frames can be compared.
+ * <p>
+ * The view is usually displayed through 
+ * {@link StatsAppState#setDisplayProfiler(boolean) }.
+ */
+public class ProfilerView extends Node implements Control {
+
+    private static final int MAX_BARS = 2048;
+    private static final int MAX_ROWS = 16;
+    private static final int MAX_LABELS = 64;
+
+    private final FrameProfiler profiler;
+    private final float width;
+    private final float rowHeight;
+    private final Mesh mesh;
+    private final FloatBuffer positions;
+    private final FloatBuffer colors;
+    private final BitmapText title;
+    private final BitmapText[] labels;
+    private final StringBuilder stringBuilder = new StringBuilder();
+    private final ColorRGBA color = new ColorRGBA();
+
+    private float frameTime = 1f / 30f;
+    private float updateInterval = 0.25f;
+    private float sinceUpdate = Float.MAX_VALUE;
+    private boolean enabled = true;
+
+    /**
+     * Creates a profiler view.
+     * 
+     * @param name The name of the node
+     * @param manager The asset manager used to load the font
+     * @param profiler The profiler to display
+     * @param width The width of the view in pixels
+     */
+    public ProfilerView(String name, AssetManager manager, FrameProfiler profiler, float width) {
+        super(name);
+        this.profiler = profiler;
+        this.width = width;
+
+        setQueueBucket(Bucket.Gui);
+        setCullHint(CullHint.Never);
+
+        BitmapFont font = manager.loadFont("Interface/Fonts/Console.fnt");
+        title = new BitmapText(font);
+        rowHeight = title.getLineHeight();
+        title.setLocalTranslation(0, rowHeight, 1);
+        attachChild(title);
+
+        labels = new BitmapText[MAX_LABELS];
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = new BitmapText(font);
+            labels[i].setCullHint(CullHint.Always);
+            attachChild(labels[i]);
+        }
+
+        positions = BufferUtils.createFloatBuffer(MAX_BARS * 4 * 3);
+        colors = BufferUtils.createFloatBuffer(MAX_BARS * 4 * 4);
+        ShortBuffer indices = BufferUtils.createShortBuffer(MAX_BARS * 6);
+        for (int i = 0; i < MAX_BARS; i++) {
+            short v = (short) (i * 4);
+            indices.put(v).put((short) (v + 1)).put((short) (v + 2));
+            indices.put(v).put((short) (v + 2)).put((short) (v + 3));
+        }
+        indices.flip();
+        mesh = new Mesh();
+        mesh.setBuffer(Type.Position, 3, positions);
+        mesh.setBuffer(Type.Color, 4, colors);
+        mesh.setBuffer(Type.Index, 3, indices);
+        mesh.getBuffer(Type.Position).setUsage(VertexBuffer.Usage.Stream);
+        mesh.getBuffer(Type.Color).setUsage(VertexBuffer.Usage.Stream);
+        mesh.updateCounts();
+
+        Material material = new Material(manager, "Common/MatDefs/Misc/Unshaded.j3md");
+        material.setBoolean("VertexColor", true);
+        material.getAdditionalRenderState().setBlendMode(BlendMode.Alpha);
+        Geometry bars = new Geometry("Profiler Bars", mesh);
+        bars.setMaterial(material);
+        attachChild(bars);
+
+        addControl(this);
+    }
+
+    /**
+     * @return The height of the view in pixels.
+     */
+    public float getHeight() {
+        return (MAX_ROWS + 1) * rowHeight;
+    }
+
+    /**
+     * Sets the duration displayed over the width of the view.
+     * 
+     * @param frameTime The duration in seconds, 1/30 by default
+     */
+    public void setFrameTime(float frameTime) {
+        this.frameTime = frameTime;
+    }
+
+    public float getFrameTime() {
+        return frameTime;
+    }
+
+    /**
+     * Sets how often the view displays a new frame.
+     * 
+     * @param updateInterval The interval in seconds, 0.25 by default
+     */
+    public void setUpdateInterval(float updateInterval) {
+        this.updateInterval = updateInterval;
+    }
+
+    public float getUpdateInterval() {
+        return updateInterval;
+    }
+
+    private void appendMillis(StringBuilder sb, long nanos) {
+        long hundredths = (nanos + 5000) / 10000;
+        sb.append(hundredths / 100).append('.');
+        long fraction = hundredths % 100;
+        if (fraction < 10) {
+            sb.append('0');
+        }
+        sb.append(fraction).append(" ms");
+    }
+
+    private void putBar(float x0, float y0, float x1, float y1, String name) {
+        positions.put(x0).put(y0).put(0);
+        positions.put(x1).put(y0).put(0);
+        positions.put(x1).put(y1).put(0);
+        positions.put(x0).put(y1).put(0);
+        // a stable color for each name
+        int hash = name == null ? 0 : name.hashCode() * 0x9E3779B1;
+        color.set(0.4f + ((hash >>> 24) & 0xff) / 425f,
+                  0.4f + ((hash >>> 16) & 0xff) / 425f,
+                  0.4f + ((hash >>> 8) & 0xff) / 425f,
+                  0.8f);
+        for (int i = 0; i < 4; i++) {
+            colors.put(color.r).put(color.g).put(color.b).put(color.a);
+        }
+    }
+
+    public void update(float tpf) {
+        if (!isEnabled())
+            return;
+
+        sinceUpdate += tpf;
+        if (sinceUpdate < updateInterval || profiler.getFrameCount() == 0) {
+            return;
+        }
+        sinceUpdate = 0;
+
+        long frameStart = profiler.getFrameStart(0);
+        long frameDuration = profiler.getFrameEnd(0) - frameStart;
+        float scale = width / (frameTime * 1e9f);
+
+        stringBuilder.setLength(0);
+        stringBuilder.append("Frame ");
+        appendMillis(stringBuilder, frameDuration);
+        title.setText(stringBuilder);
+
+        positions.clear();
+        colors.clear();
+        int bars = 0;
+        int labelCount = 0;
+        int sections = profiler.getSectionCount(0);
+        for (int i = 0; i < sections && bars < MAX_BARS; i++) {
+            int depth = profiler.getSectionDepth(0, i);
+            long start = profiler.getSectionStart(0, i);
+            long end = profiler.getSectionEnd(0, i);
+            float x0 = (start - frameStart) * scale;
+            if (depth >= MAX_ROWS || x0 >= width) {
+                continue;
+            }
+            float x1 = Math.max(x0 + 1, Math.min(width, (end - frameStart) * scale));
+            float y0 = (depth + 1) * rowHeight;
+            String name = profiler.getSectionName(0, i);
+            putBar(x0, y0, x1, y0 + rowHeight - 1, name);
+            bars++;
+
+            if (labelCount < labels.length && x1 - x0 > 4 * rowHeight) {
+                stringBuilder.setLength(0);
+                stringBuilder.append(name).append(' ');
+                appendMillis(stringBuilder, end - start);
+                BitmapText label = labels[labelCount];
+                label.setText(stringBuilder);
+                if (label.getLineWidth() < x1 - x0 - 2) {
+                    label.setLocalTranslation(x0 + 2, y0 + rowHeight, 1);
+                    label.setCullHint(CullHint.Never);
+                    labelCount++;
+                }
+            }
+        }
+        for (int i = labelCount; i < labels.length; i++) {
+            labels[i].setCullHint(CullHint.Always);
+        }
+        // collapse the unused bars
+        while (positions.hasRemaining()) {
+            positions.put(0);
+        }
+        while (colors.hasRemaining()) {
+            colors.put(0);
+        }
+        positions.clear();
+        colors.clear();
+        mesh.getBuffer(Type.Position).updateData(positions);
+        mesh.getBuffer(Type.Color).updateData(colors);
+        mesh.updateBound();
+    }
+
+    public Control cloneForSpatial(Spatial spatial) {
+        return (Control) spatial;
+    }
+
+    public void setSpatial(Spatial spatial) {
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void render(RenderManager rm, ViewPort vp) {
+    }
+}
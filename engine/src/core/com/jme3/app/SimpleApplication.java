@@ -38,6 +38,7 @@ import com.jme3.input.FlyByCamera;
 import com.jme3.input.KeyInput;
 import com.jme3.input.controls.ActionListener;
 import com.jme3.input.controls.KeyTrigger;
+import com.jme3.profile.FrameProfiler;
 import com.jme3.renderer.RenderManager;
 import com.jme3.renderer.queue.RenderQueue.Bucket;
 import com.jme3.scene.Node;
@@ -233,24 +234,41 @@ public abstract class SimpleApplication extends Application {
         }
 
         float tpf = timer.getTimePerFrame() * speed;
+        FrameProfiler prof = profiler;
 
         // update states
+        if (prof != null) prof.begin("AppStates update");
         stateManager.update(tpf);
+        if (prof != null) prof.end();
 
         // simple update and root node
+        if (prof != null) prof.begin("simpleUpdate");
         simpleUpdate(tpf);
+        if (prof != null) prof.end();
  
+        if (prof != null) prof.begin("updateLogicalState");
         rootNode.updateLogicalState(tpf);
         guiNode.updateLogicalState(tpf);
+        if (prof != null) prof.end();
         
+        if (prof != null) prof.begin("updateGeometricState");
         rootNode.updateGeometricState();
         guiNode.updateGeometricState();
+        if (prof != null) prof.end();
 
         // render states
+        if (prof != null) prof.begin("AppStates render");
         stateManager.render(renderManager);
+        if (prof != null) prof.end();
+
+        if (prof != null) prof.begin("Render");
         renderManager.render(tpf, context.isRenderable());
         simpleRender(renderManager);
+        if (prof != null) prof.end();
+
+        if (prof != null) prof.begin("AppStates postRender");
         stateManager.postRender();        
+        if (prof != null) prof.end();
     }
 
     public void setDisplayFps(boolean show) {
@@ -35,6 +35,7 @@ import com.jme3.app.state.AbstractAppState;
 import com.jme3.app.state.AppStateManager;
 import com.jme3.font.BitmapFont;
 import com.jme3.font.BitmapText;
+import com.jme3.profile.FrameProfiler;
 import com.jme3.scene.Node;
 import com.jme3.scene.Spatial.CullHint;
 
@@ -49,9 +50,11 @@ public class StatsAppState extends AbstractAppState {
 
     private Application app;
     protected StatsView statsView;
+    protected ProfilerView profilerView;
     protected boolean showSettings = true;
     private  boolean showFps = true;
     private  boolean showStats = true;
+    private  boolean showProfiler = false;
     
     protected Node guiNode;
     protected float secondCounter = 0.0f;
@@ -86,6 +89,10 @@ public class StatsAppState extends AbstractAppState {
         return statsView;
     }
 
+    public ProfilerView getProfilerView() {
+        return profilerView;
+    }
+
     public float getSecondCounter() {
         return secondCounter;
     }
@@ -110,6 +117,27 @@ public class StatsAppState extends AbstractAppState {
         }
     }
 
+    /**
+     * Shows or hides the flame graph of the application's 
+     * {@link Application#getProfiler() profiler}. If the application has
+     * no profiler, one is created when the graph is first shown. 
+     * Hidden by default.
+     */
+    public void setDisplayProfiler(boolean show) {
+        showProfiler = show;
+        if (show && profilerView == null && isInitialized()) {
+            loadProfilerView();
+        }
+        if (profilerView != null) {
+            profilerView.setEnabled(show);
+            profilerView.setCullHint(show ? CullHint.Never : CullHint.Always);
+        }
+    }
+
+    public void toggleProfiler() {
+        setDisplayProfiler( !showProfiler );
+    }
+
     @Override
     public void initialize(AppStateManager stateManager, Application app) {
         super.initialize(stateManager, app);
@@ -133,6 +161,9 @@ public class StatsAppState extends AbstractAppState {
         
         loadFpsText();  
         loadStatsView();      
+        if (showProfiler) {
+            loadProfilerView();
+        }
     }
             
     /**
@@ -165,6 +196,26 @@ public class StatsAppState extends AbstractAppState {
         statsView.setCullHint(showStats ? CullHint.Never : CullHint.Always);        
         guiNode.attachChild(statsView);
     }
+
+    /**
+     * Attaches the profiler view to guiNode and displays it at the
+     * top of the screen, creating the application's profiler if needed.
+     */
+    public void loadProfilerView() {
+        FrameProfiler profiler = app.getProfiler();
+        if (profiler == null) {
+            profiler = new FrameProfiler();
+            app.setProfiler(profiler);
+        }
+        float width = app.getCamera().getWidth();
+        float height = app.getCamera().getHeight();
+        profilerView = new ProfilerView("Profiler View", app.getAssetManager(), 
+                                        profiler, width);
+        profilerView.setLocalTranslation(0, height - profilerView.getHeight(), 0);
+        profilerView.setEnabled(showProfiler);
+        profilerView.setCullHint(showProfiler ? CullHint.Never : CullHint.Always);
+        guiNode.attachChild(profilerView);
+    }
         
     @Override
     public void setEnabled(boolean enabled) {
@@ -174,10 +225,18 @@ public class StatsAppState extends AbstractAppState {
             fpsText.setCullHint(showFps ? CullHint.Never : CullHint.Always);
             statsView.setEnabled(showStats);
             statsView.setCullHint(showStats ? CullHint.Never : CullHint.Always);        
+            if (profilerView != null) {
+                profilerView.setEnabled(showProfiler);
+                profilerView.setCullHint(showProfiler ? CullHint.Never : CullHint.Always);
+            }
         } else {
             fpsText.setCullHint(CullHint.Always);
             statsView.setEnabled(false);
             statsView.setCullHint(CullHint.Always);        
+            if (profilerView != null) {
+                profilerView.setEnabled(false);
+                profilerView.setCullHint(CullHint.Always);
+            }
         }
     }
     
@@ -201,6 +260,10 @@ public class StatsAppState extends AbstractAppState {
         
         guiNode.detachChild(statsView);
         guiNode.detachChild(fpsText);
+        if (profilerView != null) {
+            guiNode.detachChild(profilerView);
+            profilerView = null;
+        }
     }
 
 
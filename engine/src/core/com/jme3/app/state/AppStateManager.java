@@ -32,6 +32,7 @@
 package com.jme3.app.state;
  
 import com.jme3.app.Application;
+import com.jme3.app.state.FrameScheduler.Phase;
 import com.jme3.renderer.RenderManager;
 import com.jme3.util.SafeArrayList;
 import java.util.Arrays;
@@ -60,6 +61,11 @@ import java.util.List;
  *                 terminating.  
  * </ul> 
  *
+ * <p>The updates of {@link ParallelAppState}s and the {@link FrameJob}s
+ * attached to the {@link #getScheduler() scheduler} are executed on the 
+ * worker threads, the scheduler also records the time taken by each 
+ * {@link FrameScheduler.Phase phase} of the frame.</p>
+ *
  * @author Kirill Vainer, Paul Speed
  */
 public class AppStateManager {
@@ -88,12 +94,21 @@ public class AppStateManager {
     // is that they are all modified from the same thread anyway.
     
     private final Application app;
+    private final FrameScheduler scheduler = new FrameScheduler();
+    private float tpf;
     private AppState[] stateArray;
 
     public AppStateManager(Application app){
         this.app = app;
     }
 
+    /**
+     * @return The scheduler executing the frame jobs and the parallel states.
+     */
+    public FrameScheduler getScheduler() {
+        return scheduler;
+    }
+
     protected AppState[] getInitializing() { 
         synchronized (states){
             return initializing.getArray();
@@ -247,13 +262,35 @@ public class AppStateManager {
         // Initialize any states pending
         initializePending();
 
+        // Kept for the jobs of the render phases
+        this.tpf = tpf;
+
+        long start = System.nanoTime();
+        scheduler.runPhase(Phase.PreUpdate, tpf);
+        scheduler.recordPhase(Phase.PreUpdate, start);
+
         // Update enabled states    
+        start = System.nanoTime();
         AppState[] array = getStates();
-        for (AppState state : array){
-            if (state.isEnabled()) {
-                state.update(tpf);
+        int i = 0;
+        while (i < array.length) {
+            if (array[i] instanceof ParallelAppState) {
+                // Update consecutive parallel states together
+                int end = i + 1;
+                while (end < array.length && array[end] instanceof ParallelAppState) {
+                    end++;
+                }
+                scheduler.updateStates(array, i, end, tpf);
+                i = end;
+            } else {
+                if (array[i].isEnabled()) {
+                    array[i].update(tpf);
+                }
+                i++;
             }
         }
+        scheduler.runPhase(Phase.Update, tpf);
+        scheduler.recordPhase(Phase.Update, start);
     }
 
     /**
@@ -261,24 +298,30 @@ public class AppStateManager {
      * @param rm The RenderManager
      */
     public void render(RenderManager rm){
+        long start = System.nanoTime();
         AppState[] array = getStates();
         for (AppState state : array){
             if (state.isEnabled()) {
                 state.render(rm);
             }
         }
+        scheduler.runPhase(Phase.PreRender, tpf);
+        scheduler.recordPhase(Phase.PreRender, start);
     }
 
     /**
      * Calls render for all attached and initialized states, do not call directly.
      */
     public void postRender(){
+        long start = System.nanoTime();
         AppState[] array = getStates();
         for (AppState state : array){
             if (state.isEnabled()) {
                 state.postRender();
             }
         }
+        scheduler.runPhase(Phase.PostRender, tpf);
+        scheduler.recordPhase(Phase.PostRender, start);
     }
 
     /**
@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.app.state;
+
+import com.jme3.app.state.FrameScheduler.Phase;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * A <code>FrameJob</code> is a unit of work executed once per frame by
+ * a {@link FrameScheduler} during its {@link Phase}.
+ * <p>
+ * The jobs of a phase run concurrently unless the scheduler is not
+ * parallel, a job only starts once all of its 
+ * {@link #addDependency(com.jme3.app.state.FrameJob) dependencies} have
+ * completed. Dependencies that are not scheduled in the same phase are 
+ * ignored. A job must not modify the scene graph or any other data
+ * that its concurrent jobs access, unless it synchronizes on it.
+ */
+public abstract class FrameJob {
+
+    /**
+     * Lock guarding the dependency graph of all jobs, so that cycles
+     * can be detected across jobs.
+     */
+    private static final Object graphLock = new Object();
+
+    private final String name;
+    private final Phase phase;
+    private final ArrayList<FrameJob> dependencies = new ArrayList<FrameJob>();
+    private volatile int version;
+
+    /**
+     * Creates a job.
+     * 
+     * @param name The name of the job, used for debugging and profiling
+     * @param phase The phase in which the job is executed
+     */
+    public FrameJob(String name, Phase phase) {
+        if (phase == null) {
+            throw new IllegalArgumentException("phase cannot be null");
+        }
+        this.name = name;
+        this.phase = phase;
+    }
+
+    /**
+     * @return The name of the job.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return The phase in which the job is executed.
+     */
+    public Phase getPhase() {
+        return phase;
+    }
+
+    /**
+     * Makes this job wait for another job of the same phase to complete
+     * before it starts.
+     * 
+     * @param job The job to wait for
+     * 
+     * @throws IllegalArgumentException If the job belongs to another phase
+     * or if it depends on this job, directly or not.
+     */
+    public void addDependency(FrameJob job) {
+        if (job.phase != phase) {
+            throw new IllegalArgumentException("Job " + job + " is executed in phase "
+                    + job.phase + " but " + this + " in phase " + phase);
+        }
+        synchronized (graphLock) {
+            if (dependencies.contains(job)) {
+                return;
+            }
+            if (job.dependsOn(this)) {
+                throw new IllegalArgumentException("Adding " + job + " as a dependency of "
+                        + this + " would create a cycle");
+            }
+            dependencies.add(job);
+            version++;
+        }
+    }
+
+    /**
+     * Removes a dependency added with 
+     * {@link #addDependency(com.jme3.app.state.FrameJob) }.
+     * 
+     * @param job The job to remove
+     * @return True if the job was a dependency of this job.
+     */
+    public boolean removeDependency(FrameJob job) {
+        synchronized (graphLock) {
+            if (dependencies.remove(job)) {
+                version++;
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * @return A copy of the jobs this job waits for.
+     */
+    public List<FrameJob> getDependencies() {
+        synchronized (graphLock) {
+            return Collections.unmodifiableList(new ArrayList<FrameJob>(dependencies));
+        }
+    }
+
+    /**
+     * @param job A job
+     * @return True if the given job is this job or if this job waits for
+     * it, directly or not.
+     */
+    public boolean dependsOn(FrameJob job) {
+        synchronized (graphLock) {
+            // iterative search, diamonds in the graph are only visited once
+            ArrayList<FrameJob> stack = new ArrayList<FrameJob>();
+            IdentityHashMap<FrameJob, FrameJob> visited = new IdentityHashMap<FrameJob, FrameJob>();
+            stack.add(this);
+            while (!stack.isEmpty()) {
+                FrameJob current = stack.remove(stack.size() - 1);
+                if (current == job) {
+                    return true;
+                }
+                if (visited.put(current, current) == null) {
+                    stack.addAll(current.dependencies);
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Copies the dependencies into the given list, called by the scheduler
+     * when it rebuilds its execution plan.
+     */
+    int getDependencies(List<FrameJob> store) {
+        synchronized (graphLock) {
+            store.addAll(dependencies);
+            return version;
+        }
+    }
+
+    int getVersion() {
+        return version;
+    }
+
+    /**
+     * Executes the job, called once per frame by the scheduler.
+     * 
+     * @param tpf Time per frame
+     */
+    public abstract void run(float tpf);
+
+    @Override
+    public String toString() {
+        return "FrameJob[name=" + name + ", phase=" + phase + "]";
+    }
+}
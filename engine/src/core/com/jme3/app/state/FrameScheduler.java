@@ -0,0 +1,605 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.app.state;
+
+import com.jme3.audio.AudioContext;
+import com.jme3.audio.AudioRenderer;
+import com.jme3.util.SafeArrayList;
+import com.jme3.util.TimeHistogram;
+import com.jme3.util.WorkerPool;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The <code>FrameScheduler</code> of an {@link AppStateManager} executes
+ * the {@link FrameJob}s attached to it and the updates of the 
+ * {@link ParallelAppState}s, spreading them over the {@link WorkerPool}.
+ * <p>
+ * A frame is split into four {@link Phase phases}, the jobs of a phase
+ * are executed after the app states have been called for that phase:
+ * <ul>
+ * <li>{@link Phase#PreUpdate} : at the beginning of 
+ *     {@link AppStateManager#update(float) }, before the states are updated.
+ * <li>{@link Phase#Update} : at the end of {@link AppStateManager#update(float) }.
+ * <li>{@link Phase#PreRender} : at the end of 
+ *     {@link AppStateManager#render(com.jme3.renderer.RenderManager) }, 
+ *     before the viewports are rendered.
+ * <li>{@link Phase#PostRender} : at the end of {@link AppStateManager#postRender() }.
+ * </ul>
+ * Every job of a phase completes before the phase ends. Jobs that become 
+ * ready when a dependency completes are queued on the thread that ran 
+ * the dependency, idle threads steal the oldest queued jobs of the others.
+ * <p>
+ * The time taken by each phase, app states included, is recorded in a 
+ * {@link #getHistogram(com.jme3.app.state.FrameScheduler.Phase) histogram}.
+ * <p>
+ * For debugging, {@link #setParallel(boolean) setParallel(false)} executes
+ * everything on the render thread in a deterministic order: the jobs
+ * of a phase in attachment order, a job being moved after its dependencies
+ * when needed, and the parallel states in attachment order.
+ */
+public class FrameScheduler {
+
+    /**
+     * The phases of a frame in which jobs are executed.
+     */
+    public enum Phase {
+        PreUpdate,
+        Update,
+        PreRender,
+        PostRender
+    }
+
+    private static final Phase[] PHASES = Phase.values();
+
+    private final SafeArrayList<FrameJob> jobs = new SafeArrayList<FrameJob>(FrameJob.class);
+    private int modCount = 0;
+    private final Plan[] plans = new Plan[PHASES.length];
+    private final TimeHistogram[] histograms = new TimeHistogram[PHASES.length];
+    private final JobRun jobRun = new JobRun();
+    private final StateUpdate stateUpdate = new StateUpdate();
+    private boolean parallel = true;
+
+    public FrameScheduler() {
+        for (int i = 0; i < PHASES.length; i++) {
+            plans[i] = new Plan();
+            histograms[i] = new TimeHistogram();
+        }
+    }
+
+    /**
+     * Attaches a job, it will be executed every frame starting with 
+     * the next execution of its phase.
+     * 
+     * @param job The job to attach
+     * @return True if the job was attached, false if it was already attached.
+     */
+    public boolean attach(FrameJob job) {
+        synchronized (jobs) {
+            if (jobs.contains(job)) {
+                return false;
+            }
+            jobs.add(job);
+            modCount++;
+            return true;
+        }
+    }
+
+    /**
+     * Detaches a job. The jobs depending on it no longer wait for it.
+     * 
+     * @param job The job to detach
+     * @return True if the job was detached, false if it was not attached.
+     */
+    public boolean detach(FrameJob job) {
+        synchronized (jobs) {
+            if (jobs.remove(job)) {
+                modCount++;
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * @param job The job to check
+     * @return True if the job is attached.
+     */
+    public boolean hasJob(FrameJob job) {
+        synchronized (jobs) {
+            return jobs.contains(job);
+        }
+    }
+
+    /**
+     * Enables or disables parallel execution. When disabled, jobs and 
+     * parallel states are executed on the render thread in a 
+     * deterministic order, which helps debugging. Enabled by default.
+     * 
+     * @param parallel True to spread the work over the worker threads
+     */
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    /**
+     * @return True if jobs and parallel states are executed concurrently.
+     * @see #setParallel(boolean) 
+     */
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    /**
+     * @param phase The phase
+     * @return The histogram of the time taken by the phase every frame.
+     */
+    public TimeHistogram getHistogram(Phase phase) {
+        return histograms[phase.ordinal()];
+    }
+
+    /**
+     * Resets the histograms of all the phases.
+     */
+    public void resetHistograms() {
+        for (TimeHistogram histogram : histograms) {
+            histogram.reset();
+        }
+    }
+
+    /**
+     * Records the time taken by a phase.
+     * 
+     * @param phase The phase
+     * @param startTime The value of System.nanoTime() when the phase started
+     */
+    void recordPhase(Phase phase, long startTime) {
+        histograms[phase.ordinal()].record(System.nanoTime() - startTime);
+    }
+
+    private boolean useWorkers(int tasks) {
+        return parallel && tasks > 1 && !WorkerPool.isWorkerThread()
+            && Runtime.getRuntime().availableProcessors() > 1;
+    }
+
+    /**
+     * Executes the jobs of a phase and waits for them to complete.
+     * 
+     * @param phase The phase to execute
+     * @param tpf Time per frame
+     * @throws RuntimeException the first exception thrown by a job,
+     * jobs that have not started yet are skipped.
+     */
+    void runPhase(Phase phase, float tpf) {
+        Plan plan = getPlan(phase);
+        int count = plan.jobs.length;
+        if (count == 0) {
+            return;
+        }
+        if (useWorkers(count)) {
+            jobRun.run(plan, tpf);
+        } else {
+            for (int i = 0; i < count; i++) {
+                plan.jobs[i].run(tpf);
+            }
+        }
+    }
+
+    /**
+     * Updates the enabled states in the given range of the array 
+     * and waits for them to complete.
+     * 
+     * @param states The states of the app state manager
+     * @param start The index of the first state to update
+     * @param end The index after the last state to update
+     * @param tpf Time per frame
+     */
+    void updateStates(AppState[] states, int start, int end, float tpf) {
+        if (useWorkers(end - start)) {
+            stateUpdate.run(states, start, end, tpf);
+        } else {
+            for (int i = start; i < end; i++) {
+                if (states[i].isEnabled()) {
+                    states[i].update(tpf);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the execution plan of a phase, rebuilding it if jobs were
+     * attached or detached or if dependencies changed.
+     */
+    private Plan getPlan(Phase phase) {
+        Plan plan = plans[phase.ordinal()];
+        FrameJob[] all;
+        synchronized (jobs) {
+            all = jobs.getArray();
+            if (plan.modCount == modCount && plan.isCurrent()) {
+                return plan;
+            }
+            plan.modCount = modCount;
+        }
+        plan.build(all, phase);
+        return plan;
+    }
+
+    /**
+     * The jobs of a phase sorted so that every job comes after its
+     * dependencies, along with the graph of their dependencies.
+     */
+    private static final class Plan {
+
+        int modCount = -1;
+        FrameJob[] jobs = new FrameJob[0];
+        int[] versions;
+        int[] dependencyCounts;
+        int[][] dependents;
+        int[] roots;
+
+        boolean isCurrent() {
+            for (int i = 0; i < jobs.length; i++) {
+                if (jobs[i].getVersion() != versions[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void build(FrameJob[] all, Phase phase) {
+            ArrayList<FrameJob> phaseJobs = new ArrayList<FrameJob>();
+            IdentityHashMap<FrameJob, Integer> indices = new IdentityHashMap<FrameJob, Integer>();
+            for (FrameJob job : all) {
+                if (job.getPhase() == phase) {
+                    indices.put(job, phaseJobs.size());
+                    phaseJobs.add(job);
+                }
+            }
+            int count = phaseJobs.size();
+            int[] attachVersions = new int[count];
+            int[] counts = new int[count];
+            ArrayList<ArrayList<Integer>> attachDependents = new ArrayList<ArrayList<Integer>>(count);
+            for (int i = 0; i < count; i++) {
+                attachDependents.add(new ArrayList<Integer>());
+            }
+            ArrayList<FrameJob> dependencies = new ArrayList<FrameJob>();
+            for (int i = 0; i < count; i++) {
+                dependencies.clear();
+                attachVersions[i] = phaseJobs.get(i).getDependencies(dependencies);
+                for (FrameJob dependency : dependencies) {
+                    Integer index = indices.get(dependency);
+                    if (index != null) {
+                        attachDependents.get(index).add(i);
+                        counts[i]++;
+                    }
+                }
+            }
+
+            // sort topologically, in attachment order when possible
+            int[] order = new int[count];
+            int[] remaining = counts.clone();
+            int sorted = 0;
+            for (int i = 0; i < count; i++) {
+                if (remaining[i] == 0) {
+                    order[sorted++] = i;
+                }
+            }
+            int rootCount = sorted;
+            for (int next = 0; next < sorted; next++) {
+                for (int dependent : attachDependents.get(order[next])) {
+                    if (--remaining[dependent] == 0) {
+                        order[sorted++] = dependent;
+                    }
+                }
+            }
+            if (sorted != count) {
+                // cannot happen as long as addDependency rejects cycles
+                throw new IllegalStateException("Cycle in the dependencies of the " + phase + " jobs");
+            }
+
+            int[] positions = new int[count];
+            for (int i = 0; i < count; i++) {
+                positions[order[i]] = i;
+            }
+            jobs = new FrameJob[count];
+            versions = new int[count];
+            dependencyCounts = new int[count];
+            dependents = new int[count][];
+            for (int i = 0; i < count; i++) {
+                int job = order[i];
+                jobs[i] = phaseJobs.get(job);
+                versions[i] = attachVersions[job];
+                dependencyCounts[i] = counts[job];
+                ArrayList<Integer> list = attachDependents.get(job);
+                dependents[i] = new int[list.size()];
+                for (int j = 0; j < dependents[i].length; j++) {
+                    dependents[i][j] = positions[list.get(j)];
+                }
+            }
+            roots = new int[rootCount];
+            for (int i = 0; i < rootCount; i++) {
+                roots[i] = i;
+            }
+        }
+    }
+
+    /**
+     * The state of a parallel execution of a phase. Each thread has a
+     * deque of ready jobs: it pushes and pops at the tail and the other
+     * threads steal at the head. Jobs are coarse, so a single lock guards 
+     * all the deques.
+     */
+    private static final class JobRun {
+
+        private final Object lock = new Object();
+        private Worker[] workers = new Worker[0];
+        private int workerCount;
+        private Plan plan;
+        private float tpf;
+        private int[] pending = new int[0];
+        private int completed;
+        private Throwable failure;
+
+        void run(Plan plan, float tpf) {
+            int count = plan.jobs.length;
+            int helpers = Math.min(WorkerPool.getThreadCount(), count - 1);
+            synchronized (lock) {
+                this.plan = plan;
+                this.tpf = tpf;
+                completed = 0;
+                failure = null;
+                if (pending.length < count) {
+                    pending = new int[count];
+                }
+                System.arraycopy(plan.dependencyCounts, 0, pending, 0, count);
+                workerCount = helpers + 1;
+                if (workers.length < workerCount) {
+                    Worker[] newWorkers = new Worker[workerCount];
+                    System.arraycopy(workers, 0, newWorkers, 0, workers.length);
+                    for (int i = workers.length; i < workerCount; i++) {
+                        newWorkers[i] = new Worker(i);
+                    }
+                    workers = newWorkers;
+                }
+                for (int i = 0; i < workerCount; i++) {
+                    workers[i].reset(count);
+                }
+                // deal the jobs without dependencies so that every 
+                // thread starts with its own work
+                for (int i = 0; i < plan.roots.length; i++) {
+                    workers[i % workerCount].push(plan.roots[i]);
+                }
+            }
+
+            AudioRenderer audioRenderer = AudioContext.getAudioRenderer();
+            Future[] futures = new Future[helpers];
+            for (int i = 0; i < helpers; i++) {
+                workers[i + 1].audioRenderer = audioRenderer;
+                futures[i] = WorkerPool.submit(workers[i + 1]);
+            }
+            Throwable error;
+            // the helpers wait for jobs instead of executing other tasks,
+            // so the tasks the jobs of this thread submit are executed inline
+            boolean inline = WorkerPool.setInline(true);
+            try {
+                work(workers[0]);
+            } finally {
+                WorkerPool.setInline(inline);
+                WorkerPool.waitFor(futures);
+                synchronized (lock) {
+                    error = failure;
+                    this.plan = null;
+                    failure = null;
+                    for (int i = 1; i <= helpers; i++) {
+                        workers[i].audioRenderer = null;
+                    }
+                }
+            }
+            if (error instanceof RuntimeException) {
+                throw (RuntimeException) error;
+            } else if (error instanceof Error) {
+                throw (Error) error;
+            } else if (error != null) {
+                throw new RuntimeException(error);
+            }
+        }
+
+        private int take(Worker worker) {
+            if (worker.tail > worker.head) {
+                return worker.deque[--worker.tail];
+            }
+            for (int i = 1; i < workerCount; i++) {
+                Worker victim = workers[(worker.id + i) % workerCount];
+                if (victim.tail > victim.head) {
+                    return victim.deque[victim.head++];
+                }
+            }
+            return -1;
+        }
+
+        private void work(Worker worker) {
+            boolean interrupted = false;
+            try {
+                while (true) {
+                    int job;
+                    synchronized (lock) {
+                        while (true) {
+                            if (failure != null || completed == plan.jobs.length) {
+                                return;
+                            }
+                            job = take(worker);
+                            if (job >= 0) {
+                                break;
+                            }
+                            try {
+                                lock.wait();
+                            } catch (InterruptedException ex) {
+                                interrupted = true;
+                            }
+                        }
+                    }
+
+                    Throwable error = null;
+                    try {
+                        plan.jobs[job].run(tpf);
+                    } catch (Throwable t) {
+                        error = t;
+                    }
+
+                    synchronized (lock) {
+                        if (error != null) {
+                            if (failure == null) {
+                                failure = error;
+                            }
+                            lock.notifyAll();
+                            return;
+                        }
+                        completed++;
+                        int ready = 0;
+                        int[] dependents = plan.dependents[job];
+                        for (int i = 0; i < dependents.length; i++) {
+                            if (--pending[dependents[i]] == 0) {
+                                worker.push(dependents[i]);
+                                ready++;
+                            }
+                        }
+                        // this thread takes the next ready job itself, 
+                        // the others only need waking for the rest
+                        if (ready > 1 || completed == plan.jobs.length) {
+                            lock.notifyAll();
+                        }
+                    }
+                }
+            } finally {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        private final class Worker implements Runnable {
+
+            final int id;
+            int[] deque = new int[0];
+            int head;
+            int tail;
+            AudioRenderer audioRenderer;
+
+            Worker(int id) {
+                this.id = id;
+            }
+
+            void reset(int capacity) {
+                // every job is pushed once, so the deque never wraps
+                if (deque.length < capacity) {
+                    deque = new int[capacity];
+                }
+                head = 0;
+                tail = 0;
+            }
+
+            void push(int job) {
+                deque[tail++] = job;
+            }
+
+            public void run() {
+                // AudioNodes update their source through the audio 
+                // renderer of the calling thread
+                AudioContext.setAudioRenderer(audioRenderer);
+                try {
+                    work(this);
+                } finally {
+                    AudioContext.setAudioRenderer(null);
+                }
+            }
+        }
+    }
+
+    /**
+     * Updates a range of parallel states, the threads take the next
+     * state to update from a shared counter.
+     */
+    private static final class StateUpdate {
+
+        private final AtomicInteger next = new AtomicInteger();
+        private final ArrayList<Task> tasks = new ArrayList<Task>();
+        private AppState[] states;
+        private int end;
+        private float tpf;
+        private Thread caller;
+        private AudioRenderer audioRenderer;
+
+        void run(AppState[] states, int start, int end, float tpf) {
+            int count = Math.min(WorkerPool.getThreadCount() + 1, end - start);
+            while (tasks.size() < count) {
+                tasks.add(new Task());
+            }
+            this.states = states;
+            this.end = end;
+            this.tpf = tpf;
+            caller = Thread.currentThread();
+            audioRenderer = AudioContext.getAudioRenderer();
+            next.set(start);
+            try {
+                WorkerPool.invokeAll(tasks.subList(0, count));
+            } finally {
+                this.states = null;
+                caller = null;
+                audioRenderer = null;
+            }
+        }
+
+        private final class Task implements Runnable {
+
+            public void run() {
+                boolean worker = Thread.currentThread() != caller;
+                if (worker) {
+                    AudioContext.setAudioRenderer(audioRenderer);
+                }
+                try {
+                    int i;
+                    while ((i = next.getAndIncrement()) < end) {
+                        if (states[i].isEnabled()) {
+                            states[i].update(tpf);
+                        }
+                    }
+                } finally {
+                    if (worker) {
+                        AudioContext.setAudioRenderer(null);
+                    }
+                }
+            }
+        }
+    }
+}
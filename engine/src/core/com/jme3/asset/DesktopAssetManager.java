@@ -49,7 +49,9 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -70,6 +72,11 @@ public class DesktopAssetManager implements AssetManager {
     
     private List<ClassLoader> classLoaders =
             Collections.synchronizedList(new ArrayList<ClassLoader>());
+    
+    private ThreadingManager threadingManager;
+    
+    private final ConcurrentHashMap<Class<? extends AssetKey>, Class<? extends AssetCache>> keyTypeToCacheMap =
+            new ConcurrentHashMap<Class<? extends AssetKey>, Class<? extends AssetCache>>();
 
     public DesktopAssetManager(){
         this(null);
@@ -201,8 +208,55 @@ public class DesktopAssetManager implements AssetManager {
         return info;
     }
     
+    /**
+     * Overrides the cache used for assets loaded with the given key type.
+     * By default, the cache returned by {@link AssetKey#getCacheType() } 
+     * is used. The key type must match exactly, subclasses of the key type
+     * are not affected.
+     * <p>
+     * The override should be set before any asset is loaded with 
+     * the key type, otherwise assets already cached will not be found.
+     * Cloneable assets (e.g. textures and models) must not be redirected
+     * to a cache that does not support them, such as a cache
+     * that requires clones to be registered.
+     * 
+     * @param keyType The key type, e.g. <code>TextureKey.class</code>
+     * @param cacheType The cache to use for the key type, or null
+     * to restore the default cache.
+     * 
+     * @see com.jme3.asset.cache.MemoryBudgetAssetCache
+     */
+    public void setCacheType(Class<? extends AssetKey> keyType, Class<? extends AssetCache> cacheType) {
+        if (cacheType == null) {
+            keyTypeToCacheMap.remove(keyType);
+        } else {
+            keyTypeToCacheMap.put(keyType, cacheType);
+        }
+    }
+    
+    /**
+     * Returns the cache instance of the given type used by this 
+     * asset manager, creating it if needed. Useful to configure or 
+     * query the statistics of a cache.
+     * 
+     * @param <T> The type of the cache
+     * @param cacheType The class of the cache
+     * @return The cache instance
+     */
+    public <T extends AssetCache> T getCache(Class<T> cacheType) {
+        return handler.getCache(cacheType);
+    }
+    
+    private AssetCache getCacheFor(AssetKey<?> key) {
+        Class<? extends AssetCache> cacheType = keyTypeToCacheMap.get(key.getClass());
+        if (cacheType == null) {
+            cacheType = key.getCacheType();
+        }
+        return handler.getCache(cacheType);
+    }
+    
     public <T> T getFromCache(AssetKey<T> key) {
-        AssetCache cache = handler.getCache(key.getCacheType());
+        AssetCache cache = getCacheFor(key);
         if (cache != null) {
             T asset = cache.getFromCache(key);
             if (asset != null) {
@@ -216,7 +270,7 @@ public class DesktopAssetManager implements AssetManager {
     }
     
     public <T> void addToCache(AssetKey<T> key, T asset) {
-        AssetCache cache = handler.getCache(key.getCacheType());
+        AssetCache cache = getCacheFor(key);
         if (cache != null) {
             cache.addToCache(key, asset);
             cache.notifyNoAssetClone();
@@ -226,7 +280,7 @@ public class DesktopAssetManager implements AssetManager {
     }
     
     public <T> boolean deleteFromCache(AssetKey<T> key) {
-        AssetCache cache = handler.getCache(key.getCacheType());
+        AssetCache cache = getCacheFor(key);
         if (cache != null) {
             return cache.deleteFromCache(key);
         } else {
@@ -256,7 +310,7 @@ public class DesktopAssetManager implements AssetManager {
             listener.assetRequested(key);
         }
         
-        AssetCache cache = handler.getCache(key.getCacheType());
+        AssetCache cache = getCacheFor(key);
         AssetProcessor proc = handler.getProcessor(key.getProcessorType());
         
         Object obj = cache != null ? cache.getFromCache(key) : null;
@@ -332,6 +386,49 @@ public class DesktopAssetManager implements AssetManager {
         return clone;
     }
 
+    /**
+     * Returns the threading manager used to load assets asynchronously.
+     * The loading threads are started on the first asynchronous request.
+     * 
+     * @return the threading manager of this asset manager
+     */
+    public synchronized ThreadingManager getThreadingManager(){
+        if (threadingManager == null){
+            threadingManager = new ThreadingManager(this);
+        }
+        return threadingManager;
+    }
+    
+    /**
+     * Loads an asset on a background thread.
+     * 
+     * @param <T> The type of the asset
+     * @param key The key of the asset to load
+     * @return A future that will contain the loaded asset
+     * 
+     * @see ThreadingManager#loadAsset(com.jme3.asset.AssetKey, float, com.jme3.asset.AssetLoadCallback) 
+     */
+    public <T> Future<T> loadAssetAsync(AssetKey<T> key){
+        return getThreadingManager().loadAsset(key);
+    }
+    
+    /**
+     * Loads an asset on a background thread. Requests with lower 
+     * priority values are loaded first, and requests for an asset that is 
+     * already queued are merged.
+     * 
+     * @param <T> The type of the asset
+     * @param key The key of the asset to load
+     * @param priority The priority, e.g. the distance to the camera
+     * @param callback Callback notified when the asset is loaded, or null
+     * @return A future that will contain the loaded asset
+     * 
+     * @see ThreadingManager#loadAsset(com.jme3.asset.AssetKey, float, com.jme3.asset.AssetLoadCallback) 
+     */
+    public <T> Future<T> loadAssetAsync(AssetKey<T> key, float priority, AssetLoadCallback<T> callback){
+        return getThreadingManager().loadAsset(key, priority, callback);
+    }
+
     public Object loadAsset(String name){
         return loadAsset(new AssetKey(name));
     }
@@ -31,25 +31,58 @@
  */
 package com.jme3.asset;
 
+import com.jme3.app.Application;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * <code>ThreadingManager</code> manages the threads used to load content
  * within the Content Manager system. A pool of threads and a task queue
  * is used to load resource data and perform I/O while the application's
  * render thread is active. 
+ * <p>
+ * Requests are ordered by priority, lower values are loaded first, 
+ * e.g. the distance of the object to the camera can be used as the priority.
+ * Requests with equal priority are loaded in the order they were made.
+ * A request for an asset that is already queued or being loaded is merged
+ * with the existing request, so the asset is only loaded once. Each 
+ * requester still receives its own future, and its own clone if the asset
+ * is a {@link CloneableSmartAsset}, as with {@link AssetManager#loadAsset(com.jme3.asset.AssetKey) }.
  */
 public class ThreadingManager {
 
-    protected final ExecutorService executor =
-            Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), 
-                                         new LoadingThreadFactory());
+    private static final Logger logger = Logger.getLogger(ThreadingManager.class.getName());
+    
+    /**
+     * The priority used by {@link #loadAsset(com.jme3.asset.AssetKey) }.
+     */
+    public static final float DEFAULT_PRIORITY = 0f;
+    
+    protected final ThreadPoolExecutor executor;
 
     protected final AssetManager owner;
     protected int nextThreadId = 0;
+    
+    private final HashMap<AssetKey, PrioritizedTask> pendingTasks = new HashMap<AssetKey, PrioritizedTask>();
+    private final HashMap<String, LoadStatistics> statistics = new HashMap<String, LoadStatistics>();
+    private final AtomicLong nextSequence = new AtomicLong();
+    private Application application;
 
     public ThreadingManager(AssetManager owner){
+        this(owner, Runtime.getRuntime().availableProcessors());
+    }
+    
+    public ThreadingManager(AssetManager owner, int numThreads){
         this.owner = owner;
+        this.executor = new ThreadPoolExecutor(numThreads, numThreads, 
+                                               0L, TimeUnit.MILLISECONDS,
+                                               new PriorityBlockingQueue<Runnable>(),
+                                               new LoadingThreadFactory());
     }
 
     protected class LoadingThreadFactory implements ThreadFactory {
@@ -73,9 +106,428 @@ public class ThreadingManager {
             return owner.loadAsset(assetKey);
         }
     }
+    
+    /**
+     * Load time statistics of the assets with a given extension, 
+     * e.g. for a given {@link AssetLoader}.
+     */
+    public static final class LoadStatistics {
+        
+        private int loadCount;
+        private int failureCount;
+        private long totalWaitTime;
+        private long totalLoadTime;
+        private long maxLoadTime;
+
+        private LoadStatistics() {
+        }
+
+        private LoadStatistics(LoadStatistics other) {
+            loadCount = other.loadCount;
+            failureCount = other.failureCount;
+            totalWaitTime = other.totalWaitTime;
+            totalLoadTime = other.totalLoadTime;
+            maxLoadTime = other.maxLoadTime;
+        }
+        
+        /**
+         * @return The number of requests that were loaded, 
+         * including failed requests.
+         */
+        public int getLoadCount() {
+            return loadCount;
+        }
+
+        /**
+         * @return The number of requests that failed to load.
+         */
+        public int getFailureCount() {
+            return failureCount;
+        }
+
+        /**
+         * @return Average time in nanoseconds requests waited 
+         * in the queue before loading started.
+         */
+        public long getAverageWaitTime() {
+            return loadCount > 0 ? totalWaitTime / loadCount : 0;
+        }
+
+        /**
+         * @return Average time in nanoseconds spent loading a request.
+         */
+        public long getAverageLoadTime() {
+            return loadCount > 0 ? totalLoadTime / loadCount : 0;
+        }
+
+        /**
+         * @return Longest time in nanoseconds spent loading a request.
+         */
+        public long getMaxLoadTime() {
+            return maxLoadTime;
+        }
+        
+        @Override
+        public String toString() {
+            return "LoadStatistics[loads=" + loadCount 
+                 + ", failures=" + failureCount 
+                 + ", avgWait=" + getAverageWaitTime() / 1000000f + " ms"
+                 + ", avgLoad=" + getAverageLoadTime() / 1000000f + " ms"
+                 + ", maxLoad=" + maxLoadTime / 1000000f + " ms]";
+        }
+    }
+    
+    /**
+     * The future returned to one requester of an asset. Merged requests
+     * share the same {@link PrioritizedTask}.
+     */
+    private class Request<T> implements Future<T> {
+        
+        private final PrioritizedTask<T> task;
+        private final AssetLoadCallback<T> callback;
+        private boolean cancelled;
+        private boolean resolved;
+        private T asset;
+        private Throwable failure;
+
+        public Request(PrioritizedTask<T> task, AssetLoadCallback<T> callback) {
+            this.task = task;
+            this.callback = callback;
+        }
+
+        /**
+         * Returns the asset of this requester, once the task has loaded it. 
+         * The first requester receives the loaded asset, the others 
+         * a new clone if it is a {@link CloneableSmartAsset}.
+         */
+        private synchronized T resolve(T loaded) throws ExecutionException {
+            if (!resolved) {
+                resolved = true;
+                asset = loaded;
+                if (loaded instanceof CloneableSmartAsset && !task.claimResult()) {
+                    try {
+                        // The asset is in the cache now, this only clones it
+                        asset = owner.loadAsset(task.key);
+                    } catch (Throwable t) {
+                        asset = null;
+                        failure = t;
+                    }
+                }
+            }
+            if (failure != null) {
+                throw new ExecutionException(failure);
+            }
+            return asset;
+        }
+
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            synchronized (ThreadingManager.this) {
+                if (cancelled || task.isDone()) {
+                    return false;
+                }
+                cancelled = true;
+                // The load is only cancelled once every requester cancelled
+                if (--task.activeRequests == 0) {
+                    task.cancel(mayInterruptIfRunning);
+                    executor.remove(task);
+                }
+                return true;
+            }
+        }
+
+        public boolean isCancelled() {
+            synchronized (ThreadingManager.this) {
+                return cancelled || task.isCancelled();
+            }
+        }
+
+        public boolean isDone() {
+            return isCancelled() || task.isDone();
+        }
+
+        public T get() throws InterruptedException, ExecutionException {
+            if (isCancelled()) {
+                throw new CancellationException();
+            }
+            return resolve(task.get());
+        }
+
+        public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+            if (isCancelled()) {
+                throw new CancellationException();
+            }
+            return resolve(task.get(timeout, unit));
+        }
+    }
+    
+    /**
+     * A load request in the executor's priority queue.
+     */
+    private class PrioritizedTask<T> extends FutureTask<T> implements Comparable<PrioritizedTask> {
+        
+        private final AssetKey<T> key;
+        private final long sequence = nextSequence.getAndIncrement();
+        private final long submitTime = System.nanoTime();
+        private final ArrayList<Request<T>> requests = new ArrayList<Request<T>>(1);
+        private int activeRequests;
+        private boolean resultClaimed;
+        private volatile float priority;
+        private long startTime;
+        
+        public PrioritizedTask(AssetKey<T> key, float priority) {
+            super(new LoadingTask<T>(key));
+            this.key = key;
+            this.priority = priority;
+        }
+
+        /**
+         * @return true for the first requester that claims the 
+         * loaded asset, false for all the others.
+         */
+        synchronized boolean claimResult() {
+            boolean claimed = !resultClaimed;
+            resultClaimed = true;
+            return claimed;
+        }
+
+        public Request<T> addRequest(AssetLoadCallback<T> callback) {
+            Request<T> request = new Request<T>(this, callback);
+            requests.add(request);
+            activeRequests++;
+            return request;
+        }
+
+        public int compareTo(PrioritizedTask other) {
+            if (priority < other.priority) {
+                return -1;
+            } else if (priority > other.priority) {
+                return 1;
+            }
+            return sequence < other.sequence ? -1 : (sequence == other.sequence ? 0 : 1);
+        }
+
+        @Override
+        public void run() {
+            startTime = System.nanoTime();
+            super.run();
+        }
+        
+        @Override
+        protected void done() {
+            ArrayList<Request<T>> toNotify = new ArrayList<Request<T>>();
+            synchronized (ThreadingManager.this) {
+                pendingTasks.remove(key);
+                for (Request<T> request : requests) {
+                    if (!request.cancelled && request.callback != null) {
+                        toNotify.add(request);
+                    }
+                }
+            }
+            
+            if (isCancelled()) {
+                return;
+            }
+            
+            T asset = null;
+            Throwable failure = null;
+            try {
+                asset = get();
+            } catch (ExecutionException ex) {
+                failure = ex.getCause();
+            } catch (InterruptedException ex) {
+                failure = ex;
+            }
+            
+            recordStatistics(this, failure == null);
+            if (failure != null && toNotify.isEmpty()) {
+                logger.log(Level.WARNING, "Failed to load asset " + key, failure);
+            }
+            
+            for (Request<T> request : toNotify) {
+                T requestAsset = null;
+                Throwable requestFailure = failure;
+                if (failure == null) {
+                    try {
+                        // Clones are created here rather than on the render thread
+                        requestAsset = request.resolve(asset);
+                    } catch (ExecutionException ex) {
+                        requestFailure = ex.getCause();
+                    }
+                }
+                dispatchCallback(request.callback, key, requestAsset, requestFailure);
+            }
+        }
+    }
+    
+    private void recordStatistics(PrioritizedTask task, boolean success) {
+        long endTime = System.nanoTime();
+        long loadTime = endTime - task.startTime;
+        String extension = task.key.getExtension();
+        synchronized (statistics) {
+            LoadStatistics stats = statistics.get(extension);
+            if (stats == null) {
+                stats = new LoadStatistics();
+                statistics.put(extension, stats);
+            }
+            stats.loadCount++;
+            if (!success) {
+                stats.failureCount++;
+            }
+            stats.totalWaitTime += task.startTime - task.submitTime;
+            stats.totalLoadTime += loadTime;
+            stats.maxLoadTime = Math.max(stats.maxLoadTime, loadTime);
+        }
+    }
+    
+    private <T> void dispatchCallback(final AssetLoadCallback<T> callback, 
+                                      final AssetKey<T> key, 
+                                      final T asset, 
+                                      final Throwable failure) {
+        Application app;
+        synchronized (this) {
+            app = application;
+        }
+        
+        Callable<Void> call = new Callable<Void>() {
+            public Void call() {
+                if (failure == null) {
+                    callback.assetLoaded(key, asset);
+                } else {
+                    callback.assetFailed(key, failure);
+                }
+                return null;
+            }
+        };
+        
+        if (app != null) {
+            app.enqueue(call);
+        } else {
+            try {
+                call.call();
+            } catch (Exception ex) {
+                logger.log(Level.SEVERE, "Exception in asset load callback", ex);
+            }
+        }
+    }
+    
+    /**
+     * Sets the application on whose render thread the 
+     * {@link AssetLoadCallback}s are executed, 
+     * using {@link Application#enqueue(java.util.concurrent.Callable) }.
+     * If null, callbacks are executed on the loading threads.
+     * 
+     * @param application The application, or null.
+     */
+    public synchronized void setApplication(Application application) {
+        this.application = application;
+    }
+    
+    public synchronized Application getApplication() {
+        return application;
+    }
 
     public <T> Future<T> loadAsset(AssetKey<T> assetKey) {
-        return executor.submit(new LoadingTask(assetKey));
+        return loadAsset(assetKey, DEFAULT_PRIORITY, null);
+    }
+    
+    /**
+     * Queues an asset to be loaded on the loading threads.
+     * <p>
+     * If the asset is already queued, the request is merged with the 
+     * existing one, so that the asset is loaded only once. If the new 
+     * request has a lower priority value, the queued request is moved up.
+     * Each request still gets its own future: cancelling it only cancels 
+     * the load once all merged requests are cancelled.
+     * 
+     * @param <T> The type of the asset
+     * @param assetKey The key of the asset to load
+     * @param priority The priority of the request, lower values load first.
+     * @param callback Callback to notify once the asset is loaded, or null.
+     * @return A future that will contain the loaded asset.
+     */
+    public <T> Future<T> loadAsset(AssetKey<T> assetKey, float priority, AssetLoadCallback<T> callback) {
+        if (assetKey == null) {
+            throw new IllegalArgumentException("key cannot be null");
+        }
+        
+        synchronized (this) {
+            PrioritizedTask<T> task = pendingTasks.get(assetKey);
+            if (task != null) {
+                Request<T> request = task.addRequest(callback);
+                if (priority < task.priority && executor.remove(task)) {
+                    // Still queued, requeue with the more urgent priority
+                    task.priority = priority;
+                    executor.execute(task);
+                }
+                return request;
+            }
+            
+            task = new PrioritizedTask<T>(assetKey, priority);
+            Request<T> request = task.addRequest(callback);
+            pendingTasks.put(assetKey, task);
+            executor.execute(task);
+            return request;
+        }
+    }
+    
+    /**
+     * Cancels all queued requests. Requests that are currently 
+     * being loaded are not interrupted.
+     */
+    public void cancelAll() {
+        ArrayList<PrioritizedTask> tasks;
+        synchronized (this) {
+            tasks = new ArrayList<PrioritizedTask>(pendingTasks.values());
+        }
+        for (PrioritizedTask task : tasks) {
+            task.cancel(false);
+        }
+        executor.purge();
+    }
+    
+    /**
+     * @return The number of requests waiting in the queue.
+     */
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+    
+    /**
+     * @return The number of requests that are queued or being loaded.
+     */
+    public synchronized int getPendingCount() {
+        return pendingTasks.size();
+    }
+    
+    /**
+     * Returns a snapshot of the load time statistics, 
+     * keyed by the asset extension, which identifies the
+     * {@link AssetLoader} used.
+     * 
+     * @return The load statistics of each extension.
+     */
+    public Map<String, LoadStatistics> getLoadStatistics() {
+        HashMap<String, LoadStatistics> snapshot = new HashMap<String, LoadStatistics>();
+        synchronized (statistics) {
+            for (Map.Entry<String, LoadStatistics> entry : statistics.entrySet()) {
+                snapshot.put(entry.getKey(), new LoadStatistics(entry.getValue()));
+            }
+        }
+        return snapshot;
+    }
+    
+    public void resetLoadStatistics() {
+        synchronized (statistics) {
+            statistics.clear();
+        }
+    }
+    
+    /**
+     * Cancels all queued requests and stops the loading threads.
+     */
+    public void shutdown() {
+        cancelAll();
+        executor.shutdown();
     }
 
     public static boolean isLoadingThread() {
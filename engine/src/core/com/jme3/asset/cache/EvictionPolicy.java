@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.asset.cache;
+
+/**
+ * <code>EvictionPolicy</code> decides which asset a
+ * {@link MemoryBudgetAssetCache} should purge when it runs out of memory.
+ * The policy assigns a retention score to every cached entry, the entry
+ * with the lowest score is evicted first.
+ * <p>
+ * Implementations must be stateless, as they are shared between caches
+ * and queried while the cache is locked. The score may only depend on
+ * the entry, it is computed when the entry is added or accessed.
+ * 
+ * @see MemoryBudgetAssetCache#LRU
+ * @see MemoryBudgetAssetCache#LFU
+ * @see MemoryBudgetAssetCache#COST_AWARE
+ */
+public interface EvictionPolicy {
+
+    /**
+     * Computes the retention score of a cached asset.
+     * 
+     * @param entry The cache entry to score.
+     * @return The retention score, entries with lower scores are evicted
+     * before entries with higher scores.
+     */
+    public double getRetentionScore(MemoryBudgetAssetCache.CacheEntry entry);
+    
+}
@@ -0,0 +1,619 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.asset.cache;
+
+import com.jme3.asset.AssetKey;
+import com.jme3.audio.AudioBuffer;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.SceneGraphVisitor;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.texture.Image;
+import com.jme3.texture.Texture;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.TreeSet;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <code>MemoryBudgetAssetCache</code> is an asset cache that retains
+ * assets with strong references until a configurable memory budget is
+ * exceeded, at which point assets are evicted according to an
+ * {@link EvictionPolicy}.
+ * <p>
+ * Unlike the {@link WeakRefAssetCache} and {@link WeakRefCloneAssetCache},
+ * eviction is not left to the garbage collector, so assets do not get
+ * purged and reloaded at random while streaming. The memory used by an
+ * asset is estimated from its image data, vertex buffers and audio data,
+ * see {@link #estimateSize(java.lang.Object) }.
+ * <p>
+ * Assets can be pinned so they never get evicted, and the memory used
+ * by each {@link AssetKey} type can be limited with a quota. To use this
+ * cache for a given key type, see 
+ * {@link com.jme3.asset.DesktopAssetManager#setCacheType(java.lang.Class, java.lang.Class) }.
+ */
+public class MemoryBudgetAssetCache implements AssetCache {
+
+    private static final Logger logger = Logger.getLogger(MemoryBudgetAssetCache.class.getName());
+    
+    /**
+     * The default memory budget, 256 megabytes.
+     */
+    public static final long DEFAULT_BUDGET = 256L * 1024L * 1024L;
+    
+    /**
+     * Evicts the least recently used asset first.
+     */
+    public static final EvictionPolicy LRU = new EvictionPolicy() {
+        public double getRetentionScore(CacheEntry entry) {
+            return entry.getLastAccess();
+        }
+    };
+    
+    /**
+     * Evicts the least frequently used asset first.
+     */
+    public static final EvictionPolicy LFU = new EvictionPolicy() {
+        public double getRetentionScore(CacheEntry entry) {
+            return entry.getHitCount();
+        }
+    };
+    
+    /**
+     * Evicts the asset with the least hits per byte first, so that
+     * large and rarely used assets are purged before small ones.
+     */
+    public static final EvictionPolicy COST_AWARE = new EvictionPolicy() {
+        public double getRetentionScore(CacheEntry entry) {
+            return (entry.getHitCount() + 1.0) / entry.getSize();
+        }
+    };
+    
+    /**
+     * Information about an asset stored in the cache, used by
+     * the {@link EvictionPolicy} to choose which asset to evict.
+     */
+    public static final class CacheEntry {
+        
+        private final AssetKey key;
+        private final Object asset;
+        private final long size;
+        private long lastAccess;
+        private int hitCount;
+        private double score;
+        
+        CacheEntry(AssetKey key, Object asset, long size, long lastAccess) {
+            this.key = key;
+            this.asset = asset;
+            this.size = size;
+            this.lastAccess = lastAccess;
+        }
+
+        /**
+         * @return The key of the cached asset.
+         */
+        public AssetKey getKey() {
+            return key;
+        }
+
+        /**
+         * @return The estimated size of the asset in bytes, at least 1.
+         */
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * @return The logical time at which the asset was last added
+         * or retrieved. Increases with each cache access.
+         */
+        public long getLastAccess() {
+            return lastAccess;
+        }
+
+        /**
+         * @return How many times the asset was retrieved from the cache.
+         */
+        public int getHitCount() {
+            return hitCount;
+        }
+    }
+    
+    /**
+     * Orders entries by retention score, ties are broken by evicting
+     * the least recently used entry. The last access is unique per entry.
+     */
+    private static final Comparator<CacheEntry> EVICTION_ORDER = new Comparator<CacheEntry>() {
+        public int compare(CacheEntry e1, CacheEntry e2) {
+            int result = Double.compare(e1.score, e2.score);
+            if (result == 0) {
+                result = e1.lastAccess < e2.lastAccess ? -1 
+                       : (e1.lastAccess > e2.lastAccess ? 1 : 0);
+            }
+            return result;
+        }
+    };
+    
+    private final HashMap<AssetKey, CacheEntry> entries = new HashMap<AssetKey, CacheEntry>();
+    // Unpinned entries in eviction order, for all keys and per key type
+    private final TreeSet<CacheEntry> evictionOrder = new TreeSet<CacheEntry>(EVICTION_ORDER);
+    private final HashMap<Class<? extends AssetKey>, TreeSet<CacheEntry>> typeEvictionOrder 
+            = new HashMap<Class<? extends AssetKey>, TreeSet<CacheEntry>>();
+    private final HashSet<AssetKey> pinnedKeys = new HashSet<AssetKey>();
+    private final HashMap<Class<? extends AssetKey>, Long> quotas = new HashMap<Class<? extends AssetKey>, Long>();
+    private final HashMap<Class<? extends AssetKey>, Long> typeUsage = new HashMap<Class<? extends AssetKey>, Long>();
+    
+    private EvictionPolicy policy = LRU;
+    private long budget = DEFAULT_BUDGET;
+    private long usage = 0;
+    private long accessTime = 0;
+    
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+    
+    /**
+     * Creates a cache with the {@link #DEFAULT_BUDGET default budget}
+     * and the {@link #LRU} policy. 
+     * This constructor is used when the cache is created by the asset manager.
+     */
+    public MemoryBudgetAssetCache() {
+    }
+    
+    /**
+     * Creates a cache with the given budget and eviction policy.
+     * 
+     * @param budget The memory budget in bytes.
+     * @param policy The eviction policy.
+     */
+    public MemoryBudgetAssetCache(long budget, EvictionPolicy policy) {
+        setBudget(budget);
+        setEvictionPolicy(policy);
+    }
+    
+    /**
+     * Sets the memory budget in bytes. If the assets currently cached
+     * exceed the new budget, they are evicted immediately.
+     * 
+     * @param budget The memory budget in bytes.
+     */
+    public synchronized void setBudget(long budget) {
+        if (budget < 0) {
+            throw new IllegalArgumentException("budget cannot be negative");
+        }
+        this.budget = budget;
+        trim(null, null);
+    }
+
+    public synchronized long getBudget() {
+        return budget;
+    }
+    
+    /**
+     * Sets the policy used to select which asset is evicted when
+     * the budget or a quota is exceeded.
+     * 
+     * @param policy The eviction policy
+     */
+    public synchronized void setEvictionPolicy(EvictionPolicy policy) {
+        if (policy == null) {
+            throw new IllegalArgumentException("policy cannot be null");
+        }
+        this.policy = policy;
+        
+        // The scores of all evictable entries change
+        evictionOrder.clear();
+        typeEvictionOrder.clear();
+        for (CacheEntry entry : entries.values()) {
+            if (!pinnedKeys.contains(entry.key)) {
+                addEvictable(entry);
+            }
+        }
+    }
+
+    public synchronized EvictionPolicy getEvictionPolicy() {
+        return policy;
+    }
+    
+    /**
+     * Limits the memory used by assets loaded with the given key type.
+     * The key type must match exactly, e.g. a quota set for 
+     * <code>AssetKey.class</code> does not apply to <code>TextureKey</code>s.
+     * 
+     * @param keyType The key type to limit.
+     * @param quota The quota in bytes, or a negative value to remove the quota.
+     */
+    public synchronized void setQuota(Class<? extends AssetKey> keyType, long quota) {
+        if (quota < 0) {
+            quotas.remove(keyType);
+        } else {
+            quotas.put(keyType, quota);
+            trim(keyType, null);
+        }
+    }
+    
+    /**
+     * @param keyType The key type
+     * @return The quota set for the key type, or -1 if not limited.
+     */
+    public synchronized long getQuota(Class<? extends AssetKey> keyType) {
+        Long quota = quotas.get(keyType);
+        return quota != null ? quota : -1;
+    }
+    
+    /**
+     * Pins the asset with the given key, so that it is never evicted.
+     * The key can be pinned before the asset is loaded.
+     * 
+     * @param key The key of the asset to pin.
+     */
+    public synchronized void pin(AssetKey key) {
+        if (pinnedKeys.add(key)) {
+            CacheEntry entry = entries.get(key);
+            if (entry != null) {
+                removeEvictable(entry);
+            }
+        }
+    }
+    
+    /**
+     * Unpins an asset that was pinned with {@link #pin(com.jme3.asset.AssetKey) },
+     * making it eligible for eviction again.
+     * 
+     * @param key The key of the asset to unpin.
+     */
+    public synchronized void unpin(AssetKey key) {
+        if (pinnedKeys.remove(key)) {
+            CacheEntry entry = entries.get(key);
+            if (entry != null) {
+                addEvictable(entry);
+            }
+            trim(entry != null ? entry.key.getClass() : null, null);
+        }
+    }
+    
+    public synchronized boolean isPinned(AssetKey key) {
+        return pinnedKeys.contains(key);
+    }
+    
+    /**
+     * @return The estimated memory in bytes used by the cached assets.
+     */
+    public synchronized long getMemoryUsage() {
+        return usage;
+    }
+    
+    /**
+     * @param keyType The key type
+     * @return The estimated memory in bytes used by assets loaded with
+     * the given key type.
+     */
+    public synchronized long getMemoryUsage(Class<? extends AssetKey> keyType) {
+        Long typeBytes = typeUsage.get(keyType);
+        return typeBytes != null ? typeBytes : 0;
+    }
+    
+    /**
+     * @return The number of assets in the cache.
+     */
+    public synchronized int getAssetCount() {
+        return entries.size();
+    }
+    
+    /**
+     * @return How many times an asset was found in the cache.
+     */
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    /**
+     * @return How many times an asset was requested but not in the cache.
+     */
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    /**
+     * @return How many assets were evicted to respect the budget and quotas.
+     */
+    public synchronized long getEvictionCount() {
+        return evictions;
+    }
+    
+    /**
+     * Resets the hit, miss and eviction counters to zero.
+     */
+    public synchronized void resetStatistics() {
+        hits = 0;
+        misses = 0;
+        evictions = 0;
+    }
+    
+    /**
+     * Estimates the memory used by an asset. 
+     * Textures and images are measured by their image data, models by 
+     * the vertex buffers and LOD levels of their meshes (shared meshes are
+     * counted once), and audio buffers by their audio data. 
+     * Other assets are assumed to be negligible and count as one byte.
+     * <p>
+     * Subclasses can override this method to measure other asset types.
+     * 
+     * @param asset The asset to measure
+     * @return The estimated size in bytes.
+     */
+    protected long estimateSize(Object asset) {
+        long size = 0;
+        if (asset instanceof Texture) {
+            size = getImageSize(((Texture) asset).getImage());
+        } else if (asset instanceof Image) {
+            size = getImageSize((Image) asset);
+        } else if (asset instanceof AudioBuffer) {
+            ByteBuffer data = ((AudioBuffer) asset).getData();
+            size = data != null ? data.capacity() : 0;
+        } else if (asset instanceof Mesh) {
+            size = getMeshSize((Mesh) asset);
+        } else if (asset instanceof Spatial) {
+            final IdentityHashMap<Mesh, Mesh> meshes = new IdentityHashMap<Mesh, Mesh>();
+            ((Spatial) asset).depthFirstTraversal(new SceneGraphVisitor() {
+                public void visit(Spatial spatial) {
+                    if (spatial instanceof Geometry) {
+                        Mesh mesh = ((Geometry) spatial).getMesh();
+                        if (mesh != null) {
+                            meshes.put(mesh, mesh);
+                        }
+                    }
+                }
+            });
+            for (Mesh mesh : meshes.keySet()) {
+                size += getMeshSize(mesh);
+            }
+        }
+        return Math.max(size, 1);
+    }
+    
+    private static long getImageSize(Image image) {
+        long size = 0;
+        if (image != null) {
+            for (ByteBuffer data : image.getData()) {
+                if (data != null) {
+                    size += data.capacity();
+                }
+            }
+        }
+        return size;
+    }
+    
+    private static long getBufferSize(VertexBuffer vb) {
+        Buffer data = vb.getData();
+        if (data == null) {
+            return 0;
+        }
+        return (long) data.capacity() * vb.getFormat().getComponentSize();
+    }
+    
+    private static long getMeshSize(Mesh mesh) {
+        long size = 0;
+        for (VertexBuffer vb : mesh.getBufferList().getArray()) {
+            size += getBufferSize(vb);
+        }
+        for (int i = 0; i < mesh.getNumLodLevels(); i++) {
+            size += getBufferSize(mesh.getLodLevel(i));
+        }
+        return size;
+    }
+    
+    private void addUsage(Class<? extends AssetKey> keyType, long bytes) {
+        usage += bytes;
+        Long typeBytes = typeUsage.get(keyType);
+        long newTypeBytes = (typeBytes != null ? typeBytes : 0) + bytes;
+        if (newTypeBytes == 0) {
+            typeUsage.remove(keyType);
+        } else {
+            typeUsage.put(keyType, newTypeBytes);
+        }
+    }
+    
+    /**
+     * Scores the entry and adds it to the eviction order.
+     * The entry must not be in the eviction order already.
+     */
+    private void addEvictable(CacheEntry entry) {
+        entry.score = policy.getRetentionScore(entry);
+        evictionOrder.add(entry);
+        Class<? extends AssetKey> keyType = entry.key.getClass();
+        TreeSet<CacheEntry> typeOrder = typeEvictionOrder.get(keyType);
+        if (typeOrder == null) {
+            typeOrder = new TreeSet<CacheEntry>(EVICTION_ORDER);
+            typeEvictionOrder.put(keyType, typeOrder);
+        }
+        typeOrder.add(entry);
+    }
+    
+    /**
+     * Removes the entry from the eviction order, if present. Must be
+     * called before the fields used to score the entry change.
+     */
+    private void removeEvictable(CacheEntry entry) {
+        if (evictionOrder.remove(entry)) {
+            Class<? extends AssetKey> keyType = entry.key.getClass();
+            TreeSet<CacheEntry> typeOrder = typeEvictionOrder.get(keyType);
+            typeOrder.remove(entry);
+            if (typeOrder.isEmpty()) {
+                typeEvictionOrder.remove(keyType);
+            }
+        }
+    }
+    
+    private void removeEntry(CacheEntry entry) {
+        entries.remove(entry.key);
+        removeEvictable(entry);
+        addUsage(entry.key.getClass(), -entry.size);
+    }
+    
+    /**
+     * Finds the unpinned entry with the lowest retention score,
+     * ties are broken by evicting the least recently used entry.
+     */
+    private CacheEntry findVictim(Class<? extends AssetKey> keyType, CacheEntry exclude) {
+        TreeSet<CacheEntry> order = keyType != null ? typeEvictionOrder.get(keyType) : evictionOrder;
+        if (order == null) {
+            return null;
+        }
+        Iterator<CacheEntry> it = order.iterator();
+        while (it.hasNext()) {
+            CacheEntry entry = it.next();
+            if (entry != exclude) {
+                return entry;
+            }
+        }
+        return null;
+    }
+    
+    private boolean isOverQuota(Class<? extends AssetKey> keyType) {
+        Long quota = quotas.get(keyType);
+        return quota != null && getMemoryUsage(keyType) > quota;
+    }
+    
+    /**
+     * Evicts assets until the quota of the given key type (if any) 
+     * and the budget are respected.
+     */
+    private void trim(Class<? extends AssetKey> keyType, CacheEntry exclude) {
+        int evicted = 0;
+        if (keyType != null) {
+            while (isOverQuota(keyType)) {
+                CacheEntry victim = findVictim(keyType, exclude);
+                if (victim == null) {
+                    break;
+                }
+                removeEntry(victim);
+                evicted++;
+            }
+        }
+        while (usage > budget) {
+            CacheEntry victim = findVictim(null, exclude);
+            if (victim == null) {
+                break;
+            }
+            removeEntry(victim);
+            evicted++;
+        }
+        evictions += evicted;
+        if (evicted >= 1 && logger.isLoggable(Level.FINE)) {
+            logger.log(Level.FINE, "MemoryBudgetAssetCache: {0} assets were evicted from the cache.", evicted);
+        }
+    }
+
+    public synchronized <T> void addToCache(AssetKey<T> key, T obj) {
+        CacheEntry oldEntry = entries.get(key);
+        if (oldEntry != null) {
+            removeEntry(oldEntry);
+        }
+        
+        Class<? extends AssetKey> keyType = key.getClass();
+        long size = estimateSize(obj);
+        if (!pinnedKeys.contains(key)) {
+            Long quota = quotas.get(keyType);
+            if (size > budget || (quota != null && size > quota)) {
+                logger.log(Level.WARNING, "The asset {0} ({1} bytes) exceeds "
+                        + "the cache budget and will not be cached.", 
+                        new Object[]{key, size});
+                return;
+            }
+        }
+        
+        CacheEntry entry = new CacheEntry(key, obj, size, ++accessTime);
+        entries.put(key, entry);
+        addUsage(keyType, size);
+        if (!pinnedKeys.contains(key)) {
+            addEvictable(entry);
+        }
+        
+        // The new asset is never evicted to make room for itself
+        trim(keyType, entry);
+    }
+
+    @SuppressWarnings("unchecked")
+    public synchronized <T> T getFromCache(AssetKey<T> key) {
+        CacheEntry entry = entries.get(key);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        boolean evictable = !pinnedKeys.contains(key);
+        if (evictable) {
+            removeEvictable(entry);
+        }
+        entry.hitCount++;
+        entry.lastAccess = ++accessTime;
+        if (evictable) {
+            addEvictable(entry);
+        }
+        return (T) entry.asset;
+    }
+
+    public synchronized boolean deleteFromCache(AssetKey key) {
+        CacheEntry entry = entries.get(key);
+        if (entry != null) {
+            removeEntry(entry);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Deletes all assets from the cache, including pinned assets. 
+     * The keys remain pinned.
+     */
+    public synchronized void clearCache() {
+        entries.clear();
+        evictionOrder.clear();
+        typeEvictionOrder.clear();
+        typeUsage.clear();
+        usage = 0;
+    }
+
+    public <T> void registerAssetClone(AssetKey<T> key, T clone) {
+    }
+
+    public void notifyNoAssetClone() {
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.audio.mixer;
+
+import java.io.IOException;
+
+/**
+ * <code>AudioSink</code> receives the output of the {@link SoftwareAudioRenderer},
+ * as interleaved signed 16-bit little endian samples.
+ */
+public interface AudioSink {
+
+    /**
+     * Opens the sink, called when the renderer is initialized.
+     * 
+     * @param sampleRate The number of frames per second
+     * @param channels The number of channels of each frame
+     */
+    public void open(int sampleRate, int channels) throws IOException;
+
+    /**
+     * Writes mixed samples to the sink.
+     * 
+     * @param data The samples
+     * @param offset The offset of the first byte to write
+     * @param length The number of bytes to write, a multiple of the frame size
+     */
+    public void write(byte[] data, int offset, int length) throws IOException;
+
+    /**
+     * @return True if {@link #write(byte[], int, int) } blocks until the 
+     * device consumed the samples, which paces the mixer. Otherwise the
+     * renderer paces itself to real time when mixing on its own thread.
+     */
+    public boolean isRealTime();
+
+    /**
+     * Closes the sink, called when the renderer is cleaned up.
+     */
+    public void close() throws IOException;
+}
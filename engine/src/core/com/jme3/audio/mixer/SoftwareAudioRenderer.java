@@ -0,0 +1,679 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.audio.mixer;
+
+import com.jme3.audio.AudioBuffer;
+import com.jme3.audio.AudioData;
+import com.jme3.audio.AudioNode;
+import com.jme3.audio.AudioNode.Status;
+import com.jme3.audio.AudioParam;
+import com.jme3.audio.AudioRenderer;
+import com.jme3.audio.AudioStream;
+import com.jme3.audio.Environment;
+import com.jme3.audio.Filter;
+import com.jme3.audio.Listener;
+import com.jme3.audio.ListenerParam;
+import com.jme3.audio.LowPassFilter;
+import com.jme3.math.FastMath;
+import com.jme3.math.Vector3f;
+import com.jme3.util.TempVars;
+import com.jme3.util.WorkerPool;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <code>SoftwareAudioRenderer</code> is an {@link AudioRenderer} that mixes 
+ * the sounds in Java and writes the result to an {@link AudioSink}, so that
+ * it does not depend on a native audio library and can run headless, 
+ * e.g. on servers or in tests with a {@link NullAudioSink}.
+ * <p>
+ * Any number of sounds can play at once as voices, but only the
+ * {@link #setMaxVoices(int) most audible ones} are mixed, the others are
+ * virtual: their playback advances without being mixed, until they become
+ * audible enough again.
+ * <p>
+ * The sounds are mixed on a separate thread, or on the application
+ * thread during {@link #update(float) } if the renderer is not threaded.
+ * The parameters of the sounds are read on the application thread during
+ * {@link #update(float) } and handed to the mixer under a short lock,
+ * the mixing itself does not hold any lock. Streams are decoded ahead
+ * on the {@link WorkerPool}.
+ * <p>
+ * Positional sounds are attenuated like the OpenAL inverse clamped distance 
+ * model and panned between the two output channels, directional sounds 
+ * use their cones. Reverb, doppler and the high frequencies of filters 
+ * are not supported.
+ */
+public class SoftwareAudioRenderer implements AudioRenderer, Runnable {
+
+    private static final Logger logger = Logger.getLogger(SoftwareAudioRenderer.class.getName());
+
+    public static final int DEFAULT_SAMPLE_RATE = 44100;
+    public static final int DEFAULT_MAX_VOICES = 32;
+
+    private static final int BLOCK_FRAMES = 1024;
+    private static final int STREAM_RING_FRAMES = 32768;
+    /**
+     * Voices being mixed are preferred by that factor when ranking,
+     * so that voices of similar audibility do not keep swapping.
+     */
+    private static final float MIXED_PREFERENCE = 1.25f;
+
+    private final AudioSink sink;
+    private final boolean threaded;
+    private int sampleRate = DEFAULT_SAMPLE_RATE;
+    private volatile int maxVoices = DEFAULT_MAX_VOICES;
+
+    private Thread mixerThread;
+    private volatile boolean running;
+    private boolean initialized;
+    private boolean audioDisabled;
+    private float pendingFrames;
+
+    private final Object lock = new Object();
+    private Listener listener;
+    private float masterVolume = 1f;
+    private final ArrayList<Voice> voices = new ArrayList<Voice>();
+    private final ArrayList<Voice> channels = new ArrayList<Voice>();
+    private final ArrayList<Integer> freeChannels = new ArrayList<Integer>();
+    private final IdentityHashMap<AudioBuffer, short[]> decodedBuffers = new IdentityHashMap<AudioBuffer, short[]>();
+
+    // mixer state
+    private Voice[] mixVoices = new Voice[64];
+    private float[] scores = new float[64];
+    private int[] ranks = new int[64];
+    private float mixVolume;
+    private final float[] mixBuffer = new float[BLOCK_FRAMES * 2];
+    private final byte[] outputBuffer = new byte[BLOCK_FRAMES * 4];
+
+    // metrics
+    private volatile int voiceCount;
+    private volatile int mixedVoiceCount;
+    private volatile long mixTime;
+    private volatile long mixedFrames;
+    private volatile int underruns;
+    private volatile float mixLoad;
+
+    /**
+     * Creates a renderer mixing on its own thread.
+     * 
+     * @param sink The sink receiving the mixed audio
+     */
+    public SoftwareAudioRenderer(AudioSink sink) {
+        this(sink, true);
+    }
+
+    /**
+     * Creates a renderer.
+     * 
+     * @param sink The sink receiving the mixed audio
+     * @param threaded If false, the audio is mixed during {@link #update(float) },
+     * as much audio as the time per frame.
+     */
+    public SoftwareAudioRenderer(AudioSink sink, boolean threaded) {
+        this.sink = sink;
+        this.threaded = threaded;
+    }
+
+    /**
+     * @return The number of frames per second of the output.
+     */
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * @param sampleRate The number of frames per second of the output,
+     * {@link #DEFAULT_SAMPLE_RATE} by default.
+     * @throws IllegalStateException if the renderer is initialized.
+     */
+    public void setSampleRate(int sampleRate) {
+        if (initialized) {
+            throw new IllegalStateException("Cannot change the sample rate once initialized");
+        }
+        this.sampleRate = sampleRate;
+    }
+
+    /**
+     * @return The maximum number of voices mixed at once.
+     */
+    public int getMaxVoices() {
+        return maxVoices;
+    }
+
+    /**
+     * @param maxVoices The maximum number of voices mixed at once, the
+     * less audible voices are virtual. {@link #DEFAULT_MAX_VOICES} by default.
+     */
+    public void setMaxVoices(int maxVoices) {
+        if (maxVoices < 1) {
+            throw new IllegalArgumentException("At least one voice must be mixed");
+        }
+        this.maxVoices = maxVoices;
+    }
+
+    /**
+     * @return The number of voices playing, mixed or virtual, in the last block.
+     */
+    public int getVoiceCount() {
+        return voiceCount;
+    }
+
+    /**
+     * @return The number of voices mixed in the last block.
+     */
+    public int getMixedVoiceCount() {
+        return mixedVoiceCount;
+    }
+
+    /**
+     * @return The number of virtual voices in the last block.
+     */
+    public int getVirtualVoiceCount() {
+        return voiceCount - mixedVoiceCount;
+    }
+
+    /**
+     * @return The time spent mixing, in nanoseconds.
+     */
+    public long getMixTime() {
+        return mixTime;
+    }
+
+    /**
+     * @return The number of frames mixed.
+     */
+    public long getMixedFrames() {
+        return mixedFrames;
+    }
+
+    /**
+     * @return The time spent mixing relative to the duration of the mixed 
+     * audio, averaged over the last blocks. The mixer cannot keep up 
+     * when it gets close to 1.
+     */
+    public float getMixLoad() {
+        return mixLoad;
+    }
+
+    /**
+     * @return The number of times a stream was not decoded in time.
+     */
+    public int getUnderrunCount() {
+        return underruns;
+    }
+
+    public void initialize() {
+        if (initialized) {
+            throw new IllegalStateException("Initialize already called");
+        }
+        initialized = true;
+        try {
+            sink.open(sampleRate, 2);
+        } catch (IOException ex) {
+            logger.log(Level.SEVERE, "Failed to open the audio sink, audio is disabled", ex);
+            audioDisabled = true;
+            return;
+        }
+        if (threaded) {
+            running = true;
+            mixerThread = new Thread(this, "jME3 Audio Mixer");
+            mixerThread.setDaemon(true);
+            mixerThread.setPriority(Thread.NORM_PRIORITY + 1);
+            mixerThread.start();
+        }
+    }
+
+    public void run() {
+        long start = System.nanoTime();
+        long frames = 0;
+        long blockNanos = BLOCK_FRAMES * 1000000000L / sampleRate;
+        while (running) {
+            if (!mixBlock(BLOCK_FRAMES)) {
+                break;
+            }
+            frames += BLOCK_FRAMES;
+            if (!sink.isRealTime()) {
+                // stay at most one block ahead of real time
+                long ahead = frames * 1000000000L / sampleRate - (System.nanoTime() - start) - blockNanos;
+                if (ahead > 0) {
+                    try {
+                        Thread.sleep(ahead / 1000000, (int) (ahead % 1000000));
+                    } catch (InterruptedException ex) {
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    public void cleanup() {
+        if (!initialized) {
+            return;
+        }
+        running = false;
+        if (mixerThread != null) {
+            mixerThread.interrupt();
+            try {
+                mixerThread.join();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            mixerThread = null;
+        }
+        synchronized (lock) {
+            for (int i = voices.size() - 1; i >= 0; i--) {
+                removeVoice(voices.get(i));
+            }
+            decodedBuffers.clear();
+        }
+        try {
+            sink.close();
+        } catch (IOException ex) {
+            logger.log(Level.WARNING, "Failed to close the audio sink", ex);
+        }
+        initialized = false;
+    }
+
+    public void setListener(Listener listener) {
+        synchronized (lock) {
+            if (this.listener != null) {
+                // previous listener no longer associated with current
+                // renderer
+                this.listener.setRenderer(null);
+            }
+            this.listener = listener;
+            if (listener != null) {
+                listener.setRenderer(this);
+            }
+        }
+    }
+
+    public void setEnvironment(Environment env) {
+        // reverb is not supported
+    }
+
+    public void playSourceInstance(AudioNode src) {
+        if (audioDisabled) {
+            return;
+        }
+        if (src.getAudioData() instanceof AudioStream) {
+            throw new UnsupportedOperationException(
+                    "Cannot play instances "
+                    + "of audio streams. Use playSource() instead.");
+        }
+        synchronized (lock) {
+            Voice voice = createBufferVoice(src, true);
+            updateVoice(voice, getListenerLocation(), getListenerLeft());
+            voices.add(voice);
+        }
+    }
+
+    public void playSource(AudioNode src) {
+        if (audioDisabled) {
+            return;
+        }
+        synchronized (lock) {
+            if (src.getStatus() == Status.Playing) {
+                return;
+            } else if (src.getStatus() == Status.Stopped) {
+                Voice voice;
+                if (src.getAudioData() instanceof AudioStream) {
+                    voice = new Voice(src, (AudioStream) src.getAudioData(), STREAM_RING_FRAMES);
+                    // decode the start of the stream right away
+                    voice.looping = src.isLooping();
+                    voice.decode();
+                } else {
+                    voice = createBufferVoice(src, false);
+                }
+                int index;
+                if (freeChannels.isEmpty()) {
+                    index = channels.size();
+                    channels.add(voice);
+                } else {
+                    index = freeChannels.remove(freeChannels.size() - 1);
+                    channels.set(index, voice);
+                }
+                src.setChannel(index);
+                voices.add(voice);
+            }
+            Voice voice = channels.get(src.getChannel());
+            voice.paused = false;
+            updateVoice(voice, getListenerLocation(), getListenerLeft());
+            src.setStatus(Status.Playing);
+        }
+    }
+
+    public void pauseSource(AudioNode src) {
+        synchronized (lock) {
+            if (src.getStatus() == Status.Playing) {
+                channels.get(src.getChannel()).paused = true;
+                src.setStatus(Status.Paused);
+            }
+        }
+    }
+
+    public void stopSource(AudioNode src) {
+        synchronized (lock) {
+            if (src.getStatus() != Status.Stopped) {
+                removeVoice(channels.get(src.getChannel()));
+            }
+        }
+    }
+
+    public void updateSourceParam(AudioNode src, AudioParam param) {
+        // the parameters of all the voices are read in update()
+    }
+
+    public void updateListenerParam(Listener listener, ListenerParam param) {
+        // the listener is read in update()
+    }
+
+    public void deleteFilter(Filter filter) {
+    }
+
+    public void deleteAudioData(AudioData ad) {
+        synchronized (lock) {
+            decodedBuffers.remove(ad);
+        }
+    }
+
+    /**
+     * Reads the parameters of the voices and updates the status of the
+     * audio nodes whose voice finished. Mixes the audio of the frame if 
+     * the renderer is not threaded.
+     * 
+     * @param tpf Time per frame
+     */
+    public void update(float tpf) {
+        if (audioDisabled || !initialized) {
+            return;
+        }
+        synchronized (lock) {
+            masterVolume = listener != null ? listener.getVolume() : 1f;
+            Vector3f listenerLocation = getListenerLocation();
+            Vector3f listenerLeft = getListenerLeft();
+            for (int i = voices.size() - 1; i >= 0; i--) {
+                Voice voice = voices.get(i);
+                if (voice.finished) {
+                    removeVoice(voice);
+                } else {
+                    updateVoice(voice, listenerLocation, listenerLeft);
+                }
+            }
+        }
+
+        if (!threaded) {
+            pendingFrames += tpf * sampleRate;
+            while (pendingFrames >= 1f) {
+                int frames = (int) Math.min(pendingFrames, BLOCK_FRAMES);
+                if (!mixBlock(frames)) {
+                    break;
+                }
+                pendingFrames -= frames;
+            }
+        }
+    }
+
+    private Vector3f getListenerLocation() {
+        return listener != null ? listener.getLocation() : Vector3f.ZERO;
+    }
+
+    private Vector3f getListenerLeft() {
+        return listener != null ? listener.getLeft() : Vector3f.UNIT_X;
+    }
+
+    private Voice createBufferVoice(AudioNode src, boolean instance) {
+        AudioBuffer buffer = (AudioBuffer) src.getAudioData();
+        short[] samples = decodedBuffers.get(buffer);
+        if (samples == null || buffer.isUpdateNeeded()) {
+            samples = decode(buffer);
+            decodedBuffers.put(buffer, samples);
+            buffer.clearUpdateNeeded();
+        }
+        Voice voice = new Voice(src, instance, samples, buffer.getChannels(), 
+                                buffer.getSampleRate(), src.getTimeOffset());
+        return voice;
+    }
+
+    private static short[] decode(AudioBuffer buffer) {
+        ByteBuffer data = buffer.getData().duplicate();
+        data.rewind();
+        short[] samples;
+        if (buffer.getBitsPerSample() == 8) {
+            samples = new short[data.limit()];
+            for (int i = 0; i < samples.length; i++) {
+                samples[i] = (short) (((data.get(i) & 0xff) - 128) << 8);
+            }
+        } else {
+            samples = new short[data.limit() / 2];
+            data.order(ByteOrder.LITTLE_ENDIAN).asShortBuffer().get(samples);
+        }
+        return samples;
+    }
+
+    private void removeVoice(Voice voice) {
+        voices.remove(voice);
+        voice.finished = true;
+        if (!voice.instance) {
+            AudioNode src = voice.node;
+            int index = src.getChannel();
+            src.setStatus(Status.Stopped);
+            src.setChannel(-1);
+            channels.set(index, null);
+            freeChannels.add(index);
+        }
+        if (voice.stream != null) {
+            voice.closeStream();
+            // And free the audio since it cannot be
+            // played again anyway.
+            deleteAudioData(voice.stream);
+        }
+    }
+
+    /**
+     * Computes the gains and the step of a voice, with the inverse 
+     * clamped distance model of OpenAL and equal power panning.
+     */
+    private void updateVoice(Voice voice, Vector3f listenerLocation, Vector3f listenerLeft) {
+        AudioNode src = voice.node;
+        float gain = src.getVolume();
+        Filter filter = src.getDryFilter();
+        if (filter instanceof LowPassFilter) {
+            gain *= ((LowPassFilter) filter).getVolume();
+        }
+        float left = gain, right = gain;
+
+        if (src.isPositional() && voice.channels == 1) {
+            TempVars vars = TempVars.get();
+            Vector3f location = voice.location != null ? voice.location : src.getWorldTranslation();
+            Vector3f toSource = vars.vect1.set(location).subtractLocal(listenerLocation);
+            float distance = toSource.length();
+            float refDistance = Math.max(src.getRefDistance(), FastMath.ZERO_TOLERANCE);
+            float clamped = Math.max(refDistance, Math.min(distance, src.getMaxDistance()));
+            gain *= refDistance / (refDistance + (clamped - refDistance));
+
+            if (src.isDirectional() && distance > 0) {
+                Vector3f toListener = vars.vect2.set(toSource).divideLocal(-distance);
+                float angle = FastMath.acos(FastMath.clamp(toListener.dot(src.getDirection()), -1f, 1f)) 
+                            * FastMath.RAD_TO_DEG * 2f;
+                float inner = src.getInnerAngle(), outer = src.getOuterAngle();
+                if (angle > outer) {
+                    gain = 0;
+                } else if (angle > inner) {
+                    gain *= 1f - (angle - inner) / (outer - inner);
+                }
+            }
+
+            float pan = distance > 0 ? toSource.dot(listenerLeft) / distance : 0;
+            left = gain * FastMath.sqrt((1f + pan) * 0.5f);
+            right = gain * FastMath.sqrt((1f - pan) * 0.5f);
+            vars.release();
+        }
+
+        voice.gainLeft = left;
+        voice.gainRight = right;
+        voice.looping = src.isLooping() && !voice.instance;
+        voice.step = (long) (src.getPitch() * voice.sampleRate / sampleRate * Voice.ONE);
+    }
+
+    /**
+     * Mixes a block of frames and writes it to the sink.
+     * 
+     * @return False if the sink failed.
+     */
+    private boolean mixBlock(int frames) {
+        long start = System.nanoTime();
+        int count = 0;
+        synchronized (lock) {
+            count = voices.size();
+            if (mixVoices.length < count) {
+                int capacity = Math.max(count, mixVoices.length * 2);
+                mixVoices = new Voice[capacity];
+                scores = new float[capacity];
+                ranks = new int[capacity];
+            }
+            for (int i = 0; i < count; i++) {
+                Voice voice = voices.get(i);
+                voice.mixPaused = voice.paused;
+                voice.mixLooping = voice.looping;
+                voice.mixGainLeft = voice.gainLeft;
+                voice.mixGainRight = voice.gainRight;
+                voice.mixStep = voice.step;
+                mixVoices[i] = voice;
+            }
+            mixVolume = masterVolume;
+        }
+
+        // rank the voices by audibility
+        int playing = 0;
+        for (int i = 0; i < count; i++) {
+            Voice voice = mixVoices[i];
+            if (voice.mixPaused || voice.finished) {
+                continue;
+            }
+            float score = Math.max(voice.mixGainLeft, voice.mixGainRight);
+            scores[playing] = voice.real ? score * MIXED_PREFERENCE : score;
+            ranks[playing++] = i;
+        }
+        int mixed = Math.min(playing, maxVoices);
+        if (playing > mixed) {
+            select(mixed, playing);
+        }
+
+        for (int i = 0; i < frames * 2; i++) {
+            mixBuffer[i] = 0;
+        }
+        int underrun = 0;
+        for (int i = 0; i < playing; i++) {
+            Voice voice = mixVoices[ranks[i]];
+            voice.real = i < mixed;
+            if (!voice.mix(voice.real ? mixBuffer : null, 0, frames)) {
+                underrun++;
+            }
+            if (voice.needsDecoding()) {
+                WorkerPool.submit(voice);
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            mixVoices[i] = null;
+        }
+
+        float volume = mixVolume * 32767f;
+        for (int i = 0, b = 0; i < frames * 2; i++) {
+            float s = mixBuffer[i] * volume;
+            int sample = s >= 32767f ? 32767 : (s <= -32768f ? -32768 : (int) s);
+            outputBuffer[b++] = (byte) sample;
+            outputBuffer[b++] = (byte) (sample >> 8);
+        }
+
+        long time = System.nanoTime() - start;
+        float load = time / (frames * 1e9f / sampleRate);
+        mixLoad += (load - mixLoad) * 0.05f;
+        mixTime += time;
+        mixedFrames += frames;
+        underruns += underrun;
+        voiceCount = playing;
+        mixedVoiceCount = mixed;
+
+        try {
+            sink.write(outputBuffer, 0, frames * 4);
+        } catch (IOException ex) {
+            logger.log(Level.SEVERE, "Failed to write to the audio sink, audio is disabled", ex);
+            audioDisabled = true;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Partially sorts the ranks so that the given number of voices
+     * with the highest scores come first.
+     */
+    private void select(int count, int size) {
+        int l = 0, r = size - 1;
+        while (l < r) {
+            float pivot = scores[(l + r) >>> 1];
+            int i = l, j = r;
+            while (i <= j) {
+                while (scores[i] > pivot) {
+                    i++;
+                }
+                while (scores[j] < pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    float score = scores[i];
+                    scores[i] = scores[j];
+                    scores[j] = score;
+                    int rank = ranks[i];
+                    ranks[i] = ranks[j];
+                    ranks[j] = rank;
+                    i++;
+                    j--;
+                }
+            }
+            if (count - 1 <= j) {
+                r = j;
+            } else if (count - 1 >= i) {
+                l = i;
+            } else {
+                break;
+            }
+        }
+    }
+}
@@ -0,0 +1,310 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.audio.mixer;
+
+import com.jme3.audio.AudioNode;
+import com.jme3.audio.AudioStream;
+import com.jme3.math.Vector3f;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A sound played by the {@link SoftwareAudioRenderer}, either bound to its
+ * {@link AudioNode} or an instance of it.
+ * <p>
+ * The parameters are computed on the application thread and copied by
+ * the mixer under the lock of the renderer, the playback state is only
+ * accessed by the mixer. Streams are decoded ahead into a ring buffer
+ * on the worker pool.
+ */
+final class Voice implements Runnable {
+
+    static final int FRACTION_BITS = 16;
+    static final long ONE = 1L << FRACTION_BITS;
+    private static final int FRACTION_MASK = (int) ONE - 1;
+    private static final float FRACTION_SCALE = 1f / ONE;
+    private static final float SAMPLE_SCALE = 1f / 32768f;
+    private static final int DECODE_FRAMES = 4096;
+
+    final AudioNode node;
+    final boolean instance;
+    final int channels;
+    final int sampleRate;
+    /**
+     * The location of instances, which do not follow their node.
+     */
+    final Vector3f location;
+
+    private final short[] samples;
+    private final int length;
+
+    final AudioStream stream;
+    private final short[] ring;
+    private final int ringMask;
+    private final int bytesPerSample;
+    private byte[] decodeBuffer;
+    private int pendingBytes;
+    private volatile long written;
+    private volatile long consumed;
+    private volatile boolean endOfStream;
+    private final AtomicBoolean decoding = new AtomicBoolean();
+
+    // set on the application thread
+    boolean paused;
+    boolean looping;
+    float gainLeft, gainRight;
+    long step;
+
+    // copied by the mixer
+    boolean mixPaused;
+    boolean mixLooping;
+    float mixGainLeft, mixGainRight;
+    long mixStep;
+
+    private long position;
+    boolean real;
+    volatile boolean finished;
+
+    /**
+     * Creates a voice playing buffered samples.
+     */
+    Voice(AudioNode node, boolean instance, short[] samples, int channels, int sampleRate, float offset) {
+        this.node = node;
+        this.instance = instance;
+        this.samples = samples;
+        this.channels = channels;
+        this.sampleRate = sampleRate;
+        this.length = samples.length / channels;
+        this.location = instance ? node.getWorldTranslation().clone() : null;
+        this.stream = null;
+        this.ring = null;
+        this.ringMask = -1;
+        this.bytesPerSample = 2;
+        this.position = (long) (offset * sampleRate) << FRACTION_BITS;
+    }
+
+    /**
+     * Creates a voice decoding a stream into a ring buffer of the given 
+     * number of frames, a power of two.
+     */
+    Voice(AudioNode node, AudioStream stream, int ringFrames) {
+        this.node = node;
+        this.instance = false;
+        this.stream = stream;
+        this.channels = stream.getChannels();
+        this.sampleRate = stream.getSampleRate();
+        this.bytesPerSample = stream.getBitsPerSample() / 8;
+        this.ring = new short[ringFrames * channels];
+        this.ringMask = ringFrames - 1;
+        this.decodeBuffer = new byte[DECODE_FRAMES * channels * bytesPerSample];
+        this.samples = null;
+        this.length = 0;
+        this.location = null;
+    }
+
+    /**
+     * Starts decoding the stream on the worker pool if the ring buffer
+     * is less than half full.
+     * 
+     * @return True if a decoding task must be submitted.
+     */
+    boolean needsDecoding() {
+        if (stream == null || endOfStream || (written - consumed) > ringMask / 2) {
+            return false;
+        }
+        return decoding.compareAndSet(false, true);
+    }
+
+    public void run() {
+        try {
+            decode();
+        } finally {
+            decoding.set(false);
+        }
+    }
+
+    /**
+     * Decodes the stream until the ring buffer is full.
+     */
+    synchronized void decode() {
+        int frameBytes = channels * bytesPerSample;
+        int capacity = ringMask + 1;
+        boolean restarted = false;
+        while (!endOfStream) {
+            long start = written;
+            int free = (int) (capacity - (start - consumed));
+            if (free < DECODE_FRAMES / 4) {
+                break;
+            }
+            int maxBytes = Math.min(free, DECODE_FRAMES) * frameBytes;
+            int read = stream.isOpen() 
+                     ? stream.readSamples(decodeBuffer, pendingBytes, maxBytes - pendingBytes) 
+                     : -1;
+            if (read <= 0) {
+                if (looping && !restarted && stream.isOpen()) {
+                    stream.setTime(0);
+                    restarted = true;
+                    continue;
+                }
+                endOfStream = true;
+                break;
+            }
+            restarted = false;
+
+            int bytes = pendingBytes + read;
+            int frames = bytes / frameBytes;
+            int b = 0;
+            for (int f = 0; f < frames; f++) {
+                int s = (int) ((start + f) & ringMask) * channels;
+                for (int c = 0; c < channels; c++) {
+                    if (bytesPerSample == 2) {
+                        ring[s + c] = (short) ((decodeBuffer[b] & 0xff) | (decodeBuffer[b + 1] << 8));
+                    } else {
+                        ring[s + c] = (short) (((decodeBuffer[b] & 0xff) - 128) << 8);
+                    }
+                    b += bytesPerSample;
+                }
+            }
+            // keep the partial frame for the next read
+            pendingBytes = bytes - b;
+            System.arraycopy(decodeBuffer, b, decodeBuffer, 0, pendingBytes);
+            written = start + frames;
+        }
+    }
+
+    /**
+     * Closes the stream, waiting for the decoding to complete.
+     */
+    synchronized void closeStream() {
+        if (stream != null && stream.isOpen()) {
+            stream.close();
+        }
+        endOfStream = true;
+    }
+
+    /**
+     * Mixes the frames of the voice into the buffer, or only advances
+     * the playback if the buffer is null.
+     * 
+     * @return False if a stream ran out of decoded frames.
+     */
+    boolean mix(float[] buffer, int offset, int frames) {
+        long step = mixStep;
+        int done = 0;
+        boolean underrun = false;
+        while (done < frames) {
+            long available = stream != null ? written : length;
+            long frame = position >>> FRACTION_BITS;
+            if (frame + 1 >= available) {
+                if (stream != null) {
+                    if (endOfStream) {
+                        finished = true;
+                    } else {
+                        underrun = true;
+                    }
+                    break;
+                } else if (!mixLooping || frame >= length) {
+                    finished = true;
+                    break;
+                }
+                // the last frame, interpolated with the first one
+                if (buffer != null) {
+                    mixFrame(buffer, offset + done, (int) frame, 0);
+                }
+                position += step;
+                done++;
+                frame = position >>> FRACTION_BITS;
+                if (frame >= length) {
+                    position -= (frame - frame % length) << FRACTION_BITS;
+                }
+                continue;
+            }
+
+            // the frames until the next frame reaches the end of the data
+            long last = ((available - 1) << FRACTION_BITS) - 1;
+            int count = (int) Math.min(frames - done, (last - position) / step + 1);
+            if (buffer != null) {
+                mixRange(buffer, offset + done, count, step);
+            }
+            position += count * step;
+            done += count;
+        }
+        if (stream != null) {
+            consumed = position >>> FRACTION_BITS;
+        }
+        return !underrun;
+    }
+
+    private void mixRange(float[] buffer, int offset, int count, long step) {
+        short[] data = stream != null ? ring : samples;
+        int mask = ringMask;
+        long pos = position;
+        int o = offset * 2;
+        float left = mixGainLeft * SAMPLE_SCALE;
+        float right = mixGainRight * SAMPLE_SCALE;
+        if (channels == 1) {
+            for (int i = 0; i < count; i++) {
+                int f = (int) (pos >>> FRACTION_BITS);
+                float t = ((int) pos & FRACTION_MASK) * FRACTION_SCALE;
+                float s0 = data[f & mask];
+                float s = s0 + (data[(f + 1) & mask] - s0) * t;
+                buffer[o++] += s * left;
+                buffer[o++] += s * right;
+                pos += step;
+            }
+        } else {
+            for (int i = 0; i < count; i++) {
+                int f = (int) (pos >>> FRACTION_BITS);
+                float t = ((int) pos & FRACTION_MASK) * FRACTION_SCALE;
+                int i0 = (f & mask) * channels;
+                int i1 = ((f + 1) & mask) * channels;
+                float l0 = data[i0], r0 = data[i0 + 1];
+                buffer[o++] += (l0 + (data[i1] - l0) * t) * left;
+                buffer[o++] += (r0 + (data[i1 + 1] - r0) * t) * right;
+                pos += step;
+            }
+        }
+    }
+
+    private void mixFrame(float[] buffer, int offset, int frame, int next) {
+        float t = ((int) position & FRACTION_MASK) * FRACTION_SCALE;
+        int i0 = frame * channels, i1 = next * channels;
+        float l0 = samples[i0];
+        float l = l0 + (samples[i1] - l0) * t;
+        float r = l;
+        if (channels > 1) {
+            float r0 = samples[i0 + 1];
+            r = r0 + (samples[i1 + 1] - r0) * t;
+        }
+        buffer[offset * 2] += l * mixGainLeft * SAMPLE_SCALE;
+        buffer[offset * 2 + 1] += r * mixGainRight * SAMPLE_SCALE;
+    }
+}
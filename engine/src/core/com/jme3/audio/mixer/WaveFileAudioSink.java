@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.audio.mixer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * <code>WaveFileAudioSink</code> writes the mixed samples to a WAV file,
+ * e.g. to record the audio of a scene or to compare the output in tests.
+ */
+public class WaveFileAudioSink implements AudioSink {
+
+    private static final int HEADER_SIZE = 44;
+
+    private final File file;
+    private RandomAccessFile out;
+    private long dataSize;
+
+    /**
+     * @param file The WAV file to write, replaced if it exists
+     */
+    public WaveFileAudioSink(File file) {
+        this.file = file;
+    }
+
+    public void open(int sampleRate, int channels) throws IOException {
+        out = new RandomAccessFile(file, "rw");
+        out.setLength(0);
+        dataSize = 0;
+
+        byte[] header = new byte[HEADER_SIZE];
+        putTag(header, 0, "RIFF");
+        // the sizes are written when the sink is closed
+        putTag(header, 8, "WAVE");
+        putTag(header, 12, "fmt ");
+        putInt(header, 16, 16);
+        putShort(header, 20, 1); // PCM
+        putShort(header, 22, channels);
+        putInt(header, 24, sampleRate);
+        putInt(header, 28, sampleRate * channels * 2);
+        putShort(header, 32, channels * 2);
+        putShort(header, 34, 16);
+        putTag(header, 36, "data");
+        out.write(header);
+    }
+
+    public void write(byte[] data, int offset, int length) throws IOException {
+        out.write(data, offset, length);
+        dataSize += length;
+    }
+
+    public boolean isRealTime() {
+        return false;
+    }
+
+    public void close() throws IOException {
+        if (out == null) {
+            return;
+        }
+        try {
+            byte[] size = new byte[4];
+            putInt(size, 0, (int) (dataSize + HEADER_SIZE - 8));
+            out.seek(4);
+            out.write(size);
+            putInt(size, 0, (int) dataSize);
+            out.seek(40);
+            out.write(size);
+        } finally {
+            out.close();
+            out = null;
+        }
+    }
+
+    private static void putTag(byte[] data, int offset, String tag) {
+        for (int i = 0; i < 4; i++) {
+            data[offset + i] = (byte) tag.charAt(i);
+        }
+    }
+
+    private static void putShort(byte[] data, int offset, int value) {
+        data[offset] = (byte) value;
+        data[offset + 1] = (byte) (value >> 8);
+    }
+
+    private static void putInt(byte[] data, int offset, int value) {
+        putShort(data, offset, value);
+        putShort(data, offset + 2, value >> 16);
+    }
+}
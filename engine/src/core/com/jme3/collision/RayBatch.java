@@ -0,0 +1,521 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.collision;
+
+import com.jme3.bounding.BoundingBox;
+import com.jme3.bounding.BoundingSphere;
+import com.jme3.bounding.BoundingVolume;
+import com.jme3.collision.bih.BIHTree;
+import com.jme3.math.FastMath;
+import com.jme3.math.Matrix4f;
+import com.jme3.math.Triangle;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
+import com.jme3.util.TempVars;
+import com.jme3.util.WorkerPool;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <code>RayBatch</code> intersects many rays with a scene at once, 
+ * e.g. for line of sight tests or bullet traces.
+ * <p>
+ * Unlike {@link Collidable#collideWith(com.jme3.collision.Collidable, com.jme3.collision.CollisionResults) },
+ * which collects every intersection of a single ray, the batch only keeps
+ * the closest intersection of each ray, or any intersection in 
+ * {@link Mode#Any} mode. The rays and the results are stored in arrays 
+ * that are reused between queries, so that a batch does not allocate 
+ * any objects once its capacity has been reached, unless 
+ * {@link #setParallel(boolean) parallel} queries are enabled.
+ * <p>
+ * The scene graph is traversed once per query: the rays that intersect 
+ * the world bound of a node are tested against its children, and the rays
+ * that reach a geometry are tested against the {@link BIHTree} of its mesh.
+ * Like rendering, queries expect the scene to be updated, see
+ * {@link Spatial#updateGeometricState() }.
+ */
+public class RayBatch {
+
+    /**
+     * The intersections found by a query.
+     */
+    public enum Mode {
+        /**
+         * The closest intersection of each ray.
+         */
+        Closest,
+        /**
+         * Any intersection of each ray, the query stops testing a ray
+         * once it intersects the scene.
+         */
+        Any
+    }
+
+    /**
+     * Parallel queries split the rays into tasks of at least that many rays.
+     */
+    private static final int MIN_RAYS_PER_TASK = 256;
+
+    private int size;
+    private float[] rays;
+    private float[] limits;
+    private float[] distances;
+    private int[] triangles;
+    private Geometry[] geometries;
+    private Mode mode = Mode.Closest;
+    private boolean parallel = false;
+
+    private Spatial scene;
+    private Query[] queries = new Query[0];
+    private final ArrayList<Query> tasks = new ArrayList<Query>();
+
+    /**
+     * Creates a batch.
+     * 
+     * @param capacity The number of rays the batch can hold before 
+     * it has to grow its arrays.
+     */
+    public RayBatch(int capacity) {
+        allocate(Math.max(1, capacity));
+    }
+
+    private void allocate(int capacity) {
+        float[] newRays = new float[capacity * 6];
+        float[] newLimits = new float[capacity];
+        if (rays != null) {
+            System.arraycopy(rays, 0, newRays, 0, size * 6);
+            System.arraycopy(limits, 0, newLimits, 0, size);
+        }
+        rays = newRays;
+        limits = newLimits;
+        distances = new float[capacity];
+        triangles = new int[capacity];
+        geometries = new Geometry[capacity];
+    }
+
+    /**
+     * Removes all the rays from the batch, keeping its capacity.
+     */
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            geometries[i] = null;
+        }
+        size = 0;
+    }
+
+    /**
+     * @return The number of rays in the batch.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Adds a ray without a limit.
+     * 
+     * @see #addRay(float, float, float, float, float, float, float) 
+     */
+    public int addRay(Vector3f origin, Vector3f direction) {
+        return addRay(origin.x, origin.y, origin.z, 
+                      direction.x, direction.y, direction.z, 
+                      Float.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Adds a ray.
+     * 
+     * @see #addRay(float, float, float, float, float, float, float) 
+     */
+    public int addRay(Vector3f origin, Vector3f direction, float limit) {
+        return addRay(origin.x, origin.y, origin.z, 
+                      direction.x, direction.y, direction.z, limit);
+    }
+
+    /**
+     * Adds a ray to the batch.
+     * 
+     * @param limit Intersections at this distance from the origin or 
+     * farther are ignored.
+     * @return The index of the ray, to access its results.
+     */
+    public int addRay(float ox, float oy, float oz, 
+                      float dx, float dy, float dz, float limit) {
+        if (size == limits.length) {
+            allocate(size * 2);
+        }
+        setRay(size++, ox, oy, oz, dx, dy, dz, limit);
+        return size - 1;
+    }
+
+    /**
+     * Replaces a ray of the batch, the direction is normalized.
+     * 
+     * @param index The index of the ray
+     * @param limit Intersections at this distance from the origin or 
+     * farther are ignored.
+     */
+    public void setRay(int index, float ox, float oy, float oz, 
+                       float dx, float dy, float dz, float limit) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        float length = FastMath.sqrt(dx * dx + dy * dy + dz * dz);
+        if (length == 0) {
+            throw new IllegalArgumentException("The direction cannot be zero");
+        }
+        int p = index * 6;
+        rays[p] = ox;
+        rays[p + 1] = oy;
+        rays[p + 2] = oz;
+        rays[p + 3] = dx / length;
+        rays[p + 4] = dy / length;
+        rays[p + 5] = dz / length;
+        limits[index] = limit;
+    }
+
+    /**
+     * @return The intersections found by a query.
+     */
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * @param mode The intersections found by a query, 
+     * {@link Mode#Closest} by default.
+     */
+    public void setMode(Mode mode) {
+        this.mode = mode;
+    }
+
+    /**
+     * @return True if the rays are split across the {@link WorkerPool}.
+     */
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    /**
+     * Enables splitting large batches across the {@link WorkerPool}.
+     * Each task traverses the scene with its share of the rays. The
+     * scene must not be modified during the query.
+     * 
+     * @param parallel True to split the rays across the worker threads.
+     */
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    /**
+     * Intersects the rays of the batch with a scene, replacing the 
+     * results of the previous query.
+     * 
+     * @param scene The scene to intersect
+     * @return The number of rays that intersect the scene
+     */
+    public int collideWith(Spatial scene) {
+        for (int i = 0; i < size; i++) {
+            distances[i] = limits[i];
+            geometries[i] = null;
+        }
+
+        int numTasks = 1;
+        if (parallel) {
+            numTasks = Math.max(1, Math.min(WorkerPool.getThreadCount() + 1, 
+                                            size / MIN_RAYS_PER_TASK));
+        }
+        if (queries.length < numTasks) {
+            Query[] newQueries = new Query[numTasks];
+            System.arraycopy(queries, 0, newQueries, 0, queries.length);
+            for (int i = queries.length; i < numTasks; i++) {
+                newQueries[i] = new Query();
+            }
+            queries = newQueries;
+        }
+
+        this.scene = scene;
+        try {
+            if (numTasks == 1) {
+                queries[0].setRange(0, size);
+                queries[0].run();
+            } else {
+                tasks.clear();
+                for (int t = 0; t < numTasks; t++) {
+                    queries[t].setRange(size * t / numTasks, size * (t + 1) / numTasks);
+                    tasks.add(queries[t]);
+                }
+                WorkerPool.invokeAll(tasks);
+            }
+        } finally {
+            this.scene = null;
+        }
+
+        int hits = 0;
+        for (int i = 0; i < size; i++) {
+            if (geometries[i] != null) {
+                hits++;
+            }
+        }
+        return hits;
+    }
+
+    /**
+     * @return True if the ray intersected the scene in the last query.
+     */
+    public boolean isHit(int index) {
+        return geometries[index] != null;
+    }
+
+    /**
+     * @return The distance of the intersection from the origin of the ray,
+     * or its limit if the ray did not intersect the scene.
+     */
+    public float getDistance(int index) {
+        return distances[index];
+    }
+
+    /**
+     * @return The intersected geometry, or null if the ray did not 
+     * intersect the scene.
+     */
+    public Geometry getGeometry(int index) {
+        return geometries[index];
+    }
+
+    /**
+     * @return The index of the intersected triangle in its mesh, 
+     * see {@link Mesh#getTriangle(int, com.jme3.math.Vector3f, com.jme3.math.Vector3f, com.jme3.math.Vector3f) }.
+     */
+    public int getTriangleIndex(int index) {
+        return triangles[index];
+    }
+
+    /**
+     * Computes the world position of the intersection of a ray.
+     * 
+     * @param index The index of the ray
+     * @param store Storage for the result, a new vector is created if null
+     * @return The point of intersection
+     */
+    public Vector3f getContactPoint(int index, Vector3f store) {
+        if (store == null) {
+            store = new Vector3f();
+        }
+        int p = index * 6;
+        float t = distances[index];
+        return store.set(rays[p] + rays[p + 3] * t, 
+                         rays[p + 1] + rays[p + 4] * t, 
+                         rays[p + 2] + rays[p + 5] * t);
+    }
+
+    /**
+     * Computes the world normal of the triangle intersected by a ray.
+     * 
+     * @param index The index of the ray, which must have intersected the scene.
+     * @param store Storage for the result, a new vector is created if null
+     * @return The normal of the triangle
+     */
+    public Vector3f getContactNormal(int index, Vector3f store) {
+        Geometry geom = geometries[index];
+        if (geom == null) {
+            throw new IllegalStateException("The ray did not intersect the scene");
+        }
+        TempVars vars = TempVars.get();
+        Vector3f v1 = vars.vect1, v2 = vars.vect2, v3 = vars.vect3;
+        geom.getMesh().getTriangle(triangles[index], v1, v2, v3);
+        Matrix4f world = geom.getWorldMatrix();
+        world.mult(v1, v1);
+        world.mult(v2, v2);
+        world.mult(v3, v3);
+        store = Triangle.computeTriangleNormal(v1, v2, v3, store);
+        vars.release();
+        return store;
+    }
+
+    /**
+     * Traverses the scene with a range of rays, the state is reused 
+     * between queries.
+     */
+    private final class Query implements Runnable {
+
+        private int start, end;
+        /**
+         * The indices of the rays that reach each level of the scene graph.
+         */
+        private int[][] active = new int[8][];
+        private final Matrix4f worldToLocal = new Matrix4f();
+        private final float[] hit = new float[1];
+        private float near, far;
+
+        void setRange(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        private int[] getActive(int depth) {
+            if (depth >= active.length) {
+                int[][] newActive = new int[depth * 2][];
+                System.arraycopy(active, 0, newActive, 0, active.length);
+                active = newActive;
+            }
+            if (active[depth] == null || active[depth].length < end - start) {
+                active[depth] = new int[end - start];
+            }
+            return active[depth];
+        }
+
+        public void run() {
+            int[] all = getActive(0);
+            for (int i = start; i < end; i++) {
+                all[i - start] = i;
+            }
+            collide(scene, 0, end - start);
+        }
+
+        private void collide(Spatial spatial, int depth, int count) {
+            int[] in = active[depth];
+            int[] out = getActive(depth + 1);
+            BoundingVolume bound = spatial.getWorldBound();
+            boolean anyHit = mode == Mode.Any;
+            int reached = 0;
+            for (int i = 0; i < count; i++) {
+                int ray = in[i];
+                if (anyHit && geometries[ray] != null) {
+                    continue;
+                }
+                if (intersects(bound, ray)) {
+                    out[reached++] = ray;
+                }
+            }
+            if (reached == 0) {
+                return;
+            }
+
+            if (spatial instanceof Node) {
+                List<Spatial> children = ((Node) spatial).getChildren();
+                for (int i = 0, n = children.size(); i < n; i++) {
+                    collide(children.get(i), depth + 1, reached);
+                }
+            } else if (spatial instanceof Geometry) {
+                collideGeometry((Geometry) spatial, out, reached);
+            }
+        }
+
+        private void collideGeometry(Geometry geom, int[] in, int count) {
+            Mesh mesh = geom.getMesh();
+            if (mesh == null) {
+                return;
+            }
+            BIHTree tree = mesh.getCollisionTree();
+            // the transformed directions are not normalized, so that
+            // the distances in local space are the world distances
+            Matrix4f m = worldToLocal.set(geom.getWorldMatrix()).invertLocal();
+            boolean anyHit = mode == Mode.Any;
+            for (int i = 0; i < count; i++) {
+                int ray = in[i];
+                int p = ray * 6;
+                float ox = rays[p], oy = rays[p + 1], oz = rays[p + 2];
+                float dx = rays[p + 3], dy = rays[p + 4], dz = rays[p + 5];
+                int triangle = tree.intersectRay(
+                        m.m00 * ox + m.m01 * oy + m.m02 * oz + m.m03,
+                        m.m10 * ox + m.m11 * oy + m.m12 * oz + m.m13,
+                        m.m20 * ox + m.m21 * oy + m.m22 * oz + m.m23,
+                        m.m00 * dx + m.m01 * dy + m.m02 * dz,
+                        m.m10 * dx + m.m11 * dy + m.m12 * dz,
+                        m.m20 * dx + m.m21 * dy + m.m22 * dz,
+                        distances[ray], anyHit, hit);
+                if (triangle >= 0) {
+                    distances[ray] = hit[0];
+                    triangles[ray] = triangle;
+                    geometries[ray] = geom;
+                }
+            }
+        }
+
+        /**
+         * @return True if the ray intersects the bound before its 
+         * current distance.
+         */
+        private boolean intersects(BoundingVolume bound, int ray) {
+            int p = ray * 6;
+            if (bound instanceof BoundingBox) {
+                BoundingBox box = (BoundingBox) bound;
+                Vector3f center = box.getCenter();
+                near = 0;
+                far = distances[ray];
+                return clip(center.x - rays[p], box.getXExtent(), rays[p + 3])
+                    && clip(center.y - rays[p + 1], box.getYExtent(), rays[p + 4])
+                    && clip(center.z - rays[p + 2], box.getZExtent(), rays[p + 5]);
+            } else if (bound instanceof BoundingSphere) {
+                BoundingSphere sphere = (BoundingSphere) bound;
+                Vector3f center = sphere.getCenter();
+                float diffX = center.x - rays[p];
+                float diffY = center.y - rays[p + 1];
+                float diffZ = center.z - rays[p + 2];
+                float b = diffX * rays[p + 3] + diffY * rays[p + 4] + diffZ * rays[p + 5];
+                float c = diffX * diffX + diffY * diffY + diffZ * diffZ
+                        - sphere.getRadius() * sphere.getRadius();
+                if (c <= 0) {
+                    // the origin is inside the sphere
+                    return true;
+                }
+                float discr = b * b - c;
+                return b >= 0 && discr >= 0 && b - FastMath.sqrt(discr) < distances[ray];
+            }
+            // unknown or missing bound
+            return true;
+        }
+
+        /**
+         * Clips the range of the ray to a slab of the box.
+         */
+        private boolean clip(float diff, float extent, float direction) {
+            if (direction == 0) {
+                return diff - extent <= 0 && diff + extent >= 0;
+            }
+            float inv = 1f / direction;
+            float t0 = (diff - extent) * inv;
+            float t1 = (diff + extent) * inv;
+            if (t0 > t1) {
+                float tmp = t0;
+                t0 = t1;
+                t1 = tmp;
+            }
+            near = Math.max(near, t0);
+            far = Math.min(far, t1);
+            return near <= far;
+        }
+    }
+}
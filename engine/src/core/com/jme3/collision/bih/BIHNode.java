@@ -111,6 +111,38 @@ public final class BIHNode implements Savable {
         this.rightPlane = rightPlane;
     }
 
+    void set(BIHNode node) {
+        leftIndex = node.leftIndex;
+        rightIndex = node.rightIndex;
+        left = node.left;
+        right = node.right;
+        leftPlane = node.leftPlane;
+        rightPlane = node.rightPlane;
+        axis = node.axis;
+    }
+
+    /**
+     * Updates the planes of this subtree from the triangles of the tree
+     * and stores the bounds of the subtree in bounds at the given offset,
+     * see {@link BIHTree#refit() }.
+     */
+    void refit(BIHTree tree, float[] bounds, int offset) {
+        if (axis == 3) {
+            tree.getTriangleBounds(leftIndex, rightIndex, bounds, offset);
+            return;
+        }
+
+        int l = offset + 6, r = offset + 12;
+        left.refit(tree, bounds, l);
+        right.refit(tree, bounds, r);
+        leftPlane = bounds[l + 3 + axis];
+        rightPlane = bounds[r + axis];
+        for (int i = 0; i < 3; i++) {
+            bounds[offset + i] = min(bounds[l + i], bounds[r + i]);
+            bounds[offset + 3 + i] = max(bounds[l + 3 + i], bounds[r + 3 + i]);
+        }
+    }
+
     public void write(JmeExporter ex) throws IOException {
         OutputCapsule oc = ex.getCapsule(this);
         oc.write(leftIndex, "left_index", 0);
@@ -145,6 +177,106 @@ public final class BIHNode implements Savable {
         }
     }
 
+    /**
+     * Traverses the tree like {@link #intersectWhere(com.jme3.math.Ray, com.jme3.math.Matrix4f, com.jme3.collision.bih.BIHTree, float, float, com.jme3.collision.CollisionResults) }
+     * using the given arrays as the stack, see 
+     * {@link BIHTree#intersectRay(float, float, float, float, float, float, float, boolean, float[]) }.
+     * 
+     * @return the position of the intersected triangle in the tree, or -1.
+     */
+    final int intersectRay(BIHTree tree, 
+            float ox, float oy, float oz,
+            float dx, float dy, float dz,
+            float tMax, boolean anyHit, float[] store,
+            BIHNode[] nodes, float[] ranges) {
+
+        float idx = 1f / dx, idy = 1f / dy, idz = 1f / dz;
+        float tHit = tMax;
+        int hit = -1;
+
+        nodes[0] = this;
+        ranges[0] = 0;
+        ranges[1] = tMax;
+        int size = 1;
+        stackloop:
+        while (size > 0) {
+            size--;
+            BIHNode node = nodes[size];
+            nodes[size] = null;
+            float tMin = ranges[size * 2];
+            // nothing beyond the closest intersection found so far
+            float tFar = min(ranges[size * 2 + 1], tHit);
+
+            if (tFar < tMin) {
+                continue;
+            }
+
+            while (node.axis != 3) {
+                float origin, invDirection;
+                if (node.axis == 0) {
+                    origin = ox;
+                    invDirection = idx;
+                } else if (node.axis == 1) {
+                    origin = oy;
+                    invDirection = idy;
+                } else {
+                    origin = oz;
+                    invDirection = idz;
+                }
+
+                float tNearSplit = (node.leftPlane - origin) * invDirection;
+                float tFarSplit = (node.rightPlane - origin) * invDirection;
+                BIHNode nearNode = node.left;
+                BIHNode farNode = node.right;
+
+                if (invDirection < 0) {
+                    float tmpSplit = tNearSplit;
+                    tNearSplit = tFarSplit;
+                    tFarSplit = tmpSplit;
+
+                    BIHNode tmpNode = nearNode;
+                    nearNode = farNode;
+                    farNode = tmpNode;
+                }
+
+                if (tMin > tNearSplit && tFar < tFarSplit) {
+                    continue stackloop;
+                }
+
+                if (tMin > tNearSplit) {
+                    tMin = max(tMin, tFarSplit);
+                    node = farNode;
+                } else if (tFar < tFarSplit) {
+                    tFar = min(tFar, tNearSplit);
+                    node = nearNode;
+                } else {
+                    nodes[size] = farNode;
+                    ranges[size * 2] = max(tMin, tFarSplit);
+                    ranges[size * 2 + 1] = tFar;
+                    size++;
+                    tFar = min(tFar, tNearSplit);
+                    node = nearNode;
+                }
+            }
+
+            for (int i = node.leftIndex; i <= node.rightIndex; i++) {
+                float t = tree.intersectTriangle(i, ox, oy, oz, dx, dy, dz);
+                if (t < tHit) {
+                    tHit = t;
+                    hit = i;
+                    if (anyHit) {
+                        while (size > 0) {
+                            nodes[--size] = null;
+                        }
+                        break stackloop;
+                    }
+                }
+            }
+        }
+        store[0] = tHit;
+        return hit;
+    }
+
     public final int intersectWhere(Collidable col,
             BoundingBox box,
             Matrix4f worldMatrix,
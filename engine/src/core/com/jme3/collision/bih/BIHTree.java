@@ -53,14 +53,21 @@ import com.jme3.scene.mesh.IndexBuffer;
 import com.jme3.scene.mesh.VirtualIndexBuffer;
 import com.jme3.scene.mesh.WrappedIndexBuffer;
 import com.jme3.util.TempVars;
+import com.jme3.util.WorkerPool;
 import java.io.IOException;
 import static java.lang.Math.max;
 import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
 
 public class BIHTree implements CollisionData {
 
     public static final int MAX_TREE_DEPTH = 100;
     public static final int MAX_TRIS_PER_NODE = 21;
+    /**
+     * Meshes with fewer triangles are always constructed on the calling thread.
+     */
+    public static final int MIN_PARALLEL_TRIS = 8192;
     private Mesh mesh;
     private BIHNode root;
     private int maxTrisPerNode;
@@ -69,7 +76,6 @@ public class BIHTree implements CollisionData {
     private int[] triIndices;
     
     private transient CollisionResults boundResults = new CollisionResults();
-    private transient float[] bihSwapTmp;
     
     private static final TriangleAxisComparator[] comparators = new TriangleAxisComparator[]
     {
@@ -78,10 +84,29 @@ public class BIHTree implements CollisionData {
         new TriangleAxisComparator(2)
     };
 
+    private static IndexBuffer getTriangleIndices(Mesh mesh) {
+        IndexBuffer ib = mesh.getIndexBuffer();
+        if (ib == null) {
+            ib = new VirtualIndexBuffer(mesh.getVertexCount(), mesh.getMode());
+        } else if (mesh.getMode() != Mode.Triangles) {
+            ib = new WrappedIndexBuffer(mesh);
+        }
+        return ib;
+    }
+
     private void initTriList(FloatBuffer vb, IndexBuffer ib) {
         pointData = new float[numTris * 3 * 3];
+        triIndices = new int[numTris];
+        for (int i = 0; i < numTris; i++) {
+            triIndices[i] = i;
+        }
+        readTriangles(vb, ib);
+    }
+
+    private void readTriangles(FloatBuffer vb, IndexBuffer ib) {
         int p = 0;
-        for (int i = 0; i < numTris * 3; i += 3) {
+        for (int t = 0; t < numTris; t++) {
+            int i = triIndices[t] * 3;
             int vert = ib.get(i) * 3;
             pointData[p++] = vb.get(vert++);
             pointData[p++] = vb.get(vert++);
@@ -97,11 +122,6 @@ public class BIHTree implements CollisionData {
             pointData[p++] = vb.get(vert++);
             pointData[p++] = vb.get(vert);
         }
-
-        triIndices = new int[numTris];
-        for (int i = 0; i < numTris; i++) {
-            triIndices[i] = i;
-        }
     }
 
     public BIHTree(Mesh mesh, int maxTrisPerNode) {
@@ -112,15 +132,8 @@ public class BIHTree implements CollisionData {
             throw new IllegalArgumentException();
         }
 
-        bihSwapTmp = new float[9];
-
         FloatBuffer vb = (FloatBuffer) mesh.getBuffer(Type.Position).getData();
-        IndexBuffer ib = mesh.getIndexBuffer();
-        if (ib == null) {
-            ib = new VirtualIndexBuffer(mesh.getVertexCount(), mesh.getMode());
-        } else if (mesh.getMode() != Mode.Triangles) {
-            ib = new WrappedIndexBuffer(mesh);
-        }
+        IndexBuffer ib = getTriangleIndices(mesh);
 
         numTris = ib.size() / 3;
         initTriList(vb, ib);
@@ -133,9 +146,96 @@ public class BIHTree implements CollisionData {
     public BIHTree() {
     }
 
+    /**
+     * Constructs the tree from the triangles of the mesh.
+     * <p>
+     * For large meshes the subtrees below the first few levels are 
+     * constructed in parallel on the {@link WorkerPool}, the resulting
+     * tree is the same as the one constructed on a single thread.
+     */
     public void construct() {
         BoundingBox sceneBbox = createBox(0, numTris - 1);
-        root = createNode(0, numTris - 1, sceneBbox, 0);
+        int numTasks = 4 * (WorkerPool.getThreadCount() + 1);
+        if (numTris < MIN_PARALLEL_TRIS 
+         || Runtime.getRuntime().availableProcessors() < 2) {
+            root = createNode(0, numTris - 1, sceneBbox, 0, 0, null);
+        } else {
+            List<SubtreeTask> tasks = new ArrayList<SubtreeTask>(numTasks * 2);
+            int grain = max(MIN_PARALLEL_TRIS / 8, numTris / numTasks);
+            root = createNode(0, numTris - 1, sceneBbox, 0, grain, tasks);
+            WorkerPool.invokeAll(tasks);
+        }
+    }
+
+    /**
+     * Refits the tree to the current vertex positions of the mesh, 
+     * e.g. after the mesh has been deformed.
+     * <p>
+     * The hierarchy is kept and only the splitting planes are updated,
+     * which is much faster than constructing a new tree. The queries 
+     * remain exact, but they get slower if the triangles moved 
+     * far from their original positions; construct a new tree then.
+     * 
+     * @throws IllegalStateException if the number of triangles changed.
+     */
+    public void refit() {
+        FloatBuffer vb = (FloatBuffer) mesh.getBuffer(Type.Position).getData();
+        IndexBuffer ib = getTriangleIndices(mesh);
+        if (ib.size() / 3 != numTris) {
+            throw new IllegalStateException("The number of triangles changed");
+        }
+        readTriangles(vb, ib);
+        if (root != null) {
+            // each level of the recursion stores the bounds of both children
+            root.refit(this, new float[12 * (MAX_TREE_DEPTH + 3)], 0);
+        }
+    }
+
+    /**
+     * Computes the bounds of the triangles in the given range and stores
+     * them in store as minX, minY, minZ, maxX, maxY, maxZ.
+     */
+    void getTriangleBounds(int l, int r, float[] store, int offset) {
+        float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY, minZ = Float.POSITIVE_INFINITY;
+        float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY, maxZ = Float.NEGATIVE_INFINITY;
+        for (int p = l * 9, end = (r + 1) * 9; p < end; p += 3) {
+            float x = pointData[p], y = pointData[p + 1], z = pointData[p + 2];
+            if (x < minX) minX = x;
+            if (x > maxX) maxX = x;
+            if (y < minY) minY = y;
+            if (y > maxY) maxY = y;
+            if (z < minZ) minZ = z;
+            if (z > maxZ) maxZ = z;
+        }
+        store[offset] = minX;
+        store[offset + 1] = minY;
+        store[offset + 2] = minZ;
+        store[offset + 3] = maxX;
+        store[offset + 4] = maxY;
+        store[offset + 5] = maxZ;
+    }
+
+    /**
+     * Constructs a subtree on a worker thread, the triangle ranges
+     * of the tasks are disjoint.
+     */
+    private final class SubtreeTask implements Runnable {
+
+        private final BIHNode node;
+        private final int l, r, depth;
+        private final BoundingBox nodeBbox;
+
+        SubtreeTask(BIHNode node, int l, int r, BoundingBox nodeBbox, int depth) {
+            this.node = node;
+            this.l = l;
+            this.r = r;
+            this.nodeBbox = nodeBbox;
+            this.depth = depth;
+        }
+
+        public void run() {
+            node.set(createNode(l, r, nodeBbox, depth, 0, null));
+        }
     }
 
     private BoundingBox createBox(int l, int r) {
@@ -288,10 +388,17 @@ public class BIHTree implements CollisionData {
 //
 //        return node;
 //    }
-    private BIHNode createNode(int l, int r, BoundingBox nodeBbox, int depth) {
+    private BIHNode createNode(int l, int r, BoundingBox nodeBbox, int depth, 
+                               int grain, List<SubtreeTask> tasks) {
         if ((r - l) < maxTrisPerNode || depth > MAX_TREE_DEPTH) {
             return new BIHNode(l, r);
         }
+        if (tasks != null && (r - l) < grain) {
+            // filled in by the task
+            BIHNode node = new BIHNode();
+            tasks.add(new SubtreeTask(node, l, r, nodeBbox, depth));
+            return node;
+        }
 
         BoundingBox currentBox = createBox(l, r);
 
@@ -329,12 +436,12 @@ public class BIHTree implements CollisionData {
             //Only right
             BoundingBox rbbox = new BoundingBox(currentBox);
             setMinMax(rbbox, true, axis, split);
-            return createNode(l, r, rbbox, depth + 1);
+            return createNode(l, r, rbbox, depth + 1, grain, tasks);
         } else if (pivot > r) {
             //Only left
             BoundingBox lbbox = new BoundingBox(currentBox);
             setMinMax(lbbox, false, axis, split);
-            return createNode(l, r, lbbox, depth + 1);
+            return createNode(l, r, lbbox, depth + 1, grain, tasks);
         } else {
             //Build the node
             BIHNode node = new BIHNode(axis);
@@ -345,14 +452,14 @@ public class BIHTree implements CollisionData {
 
             //The left node right border is the plane most right
             node.setLeftPlane(getMinMax(createBox(l, max(l, pivot - 1)), false, axis));
-            node.setLeftChild(createNode(l, max(l, pivot - 1), lbbox, depth + 1)); //Recursive call
+            node.setLeftChild(createNode(l, max(l, pivot - 1), lbbox, depth + 1, grain, tasks)); //Recursive call
 
             //Right Child
             BoundingBox rbbox = new BoundingBox(currentBox);
             setMinMax(rbbox, true, axis, split);
             //The right node left border is the plane most left
             node.setRightPlane(getMinMax(createBox(pivot, r), true, axis));
-            node.setRightChild(createNode(pivot, r, rbbox, depth + 1)); //Recursive call
+            node.setRightChild(createNode(pivot, r, rbbox, depth + 1, grain, tasks)); //Recursive call
 
             return node;
         }
@@ -378,14 +485,13 @@ public class BIHTree implements CollisionData {
         int p1 = index1 * 9;
         int p2 = index2 * 9;
 
-        // store p1 in tmp
-        System.arraycopy(pointData, p1, bihSwapTmp, 0, 9);
-
-        // copy p2 to p1
-        System.arraycopy(pointData, p2, pointData, p1, 9);
-
-        // copy tmp to p2
-        System.arraycopy(bihSwapTmp, 0, pointData, p2, 9);
+        // swap points, without a shared temporary array
+        // since subtrees can be constructed in parallel
+        for (int i = 0; i < 9; i++) {
+            float tmp = pointData[p1 + i];
+            pointData[p1 + i] = pointData[p2 + i];
+            pointData[p2 + i] = tmp;
+        }
 
         // swap indices
         int tmp2 = triIndices[index1];
@@ -393,6 +499,95 @@ public class BIHTree implements CollisionData {
         triIndices[index2] = tmp2;
     }
 
+    /**
+     * Intersects a ray with the triangle at the given index, same as 
+     * {@link Ray#intersects(com.jme3.math.Vector3f, com.jme3.math.Vector3f, com.jme3.math.Vector3f) }
+     * but reading the points directly and with a direction that does not
+     * need to be normalized.
+     */
+    float intersectTriangle(int index, float ox, float oy, float oz,
+                                       float dx, float dy, float dz) {
+        int p = index * 9;
+        float x0 = pointData[p], y0 = pointData[p + 1], z0 = pointData[p + 2];
+
+        float edge1X = pointData[p + 3] - x0;
+        float edge1Y = pointData[p + 4] - y0;
+        float edge1Z = pointData[p + 5] - z0;
+
+        float edge2X = pointData[p + 6] - x0;
+        float edge2Y = pointData[p + 7] - y0;
+        float edge2Z = pointData[p + 8] - z0;
+
+        float normX = ((edge1Y * edge2Z) - (edge1Z * edge2Y));
+        float normY = ((edge1Z * edge2X) - (edge1X * edge2Z));
+        float normZ = ((edge1X * edge2Y) - (edge1Y * edge2X));
+
+        float dirDotNorm = dx * normX + dy * normY + dz * normZ;
+
+        float diffX = ox - x0;
+        float diffY = oy - y0;
+        float diffZ = oz - z0;
+
+        float sign;
+        if (dirDotNorm > FastMath.FLT_EPSILON) {
+            sign = 1;
+        } else if (dirDotNorm < -FastMath.FLT_EPSILON) {
+            sign = -1f;
+            dirDotNorm = -dirDotNorm;
+        } else {
+            // ray and triangle are parallel
+            return Float.POSITIVE_INFINITY;
+        }
+
+        float dirDotDiffxEdge2 = sign * (dx * ((diffY * edge2Z) - (diffZ * edge2Y))
+                                       + dy * ((diffZ * edge2X) - (diffX * edge2Z))
+                                       + dz * ((diffX * edge2Y) - (diffY * edge2X)));
+        if (dirDotDiffxEdge2 < 0.0f) {
+            return Float.POSITIVE_INFINITY;
+        }
+
+        float dirDotEdge1xDiff = sign * (dx * ((edge1Y * diffZ) - (edge1Z * diffY))
+                                       + dy * ((edge1Z * diffX) - (edge1X * diffZ))
+                                       + dz * ((edge1X * diffY) - (edge1Y * diffX)));
+        if (dirDotEdge1xDiff < 0.0f || dirDotDiffxEdge2 + dirDotEdge1xDiff > dirDotNorm) {
+            return Float.POSITIVE_INFINITY;
+        }
+
+        float diffDotNorm = -sign * (diffX * normX + diffY * normY + diffZ * normZ);
+        if (diffDotNorm < 0.0f) {
+            return Float.POSITIVE_INFINITY;
+        }
+        return diffDotNorm / dirDotNorm;
+    }
+
+    /**
+     * Intersects a ray with the triangles of the mesh without allocating
+     * any objects, for batched queries.
+     * <p>
+     * The ray is given in the local space of the mesh, its direction 
+     * does not need to be normalized and the distances are measured in 
+     * multiples of the direction, so that a ray transformed from world 
+     * space keeps its world space distances.
+     * 
+     * @param tMax Intersections at this distance or farther are ignored
+     * @param anyHit If true, the first intersection found is returned
+     * instead of the closest one.
+     * @param store The distance of the intersection is stored in store[0]
+     * @return The index of the intersected triangle, or -1 if there is none.
+     */
+    public int intersectRay(float ox, float oy, float oz,
+                            float dx, float dy, float dz,
+                            float tMax, boolean anyHit, float[] store) {
+        if (root == null) {
+            return -1;
+        }
+        TempVars vars = TempVars.get();
+        int index = root.intersectRay(this, ox, oy, oz, dx, dy, dz, tMax, anyHit, 
+                                      store, vars.bihNodeStack, vars.bihRangeStack);
+        vars.release();
+        return index >= 0 ? triIndices[index] : -1;
+    }
+
     private int collideWithRay(Ray r,
             Matrix4f worldMatrix,
             BoundingVolume worldBound,
@@ -478,5 +673,6 @@ public class BIHTree implements CollisionData {
         maxTrisPerNode = ic.readInt("tris_per_node", 0);
         pointData = ic.readFloatArray("points", null);
         triIndices = ic.readIntArray("indices", null);
+        numTris = pointData != null ? pointData.length / 9 : 0;
     }
 }
@@ -0,0 +1,234 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.effect;
+
+import com.jme3.math.ColorRGBA;
+
+/**
+ * <code>ParticleData</code> stores the particles of a {@link ParticleEmitter}
+ * as primitive arrays instead of {@link Particle} objects.
+ * <p>
+ * The live particles are always kept packed in the range 
+ * <code>[0, getCount())</code> in emission order, vectors are interleaved (x, y, z) and
+ * colors are stored in the ABGR format expected by the particle meshes,
+ * so that simulation and vertex buffer updates are tight loops over
+ * contiguous memory.
+ * 
+ * @see ParticleEmitter#setPackedParticles(boolean) 
+ */
+public final class ParticleData {
+
+    /**
+     * Particle positions, 3 floats per particle.
+     */
+    public final float[] position;
+    
+    /**
+     * Particle velocities, 3 floats per particle.
+     */
+    public final float[] velocity;
+    
+    /**
+     * Particle colors, packed as in {@link ColorRGBA#asIntABGR() }.
+     */
+    public final int[] color;
+    
+    /**
+     * Particle size or radius.
+     */
+    public final float[] size;
+    
+    /**
+     * Particle remaining life, in seconds.
+     */
+    public final float[] life;
+    
+    /**
+     * The initial particle life.
+     */
+    public final float[] startLife;
+    
+    /**
+     * Particle rotation angle (in radians).
+     */
+    public final float[] angle;
+    
+    /**
+     * Particle rotation angle speed (in radians).
+     */
+    public final float[] rotateSpeed;
+    
+    /**
+     * Particle image index.
+     */
+    public final int[] imageIndex;
+    
+    private int count = 0;
+
+    /**
+     * Creates storage for the given maximum amount of particles.
+     * 
+     * @param capacity the maximum amount of particles
+     */
+    public ParticleData(int capacity) {
+        position = new float[capacity * 3];
+        velocity = new float[capacity * 3];
+        color = new int[capacity];
+        size = new float[capacity];
+        life = new float[capacity];
+        startLife = new float[capacity];
+        angle = new float[capacity];
+        rotateSpeed = new float[capacity];
+        imageIndex = new int[capacity];
+    }
+
+    /**
+     * @return the maximum amount of particles
+     */
+    public int getCapacity() {
+        return life.length;
+    }
+
+    /**
+     * @return the number of live particles, stored at the indices 
+     * <code>0</code> to <code>getCount() - 1</code>.
+     */
+    public int getCount() {
+        return count;
+    }
+
+    void setCount(int count) {
+        this.count = count;
+    }
+
+    /**
+     * Copies the particle at index <code>from</code> to the index <code>to</code>.
+     */
+    void move(int from, int to) {
+        int f3 = from * 3, t3 = to * 3;
+        position[t3] = position[f3];
+        position[t3 + 1] = position[f3 + 1];
+        position[t3 + 2] = position[f3 + 2];
+        velocity[t3] = velocity[f3];
+        velocity[t3 + 1] = velocity[f3 + 1];
+        velocity[t3 + 2] = velocity[f3 + 2];
+        color[to] = color[from];
+        size[to] = size[from];
+        life[to] = life[from];
+        startLife[to] = startLife[from];
+        angle[to] = angle[from];
+        rotateSpeed[to] = rotateSpeed[from];
+        imageIndex[to] = imageIndex[from];
+    }
+
+    /**
+     * Resets the particle at the given index to a dead state.
+     */
+    void clear(int index) {
+        life[index] = 0;
+        size[index] = 0;
+        color[index] = 0;
+        imageIndex[index] = 0;
+        angle[index] = 0;
+        rotateSpeed[index] = 0;
+    }
+
+    /**
+     * Removes the live particle at the given index, the particles after
+     * it are moved down to keep the emission order.
+     * 
+     * @param index the index of the particle to remove
+     */
+    void remove(int index) {
+        count--;
+        int tail = count - index;
+        if (tail > 0) {
+            int from = index + 1;
+            System.arraycopy(position, from * 3, position, index * 3, tail * 3);
+            System.arraycopy(velocity, from * 3, velocity, index * 3, tail * 3);
+            System.arraycopy(color, from, color, index, tail);
+            System.arraycopy(size, from, size, index, tail);
+            System.arraycopy(life, from, life, index, tail);
+            System.arraycopy(startLife, from, startLife, index, tail);
+            System.arraycopy(angle, from, angle, index, tail);
+            System.arraycopy(rotateSpeed, from, rotateSpeed, index, tail);
+            System.arraycopy(imageIndex, from, imageIndex, index, tail);
+        }
+        clear(count);
+    }
+
+    /**
+     * Copies the particle at the given index into a {@link Particle}.
+     * 
+     * @param index the index of the particle
+     * @param store the particle to store the result in
+     */
+    public void get(int index, Particle store) {
+        int i3 = index * 3;
+        store.position.set(position[i3], position[i3 + 1], position[i3 + 2]);
+        store.velocity.set(velocity[i3], velocity[i3 + 1], velocity[i3 + 2]);
+        int abgr = color[index];
+        store.color.set((abgr & 0xFF) / 255f,
+                        ((abgr >> 8) & 0xFF) / 255f,
+                        ((abgr >> 16) & 0xFF) / 255f,
+                        ((abgr >> 24) & 0xFF) / 255f);
+        store.size = size[index];
+        store.life = life[index];
+        store.startlife = startLife[index];
+        store.angle = angle[index];
+        store.rotateSpeed = rotateSpeed[index];
+        store.imageIndex = imageIndex[index];
+    }
+
+    /**
+     * Copies a {@link Particle} into the given index.
+     * 
+     * @param index the index of the particle
+     * @param particle the particle to copy
+     */
+    public void set(int index, Particle particle) {
+        int i3 = index * 3;
+        position[i3] = particle.position.x;
+        position[i3 + 1] = particle.position.y;
+        position[i3 + 2] = particle.position.z;
+        velocity[i3] = particle.velocity.x;
+        velocity[i3 + 1] = particle.velocity.y;
+        velocity[i3 + 2] = particle.velocity.z;
+        color[index] = particle.color.asIntABGR();
+        size[index] = particle.size;
+        life[index] = particle.life;
+        startLife[index] = particle.startlife;
+        angle[index] = particle.angle;
+        rotateSpeed[index] = particle.rotateSpeed;
+        imageIndex[index] = particle.imageIndex;
+    }
+}
@@ -54,7 +54,9 @@ import com.jme3.scene.Geometry;
 import com.jme3.scene.Spatial;
 import com.jme3.scene.control.Control;
 import com.jme3.util.TempVars;
+import com.jme3.util.WorkerPool;
 import java.io.IOException;
+import java.util.ArrayList;
 
 /**
  * <code>ParticleEmitter</code> is a special kind of geometry which simulates
@@ -82,6 +84,9 @@ public class ParticleEmitter extends Geometry {
     private ParticleInfluencer particleInfluencer = DEFAULT_INFLUENCER;
     private ParticleMesh.Type meshType;
     private Particle[] particles;
+    private ParticleData particleData;
+    private boolean packedParticles = false;
+    private int parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
     private int firstUnUsed;
     private int lastUsed;
 //    private int next = 0;
@@ -106,6 +111,14 @@ public class ParticleEmitter extends Geometry {
     private boolean worldSpace = true;
     //variable that helps with computations
     private transient Vector3f temp = new Vector3f();
+    private transient Particle influenced = new Particle();
+    private transient float[] packedBounds = new float[6];
+    
+    /**
+     * Default minimum number of live packed particles for which the 
+     * simulation is split across the worker threads.
+     */
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 16384;
 
     public static class ParticleEmitterControl implements Control {
 
@@ -160,7 +173,9 @@ public class ParticleEmitter extends Geometry {
         clone.shape = shape.deepClone();
 
         // Reinitialize particle list
-        clone.setNumParticles(particles.length);
+        clone.influenced = new Particle();
+        clone.packedBounds = new float[6];
+        clone.setNumParticles(getMaxNumParticles());
 
         clone.faceNormal = faceNormal.clone();
         clone.startColor = startColor.clone();
@@ -186,7 +201,7 @@ public class ParticleEmitter extends Geometry {
             default:
                 throw new IllegalStateException("Unrecognized particle type: " + meshType);
         }
-        clone.particleMesh.initParticleData(clone, clone.particles.length);
+        clone.particleMesh.initParticleData(clone, clone.getMaxNumParticles());
         clone.particleMesh.setImagesXY(clone.imagesX, clone.imagesY);
 
         return clone;
@@ -301,7 +316,7 @@ public class ParticleEmitter extends Geometry {
             default:
                 throw new IllegalStateException("Unrecognized particle type: " + meshType);
         }
-        this.setNumParticles(particles.length);
+        this.setNumParticles(getMaxNumParticles());
     }
 
     /**
@@ -338,6 +353,9 @@ public class ParticleEmitter extends Geometry {
      */
     public int getNumVisibleParticles() {
 //        return unusedIndices.size() + next;
+        if (packedParticles) {
+            return particleData.getCount();
+        }
         return lastUsed + 1;
     }
 
@@ -350,18 +368,27 @@ public class ParticleEmitter extends Geometry {
      * can exist at the same time with this emitter.
      */
     public final void setNumParticles(int numParticles) {
-        particles = new Particle[numParticles];
-        for (int i = 0; i < numParticles; i++) {
-            particles[i] = new Particle();
+        if (packedParticles) {
+            particles = null;
+            particleData = new ParticleData(numParticles);
+        } else {
+            particleData = null;
+            particles = new Particle[numParticles];
+            for (int i = 0; i < numParticles; i++) {
+                particles[i] = new Particle();
+            }
         }
         //We have to reinit the mesh's buffers with the new size
-        particleMesh.initParticleData(this, particles.length);
+        particleMesh.initParticleData(this, numParticles);
         particleMesh.setImagesXY(this.imagesX, this.imagesY);
         firstUnUsed = 0;
         lastUsed = -1;
     }
 
     public int getMaxNumParticles() {
+        if (packedParticles) {
+            return particleData.getCapacity();
+        }
         return particles.length;
     }
 
@@ -373,13 +400,89 @@ public class ParticleEmitter extends Geometry {
      * The size of the array is set to the <code>numParticles</code> value
      * specified in the constructor or {@link ParticleEmitter#setNumParticles(int) }
      * method. 
+     * <p>
+     * If {@link #setPackedParticles(boolean) packed particles} are used,
+     * the returned array is a copy of the particle data, changes made to
+     * it do not affect the emitter. Use {@link #getParticleData() } instead.
      * 
      * @return a list of all particles.
      */
     public Particle[] getParticles() {
+        if (packedParticles) {
+            Particle[] copy = new Particle[particleData.getCapacity()];
+            for (int i = 0; i < copy.length; i++) {
+                copy[i] = new Particle();
+                if (i < particleData.getCount()) {
+                    particleData.get(i, copy[i]);
+                }
+            }
+            return copy;
+        }
         return particles;
     }
 
+    /**
+     * Returns the packed particle storage, or null if
+     * {@link #setPackedParticles(boolean) packed particles} are not used.
+     * 
+     * @return the packed particle storage
+     */
+    public ParticleData getParticleData() {
+        return particleData;
+    }
+
+    /**
+     * Set to true to store the particles in a {@link ParticleData} instead of
+     * an array of {@link Particle} objects.
+     * 
+     * <p>Packed particles are simulated in tight loops over primitive arrays
+     * and streamed directly into the mesh buffers, which is much faster 
+     * for large emitters. Live particles are kept at the start of the 
+     * storage, so the index of a particle changes when other particles die.
+     * The {@link ParticleInfluencer} and {@link EmitterShape} still work
+     * on a {@link Particle} when a particle is emitted.
+     * 
+     * <p>Changing this setting kills all particles.
+     * 
+     * @param packedParticles true to use packed particle storage
+     */
+    public void setPackedParticles(boolean packedParticles) {
+        if (this.packedParticles != packedParticles) {
+            int numParticles = getMaxNumParticles();
+            this.packedParticles = packedParticles;
+            this.setNumParticles(numParticles);
+        }
+    }
+
+    /**
+     * @return true if packed particle storage is used.
+     * @see #setPackedParticles(boolean) 
+     */
+    public boolean isPackedParticles() {
+        return packedParticles;
+    }
+
+    /**
+     * Sets the minimum number of live packed particles for which the
+     * simulation is split across the {@link WorkerPool} threads.
+     * 
+     * @param parallelThreshold the minimum number of particles, 
+     * or <code>Integer.MAX_VALUE</code> to always simulate on the calling thread.
+     * @see #setPackedParticles(boolean) 
+     */
+    public void setParallelThreshold(int parallelThreshold) {
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    /**
+     * @return the minimum number of live packed particles for which the
+     * simulation is split across threads.
+     * @see #setParallelThreshold(int) 
+     */
+    public int getParallelThreshold() {
+        return parallelThreshold;
+    }
+
     /**
      * Get the normal which particles are facing. 
      * 
@@ -862,6 +965,52 @@ public class ParticleEmitter extends Geometry {
         return p;
     }
 
+    /**
+     * Emits a packed particle, the {@link ParticleInfluencer} works on a
+     * temporary {@link Particle} which is then copied to the storage.
+     * 
+     * @return the index of the new particle, or -1 if the storage is full
+     */
+    private int emitPackedParticle(Vector3f min, Vector3f max) {
+        int idx = particleData.getCount();
+        if (idx >= particleData.getCapacity()) {
+            return -1;
+        }
+
+        Particle p = influenced;
+        p.imageIndex = 0;
+        if (selectRandomImage) {
+            p.imageIndex = FastMath.nextRandomInt(0, imagesY - 1) * imagesX + FastMath.nextRandomInt(0, imagesX - 1);
+        }
+
+        p.startlife = lowLife + FastMath.nextRandomFloat() * (highLife - lowLife);
+        p.life = p.startlife;
+        p.color.set(startColor);
+        p.size = startSize;
+        p.angle = 0;
+        p.rotateSpeed = 0;
+        particleInfluencer.influenceParticle(p, shape);
+        if (worldSpace) {
+            worldTransform.transformVector(p.position, p.position);
+            worldTransform.getRotation().mult(p.velocity, p.velocity);
+        }
+        if (randomAngle) {
+            p.angle = FastMath.nextRandomFloat() * FastMath.TWO_PI;
+        }
+        if (rotateSpeed != 0) {
+            p.rotateSpeed = rotateSpeed * (0.2f + (FastMath.nextRandomFloat() * 2f - 1f) * .8f);
+        }
+
+        temp.set(p.position).addLocal(p.size, p.size, p.size);
+        max.maxLocal(temp);
+        temp.set(p.position).subtractLocal(p.size, p.size, p.size);
+        min.minLocal(temp);
+
+        particleData.set(idx, p);
+        particleData.setCount(idx + 1);
+        return idx;
+    }
+
     /**
      * Instantly emits all the particles possible to be emitted. Any particles
      * which are currently inactive will be spawned immediately.
@@ -887,7 +1036,11 @@ public class ParticleEmitter extends Geometry {
             max.set(Vector3f.NEGATIVE_INFINITY);
         }
 
-        while (emitParticle(min, max) != null);
+        if (packedParticles) {
+            while (emitPackedParticle(min, max) != -1);
+        } else {
+            while (emitParticle(min, max) != null);
+        }
 
         bbox.setMinMax(min, max);
         this.setBoundRefresh();
@@ -900,6 +1053,12 @@ public class ParticleEmitter extends Geometry {
      * particles will be dead and no longer visible.
      */
     public void killAllParticles() {
+        if (packedParticles) {
+            for (int i = particleData.getCount() - 1; i >= 0; --i) {
+                particleData.remove(i);
+            }
+            return;
+        }
         for (int i = 0; i < particles.length; ++i) {
             if (particles[i].life > 0) {
                 this.freeParticle(i);
@@ -914,6 +1073,12 @@ public class ParticleEmitter extends Geometry {
      * @see #getParticles() 
      */
     public void killParticle(int index){
+        if (packedParticles) {
+            if (index < particleData.getCount()) {
+                particleData.remove(index);
+            }
+            return;
+        }
         freeParticle(index);
     }
 
@@ -1024,6 +1189,177 @@ public class ParticleEmitter extends Geometry {
         vars.release();
     }
 
+    /**
+     * Simulates the packed particles in the range <code>[start, end)</code>.
+     * Particles whose life ends get a life of 0 and are removed afterwards 
+     * by the caller.
+     * 
+     * @param bounds min (x, y, z) and max (x, y, z) of the live particles, 
+     * extended by this method.
+     */
+    private void updatePackedParticles(int start, int end, float tpf, float[] bounds) {
+        ParticleData data = particleData;
+        float[] position = data.position;
+        float[] velocity = data.velocity;
+        float[] size = data.size;
+        float[] life = data.life;
+        float[] startLife = data.startLife;
+        float[] angle = data.angle;
+        float[] rotateSpeed = data.rotateSpeed;
+        int[] color = data.color;
+        int[] imageIndex = data.imageIndex;
+        
+        float gx = gravity.x * tpf, gy = gravity.y * tpf, gz = gravity.z * tpf;
+        float sr = startColor.r, sg = startColor.g, sb = startColor.b, sa = startColor.a;
+        float er = endColor.r, eg = endColor.g, eb = endColor.b, ea = endColor.a;
+        int numImages = selectRandomImage ? 0 : imagesX * imagesY;
+        float minX = bounds[0], minY = bounds[1], minZ = bounds[2];
+        float maxX = bounds[3], maxY = bounds[4], maxZ = bounds[5];
+        
+        for (int i = start; i < end; i++) {
+            float l = life[i] - tpf;
+            if (l <= 0) {
+                life[i] = 0;
+                continue;
+            }
+            life[i] = l;
+            
+            // applying gravity
+            int i3 = i * 3;
+            float vx = velocity[i3] - gx;
+            float vy = velocity[i3 + 1] - gy;
+            float vz = velocity[i3 + 2] - gz;
+            velocity[i3] = vx;
+            velocity[i3 + 1] = vy;
+            velocity[i3 + 2] = vz;
+            float px = position[i3] + vx * tpf;
+            float py = position[i3 + 1] + vy * tpf;
+            float pz = position[i3 + 2] + vz * tpf;
+            position[i3] = px;
+            position[i3 + 1] = py;
+            position[i3 + 2] = pz;
+            
+            // affecting color, size and angle
+            float b = (startLife[i] - l) / startLife[i];
+            float ib = 1 - b;
+            color[i] = (((int) ((ib * sa + b * ea) * 255) & 0xFF) << 24)
+                     | (((int) ((ib * sb + b * eb) * 255) & 0xFF) << 16)
+                     | (((int) ((ib * sg + b * eg) * 255) & 0xFF) << 8)
+                     | (((int) ((ib * sr + b * er) * 255) & 0xFF));
+            float s = FastMath.interpolateLinear(b, startSize, endSize);
+            size[i] = s;
+            angle[i] += rotateSpeed[i] * tpf;
+            
+            // Computing bounding volume
+            minX = Math.min(minX, px - s);
+            minY = Math.min(minY, py - s);
+            minZ = Math.min(minZ, pz - s);
+            maxX = Math.max(maxX, px + s);
+            maxY = Math.max(maxY, py + s);
+            maxZ = Math.max(maxZ, pz + s);
+
+            if (numImages != 0) {
+                imageIndex[i] = (int) (b * numImages);
+            }
+        }
+        
+        bounds[0] = minX; bounds[1] = minY; bounds[2] = minZ;
+        bounds[3] = maxX; bounds[4] = maxY; bounds[5] = maxZ;
+    }
+    
+    /**
+     * Simulates a range of packed particles on a worker thread.
+     */
+    private final class PackedUpdateTask implements Runnable {
+        
+        private final int start, end;
+        private final float tpf;
+        private final float[] bounds = new float[6];
+
+        PackedUpdateTask(int start, int end, float tpf, float[] bounds) {
+            this.start = start;
+            this.end = end;
+            this.tpf = tpf;
+            System.arraycopy(bounds, 0, this.bounds, 0, 6);
+        }
+        
+        public void run() {
+            updatePackedParticles(start, end, tpf, bounds);
+        }
+    }
+    
+    private void updatePackedState(float tpf) {
+        // Force world transform to update
+        this.getWorldTransform();
+
+        TempVars vars = TempVars.get();
+
+        Vector3f min = vars.vect1.set(Vector3f.POSITIVE_INFINITY);
+        Vector3f max = vars.vect2.set(Vector3f.NEGATIVE_INFINITY);
+        float[] bounds = packedBounds;
+        bounds[0] = bounds[1] = bounds[2] = Float.POSITIVE_INFINITY;
+        bounds[3] = bounds[4] = bounds[5] = Float.NEGATIVE_INFINITY;
+        
+        ParticleData data = particleData;
+        int count = data.getCount();
+        int numTasks = count < parallelThreshold ? 1 : WorkerPool.getThreadCount() + 1;
+        if (numTasks > 1) {
+            ArrayList<PackedUpdateTask> tasks = new ArrayList<PackedUpdateTask>(numTasks);
+            int chunk = (count + numTasks - 1) / numTasks;
+            for (int start = 0; start < count; start += chunk) {
+                tasks.add(new PackedUpdateTask(start, Math.min(count, start + chunk), tpf, bounds));
+            }
+            WorkerPool.invokeAll(tasks);
+            for (PackedUpdateTask task : tasks) {
+                for (int i = 0; i < 3; i++) {
+                    bounds[i] = Math.min(bounds[i], task.bounds[i]);
+                    bounds[i + 3] = Math.max(bounds[i + 3], task.bounds[i + 3]);
+                }
+            }
+        } else {
+            updatePackedParticles(0, count, tpf, bounds);
+        }
+        
+        // Compact the live particles, keeping their order
+        float[] life = data.life;
+        int live = 0;
+        for (int i = 0; i < count; i++) {
+            if (life[i] != 0) {
+                if (live != i) {
+                    data.move(i, live);
+                }
+                live++;
+            }
+        }
+        for (int i = live; i < count; i++) {
+            data.clear(i);
+        }
+        data.setCount(live);
+        
+        // Spawns particles within the tpf timeslot with proper age
+        float interval = 1f / particlesPerSec;
+        tpf += timeDifference;
+        while (tpf > interval){
+            tpf -= interval;
+            int idx = emitPackedParticle(min, max);
+            if (idx != -1){
+                updatePackedParticles(idx, idx + 1, tpf, bounds);
+                if (data.life[idx] == 0){
+                    data.remove(idx);
+                }
+            }
+        }
+        timeDifference = tpf;
+
+        min.minLocal(temp.set(bounds[0], bounds[1], bounds[2]));
+        max.maxLocal(temp.set(bounds[3], bounds[4], bounds[5]));
+        BoundingBox bbox = (BoundingBox) this.getMesh().getBound();
+        bbox.setMinMax(min, max);
+        this.setBoundRefresh();
+
+        vars.release();
+    }
+
     /**
      * Set to enable or disable the particle emitter
      * 
@@ -1053,7 +1389,11 @@ public class ParticleEmitter extends Geometry {
      */
     public void updateFromControl(float tpf) {
         if (enabled) {
-            this.updateParticleState(tpf);
+            if (packedParticles) {
+                this.updatePackedState(tpf);
+            } else {
+                this.updateParticleState(tpf);
+            }
         }
     }
 
@@ -1081,15 +1421,24 @@ public class ParticleEmitter extends Geometry {
 
             inverseRotation = this.getWorldRotation().toRotationMatrix(vars.tempMat3).invertLocal();
         }
-        particleMesh.updateParticleData(particles, cam, inverseRotation);
+        if (packedParticles) {
+            particleMesh.updateParticleData(particleData, cam, inverseRotation);
+        } else {
+            particleMesh.updateParticleData(particles, cam, inverseRotation);
+        }
         if (!worldSpace) {
             vars.release();
         }
     }
 
     public void preload(RenderManager rm, ViewPort vp) {
-        this.updateParticleState(0);
-        particleMesh.updateParticleData(particles, vp.getCamera(), Matrix3f.IDENTITY);
+        if (packedParticles) {
+            this.updatePackedState(0);
+            particleMesh.updateParticleData(particleData, vp.getCamera(), Matrix3f.IDENTITY);
+        } else {
+            this.updateParticleState(0);
+            particleMesh.updateParticleData(particles, vp.getCamera(), Matrix3f.IDENTITY);
+        }
     }
 
     @Override
@@ -1099,7 +1448,9 @@ public class ParticleEmitter extends Geometry {
         oc.write(shape, "shape", DEFAULT_SHAPE);
         oc.write(meshType, "meshType", ParticleMesh.Type.Triangle);
         oc.write(enabled, "enabled", true);
-        oc.write(particles.length, "numParticles", 0);
+        oc.write(getMaxNumParticles(), "numParticles", 0);
+        oc.write(packedParticles, "packedParticles", false);
+        oc.write(parallelThreshold, "parallelThreshold", DEFAULT_PARALLEL_THRESHOLD);
         oc.write(particlesPerSec, "particlesPerSec", 0);
         oc.write(lowLife, "lowLife", 0);
         oc.write(highLife, "highLife", 0);
@@ -1134,6 +1485,8 @@ public class ParticleEmitter extends Geometry {
 
         meshType = ic.readEnum("meshType", ParticleMesh.Type.class, ParticleMesh.Type.Triangle);
         int numParticles = ic.readInt("numParticles", 0);
+        packedParticles = ic.readBoolean("packedParticles", false);
+        parallelThreshold = ic.readInt("parallelThreshold", DEFAULT_PARALLEL_THRESHOLD);
 
 
         enabled = ic.readBoolean("enabled", true);
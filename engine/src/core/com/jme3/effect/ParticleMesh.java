@@ -44,6 +44,8 @@ import com.jme3.scene.Mesh;
  */
 public abstract class ParticleMesh extends Mesh {
 
+    private transient Particle[] particleCopy;
+
     /**
      * Type of particle mesh
      */
@@ -82,4 +84,36 @@ public abstract class ParticleMesh extends Mesh {
      */
     public abstract void updateParticleData(Particle[] particles, Camera cam, Matrix3f inverseRotation);
 
+    /**
+     * Update the particle visual data from 
+     * {@link ParticleEmitter#setPackedParticles(boolean) packed particles}. 
+     * Typically called every frame.
+     * <p>
+     * The default implementation copies the particles into {@link Particle}
+     * objects and calls {@link #updateParticleData(com.jme3.effect.Particle[], com.jme3.renderer.Camera, com.jme3.math.Matrix3f) },
+     * subclasses should override it to read the particle data directly.
+     */
+    public void updateParticleData(ParticleData particles, Camera cam, Matrix3f inverseRotation) {
+        if (particleCopy == null || particleCopy.length != particles.getCapacity()) {
+            particleCopy = new Particle[particles.getCapacity()];
+            for (int i = 0; i < particleCopy.length; i++) {
+                particleCopy[i] = new Particle();
+            }
+        }
+        for (int i = 0; i < particleCopy.length; i++) {
+            Particle p = particleCopy[i];
+            if (i < particles.getCount()) {
+                particles.get(i, p);
+            } else {
+                p.color.set(0, 0, 0, 0);
+                p.size = 0;
+                p.life = 0;
+                p.angle = 0;
+                p.rotateSpeed = 0;
+                p.imageIndex = 0;
+            }
+        }
+        updateParticleData(particleCopy, cam, inverseRotation);
+    }
+
 }
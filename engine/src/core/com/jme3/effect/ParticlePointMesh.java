@@ -46,6 +46,7 @@ public class ParticlePointMesh extends ParticleMesh {
 
     private int imagesX = 1;
     private int imagesY = 1;
+    private int packedCount = 0;
 
     @Override
     public void setImagesXY(int imagesX, int imagesY) {
@@ -109,6 +110,7 @@ public class ParticlePointMesh extends ParticleMesh {
             setBuffer(tvb);
         }
         
+        packedCount = 0;
         updateCounts();
     }
 
@@ -133,6 +135,7 @@ public class ParticlePointMesh extends ParticleMesh {
         colors.rewind();
         sizes.rewind();
         texcoords.rewind();
+        packedCount = particles.length;
         for (int i = 0; i < particles.length; i++){
             Particle p = particles[i];
             
@@ -164,4 +167,78 @@ public class ParticlePointMesh extends ParticleMesh {
         svb.updateData(sizes);
         tvb.updateData(texcoords);
     }
+
+    @Override
+    public void updateParticleData(ParticleData particles, Camera cam, Matrix3f inverseRotation) {
+        VertexBuffer pvb = getBuffer(VertexBuffer.Type.Position);
+        FloatBuffer positions = (FloatBuffer) pvb.getData();
+
+        VertexBuffer cvb = getBuffer(VertexBuffer.Type.Color);
+        ByteBuffer colors = (ByteBuffer) cvb.getData();
+
+        VertexBuffer svb = getBuffer(VertexBuffer.Type.Size);
+        FloatBuffer sizes = (FloatBuffer) svb.getData();
+
+        VertexBuffer tvb = getBuffer(VertexBuffer.Type.TexCoord);
+        FloatBuffer texcoords = (FloatBuffer) tvb.getData();
+
+        float sizeScale = emitter.getWorldScale().x;
+        int count = particles.getCount();
+
+        // live particles are packed at the start of the arrays,
+        // so they can be copied in bulk
+        positions.clear();
+        positions.put(particles.position, 0, count * 3);
+        
+        colors.clear();
+        colors.asIntBuffer().put(particles.color, 0, count);
+
+        sizes.clear();
+        if (sizeScale == 1f) {
+            sizes.put(particles.size, 0, count);
+        } else {
+            float[] size = particles.size;
+            for (int i = 0; i < count; i++) {
+                sizes.put(size[i] * sizeScale);
+            }
+        }
+
+        texcoords.clear();
+        int[] imageIndex = particles.imageIndex;
+        for (int i = 0; i < count; i++) {
+            putTexCoords(texcoords, imageIndex[i]);
+        }
+        
+        // only the particles that died since the last update must be cleared
+        for (int i = count; i < packedCount; i++) {
+            positions.put(0).put(0).put(0);
+            sizes.put(0);
+            colors.putInt(i * 4, 0);
+            putTexCoords(texcoords, 0);
+        }
+        packedCount = count;
+
+        positions.clear();
+        colors.clear();
+        sizes.clear();
+        texcoords.clear();
+
+        // force renderer to re-send data to GPU
+        pvb.updateData(positions);
+        cvb.updateData(colors);
+        svb.updateData(sizes);
+        tvb.updateData(texcoords);
+    }
+
+    private void putTexCoords(FloatBuffer texcoords, int imageIndex) {
+        int imgX = imageIndex % imagesX;
+        int imgY = (imageIndex - imgX) / imagesY;
+
+        float startX = ((float) imgX) / imagesX;
+        float startY = ((float) imgY) / imagesY;
+        float endX   = startX + (1f / imagesX);
+        float endY   = startY + (1f / imagesY);
+
+        texcoords.put(startX).put(startY).put(endX).put(endY);
+    }
 }
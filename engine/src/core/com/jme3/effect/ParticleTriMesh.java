@@ -49,6 +49,7 @@ public class ParticleTriMesh extends ParticleMesh {
     private int imagesX = 1;
     private int imagesY = 1;
     private boolean uniqueTexCoords = false;
+    private int packedCount = 0;
 //    private ParticleComparator comparator = new ParticleComparator();
     private ParticleEmitter emitter;
 //    private Particle[] particlesCopy;
@@ -131,6 +132,7 @@ public class ParticleTriMesh extends ParticleMesh {
             setBuffer(ivb);
         }
         
+        packedCount = 0;
         updateCounts();
     }
     
@@ -185,6 +187,7 @@ public class ParticleTriMesh extends ParticleMesh {
         colors.clear();
         texcoords.clear();
         Vector3f faceNormal = emitter.getFaceNormal();
+        packedCount = particles.length;
         
         for (int i = 0; i < particles.length; i++){
             Particle p = particles[i];
@@ -285,4 +288,140 @@ public class ParticleTriMesh extends ParticleMesh {
         cvb.updateData(colors);
     }
 
+    @Override
+    public void updateParticleData(ParticleData particles, Camera cam, Matrix3f inverseRotation) {
+        VertexBuffer pvb = getBuffer(VertexBuffer.Type.Position);
+        FloatBuffer positions = (FloatBuffer) pvb.getData();
+
+        VertexBuffer cvb = getBuffer(VertexBuffer.Type.Color);
+        ByteBuffer colors = (ByteBuffer) cvb.getData();
+
+        VertexBuffer tvb = getBuffer(VertexBuffer.Type.TexCoord);
+        FloatBuffer texcoords = (FloatBuffer) tvb.getData();
+
+        Vector3f camUp   = cam.getUp();
+        Vector3f camLeft = cam.getLeft();
+        Vector3f camDir  = cam.getDirection();
+
+        inverseRotation.multLocal(camUp);
+        inverseRotation.multLocal(camLeft);
+        inverseRotation.multLocal(camDir);
+
+        boolean facingVelocity = emitter.isFacingVelocity();
+        Vector3f faceNormal = emitter.getFaceNormal();
+
+        TempVars vars = TempVars.get();
+        Vector3f up = vars.vect3;
+        Vector3f left = vars.vect4;
+        
+        float[] position = particles.position;
+        float[] velocity = particles.velocity;
+        float[] size = particles.size;
+        float[] angle = particles.angle;
+        int[] color = particles.color;
+        int[] imageIndex = particles.imageIndex;
+        int count = particles.getCount();
+
+        // update data in vertex buffers
+        positions.clear();
+        colors.clear();
+        texcoords.clear();
+        
+        for (int i = 0; i < count; i++){
+            int i3 = i * 3;
+            float s = size[i];
+            float a = angle[i];
+            
+            if (facingVelocity){
+                left.set(velocity[i3], velocity[i3 + 1], velocity[i3 + 2]).normalizeLocal();
+                camDir.cross(left, up);
+                up.multLocal(s);
+                left.multLocal(s);
+            }else if (faceNormal != null){
+                up.set(faceNormal).crossLocal(Vector3f.UNIT_X);
+                faceNormal.cross(up, left);
+                up.multLocal(s);
+                left.multLocal(s);
+                if (a != 0) {
+                    vars.vect1.set(faceNormal).normalizeLocal();
+                    vars.quat1.fromAngleNormalAxis(a, vars.vect1);
+                    vars.quat1.multLocal(left);
+                    vars.quat1.multLocal(up);
+                }
+            }else if (a != 0){
+                float cos = FastMath.cos(a) * s;
+                float sin = FastMath.sin(a) * s;
+
+                left.x = camLeft.x * cos + camUp.x * sin;
+                left.y = camLeft.y * cos + camUp.y * sin;
+                left.z = camLeft.z * cos + camUp.z * sin;
+
+                up.x = camLeft.x * -sin + camUp.x * cos;
+                up.y = camLeft.y * -sin + camUp.y * cos;
+                up.z = camLeft.z * -sin + camUp.z * cos;
+            }else{
+                up.set(camUp);
+                left.set(camLeft);
+                up.multLocal(s);
+                left.multLocal(s);
+            }
+
+            float px = position[i3], py = position[i3 + 1], pz = position[i3 + 2];
+            
+            positions.put(px + left.x + up.x)
+                     .put(py + left.y + up.y)
+                     .put(pz + left.z + up.z);
+
+            positions.put(px - left.x + up.x)
+                     .put(py - left.y + up.y)
+                     .put(pz - left.z + up.z);
+
+            positions.put(px + left.x - up.x)
+                     .put(py + left.y - up.y)
+                     .put(pz + left.z - up.z);
+
+            positions.put(px - left.x - up.x)
+                     .put(py - left.y - up.y)
+                     .put(pz - left.z - up.z);
+
+            if (uniqueTexCoords){
+                int imgX = imageIndex[i] % imagesX;
+                int imgY = (imageIndex[i] - imgX) / imagesY;
+
+                float startX = ((float) imgX) / imagesX;
+                float startY = ((float) imgY) / imagesY;
+                float endX   = startX + (1f / imagesX);
+                float endY   = startY + (1f / imagesY);
+
+                texcoords.put(startX).put(endY);
+                texcoords.put(endX).put(endY);
+                texcoords.put(startX).put(startY);
+                texcoords.put(endX).put(startY);
+            }
+
+            int abgr = color[i];
+            colors.putInt(abgr);
+            colors.putInt(abgr);
+            colors.putInt(abgr);
+            colors.putInt(abgr);
+        }
+        vars.release();
+        
+        // only the particles that died since the last update must be cleared
+        for (int i = count * 12; i < packedCount * 12; i++) {
+            positions.put(0);
+        }
+        packedCount = count;
+
+        positions.clear();
+        colors.clear();
+        texcoords.clear();
+        if (uniqueTexCoords){
+            tvb.updateData(texcoords);
+        }
+
+        // force renderer to re-send data to GPU
+        pvb.updateData(positions);
+        cvb.updateData(colors);
+    }
 }
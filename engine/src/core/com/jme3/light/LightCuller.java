@@ -0,0 +1,456 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.light;
+
+import com.jme3.bounding.BoundingBox;
+import com.jme3.bounding.BoundingSphere;
+import com.jme3.bounding.BoundingVolume;
+import com.jme3.math.FastMath;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Spatial;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+
+/**
+ * <code>LightCuller</code> removes the lights that cannot affect a geometry
+ * from the list of lights the geometry is rendered with.
+ * <p>
+ * A geometry inherits all the lights of its ancestors, so with many 
+ * {@link PointLight point} and {@link SpotLight spot} lights attached to 
+ * a node, every geometry under it would be rendered with all of them. 
+ * The culler only keeps the lights whose sphere of influence intersects 
+ * the world bound of the geometry, other lights 
+ * (e.g. {@link DirectionalLight} or {@link AmbientLight}) are always kept. 
+ * <p>
+ * Light lists with many bounded lights are put into a uniform grid the 
+ * first time they are needed after a call to {@link #reset() }, which the 
+ * {@link com.jme3.renderer.RenderManager} does once for every viewport.
+ * The lights must not move while a viewport is rendered.
+ */
+public class LightCuller {
+
+    private final IdentityHashMap<LightList, LightGrid> grids = new IdentityHashMap<LightList, LightGrid>();
+    private final ArrayList<LightGrid> gridPool = new ArrayList<LightGrid>();
+    private int gridsUsed = 0;
+    private int indexThreshold = 16;
+
+    /**
+     * Forgets the spatial indices of the lights, must be called when lights
+     * may have moved, before rendering a viewport.
+     */
+    public void reset() {
+        grids.clear();
+        gridsUsed = 0;
+    }
+
+    /**
+     * @return The minimum number of lights a light list must contain to be 
+     * put into a spatial index.
+     */
+    public int getIndexThreshold() {
+        return indexThreshold;
+    }
+
+    /**
+     * Sets the minimum number of lights a light list must contain to be 
+     * put into a spatial index. Smaller lists are tested light by light.
+     * 
+     * @param indexThreshold The minimum number of lights, 16 by default.
+     */
+    public void setIndexThreshold(int indexThreshold) {
+        if (indexThreshold < 1) {
+            throw new IllegalArgumentException("Index threshold must be at least 1");
+        }
+        this.indexThreshold = indexThreshold;
+        reset();
+    }
+
+    /**
+     * Computes the lights that affect the given geometry. 
+     * The lights are sorted like the 
+     * {@link Spatial#getWorldLightList() world light list} of the geometry.
+     * 
+     * @param geom The geometry to filter the lights for
+     * @param store The list that receives the lights
+     * @return The lights affecting the geometry, either <code>store</code> or,
+     * if no light can be removed, the world light list of the geometry.
+     */
+    public LightList filterLights(Geometry geom, LightList store) {
+        LightList worldLights = geom.getWorldLightList();
+        BoundingVolume bound = geom.getWorldBound();
+        if (worldLights.size() == 0 || bound == null) {
+            return worldLights;
+        }
+
+        store.clear();
+        store.setOwner(geom);
+
+        // the world light list is made of the local light lists of
+        // the geometry and its ancestors
+        int total = 0;
+        for (Spatial s = geom; s != null; s = s.getParent()) {
+            total += s.getLocalLightList().size();
+        }
+        if (total != worldLights.size()) {
+            // the world light list was changed directly, or the scene
+            // was modified after its geometric state was updated
+            filterList(worldLights, bound, store);
+        } else {
+            for (Spatial s = geom; s != null; s = s.getParent()) {
+                LightList localLights = s.getLocalLightList();
+                if (localLights.size() >= indexThreshold) {
+                    getGrid(localLights).query(bound, store);
+                } else if (localLights.size() > 0) {
+                    filterList(localLights, bound, store);
+                }
+            }
+        }
+
+        // geometries expect their lights to be sorted
+        store.sort(true);
+        return store;
+    }
+
+    private LightGrid getGrid(LightList lights) {
+        LightGrid grid = grids.get(lights);
+        if (grid == null) {
+            if (gridsUsed == gridPool.size()) {
+                gridPool.add(new LightGrid());
+            }
+            grid = gridPool.get(gridsUsed++);
+            grid.build(lights);
+            grids.put(lights, grid);
+        }
+        return grid;
+    }
+
+    private static void filterList(LightList lights, BoundingVolume bound, LightList store) {
+        for (int i = 0; i < lights.size(); i++) {
+            Light light = lights.get(i);
+            float radius = getRadius(light);
+            if (radius <= 0 || intersects(bound, getPosition(light), radius)) {
+                store.add(light);
+            }
+        }
+    }
+
+    /**
+     * @return The radius of the light influence, or 0 if it is unbounded.
+     */
+    private static float getRadius(Light light) {
+        switch (light.getType()) {
+            case Point:
+                return ((PointLight) light).getRadius();
+            case Spot:
+                // the sphere containing the cone
+                return ((SpotLight) light).getSpotRange();
+            default:
+                return 0;
+        }
+    }
+
+    private static Vector3f getPosition(Light light) {
+        if (light.getType() == Light.Type.Point) {
+            return ((PointLight) light).getPosition();
+        } else {
+            return ((SpotLight) light).getPosition();
+        }
+    }
+
+    private static boolean intersects(BoundingVolume bound, Vector3f center, float radius) {
+        return intersects(bound, center.x, center.y, center.z, radius);
+    }
+
+    private static boolean intersects(BoundingVolume bound, float x, float y, float z, float radius) {
+        switch (bound.getType()) {
+            case AABB: {
+                BoundingBox box = (BoundingBox) bound;
+                Vector3f c = box.getCenter();
+                float dx = Math.max(Math.abs(x - c.x) - box.getXExtent(), 0);
+                float dy = Math.max(Math.abs(y - c.y) - box.getYExtent(), 0);
+                float dz = Math.max(Math.abs(z - c.z) - box.getZExtent(), 0);
+                return dx * dx + dy * dy + dz * dz <= radius * radius;
+            }
+            case Sphere: {
+                BoundingSphere sphere = (BoundingSphere) bound;
+                Vector3f c = sphere.getCenter();
+                float dx = x - c.x;
+                float dy = y - c.y;
+                float dz = z - c.z;
+                float r = radius + sphere.getRadius();
+                return dx * dx + dy * dy + dz * dz <= r * r;
+            }
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * Uniform grid of the bounded lights of a light list. Each cell stores
+     * the lights whose sphere of influence overlaps it.
+     */
+    private static final class LightGrid {
+
+        private static final int MAX_CELLS_PER_LIGHT = 8;
+
+        private LightList lights;
+        private int[] unbounded = new int[4];
+        private int numUnbounded;
+
+        // the bounded lights, by index in the grid
+        private int[] slots = new int[16];
+        private float[] spheres = new float[64];
+        private int[] visited = new int[16];
+        private int numBounded;
+        private int queryId;
+
+        private float minX, minY, minZ, invCellSize;
+        private int sizeX, sizeY, sizeZ;
+        private int[] cellStart = new int[1];
+        private int[] cellLights = new int[16];
+
+        private int[] found = new int[16];
+
+        void build(LightList lights) {
+            this.lights = lights;
+            numUnbounded = 0;
+            numBounded = 0;
+            int count = lights.size();
+            if (slots.length < count) {
+                slots = new int[count];
+                spheres = new float[count * 4];
+                visited = new int[count];
+                found = new int[count];
+            }
+            if (unbounded.length < count) {
+                unbounded = new int[count];
+            }
+
+            float maxX, maxY, maxZ;
+            minX = minY = minZ = Float.POSITIVE_INFINITY;
+            maxX = maxY = maxZ = Float.NEGATIVE_INFINITY;
+            float sumRadius = 0;
+            for (int i = 0; i < count; i++) {
+                Light light = lights.get(i);
+                float radius = getRadius(light);
+                if (radius <= 0) {
+                    unbounded[numUnbounded++] = i;
+                    continue;
+                }
+                Vector3f pos = getPosition(light);
+                int s = numBounded * 4;
+                spheres[s] = pos.x;
+                spheres[s + 1] = pos.y;
+                spheres[s + 2] = pos.z;
+                spheres[s + 3] = radius;
+                slots[numBounded++] = i;
+                minX = Math.min(minX, pos.x - radius);
+                minY = Math.min(minY, pos.y - radius);
+                minZ = Math.min(minZ, pos.z - radius);
+                maxX = Math.max(maxX, pos.x + radius);
+                maxY = Math.max(maxY, pos.y + radius);
+                maxZ = Math.max(maxZ, pos.z + radius);
+                sumRadius += radius;
+            }
+            Arrays.fill(visited, 0, numBounded, 0);
+            queryId = 0;
+            if (numBounded == 0) {
+                sizeX = sizeY = sizeZ = 0;
+                return;
+            }
+
+            // cells about the size of a light, with a bounded cell count
+            float cellSize = 2f * sumRadius / numBounded;
+            float extent = Math.max(maxX - minX, Math.max(maxY - minY, maxZ - minZ));
+            cellSize = Math.max(cellSize, extent / 64f);
+            int maxCells = numBounded * MAX_CELLS_PER_LIGHT;
+            while (true) {
+                sizeX = (int) FastMath.ceil((maxX - minX) / cellSize) + 1;
+                sizeY = (int) FastMath.ceil((maxY - minY) / cellSize) + 1;
+                sizeZ = (int) FastMath.ceil((maxZ - minZ) / cellSize) + 1;
+                if ((long) sizeX * sizeY * sizeZ <= maxCells) {
+                    break;
+                }
+                cellSize *= 1.5f;
+            }
+            invCellSize = 1f / cellSize;
+
+            int numCells = sizeX * sizeY * sizeZ;
+            if (cellStart.length < numCells + 1) {
+                cellStart = new int[numCells + 1];
+            } else {
+                Arrays.fill(cellStart, 0, numCells + 1, 0);
+            }
+
+            // count the lights of every cell, then fill the cells
+            int total = 0;
+            for (int pass = 0; pass < 2; pass++) {
+                for (int i = 0; i < numBounded; i++) {
+                    int s = i * 4;
+                    float r = spheres[s + 3];
+                    int x0 = cellX(spheres[s] - r), x1 = cellX(spheres[s] + r);
+                    int y0 = cellY(spheres[s + 1] - r), y1 = cellY(spheres[s + 1] + r);
+                    int z0 = cellZ(spheres[s + 2] - r), z1 = cellZ(spheres[s + 2] + r);
+                    for (int z = z0; z <= z1; z++) {
+                        for (int y = y0; y <= y1; y++) {
+                            int cell = (z * sizeY + y) * sizeX + x0;
+                            for (int x = x0; x <= x1; x++, cell++) {
+                                if (pass == 0) {
+                                    cellStart[cell + 1]++;
+                                } else {
+                                    cellLights[--cellStart[cell + 1]] = i;
+                                }
+                            }
+                        }
+                    }
+                }
+                if (pass == 0) {
+                    // cellStart[c + 1] becomes the end of cell c
+                    for (int c = 1; c <= numCells; c++) {
+                        cellStart[c] += cellStart[c - 1];
+                    }
+                    total = cellStart[numCells];
+                    if (cellLights.length < total) {
+                        cellLights = new int[total];
+                    }
+                }
+            }
+            // after the second pass, cellStart[c + 1] is the start of cell c
+            System.arraycopy(cellStart, 1, cellStart, 0, numCells);
+            cellStart[numCells] = total;
+        }
+
+        private int cellX(float x) {
+            return clamp((int) ((x - minX) * invCellSize), sizeX);
+        }
+
+        private int cellY(float y) {
+            return clamp((int) ((y - minY) * invCellSize), sizeY);
+        }
+
+        private int cellZ(float z) {
+            return clamp((int) ((z - minZ) * invCellSize), sizeZ);
+        }
+
+        private static int clamp(int cell, int size) {
+            return cell < 0 ? 0 : (cell >= size ? size - 1 : cell);
+        }
+
+        void query(BoundingVolume bound, LightList store) {
+            int numFound = 0;
+            if (numBounded > 0) {
+                float cx, cy, cz, ex, ey, ez;
+                Vector3f center = bound.getCenter();
+                cx = center.x;
+                cy = center.y;
+                cz = center.z;
+                if (bound.getType() == BoundingVolume.Type.AABB) {
+                    BoundingBox box = (BoundingBox) bound;
+                    ex = box.getXExtent();
+                    ey = box.getYExtent();
+                    ez = box.getZExtent();
+                } else if (bound.getType() == BoundingVolume.Type.Sphere) {
+                    ex = ey = ez = ((BoundingSphere) bound).getRadius();
+                } else {
+                    ex = ey = ez = Float.POSITIVE_INFINITY;
+                }
+
+                float maxX = minX + sizeX / invCellSize;
+                float maxY = minY + sizeY / invCellSize;
+                float maxZ = minZ + sizeZ / invCellSize;
+                if (cx + ex < minX || cx - ex > maxX
+                 || cy + ey < minY || cy - ey > maxY
+                 || cz + ez < minZ || cz - ez > maxZ) {
+                    // outside of all the lights
+                } else {
+                    int x0 = cellX(cx - ex), x1 = cellX(cx + ex);
+                    int y0 = cellY(cy - ey), y1 = cellY(cy + ey);
+                    int z0 = cellZ(cz - ez), z1 = cellZ(cz + ez);
+                    int numCells = (x1 - x0 + 1) * (y1 - y0 + 1) * (z1 - z0 + 1);
+                    if (numCells >= numBounded) {
+                        // large geometry, test every light
+                        for (int i = 0; i < numBounded; i++) {
+                            if (test(i, bound)) {
+                                found[numFound++] = slots[i];
+                            }
+                        }
+                    } else {
+                        numFound = queryCells(x0, x1, y0, y1, z0, z1, bound);
+                    }
+                }
+            }
+
+            for (int i = 0; i < numUnbounded; i++) {
+                found[numFound++] = unbounded[i];
+            }
+            // keep the order of the light list
+            Arrays.sort(found, 0, numFound);
+            for (int i = 0; i < numFound; i++) {
+                store.add(lights.get(found[i]));
+            }
+        }
+
+        private int queryCells(int x0, int x1, int y0, int y1, int z0, int z1, BoundingVolume bound) {
+            int id = ++queryId;
+            if (id == 0) {
+                // wrapped around, forget the old visits
+                Arrays.fill(visited, 0, numBounded, 0);
+                id = queryId = 1;
+            }
+            int numFound = 0;
+            for (int z = z0; z <= z1; z++) {
+                for (int y = y0; y <= y1; y++) {
+                    int cell = (z * sizeY + y) * sizeX + x0;
+                    for (int x = x0; x <= x1; x++, cell++) {
+                        for (int j = cellStart[cell], end = cellStart[cell + 1]; j < end; j++) {
+                            int i = cellLights[j];
+                            if (visited[i] != id) {
+                                visited[i] = id;
+                                if (test(i, bound)) {
+                                    found[numFound++] = slots[i];
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+            return numFound;
+        }
+
+        private boolean test(int i, BoundingVolume bound) {
+            int s = i * 4;
+            return intersects(bound, spheres[s], spheres[s + 1], spheres[s + 2], spheres[s + 3]);
+        }
+    }
+}
@@ -134,6 +134,11 @@ public class MatParam implements Savable, Cloneable {
      * <p>
      * It is assumed the value is of the same {@link MatParam#getVarType() type}
      * as this material parameter.
+     * <p>
+     * The defines of the material's techniques are not updated, if the
+     * parameter is bound to a define use 
+     * {@link Material#setParam(java.lang.String, com.jme3.shader.VarType, java.lang.Object) }
+     * instead.
      *
      * @param value the value of this material parameter.
      */
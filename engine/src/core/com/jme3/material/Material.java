@@ -99,6 +99,9 @@ public class Material implements CloneableSmartAsset, Cloneable, Savable {
     private boolean receivesShadows = false;
     private int sortingId = -1;
     private transient ColorRGBA ambientLightColor = new ColorRGBA(0, 0, 0, 1);
+    // the lights given to render(Geometry, LightList, RenderManager)
+    private transient Geometry renderGeometry;
+    private transient LightList renderLights;
 
     public Material(MaterialDef def) {
         if (def == null) {
@@ -467,8 +470,16 @@ public class Material implements CloneableSmartAsset, Cloneable, Savable {
             val.setValue(value);
         }
         
-        if (technique != null) {
-            technique.notifyParamChanged(name, type, value);
+        notifyParamChanged(name, type, value);
+    }
+
+    /**
+     * Tells every technique created so far that a parameter was modified, 
+     * so that switching techniques does not have to recompute the defines.
+     */
+    private void notifyParamChanged(String name, VarType type, Object value) {
+        for (Technique tech : techniques.values()) {
+            tech.notifyParamChanged(name, type, value);
         }
     }
 
@@ -497,9 +508,7 @@ public class Material implements CloneableSmartAsset, Cloneable, Savable {
             }
             sortingId = -1;
         }
-        if (technique != null) {
-            technique.notifyParamChanged(name, null, null);
-        }
+        notifyParamChanged(name, null, null);
     }
 
     /**
@@ -524,9 +533,7 @@ public class Material implements CloneableSmartAsset, Cloneable, Savable {
             val.setTextureValue(value);
         }
 
-        if (technique != null) {
-            technique.notifyParamChanged(name, type, nextTexUnit - 1);
-        }
+        notifyParamChanged(name, type, nextTexUnit - 1);
 
         // need to recompute sort ID
         sortingId = -1;
@@ -677,7 +684,7 @@ public class Material implements CloneableSmartAsset, Cloneable, Savable {
             return;
         }
 
-        LightList lightList = g.getWorldLightList();
+        LightList lightList = getRenderLights(g);
         Uniform lightColor = shader.getUniform("g_LightColor");
         Uniform lightPos = shader.getUniform("g_LightPosition");
         Uniform lightDir = shader.getUniform("g_LightDirection");
@@ -747,7 +754,7 @@ public class Material implements CloneableSmartAsset, Cloneable, Savable {
     protected void renderMultipassLighting(Shader shader, Geometry g, RenderManager rm) {
 
         Renderer r = rm.getRenderer();
-        LightList lightList = g.getWorldLightList();
+        LightList lightList = getRenderLights(g);
         Uniform lightDir = shader.getUniform("g_LightDirection");
         Uniform lightColor = shader.getUniform("g_LightColor");
         Uniform lightPos = shader.getUniform("g_LightPosition");
@@ -832,9 +839,9 @@ public class Material implements CloneableSmartAsset, Cloneable, Savable {
             r.renderMesh(g.getMesh(), g.getLodLevel(), 1);
         }
 
-        if (isFirstLight && lightList.size() > 0) {
-            // There are only ambient lights in the scene. Render
-            // a dummy "normal light" so we can see the ambient
+        if (isFirstLight && g.getWorldLightList().size() > 0) {
+            // There are only ambient lights in the scene, or the lights
+            // were culled. Render a dummy "normal light" so we can see the ambient
             ambientColor.setValue(VarType.Vector4, getAmbientColor(lightList));
             lightColor.setValue(VarType.Vector4, ColorRGBA.BlackNoAlpha);
             lightPos.setValue(VarType.Vector4, nullDirLight);
@@ -988,12 +995,45 @@ public class Material implements CloneableSmartAsset, Cloneable, Savable {
         }
     }
 
+    /**
+     * Called by {@link RenderManager} to render the geometry by
+     * using this material and the given lights.
+     * <p>
+     * The lights are used in place of the geometry's world light list by
+     * {@link #render(com.jme3.scene.Geometry, com.jme3.renderer.RenderManager) }
+     * and the lighting methods it calls, so subclasses overriding them
+     * receive them too.
+     *
+     * @param geom The geometry to render
+     * @param lights The lights to render the geometry with, usually 
+     * the lights of the geometry's world light list that affect it.
+     * @param rm The render manager requesting the rendering
+     */
+    public void render(Geometry geom, LightList lights, RenderManager rm) {
+        renderGeometry = geom;
+        renderLights = lights;
+        try {
+            render(geom, rm);
+        } finally {
+            renderGeometry = null;
+            renderLights = null;
+        }
+    }
+
+    /**
+     * @return the lights the geometry is being rendered with.
+     */
+    private LightList getRenderLights(Geometry geom) {
+        return geom == renderGeometry ? renderLights : geom.getWorldLightList();
+    }
+
     /**
      * Called by {@link RenderManager} to render the geometry by
      * using this material.
      *
      * @param geom The geometry to render
      * @param rm The render manager requesting the rendering
+     * @see #render(com.jme3.scene.Geometry, com.jme3.light.LightList, com.jme3.renderer.RenderManager) 
      */
     public void render(Geometry geom, RenderManager rm) {
         autoSelectTechnique(rm);
@@ -1002,6 +1042,7 @@ public class Material implements CloneableSmartAsset, Cloneable, Savable {
 
         TechniqueDef techDef = technique.getDef();
 
+        // the geometry is still rendered, unlit, when its lights were culled
         if (techDef.getLightMode() == LightMode.MultiPass
                 && geom.getWorldLightList().size() == 0) {
             return;
@@ -1043,7 +1084,7 @@ public class Material implements CloneableSmartAsset, Cloneable, Savable {
                 updateLightListUniforms(shader, geom, 4);
                 break;
             case FixedPipeline:
-                r.setLighting(geom.getWorldLightList());
+                r.setLighting(getRenderLights(geom));
                 break;
             case MultiPass:
                 // NOTE: Special case!
@@ -50,6 +50,7 @@ public class Technique /* implements Savable */ {
     private DefineList defines;
     private Shader shader;
     private boolean needReload = true;
+    private boolean definesInitialized = false;
 
     /**
      * Creates a new technique instance that implements the given
@@ -63,7 +64,7 @@ public class Technique /* implements Savable */ {
         this.def = def;
         if (def.isUsingShaders()) {
             this.worldBindUniforms = new ArrayList<Uniform>();
-            this.defines = new DefineList();
+            this.defines = def.createDefineList();
         }
     }
 
@@ -113,8 +114,8 @@ public class Technique /* implements Savable */ {
     void notifyParamChanged(String paramName, VarType type, Object value) {
         // Check if there's a define binding associated with this
         // parameter.
-        String defineName = def.getShaderParamDefine(paramName);
-        if (defineName != null) {
+        int defineId = def.getShaderParamDefineId(paramName);
+        if (defineId != -1) {
             // There is a define. Change it on the define list.
             // The "needReload" variable will determine
             // if the shader will be reloaded when the material
@@ -122,10 +123,10 @@ public class Technique /* implements Savable */ {
             
             if (value == null) {
                 // Clear the define.
-                needReload = defines.remove(defineName) || needReload;
+                needReload = defines.remove(defineId) || needReload;
             } else {
                 // Set the define.
-                needReload = defines.set(defineName, type, value) || needReload;
+                needReload = defines.set(defineId, type, value) || needReload;
             }
         }
     }
@@ -176,24 +177,20 @@ public class Technique /* implements Savable */ {
             return;
         }
         
-        if (techniqueSwitched) {
-            // If the technique was switched, check if the define list changed
-            // based on material parameters.
-            DefineList newDefines = new DefineList();
+        if (techniqueSwitched && !definesInitialized) {
+            // The first time the technique is used, set the defines
+            // based on material parameters. From then on the material 
+            // keeps them up to date, see notifyParamChanged(). Values set
+            // directly with MatParam.setValue() are not seen.
             Collection<MatParam> params = owner.getParams();
             for (MatParam param : params) {
-                String defineName = def.getShaderParamDefine(param.getName());
-                if (defineName != null) {
-                    newDefines.set(defineName, param.getVarType(), param.getValue());
+                int defineId = def.getShaderParamDefineId(param.getName());
+                if (defineId != -1) {
+                    defines.set(defineId, param.getVarType(), param.getValue());
                 }
             }
-            
-            if (!defines.getCompiled().equals(newDefines.getCompiled())) {
-                // Defines were changed, update define list
-                defines.clear();
-                defines.addFrom(newDefines);
-                needReload = true;
-            }
+            definesInitialized = true;
+            needReload = true;
         }
 
         if (needReload) {
@@ -202,17 +199,13 @@ public class Technique /* implements Savable */ {
     }
 
     private void loadShader(AssetManager manager) {
-        // recompute define list
-        DefineList allDefines = new DefineList();
-        allDefines.addFrom(def.getShaderPresetDefines());
-        allDefines.addFrom(defines);
-
-        ShaderKey key = new ShaderKey(def.getVertexShaderName(),
-                                      def.getFragmentShaderName(),
-                                      allDefines,
-                                      def.getVertexShaderLanguage(),
-                                      def.getFragmentShaderLanguage());
-        shader = manager.loadShader(key);
+        Shader newShader = def.getShader(manager, defines);
+        if (newShader == shader) {
+            // the defines changed back to the current variant
+            needReload = false;
+            return;
+        }
+        shader = newShader;
 
         // register the world bound uniforms
         worldBindUniforms.clear();
@@ -31,10 +31,13 @@
  */
 package com.jme3.material;
 
+import com.jme3.asset.AssetManager;
 import com.jme3.export.*;
 import com.jme3.renderer.Caps;
 import com.jme3.renderer.Renderer;
 import com.jme3.shader.DefineList;
+import com.jme3.shader.Shader;
+import com.jme3.shader.ShaderKey;
 import com.jme3.shader.UniformBinding;
 import com.jme3.shader.VarType;
 import java.io.IOException;
@@ -42,6 +45,8 @@ import java.util.ArrayList;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Describes a technique definition.
@@ -120,6 +125,13 @@ public class TechniqueDef implements Savable {
     private HashMap<String, String> defineParams;
     private ArrayList<UniformBinding> worldBinds;
 
+    // the define slots and the shader of each variant, the cache is shared
+    // by the materials using the technique, which may be loaded on other threads
+    private ArrayList<String> defineNames = new ArrayList<String>();
+    private HashMap<String, Integer> defineParamIds;
+    private ConcurrentHashMap<DefineList, Shader> shaderCache = new ConcurrentHashMap<DefineList, Shader>();
+    private AtomicInteger shaderCacheMisses = new AtomicInteger();
+
     /**
      * Creates a new technique definition.
      * <p>
@@ -265,6 +277,30 @@ public class TechniqueDef implements Savable {
         return defineParams.get(paramName);
     }
 
+    /**
+     * Returns the slot of the define which the given material parameter 
+     * influences, in the define lists created by {@link #createDefineList() }.
+     * 
+     * @param paramName The parameter name to look up
+     * @return The define slot, or -1 if the parameter has no define.
+     */
+    public int getShaderParamDefineId(String paramName) {
+        if (defineParamIds == null) {
+            return -1;
+        }
+        Integer id = defineParamIds.get(paramName);
+        return id == null ? -1 : id.intValue();
+    }
+
+    /**
+     * Creates an empty define list using the define slots of this technique.
+     * 
+     * @return a new define list
+     */
+    public DefineList createDefineList() {
+        return new DefineList(defineNames);
+    }
+
     /**
      * Adds a define linked to a material parameter.
      * <p>
@@ -280,8 +316,15 @@ public class TechniqueDef implements Savable {
     public void addShaderParamDefine(String paramName, String defineName){
         if (defineParams == null) {
             defineParams = new HashMap<String, String>();
+            defineParamIds = new HashMap<String, Integer>();
         }
         defineParams.put(paramName, defineName);
+        int id = defineNames.indexOf(defineName);
+        if (id == -1) {
+            defineNames.add(defineName);
+            id = defineNames.size() - 1;
+        }
+        defineParamIds.put(paramName, id);
     }
 
     /**
@@ -396,6 +439,58 @@ public class TechniqueDef implements Savable {
         return worldBinds;
     }
 
+    /**
+     * Returns the shader of a variant of this technique. The shaders are
+     * cached by their define list, so the shader of a variant is normally only
+     * loaded from the asset manager once. This method is thread safe, if 
+     * several threads load the same variant the first shader cached is used.
+     * 
+     * @param manager The asset manager to load the shader with
+     * @param defines The defines of the variant, created by 
+     * {@link #createDefineList() }
+     * @return The shader of the variant
+     */
+    public Shader getShader(AssetManager manager, DefineList defines) {
+        Shader shader = shaderCache.get(defines);
+        if (shader == null) {
+            DefineList allDefines = new DefineList();
+            allDefines.addFrom(presetDefines);
+            allDefines.addFrom(defines);
+
+            ShaderKey key = new ShaderKey(vertName, fragName, allDefines, vertLanguage, fragLanguage);
+            shader = manager.loadShader(key);
+            shaderCacheMisses.incrementAndGet();
+            Shader cached = shaderCache.putIfAbsent(defines.clone(), shader);
+            if (cached != null) {
+                shader = cached;
+            }
+        }
+        return shader;
+    }
+
+    /**
+     * @return The number of shader variants loaded by this technique
+     */
+    public int getShaderCacheSize() {
+        return shaderCache.size();
+    }
+
+    /**
+     * @return The number of times a shader variant had to be loaded
+     * from the asset manager.
+     */
+    public int getShaderCacheMisses() {
+        return shaderCacheMisses.get();
+    }
+
+    /**
+     * Clears the shader variants of this technique, e.g. after the 
+     * shader sources were changed.
+     */
+    public void clearShaderCache() {
+        shaderCache.clear();
+    }
+
     public void write(JmeExporter ex) throws IOException{
         OutputCapsule oc = ex.getCapsule(this);
         oc.write(name, "name", null);
@@ -34,6 +34,7 @@ package com.jme3.post;
 import com.jme3.asset.AssetManager;
 import com.jme3.export.*;
 import com.jme3.material.Material;
+import com.jme3.profile.FrameProfiler;
 import com.jme3.renderer.*;
 import com.jme3.renderer.queue.RenderQueue;
 import com.jme3.texture.FrameBuffer;
@@ -207,11 +208,13 @@ public class FilterPostProcessor implements SceneProcessor, Savable {
     }
 
     public void postQueue(RenderQueue rq) {
-
+        FrameProfiler profiler = renderManager.getProfiler();
         for (Iterator<Filter> it = filters.iterator(); it.hasNext();) {
             Filter filter = it.next();
             if (filter.isEnabled()) {
+                if (profiler != null) profiler.begin(filter.getName());
                 filter.postQueue(rq);
+                if (profiler != null) profiler.end();
             }
         }
 
@@ -227,9 +230,11 @@ public class FilterPostProcessor implements SceneProcessor, Savable {
         Texture2D tex = filterTexture;
         FrameBuffer buff = sceneFb;
         boolean msDepth = depthTexture != null && depthTexture.getImage().getMultiSamples() > 1;
+        FrameProfiler profiler = renderManager.getProfiler();
         for (int i = 0; i < filters.size(); i++) {
             Filter filter = filters.get(i);
             if (filter.isEnabled()) {
+                if (profiler != null) profiler.begin(filter.getName());
                 if (filter.getPostRenderPasses() != null) {
                     for (Iterator<Filter.Pass> it1 = filter.getPostRenderPasses().iterator(); it1.hasNext();) {
                         Filter.Pass pass = it1.next();
@@ -278,6 +283,7 @@ public class FilterPostProcessor implements SceneProcessor, Savable {
 
                 }
                 renderProcessing(r, buff, mat);
+                if (profiler != null) profiler.end();
             }
         }
     }
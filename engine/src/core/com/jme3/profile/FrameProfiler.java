@@ -0,0 +1,446 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.profile;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * <code>FrameProfiler</code> records where the time of each frame goes
+ * as a hierarchy of named markers.
+ * <p>
+ * The application calls {@link #beginFrame() } once per frame, the engine
+ * and user code then enclose the sections to measure between 
+ * {@link #begin(java.lang.String) } and {@link #end() }, sections begun 
+ * inside another one being nested under it:
+ * <code><pre>
+ * FrameProfiler profiler = renderManager.getProfiler();
+ * if (profiler != null) profiler.begin("AI");
+ * updateAgents();
+ * if (profiler != null) profiler.end();
+ * </pre></code>
+ * The markers are written into preallocated ring buffers, recording one
+ * costs two calls to System.nanoTime() and does not allocate. The buffers
+ * keep the last frames, which can be displayed with the 
+ * {@link com.jme3.app.ProfilerView} or written to a CSV file or a 
+ * Chrome trace (chrome://tracing) for offline analysis.
+ * <p>
+ * Only the thread that calls {@link #beginFrame() } is profiled, markers 
+ * set by other threads are ignored. Sections left open at the end of the 
+ * frame are closed at that time.
+ */
+public class FrameProfiler {
+
+    /**
+     * The deepest nesting recorded, deeper markers are counted but ignored.
+     */
+    public static final int MAX_DEPTH = 64;
+
+    private final int eventCapacity;
+    private final String[] eventNames;
+    private final int[] eventDepths;
+    private final long[] eventStarts;
+    private final long[] eventEnds;
+    private long eventCount = 0;
+
+    private final int frameCapacity;
+    private final long[] frameFirstEvents;
+    private final long[] frameLastEvents;
+    private final long[] frameStarts;
+    private final long[] frameEnds;
+    private long frameCount = 0;
+
+    private final long[] stack = new long[MAX_DEPTH];
+    private int depth = 0;
+    private boolean inFrame = false;
+    private long currentFirstEvent;
+    private long currentStart;
+    private Thread thread;
+    private boolean enabled = true;
+
+    /**
+     * Creates a profiler keeping up to 65536 markers of the last 
+     * 256 frames.
+     */
+    public FrameProfiler() {
+        this(1 << 16, 256);
+    }
+
+    /**
+     * Creates a profiler.
+     * 
+     * @param eventCapacity The number of markers kept
+     * @param frameCapacity The number of frames kept
+     */
+    public FrameProfiler(int eventCapacity, int frameCapacity) {
+        if (eventCapacity <= 0 || frameCapacity <= 0) {
+            throw new IllegalArgumentException("Capacities must be positive");
+        }
+        this.eventCapacity = eventCapacity;
+        eventNames = new String[eventCapacity];
+        eventDepths = new int[eventCapacity];
+        eventStarts = new long[eventCapacity];
+        eventEnds = new long[eventCapacity];
+
+        this.frameCapacity = frameCapacity;
+        frameFirstEvents = new long[frameCapacity];
+        frameLastEvents = new long[frameCapacity];
+        frameStarts = new long[frameCapacity];
+        frameEnds = new long[frameCapacity];
+    }
+
+    /**
+     * Enables or disables recording. Takes effect at the next frame.
+     * 
+     * @param enabled True to record the frames
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @return True if the frames are recorded.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Ends the current frame, if any, and begins a new one on the calling 
+     * thread. Called by the application at the beginning of its update.
+     */
+    public void beginFrame() {
+        long time = System.nanoTime();
+        if (inFrame) {
+            endFrame(time);
+        }
+        if (!enabled) {
+            return;
+        }
+        thread = Thread.currentThread();
+        inFrame = true;
+        currentFirstEvent = eventCount;
+        currentStart = time;
+    }
+
+    /**
+     * Ends the current frame without beginning a new one, e.g. when the
+     * application is paused.
+     */
+    public void endFrame() {
+        if (inFrame) {
+            endFrame(System.nanoTime());
+        }
+    }
+
+    private void endFrame(long time) {
+        // close the sections left open
+        while (depth > 0) {
+            depth--;
+            if (depth < MAX_DEPTH) {
+                eventEnds[index(stack[depth])] = time;
+            }
+        }
+        int frame = (int) (frameCount % frameCapacity);
+        frameFirstEvents[frame] = currentFirstEvent;
+        frameLastEvents[frame] = eventCount;
+        frameStarts[frame] = currentStart;
+        frameEnds[frame] = time;
+        frameCount++;
+        inFrame = false;
+        thread = null;
+    }
+
+    private int index(long event) {
+        return (int) (event % eventCapacity);
+    }
+
+    /**
+     * Begins a section nested in the currently open one.
+     * 
+     * @param name The name of the section, the string is kept so it 
+     * should not be built for each call.
+     */
+    public void begin(String name) {
+        if (!inFrame || Thread.currentThread() != thread) {
+            return;
+        }
+        if (depth < MAX_DEPTH) {
+            long event = eventCount++;
+            int i = index(event);
+            eventNames[i] = name;
+            eventDepths[i] = depth;
+            eventStarts[i] = System.nanoTime();
+            eventEnds[i] = eventStarts[i];
+            stack[depth] = event;
+        }
+        depth++;
+    }
+
+    /**
+     * Ends the last section begun.
+     */
+    public void end() {
+        if (!inFrame || depth == 0 || Thread.currentThread() != thread) {
+            return;
+        }
+        depth--;
+        if (depth < MAX_DEPTH) {
+            eventEnds[index(stack[depth])] = System.nanoTime();
+        }
+    }
+
+    /**
+     * @return The number of frames recorded since the profiler was created.
+     */
+    public long getTotalFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * @return The number of complete frames that can be queried, 
+     * frame 0 being the last one.
+     */
+    public int getFrameCount() {
+        int count = (int) Math.min(frameCount, frameCapacity);
+        long oldestEvent = eventCount - eventCapacity;
+        for (int i = 0; i < count; i++) {
+            if (frameFirstEvents[frame(i)] < oldestEvent) {
+                // the markers of older frames were overwritten
+                return i;
+            }
+        }
+        return count;
+    }
+
+    private int frame(int framesAgo) {
+        if (framesAgo < 0 || framesAgo >= Math.min(frameCount, frameCapacity)) {
+            throw new IndexOutOfBoundsException("Frame " + framesAgo + " is not available");
+        }
+        return (int) ((frameCount - 1 - framesAgo) % frameCapacity);
+    }
+
+    /**
+     * @param frame The frame, 0 for the last complete frame
+     * @return The System.nanoTime() at which the frame began.
+     */
+    public long getFrameStart(int frame) {
+        return frameStarts[frame(frame)];
+    }
+
+    /**
+     * @param frame The frame, 0 for the last complete frame
+     * @return The System.nanoTime() at which the frame ended.
+     */
+    public long getFrameEnd(int frame) {
+        return frameEnds[frame(frame)];
+    }
+
+    /**
+     * @param frame The frame, 0 for the last complete frame
+     * @return The number of sections recorded in the frame, in the
+     * order in which they began.
+     */
+    public int getSectionCount(int frame) {
+        int f = frame(frame);
+        return (int) (frameLastEvents[f] - frameFirstEvents[f]);
+    }
+
+    private int event(int frame, int section) {
+        int f = frame(frame);
+        long event = frameFirstEvents[f] + section;
+        if (section < 0 || event >= frameLastEvents[f]) {
+            throw new IndexOutOfBoundsException("Section " + section + " of frame " + frame);
+        }
+        return index(event);
+    }
+
+    /**
+     * @param frame The frame, 0 for the last complete frame
+     * @param section The index of the section in the frame
+     * @return The name of the section.
+     */
+    public String getSectionName(int frame, int section) {
+        return eventNames[event(frame, section)];
+    }
+
+    /**
+     * @param frame The frame, 0 for the last complete frame
+     * @param section The index of the section in the frame
+     * @return The nesting depth of the section, 0 for the outermost sections.
+     */
+    public int getSectionDepth(int frame, int section) {
+        return eventDepths[event(frame, section)];
+    }
+
+    /**
+     * @param frame The frame, 0 for the last complete frame
+     * @param section The index of the section in the frame
+     * @return The System.nanoTime() at which the section began.
+     */
+    public long getSectionStart(int frame, int section) {
+        return eventStarts[event(frame, section)];
+    }
+
+    /**
+     * @param frame The frame, 0 for the last complete frame
+     * @param section The index of the section in the frame
+     * @return The System.nanoTime() at which the section ended.
+     */
+    public long getSectionEnd(int frame, int section) {
+        return eventEnds[event(frame, section)];
+    }
+
+    /**
+     * Sums the time spent in the sections with the given name.
+     * 
+     * @param frame The frame, 0 for the last complete frame
+     * @param name The name of the sections
+     * @return The total duration in nanoseconds.
+     */
+    public long getTime(int frame, String name) {
+        long total = 0;
+        int count = getSectionCount(frame);
+        for (int i = 0; i < count; i++) {
+            int e = event(frame, i);
+            if (name.equals(eventNames[e])) {
+                total += eventEnds[e] - eventStarts[e];
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Writes the recorded frames to a CSV table, oldest first. Each frame
+     * is written as a section named "Frame" at depth 0 followed by its 
+     * sections, one level deeper. Times are in microseconds since the 
+     * beginning of the oldest frame.
+     * 
+     * @param out The writer to write to, it is not closed
+     * @throws IOException If writing fails
+     */
+    public void writeCsv(Writer out) throws IOException {
+        int frames = getFrameCount();
+        long origin = frames > 0 ? getFrameStart(frames - 1) : 0;
+        out.write("frame,name,depth,start_us,duration_us\n");
+        for (int f = frames - 1; f >= 0; f--) {
+            long number = frameCount - 1 - f;
+            writeCsvRow(out, number, "Frame", 0, 
+                        getFrameStart(f) - origin, getFrameEnd(f) - getFrameStart(f));
+            int count = getSectionCount(f);
+            for (int s = 0; s < count; s++) {
+                int e = event(f, s);
+                writeCsvRow(out, number, eventNames[e], eventDepths[e] + 1,
+                            eventStarts[e] - origin, eventEnds[e] - eventStarts[e]);
+            }
+        }
+        out.flush();
+    }
+
+    private static void writeCsvRow(Writer out, long frame, String name, int depth, 
+                                    long start, long duration) throws IOException {
+        out.write(Long.toString(frame));
+        out.write(',');
+        String text = String.valueOf(name);
+        if (text.indexOf(',') >= 0 || text.indexOf('"') >= 0 || text.indexOf('\n') >= 0) {
+            out.write('"');
+            out.write(text.replace("\"", "\"\""));
+            out.write('"');
+        } else {
+            out.write(text);
+        }
+        out.write(',');
+        out.write(Integer.toString(depth));
+        out.write(',');
+        writeMicros(out, start);
+        out.write(',');
+        writeMicros(out, duration);
+        out.write('\n');
+    }
+
+    private static void writeMicros(Writer out, long nanos) throws IOException {
+        out.write(Long.toString(nanos / 1000));
+        out.write('.');
+        String fraction = Long.toString(1000 + nanos % 1000);
+        out.write(fraction, 1, 3);
+    }
+
+    /**
+     * Writes the recorded frames in the Trace Event Format, which can be 
+     * loaded in chrome://tracing or other trace viewers. Each frame is 
+     * written as an event named "Frame" enclosing its sections.
+     * 
+     * @param out The writer to write to, it is not closed
+     * @throws IOException If writing fails
+     */
+    public void writeChromeTrace(Writer out) throws IOException {
+        int frames = getFrameCount();
+        long origin = frames > 0 ? getFrameStart(frames - 1) : 0;
+        out.write("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[");
+        boolean first = true;
+        for (int f = frames - 1; f >= 0; f--) {
+            writeTraceEvent(out, first, "Frame", getFrameStart(f) - origin, 
+                            getFrameEnd(f) - getFrameStart(f));
+            first = false;
+            int count = getSectionCount(f);
+            for (int s = 0; s < count; s++) {
+                int e = event(f, s);
+                writeTraceEvent(out, false, eventNames[e], eventStarts[e] - origin, 
+                                eventEnds[e] - eventStarts[e]);
+            }
+        }
+        out.write("\n]}\n");
+        out.flush();
+    }
+
+    private static void writeTraceEvent(Writer out, boolean first, String name, 
+                                        long start, long duration) throws IOException {
+        out.write(first ? "\n{\"name\":\"" : ",\n{\"name\":\"");
+        String text = String.valueOf(name);
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.write('\\');
+                out.write(c);
+            } else if (c < 0x20) {
+                out.write(String.format("\\u%04x", (int) c));
+            } else {
+                out.write(c);
+            }
+        }
+        out.write("\",\"cat\":\"jme3\",\"ph\":\"X\",\"pid\":1,\"tid\":1,\"ts\":");
+        writeMicros(out, start);
+        out.write(",\"dur\":");
+        writeMicros(out, duration);
+        out.write('}');
+    }
+}
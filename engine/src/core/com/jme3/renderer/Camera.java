@@ -188,6 +188,14 @@ public class Camera implements Savable, Cloneable {
      * children.
      */
     private int planeState;
+    /**
+     * Incremented every time the frustum planes change.
+     */
+    private int frustumVersion;
+    /**
+     * The number of bounding volumes tested by contains().
+     */
+    private int boundTests;
     protected int width;
     protected int height;
     protected boolean viewportChanged = true;
@@ -326,6 +334,7 @@ public class Camera implements Savable, Cloneable {
             worldPlane[i].setNormal(cam.worldPlane[i].getNormal());
             worldPlane[i].setConstant(cam.worldPlane[i].getConstant());
         }
+        frustumVersion++;
         
         this.parallelProjection = cam.parallelProjection;
         if(cam.projectionMatrixOverride != null) {
@@ -889,6 +898,28 @@ public class Camera implements Savable, Cloneable {
         this.planeState = planeState;
     }
 
+    /**
+     * <code>getFrustumVersion</code> returns a number that changes every time
+     * the frustum planes of the camera change, so that culling results can 
+     * be reused while the camera does not move.
+     *
+     * @return the version of the frustum planes.
+     */
+    public int getFrustumVersion() {
+        return frustumVersion;
+    }
+
+    /**
+     * <code>getBoundTestCount</code> returns the number of bounding volumes 
+     * tested against the frustum planes by 
+     * {@link #contains(com.jme3.bounding.BoundingVolume) } so far. 
+     *
+     * @return the number of bounding volumes tested.
+     */
+    public int getBoundTestCount() {
+        return boundTests;
+    }
+
     /**
      * <code>getViewPortLeft</code> gets the left boundary of the viewport
      *
@@ -1015,6 +1046,7 @@ public class Camera implements Savable, Cloneable {
             return FrustumIntersect.Inside;
         }
 
+        boundTests++;
         int mask;
         FrustumIntersect rVal = FrustumIntersect.Inside;
 
@@ -1272,6 +1304,7 @@ public class Camera implements Savable, Cloneable {
         viewMatrix.fromFrame(location, direction, up, left);
         
         vars.release();
+        frustumVersion++;
         
 //        viewMatrix.transposeLocal();
         updateViewProjection();
@@ -31,12 +31,15 @@
  */
 package com.jme3.renderer;
 
+import com.jme3.light.LightCuller;
+import com.jme3.light.LightList;
 import com.jme3.material.Material;
 import com.jme3.material.MaterialDef;
 import com.jme3.material.RenderState;
 import com.jme3.material.Technique;
 import com.jme3.math.*;
 import com.jme3.post.SceneProcessor;
+import com.jme3.profile.FrameProfiler;
 import com.jme3.renderer.queue.GeometryList;
 import com.jme3.renderer.queue.RenderQueue;
 import com.jme3.renderer.queue.RenderQueue.Bucket;
@@ -79,6 +82,12 @@ public class RenderManager {
     private Matrix4f orthoMatrix = new Matrix4f();
     private String tmpTech;
     private boolean handleTranlucentBucket = true;
+    private LightCuller lightCuller = new LightCuller();
+    private LightList culledLights = new LightList(null);
+    private boolean lightCulling = false;
+    private boolean coherentCulling = false;
+    private int spatialsCulled;
+    private FrameProfiler profiler;
 
     /**
      * Create a high-level rendering interface over the
@@ -358,6 +367,26 @@ public class RenderManager {
         uniformBindingManager.setTimer(timer);
     }
 
+    /**
+     * Sets the profiler recording the time taken to render each viewport,
+     * set by the {@link com.jme3.app.Application}.
+     * 
+     * @param profiler The profiler, or null to disable profiling
+     */
+    public void setProfiler(FrameProfiler profiler) {
+        this.profiler = profiler;
+    }
+
+    /**
+     * Returns the profiler set with {@link #setProfiler(com.jme3.profile.FrameProfiler) }.
+     * Scene processors and filters can use it to record their own sections.
+     * 
+     * @return The profiler, or null if profiling is disabled.
+     */
+    public FrameProfiler getProfiler() {
+        return profiler;
+    }
+
     /**
      * Returns the forced technique name set.
      * 
@@ -426,6 +455,72 @@ public class RenderManager {
         this.handleTranlucentBucket = handleTranslucentBucket;
     }
 
+    /**
+     * True if the lights that cannot affect a geometry are removed before
+     * the geometry is rendered.
+     * 
+     * @return Whether or not lights are culled.
+     * 
+     * @see #setLightCulling(boolean) 
+     */
+    public boolean isLightCulling() {
+        return lightCulling;
+    }
+
+    /**
+     * Enable or disable light culling. When enabled, a geometry is only 
+     * rendered with the point and spot lights whose radius reaches its
+     * world bound, instead of all the lights in its 
+     * {@link Spatial#getWorldLightList() world light list}. 
+     * The number of lights considered and applied is reported in the
+     * {@link Renderer#getStatistics() statistics}. The default is disabled.
+     * 
+     * @param lightCulling Whether or not lights should be culled.
+     * 
+     * @see LightCuller
+     */
+    public void setLightCulling(boolean lightCulling) {
+        this.lightCulling = lightCulling;
+    }
+
+    /**
+     * True if the culling results of the previous frame are reused.
+     * 
+     * @return Whether or not culling is temporally coherent.
+     * 
+     * @see #setCoherentCulling(boolean) 
+     */
+    public boolean isCoherentCulling() {
+        return coherentCulling;
+    }
+
+    /**
+     * Enable or disable temporally coherent culling. When enabled, each
+     * spatial remembers the result of its last frustum check, which is
+     * reused as long as neither the camera nor the spatial's world bound
+     * change, so still cameras over static scenes skip most bound tests.
+     * The number of spatials checked and bounds tested is reported in the
+     * {@link Renderer#getStatistics() statistics}. The default is disabled.
+     * <p>
+     * Scenes with many static geometries under the same node can also be 
+     * split into octants, see <code>jme3tools.optimize.OctreeGrouping</code>.
+     * 
+     * @param coherentCulling Whether or not culling is temporally coherent.
+     * 
+     * @see Spatial#checkCulling(com.jme3.renderer.Camera, boolean) 
+     */
+    public void setCoherentCulling(boolean coherentCulling) {
+        this.coherentCulling = coherentCulling;
+    }
+
+    /**
+     * @return The light culler used when {@link #setLightCulling(boolean) light culling}
+     * is enabled.
+     */
+    public LightCuller getLightCuller() {
+        return lightCuller;
+    }
+
     /**
      * Internal use only. Sets the world matrix to use for future
      * rendering. This has no effect unless objects are rendered manually
@@ -490,6 +585,12 @@ public class RenderManager {
             setWorldMatrix(g.getWorldMatrix());
         }
 
+        LightList lightList = g.getWorldLightList();
+        if (lightCulling && lightList.size() > 0) {
+            lightList = lightCuller.filterLights(g, culledLights);
+            renderer.getStatistics().onLightsCulled(g.getWorldLightList().size(), lightList.size());
+        }
+
         //if forcedTechnique we try to force it for render,
         //if it does not exists in the mat def, we check for forcedMaterial and render the geom if not null
         //else the geom is not rendered
@@ -504,7 +605,7 @@ public class RenderManager {
                     forcedRenderState = g.getMaterial().getActiveTechnique().getDef().getForcedRenderState();
                 }
                 // use geometry's material
-                g.getMaterial().render(g, this);
+                g.getMaterial().render(g, lightList, this);
                 g.getMaterial().selectTechnique(tmpTech, this);
 
                 //restoring forcedRenderState
@@ -514,13 +615,13 @@ public class RenderManager {
                 //If forcedTechnique does not exists, and frocedMaterial is not set, the geom MUST NOT be rendered
             } else if (forcedMaterial != null) {
                 // use forced material
-                forcedMaterial.render(g, this);
+                forcedMaterial.render(g, lightList, this);
             }
         } else if (forcedMaterial != null) {
             // use forced material
-            forcedMaterial.render(g, this);
+            forcedMaterial.render(g, lightList, this);
         } else {
-            g.getMaterial().render(g, this);
+            g.getMaterial().render(g, lightList, this);
         }
     }
 
@@ -636,17 +737,24 @@ public class RenderManager {
     public void renderScene(Spatial scene, ViewPort vp) {
         //reset of the camera plane state for proper culling (must be 0 for the first note of the scene to be rendered)
         vp.getCamera().setPlaneState(0);
+        int boundTests = vp.getCamera().getBoundTestCount();
+        spatialsCulled = 0;
         //rendering the scene
         renderSubScene(scene, vp);
+        renderer.getStatistics().onSceneCulled(spatialsCulled,
+                vp.getCamera().getBoundTestCount() - boundTests);
     }
     
     // recursively renders the scene
     private void renderSubScene(Spatial scene, ViewPort vp) {
 
         // check culling first.
-        if (!scene.checkCulling(vp.getCamera())) {
-            // move on to shadow-only render
-            if ((scene.getShadowMode() != RenderQueue.ShadowMode.Off || scene instanceof Node) && scene.getCullHint() != Spatial.CullHint.Always) {
+        spatialsCulled++;
+        if (!scene.checkCulling(vp.getCamera(), coherentCulling)) {
+            // move on to shadow-only render, unless there is no processor
+            // to use the shadow queues
+            if (!vp.getProcessors().isEmpty()
+                    && (scene.getShadowMode() != RenderQueue.ShadowMode.Off || scene instanceof Node) && scene.getCullHint() != Spatial.CullHint.Always) {
                 renderShadow(scene, vp.getQueue());
             }
             return;
@@ -760,13 +868,17 @@ public class RenderManager {
 
         // render opaque objects with default depth range
         // opaque objects are sorted front-to-back, reducing overdraw
+        if (profiler != null) profiler.begin("Opaque");
         rq.renderQueue(Bucket.Opaque, this, cam, flush);
+        if (profiler != null) profiler.end();
 
         // render the sky, with depth range set to the farthest
         if (!rq.isQueueEmpty(Bucket.Sky)) {
+            if (profiler != null) profiler.begin("Sky");
             renderer.setDepthRange(1, 1);
             rq.renderQueue(Bucket.Sky, this, cam, flush);
             depthRangeChanged = true;
+            if (profiler != null) profiler.end();
         }
 
 
@@ -779,15 +891,19 @@ public class RenderManager {
                 depthRangeChanged = false;
             }
 
+            if (profiler != null) profiler.begin("Transparent");
             rq.renderQueue(Bucket.Transparent, this, cam, flush);
+            if (profiler != null) profiler.end();
         }
 
         if (!rq.isQueueEmpty(Bucket.Gui)) {
+            if (profiler != null) profiler.begin("Gui");
             renderer.setDepthRange(0, 0);
             setCamera(cam, true);
             rq.renderQueue(Bucket.Gui, this, cam, flush);
             setCamera(cam, false);
             depthRangeChanged = true;
+            if (profiler != null) profiler.end();
         }
 
         // restore range to default
@@ -811,7 +927,9 @@ public class RenderManager {
     public void renderTranslucentQueue(ViewPort vp) {
         RenderQueue rq = vp.getQueue();
         if (!rq.isQueueEmpty(Bucket.Translucent) && handleTranlucentBucket) {
+            if (profiler != null) profiler.begin("Translucent");
             rq.renderQueue(Bucket.Translucent, this, vp.getCamera(), true);
+            if (profiler != null) profiler.end();
         }
     }
 
@@ -892,6 +1010,7 @@ public class RenderManager {
      */
     public void renderViewPortRaw(ViewPort vp) {
         setCamera(vp.getCamera(), false);
+        lightCuller.reset();
         List<Spatial> scenes = vp.getScenes();
         for (int i = scenes.size() - 1; i >= 0; i--) {           
             renderScene(scenes.get(i), vp);
@@ -949,13 +1068,21 @@ public class RenderManager {
             processors = null;
         }
 
+        FrameProfiler prof = profiler;
+        if (prof != null) prof.begin(vp.getName());
+
+        // lights may have moved since the last viewport
+        lightCuller.reset();
+
         if (processors != null) {
+            if (prof != null) prof.begin("preFrame");
             for (SceneProcessor proc : processors) {
                 if (!proc.isInitialized()) {
                     proc.initialize(this, vp);
                 }
                 proc.preFrame(tpf);
             }
+            if (prof != null) prof.end();
         }
 
         renderer.setFrameBuffer(vp.getOutputFrameBuffer());
@@ -969,28 +1096,35 @@ public class RenderManager {
                     vp.isClearStencil());
         }
 
+        if (prof != null) prof.begin("Cull");
         List<Spatial> scenes = vp.getScenes();
         for (int i = scenes.size() - 1; i >= 0; i--) {            
             renderScene(scenes.get(i), vp);
         }
+        if (prof != null) prof.end();
 
         if (processors != null) {
+            if (prof != null) prof.begin("postQueue");
             for (SceneProcessor proc : processors) {
                 proc.postQueue(vp.getQueue());
             }
+            if (prof != null) prof.end();
         }
 
         flushQueue(vp);
 
         if (processors != null) {
+            if (prof != null) prof.begin("postFrame");
             for (SceneProcessor proc : processors) {
                 proc.postFrame(vp.getOutputFrameBuffer());
             }
+            if (prof != null) prof.end();
         }
         //renders the translucent objects queue after processors have been rendered
         renderTranslucentQueue(vp);
         // clear any remaining spatials that were not rendered.
         clearQueue(vp);
+        if (prof != null) prof.end();
     }
 
     public void setUsingShaders(boolean usingShaders) { 
@@ -53,6 +53,10 @@ public class Statistics {
     protected int numTextureBinds;
     protected int numFboSwitches;
     protected int numUniformsSet;
+    protected int numLightsConsidered;
+    protected int numLightsApplied;
+    protected int numSpatialsCulled;
+    protected int numBoundTests;
 
     protected int memoryShaders;
     protected int memoryFrameBuffers;
@@ -86,7 +90,13 @@ public class Statistics {
 
                              "FrameBuffers (S)",
                              "FrameBuffers (F)",
-                             "FrameBuffers (M)" };
+                             "FrameBuffers (M)",
+
+                             "Lights (C)",
+                             "Lights (A)",
+
+                             "Culling (S)",
+                             "Culling (T)" };
 
     }
 
@@ -114,6 +124,12 @@ public class Statistics {
         data[10] = numFboSwitches;
         data[11] = fbosUsed.size();
         data[12] = memoryFrameBuffers;
+
+        data[13] = numLightsConsidered;
+        data[14] = numLightsApplied;
+
+        data[15] = numSpatialsCulled;
+        data[16] = numBoundTests;
     }
 
     /**
@@ -165,6 +181,29 @@ public class Statistics {
             numTextureBinds ++;
     }
 
+    /**
+     * Called by the RenderManager when the lights of a geometry have been 
+     * culled.
+     * 
+     * @param considered The number of lights the geometry inherits
+     * @param applied The number of lights the geometry is rendered with
+     */
+    public void onLightsCulled(int considered, int applied){
+        numLightsConsidered += considered;
+        numLightsApplied += applied;
+    }
+
+    /**
+     * Called by the RenderManager when a scene has been culled.
+     * 
+     * @param spatials The number of spatials checked for culling
+     * @param boundTests The number of bounds tested against the frustum
+     */
+    public void onSceneCulled(int spatials, int boundTests){
+        numSpatialsCulled += spatials;
+        numBoundTests += boundTests;
+    }
+
     /**
      * Called by the Renderer when a framebuffer has been set.
      * 
@@ -198,6 +237,10 @@ public class Statistics {
         numTextureBinds = 0;
         numFboSwitches = 0;
         numUniformsSet = 0;
+        numLightsConsidered = 0;
+        numLightsApplied = 0;
+        numSpatialsCulled = 0;
+        numBoundTests = 0;
     }
 
     /**
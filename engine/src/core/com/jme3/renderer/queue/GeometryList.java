@@ -34,6 +34,7 @@ package com.jme3.renderer.queue;
 import com.jme3.renderer.Camera;
 import com.jme3.scene.Geometry;
 import com.jme3.util.SortUtil;
+import java.util.Arrays;
 
 /**
  * This class is a special purpose list of {@link Geometry} objects for render
@@ -51,6 +52,13 @@ public class GeometryList {
     private Geometry[] geometries2;
     private int size;
     private GeometryComparator comparator;
+    private KeyedGeometryComparator keyComparator;
+    private boolean useSortKeys = true;
+    private long[] keys;
+    private long[] keys2;
+    private int[] order;
+    private int[] order2;
+    private int[] histograms;
 
     /**
      * Initializes the GeometryList to use the given {@link GeometryComparator}
@@ -63,6 +71,28 @@ public class GeometryList {
         geometries = new Geometry[DEFAULT_SIZE];
         geometries2 = new Geometry[DEFAULT_SIZE];
         this.comparator = comparator;
+        this.keyComparator = getKeyComparator(comparator);
+    }
+
+    /**
+     * @return the comparator if its keys give its order, null if it has no
+     * keys or a subclass overrides <code>compare</code> but not 
+     * <code>getSortKey</code>.
+     */
+    private static KeyedGeometryComparator getKeyComparator(GeometryComparator comparator) {
+        if (!(comparator instanceof KeyedGeometryComparator)) {
+            return null;
+        }
+        try {
+            Class<?> compareClass = comparator.getClass().getMethod("compare", Geometry.class, Geometry.class).getDeclaringClass();
+            Class<?> keyClass = comparator.getClass().getMethod("getSortKey", Geometry.class).getDeclaringClass();
+            if (!compareClass.isAssignableFrom(keyClass)) {
+                return null;
+            }
+        } catch (NoSuchMethodException ex) {
+            return null;
+        }
+        return (KeyedGeometryComparator) comparator;
     }
 
     /**
@@ -75,6 +105,28 @@ public class GeometryList {
         this.comparator.setCamera(cam);
     }
 
+    /**
+     * Enables sorting by the keys of a {@link KeyedGeometryComparator}.
+     * The key of each geometry is computed once and the keys are sorted
+     * with a radix sort, instead of calling the comparator for every
+     * comparison. Has no effect if the comparator does not provide keys,
+     * or if it is a subclass overriding <code>compare</code> without
+     * overriding <code>getSortKey</code>. Enabled by default.
+     * 
+     * @param useSortKeys true to sort by keys, false to always use the comparator.
+     */
+    public void setUseSortKeys(boolean useSortKeys) {
+        this.useSortKeys = useSortKeys;
+    }
+
+    /**
+     * @return true if the geometries are sorted by the keys of the comparator.
+     * @see #setUseSortKeys(boolean) 
+     */
+    public boolean isUseSortKeys() {
+        return useSortKeys;
+    }
+
     /**
      * Returns the number of elements in this GeometryList.
      * 
@@ -128,6 +180,11 @@ public class GeometryList {
      */
     public void sort() {
         if (size > 1) {
+            if (useSortKeys && keyComparator != null) {
+                sortByKeys(keyComparator);
+                return;
+            }
+            
             // sort the spatial list using the comparator
             
 //            SortUtil.qsort(geometries, 0, size, comparator);
@@ -139,4 +196,67 @@ public class GeometryList {
 
         }
     }
-}
\ No newline at end of file
+
+    private void sortByKeys(KeyedGeometryComparator keyComparator) {
+        if (keys == null || keys.length < size) {
+            keys = new long[geometries.length];
+            keys2 = new long[geometries.length];
+            order = new int[geometries.length];
+            order2 = new int[geometries.length];
+            histograms = new int[8 * 256];
+        }
+        
+        for (int i = 0; i < size; i++) {
+            keys[i] = keyComparator.getSortKey(geometries[i]);
+            order[i] = i;
+        }
+        radixSort();
+        for (int i = 0; i < size; i++) {
+            geometries2[i] = geometries[order[i]];
+        }
+        Geometry[] temp = geometries;
+        geometries = geometries2;
+        geometries2 = temp;
+    }
+
+    /**
+     * Stable LSD radix sort of the unsigned keys and their indices, 
+     * one byte per pass. Bytes that are the same for all keys are skipped.
+     */
+    private void radixSort() {
+        int[] counts = histograms;
+        Arrays.fill(counts, 0);
+        for (int i = 0; i < size; i++) {
+            long key = keys[i];
+            for (int b = 0; b < 8; b++) {
+                counts[(b << 8) + (int) ((key >>> (b << 3)) & 0xff)]++;
+            }
+        }
+        
+        for (int b = 0; b < 8; b++) {
+            int offset = b << 8;
+            int shift = b << 3;
+            if (counts[offset + (int) ((keys[0] >>> shift) & 0xff)] == size) {
+                continue;
+            }
+            int sum = 0;
+            for (int i = 0; i < 256; i++) {
+                int count = counts[offset + i];
+                counts[offset + i] = sum;
+                sum += count;
+            }
+            for (int i = 0; i < size; i++) {
+                long key = keys[i];
+                int pos = counts[offset + (int) ((key >>> shift) & 0xff)]++;
+                keys2[pos] = key;
+                order2[pos] = order[i];
+            }
+            long[] tempKeys = keys;
+            keys = keys2;
+            keys2 = tempKeys;
+            int[] tempOrder = order;
+            order = order2;
+            order2 = tempOrder;
+        }
+    }
+}
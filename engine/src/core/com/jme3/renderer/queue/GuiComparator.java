@@ -33,6 +33,7 @@ package com.jme3.renderer.queue;
 
 import com.jme3.renderer.Camera;
 import com.jme3.scene.Geometry;
+import com.jme3.util.SortUtil;
 
 /**
  * <code>GuiComparator</code> sorts geometries back-to-front based
@@ -40,7 +41,7 @@ import com.jme3.scene.Geometry;
  *
  * @author Kirill Vainer
  */
-public class GuiComparator implements GeometryComparator {
+public class GuiComparator implements KeyedGeometryComparator {
 
     public int compare(Geometry o1, Geometry o2) {
         float z1 = o1.getWorldTranslation().getZ();
@@ -53,6 +54,10 @@ public class GuiComparator implements GeometryComparator {
             return 0;
     }
 
+    public long getSortKey(Geometry geom) {
+        return SortUtil.floatToSortableInt(geom.getWorldTranslation().getZ()) & 0xffffffffL;
+    }
+
     public void setCamera(Camera cam) {
     }
 
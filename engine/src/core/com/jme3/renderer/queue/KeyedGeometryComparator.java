@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.renderer.queue;
+
+import com.jme3.scene.Geometry;
+
+/**
+ * A <code>KeyedGeometryComparator</code> can compute a sort key for each
+ * geometry, so that {@link GeometryList} can sort geometries by comparing
+ * primitive keys instead of calling {@link #compare(java.lang.Object, java.lang.Object) }.
+ * <p>
+ * Sorting geometries by their keys as unsigned longs must give the same 
+ * order as sorting them with the comparator. Subclasses that change the 
+ * order of the comparator must also override {@link #getSortKey(com.jme3.scene.Geometry) },
+ * <code>GeometryList</code> uses the comparator instead when a subclass
+ * only overrides <code>compare</code>.
+ * 
+ * @see GeometryList#setUseSortKeys(boolean) 
+ */
+public interface KeyedGeometryComparator extends GeometryComparator {
+
+    /**
+     * Computes the sort key of a geometry for the current camera.
+     * 
+     * @param geom the geometry
+     * @return the key, compared as an unsigned long
+     */
+    public long getSortKey(Geometry geom);
+}
@@ -35,8 +35,9 @@ import com.jme3.material.Material;
 import com.jme3.math.Vector3f;
 import com.jme3.renderer.Camera;
 import com.jme3.scene.Geometry;
+import com.jme3.util.SortUtil;
 
-public class OpaqueComparator implements GeometryComparator {
+public class OpaqueComparator implements KeyedGeometryComparator {
 
     private Camera cam;
     private final Vector3f tempVec  = new Vector3f();
@@ -91,4 +92,12 @@ public class OpaqueComparator implements GeometryComparator {
         }
     }
 
+    /**
+     * The key sorts by descending material sort ID, then front to back.
+     */
+    public long getSortKey(Geometry geom) {
+        long sortId = (geom.getMaterial().getSortId() ^ 0x7fffffff) & 0xffffffffL;
+        return (sortId << 32) | (SortUtil.floatToSortableInt(distanceToCam(geom)) & 0xffffffffL);
+    }
+
 }
@@ -34,8 +34,9 @@ package com.jme3.renderer.queue;
 import com.jme3.math.Vector3f;
 import com.jme3.renderer.Camera;
 import com.jme3.scene.Geometry;
+import com.jme3.util.SortUtil;
 
-public class TransparentComparator implements GeometryComparator {
+public class TransparentComparator implements KeyedGeometryComparator {
 
     private Camera cam;
     private final Vector3f tempVec = new Vector3f();
@@ -98,4 +99,11 @@ public class TransparentComparator implements GeometryComparator {
         else
             return -1;
     }
+
+    /**
+     * The key sorts back to front.
+     */
+    public long getSortKey(Geometry geom) {
+        return ~SortUtil.floatToSortableInt(distanceToCam(geom)) & 0xffffffffL;
+    }
 }
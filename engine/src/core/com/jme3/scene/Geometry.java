@@ -278,7 +278,9 @@ public class Geometry extends Spatial {
             if (ignoreTransform) {
                 // we do not transform the model bound by the world transform,
                 // just use the model bound as-is
+                int checkPlane = worldBound != null ? worldBound.getCheckPlane() : 0;
                 worldBound = mesh.getBound().clone(worldBound);
+                worldBound.setCheckPlane(checkPlane);
             } else {
                 worldBound = mesh.getBound().transform(worldTransform, worldBound);
             }
@@ -162,7 +162,7 @@ public class Mesh implements Savable, Cloneable {
      */
     private BoundingVolume meshBound =  new BoundingBox();
 
-    private CollisionData collisionTree = null;
+    private volatile CollisionData collisionTree = null;
 
     private SafeArrayList<VertexBuffer> buffersList = new SafeArrayList<VertexBuffer>(VertexBuffer.class);
     private IntMap<VertexBuffer> buffers = new IntMap<VertexBuffer>();
@@ -836,6 +836,45 @@ public class Mesh implements Savable, Cloneable {
         collisionTree = tree;
     }
 
+    /**
+     * Returns the collision tree of the mesh, generating it if needed.
+     * Used by batched queries, see {@link com.jme3.collision.RayBatch}.
+     * <p>
+     * Safe to call from several threads. The tree is generated without 
+     * holding a lock, since its construction may wait for worker threads
+     * querying the same mesh, so threads calling this method at the same 
+     * time may each generate one. The first tree generated is kept.
+     * 
+     * @return the collision tree of the mesh
+     */
+    public BIHTree getCollisionTree(){
+        CollisionData tree = collisionTree;
+        if (tree == null){
+            BIHTree newTree = new BIHTree(this);
+            newTree.construct();
+            synchronized (this){
+                if (collisionTree == null){
+                    collisionTree = newTree;
+                }
+                tree = collisionTree;
+            }
+        }
+        return (BIHTree) tree;
+    }
+
+    /**
+     * Refits the collision tree of the mesh to the current vertex positions,
+     * use after deforming the mesh instead of generating a new 
+     * collision tree. Does nothing if no collision tree was generated yet.
+     * 
+     * @see BIHTree#refit() 
+     */
+    public void updateCollisionData(){
+        if (collisionTree instanceof BIHTree){
+            ((BIHTree) collisionTree).refit();
+        }
+    }
+
     /**
      * Handles collision detection, internal use only.
      * User code should only use collideWith() on scene
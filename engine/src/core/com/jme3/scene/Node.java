@@ -43,6 +43,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Queue;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -66,6 +67,22 @@ public class Node extends Spatial implements Savable {
      */
     protected SafeArrayList<Spatial> children = new SafeArrayList<Spatial>(Spatial.class);
 
+    /**
+     * Number of spatials in this node's subtree, including itself,
+     * or -1 if it needs to be recomputed.
+     */
+    private transient int subtreeSize = -1;
+    
+    private transient boolean parallelUpdate = false;
+    private transient int parallelUpdateThreshold = DEFAULT_PARALLEL_THRESHOLD;
+
+    /**
+     * The default minimum subtree size updated on a worker thread.
+     * 
+     * @see #setParallelUpdateThreshold(int) 
+     */
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 2000;
+
     /**
      * Serialization only. Do not use.
      */
@@ -95,6 +112,81 @@ public class Node extends Spatial implements Savable {
         return children.size();        
     }
 
+    private void invalidateSubtreeSize() {
+        // if a node has a valid size so do all of its descendants,
+        // so the walk can stop at the first invalid ancestor
+        Node node = this;
+        while (node != null && node.subtreeSize != -1) {
+            node.subtreeSize = -1;
+            node = node.parent;
+        }
+    }
+
+    /**
+     * Returns the number of spatials in this node's subtree, including
+     * this node. The value is cached until a child is attached or detached
+     * somewhere below this node.
+     * 
+     * @return the number of spatials in the subtree of this node.
+     */
+    public int getSubtreeSize() {
+        if (subtreeSize == -1) {
+            int size = 1;
+            for (Spatial child : children.getArray()) {
+                if (child instanceof Node) {
+                    size += ((Node) child).getSubtreeSize();
+                } else {
+                    size++;
+                }
+            }
+            subtreeSize = size;
+        }
+        return subtreeSize;
+    }
+
+    /**
+     * Enables or disables the parallel update mode of this node.
+     * When enabled, {@link #updateGeometricState() } updates the children
+     * whose subtree contains at least 
+     * {@link #setParallelUpdateThreshold(int) threshold} spatials on worker
+     * threads, while the smaller children are updated on the calling thread.
+     * The world bound of this node is merged once all children are done,
+     * so the result is identical to the serial update.
+     * <p>
+     * Only the children of this node are split, nodes in the subtrees
+     * updated on worker threads always update serially. 
+     * This mode should not be enabled on nodes below a {@link BatchNode},
+     * since geometries of the same batch write to a shared mesh.
+     * 
+     * @param parallelUpdate true to update large children in parallel.
+     */
+    public void setParallelUpdate(boolean parallelUpdate) {
+        this.parallelUpdate = parallelUpdate;
+    }
+
+    /**
+     * @return true if the parallel update mode is enabled.
+     * @see #setParallelUpdate(boolean) 
+     */
+    public boolean isParallelUpdate() {
+        return parallelUpdate;
+    }
+
+    /**
+     * Sets the minimum number of spatials a child's subtree must contain
+     * to be updated on a worker thread in parallel update mode.
+     * 
+     * @param threshold the minimum subtree size.
+     * @see #setParallelUpdate(boolean) 
+     */
+    public void setParallelUpdateThreshold(int threshold) {
+        this.parallelUpdateThreshold = threshold;
+    }
+
+    public int getParallelUpdateThreshold() {
+        return parallelUpdateThreshold;
+    }
+
     @Override
     protected void setTransformRefresh(){
         super.setTransformRefresh();
@@ -124,6 +216,8 @@ public class Node extends Spatial implements Savable {
         // for a node, the world bound is a combination of all it's children
         // bounds
         BoundingVolume resultBound = null;
+        // keep the plane that culled the node last, not the child's
+        int checkPlane = worldBound != null ? worldBound.getCheckPlane() : 0;
         for (Spatial child : children.getArray()) {
             // child bound is assumed to be updated
             assert (child.refreshFlags & RF_BOUND) == 0;
@@ -137,6 +231,9 @@ public class Node extends Spatial implements Savable {
                 }
             }
         }
+        if (resultBound != null) {
+            resultBound.setCheckPlane(checkPlane);
+        }
         this.worldBound = resultBound;
     }
 
@@ -171,8 +268,12 @@ public class Node extends Spatial implements Savable {
             // a round-trip later on.
             // NOTE 9/19/09
             // Although it does save a round trip,
-            for (Spatial child : children.getArray()) {
-                child.updateGeometricState();
+            if (parallelUpdate && !ParallelUpdateExecutor.isWorkerThread()) {
+                updateChildrenParallel();
+            } else {
+                for (Spatial child : children.getArray()) {
+                    child.updateGeometricState();
+                }
             }
         }            
 
@@ -183,6 +284,32 @@ public class Node extends Spatial implements Savable {
         assert refreshFlags == 0;
     }
 
+    private void updateChildrenParallel() {
+        Spatial[] array = children.getArray();
+        Future[] futures = null;
+        for (int i = 0; i < array.length; i++) {
+            Spatial child = array[i];
+            if (child instanceof Node 
+             && ((Node) child).getSubtreeSize() >= parallelUpdateThreshold) {
+                if (futures == null) {
+                    futures = new Future[array.length];
+                }
+                futures[i] = ParallelUpdateExecutor.submitGeometricUpdate(child);
+            }
+        }
+
+        // the small children are updated while the workers are busy
+        for (int i = 0; i < array.length; i++) {
+            if (futures == null || futures[i] == null) {
+                array[i].updateGeometricState();
+            }
+        }
+
+        if (futures != null) {
+            ParallelUpdateExecutor.waitFor(futures);
+        }
+    }
+
     /**
      * <code>getTriangleCount</code> returns the number of triangles contained
      * in all sub-branches of this node that contain geometry.
@@ -241,6 +368,7 @@ public class Node extends Spatial implements Savable {
             }
             child.setParent(this);
             children.add(child);
+            invalidateSubtreeSize();
 
             // XXX: Not entirely correct? Forces bound update up the
             // tree stemming from the attached child. Also forces
@@ -279,6 +407,7 @@ public class Node extends Spatial implements Savable {
             }
             child.setParent(this);
             children.add(index, child);
+            invalidateSubtreeSize();
             child.setTransformRefresh();
             child.setLightListRefresh();
             if (logger.isLoggable(Level.INFO)) {
@@ -349,6 +478,7 @@ public class Node extends Spatial implements Savable {
         Spatial child =  children.remove(index);
         if ( child != null ) {
             child.setParent( null );
+            invalidateSubtreeSize();
             logger.log(Level.INFO, "{0}: Child removed.", this.toString());
 
             // since a child with a bound was detached;
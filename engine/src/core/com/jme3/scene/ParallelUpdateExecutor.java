@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.scene;
+
+import com.jme3.audio.AudioContext;
+import com.jme3.audio.AudioRenderer;
+import com.jme3.util.WorkerPool;
+import java.util.concurrent.Future;
+
+/**
+ * Submits the {@link Node#setParallelUpdate(boolean) parallel}
+ * scene graph updates to the shared {@link WorkerPool}.
+ */
+final class ParallelUpdateExecutor {
+
+    private ParallelUpdateExecutor() {
+    }
+
+    /**
+     * @return true if the current thread is a worker thread, nested
+     * parallel updates are then done serially to avoid starving the pool.
+     */
+    static boolean isWorkerThread() {
+        return WorkerPool.isWorkerThread();
+    }
+
+    static Future<?> submitGeometricUpdate(final Spatial spatial) {
+        // AudioNodes update their source through the audio renderer of 
+        // the calling thread
+        final AudioRenderer audioRenderer = AudioContext.getAudioRenderer();
+        return WorkerPool.submit(new Runnable() {
+            public void run() {
+                AudioContext.setAudioRenderer(audioRenderer);
+                try {
+                    spatial.updateGeometricState();
+                } finally {
+                    AudioContext.setAudioRenderer(null);
+                }
+            }
+        });
+    }
+
+    static void waitFor(Future[] futures) {
+        WorkerPool.waitFor(futures);
+    }
+}
@@ -159,6 +159,22 @@ public abstract class Spatial implements Savable, Cloneable, Collidable, Cloneab
      * updated to reflect the correct state.
      */
     protected transient int refreshFlags = 0;
+    /**
+     * Incremented every time the world bound is updated. 
+     * Used to tell if the culling result of the previous frame is 
+     * still valid.
+     */
+    protected transient int worldBoundVersion = 0;
+    /**
+     * The culling result of the previous frame, see 
+     * {@link #checkCulling(com.jme3.renderer.Camera, boolean) }.
+     */
+    private transient Camera cullCamera;
+    private transient int cullCameraVersion;
+    private transient int cullBoundVersion;
+    private transient int cullPlaneStateIn;
+    private transient int cullPlaneStateOut;
+    private transient Camera.FrustumIntersect cullIntersects;
 
     /**
      * Serialization only. Do not use.
@@ -256,6 +272,27 @@ public abstract class Spatial implements Savable, Cloneable, Collidable, Cloneab
      * (should be rendered), false if outside.
      */
     public boolean checkCulling(Camera cam) {
+        return checkCulling(cam, false);
+    }
+
+    /**
+     * <code>checkCulling</code> checks the spatial with the camera to see if it
+     * should be culled.
+     * <p>
+     * If <code>coherent</code> is true and neither the camera frustum nor the
+     * world bound of this spatial changed since it was last checked with 
+     * the camera, the result of that check is reused instead of testing
+     * the bound again.
+     * <p>
+     * This method is called by the renderer. Usually it should not be called
+     * directly.
+     *
+     * @param cam The camera to check against.
+     * @param coherent Whether or not to reuse the result of the last check.
+     * @return true if inside or intersecting camera frustum
+     * (should be rendered), false if outside.
+     */
+    public boolean checkCulling(Camera cam, boolean coherent) {
         if (refreshFlags != 0) {
             throw new IllegalStateException("Scene graph is not properly updated for rendering.\n"
                     + "State was changed after rootNode.updateGeometricState() call. \n"
@@ -280,8 +317,24 @@ public abstract class Spatial implements Savable, Cloneable, Collidable, Cloneab
         if (frustrumIntersects == Camera.FrustumIntersect.Intersects) {
             if (getQueueBucket() == Bucket.Gui) {
                 return cam.containsGui(getWorldBound());
+            } else if (coherent && cullCamera == cam
+                    && cullCameraVersion == cam.getFrustumVersion()
+                    && cullBoundVersion == worldBoundVersion
+                    && cullPlaneStateIn == cam.getPlaneState()) {
+                // same frustum, bound and parent planes as the last check
+                frustrumIntersects = cullIntersects;
+                cam.setPlaneState(cullPlaneStateOut);
             } else {
+                int planeState = cam.getPlaneState();
                 frustrumIntersects = cam.contains(getWorldBound());
+                if (coherent) {
+                    cullCamera = cam;
+                    cullCameraVersion = cam.getFrustumVersion();
+                    cullBoundVersion = worldBoundVersion;
+                    cullPlaneStateIn = planeState;
+                    cullPlaneStateOut = cam.getPlaneState();
+                    cullIntersects = frustrumIntersects;
+                }
             }
         }
 
@@ -443,6 +496,7 @@ public abstract class Spatial implements Savable, Cloneable, Collidable, Cloneab
         // bounds
         // -> handled by subclass
         refreshFlags &= ~RF_BOUND;
+        worldBoundVersion++;
     }
 
     protected void updateWorldLightList() {
@@ -1165,6 +1219,7 @@ public abstract class Spatial implements Savable, Cloneable, Collidable, Cloneab
             }
 
             clone.parent = null;
+            clone.cullCamera = null;
             clone.setBoundRefresh();
             clone.setTransformRefresh();
             clone.setLightListRefresh();
@@ -33,28 +33,64 @@ package com.jme3.shader;
 
 import com.jme3.export.*;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 
+/**
+ * The list of defines of a shader variant.
+ * <p>
+ * Each define name is assigned a slot, and the list stores which slots are
+ * set in a bitset along with the value of each slot. Lists created by 
+ * a {@link com.jme3.material.TechniqueDef} share the slots of the technique,
+ * so that they can be updated by slot and compared without any string work.
+ * Lists with different slots are compared by name.
+ */
 public class DefineList implements Savable, Cloneable {
 
     private static final String ONE = "1";
     
-    private TreeMap<String, String> defines = new TreeMap<String, String>();
+    private List<String> names;
+    private long[] isSet;
+    private String[] values;
     private String compiled = null;
     private int cachedHashCode = 0;
 
+    /**
+     * Creates a define list with its own slots.
+     */
+    public DefineList() {
+        this(new ArrayList<String>());
+    }
+
+    /**
+     * Creates a define list using the given slots. The list of names
+     * is shared with the caller, names added to it later get new slots.
+     * 
+     * @param names The define name of each slot
+     */
+    public DefineList(List<String> names) {
+        this.names = names;
+        this.isSet = new long[Math.max(1, (names.size() + 63) >> 6)];
+        this.values = new String[names.size()];
+    }
+
     public void write(JmeExporter ex) throws IOException{
         OutputCapsule oc = ex.getCapsule(this);
 
-        String[] keys = new String[defines.size()];
-        String[] vals = new String[defines.size()];
+        int count = size();
+        String[] keys = new String[count];
+        String[] vals = new String[count];
 
         int i = 0;
-        for (Map.Entry<String, String> define : defines.entrySet()){
-            keys[i] = define.getKey();
-            vals[i] = define.getValue();
-            i++;
+        for (int slot = 0; slot < values.length; slot++){
+            if (isSet(slot)) {
+                keys[i] = names.get(slot);
+                vals[i] = values[slot];
+                i++;
+            }
         }
 
         oc.write(keys, "keys", null);
@@ -67,18 +103,97 @@ public class DefineList implements Savable, Cloneable {
         String[] keys = ic.readStringArray("keys", null);
         String[] vals = ic.readStringArray("vals", null);
         for (int i = 0; i < keys.length; i++){
-            defines.put(keys[i], vals[i]);
+            put(getSlot(keys[i], true), vals[i]);
+        }
+    }
+
+    /**
+     * @return The define name of each slot
+     */
+    public List<String> getNames() {
+        return names;
+    }
+
+    /**
+     * Returns the slot of a define.
+     * 
+     * @param name The define name
+     * @param create True to assign a new slot if the define has none
+     * @return The slot, or -1 if the define has no slot
+     */
+    private int getSlot(String name, boolean create) {
+        int slot = names.indexOf(name);
+        if (slot == -1 && create) {
+            names.add(name);
+            slot = names.size() - 1;
+        }
+        return slot;
+    }
+
+    private void ensureCapacity(int slot) {
+        if (slot >= values.length) {
+            String[] newValues = new String[Math.max(slot + 1, names.size())];
+            System.arraycopy(values, 0, newValues, 0, values.length);
+            values = newValues;
+            int words = (values.length + 63) >> 6;
+            if (words > isSet.length) {
+                long[] newIsSet = new long[words];
+                System.arraycopy(isSet, 0, newIsSet, 0, isSet.length);
+                isSet = newIsSet;
+            }
         }
     }
 
+    /**
+     * @param slot The slot of a define
+     * @return True if the define is set
+     */
+    public boolean isSet(int slot) {
+        return slot < values.length && (isSet[slot >> 6] & (1L << slot)) != 0;
+    }
+
+    /**
+     * @return The number of defines set
+     */
+    public int size() {
+        int count = 0;
+        for (int i = 0; i < isSet.length; i++) {
+            count += Long.bitCount(isSet[i]);
+        }
+        return count;
+    }
+
+    private boolean put(int slot, String value) {
+        ensureCapacity(slot);
+        String original = values[slot];
+        values[slot] = value;
+        isSet[slot >> 6] |= 1L << slot;
+        if (original == value || (original != null && original.equals(value))) {
+            return false;
+        }
+        compiled = null;
+        cachedHashCode = 0;
+        return true;
+    }
+
     public void clear() {
-        defines.clear();
+        Arrays.fill(isSet, 0);
+        Arrays.fill(values, null);
         compiled = "";
         cachedHashCode = 0;
     }
 
     public String get(String key){
-        return defines.get(key);
+        int slot = getSlot(key, false);
+        return slot == -1 ? null : get(slot);
+    }
+
+    /**
+     * @param slot The slot of a define
+     * @return The value of the define, or null if it is not set
+     */
+    public String get(int slot) {
+        return slot < values.length ? values[slot] : null;
     }
     
     @Override
@@ -87,7 +202,8 @@ public class DefineList implements Savable, Cloneable {
             DefineList clone = (DefineList) super.clone();
             clone.cachedHashCode = 0;
             clone.compiled = null;
-            clone.defines = (TreeMap<String, String>) defines.clone();
+            clone.isSet = isSet.clone();
+            clone.values = values.clone();
             return clone;
         } catch (CloneNotSupportedException ex) {
             throw new AssertionError();
@@ -96,74 +212,79 @@ public class DefineList implements Savable, Cloneable {
 
     public boolean set(String key, VarType type, Object val){    
         if (val == null){
-            defines.remove(key);
-            compiled = null;
-            cachedHashCode = 0;
+            remove(key);
+            return true;
+        }
+        return set(getSlot(key, true), type, val);
+    }
+
+    /**
+     * Sets the define of a slot from the value of a material parameter.
+     * 
+     * @param slot The slot of the define
+     * @param type The type of the parameter
+     * @param val The value of the parameter, null to remove the define
+     * @return True if the define list changed
+     */
+    public boolean set(int slot, VarType type, Object val) {
+        if (val == null){
+            remove(slot);
             return true;
         }
 
         switch (type){
             case Boolean:
                 if (((Boolean) val).booleanValue()) {
-                    // same literal, != will work
-                    if (defines.put(key, ONE) != ONE) {
-                        compiled = null;
-                        cachedHashCode = 0;
-                        return true;
-                    }
-                } else if (defines.containsKey(key)) {
-                    defines.remove(key);
-                    compiled = null;
-                    cachedHashCode = 0;
-                    return true;
+                    return put(slot, ONE);
+                } else {
+                    return remove(slot);
                 }
-                
-                break;
             case Float:
             case Int:
-                String newValue = val.toString();
-                String original = defines.put(key, newValue);
-                if (!val.equals(original)) {
-                    compiled = null;
-                    cachedHashCode = 0;
-                    return true;            
-                }
-                break;
+                return put(slot, val.toString());
             default:
-                // same literal, != will work
-                if (defines.put(key, ONE) != ONE) {  
-                    compiled = null;
-                    cachedHashCode = 0;
-                    return true;            
-                }
-                break;
+                return put(slot, ONE);
         }
-        
-        return false;
     }
 
     public boolean remove(String key){   
-        if (defines.remove(key) != null) {
-            compiled = null;
-            cachedHashCode = 0;
-            return true;
+        int slot = getSlot(key, false);
+        return slot != -1 && remove(slot);
+    }
+
+    /**
+     * Removes the define of a slot.
+     * 
+     * @param slot The slot of the define
+     * @return True if the define was set
+     */
+    public boolean remove(int slot) {
+        if (!isSet(slot)) {
+            return false;
         }
-        return false;
+        isSet[slot >> 6] &= ~(1L << slot);
+        values[slot] = null;
+        compiled = null;
+        cachedHashCode = 0;
+        return true;
     }
 
     public void addFrom(DefineList other){    
         if (other == null) {
             return;
         }
-        compiled = null;
-        cachedHashCode = 0;
-        defines.putAll(other.defines);
+        for (int slot = 0; slot < other.values.length; slot++) {
+            if (other.isSet(slot)) {
+                int mySlot = other.names == names ? slot : getSlot(other.names.get(slot), true);
+                put(mySlot, other.values[slot]);
+            }
+        }
     }
 
     public String getCompiled(){
         if (compiled == null){
             StringBuilder sb = new StringBuilder();
-            for (Map.Entry<String, String> entry : defines.entrySet()){
+            for (Map.Entry<String, String> entry : getSorted().entrySet()){
                 sb.append("#define ").append(entry.getKey()).append(" ");
                 sb.append(entry.getValue()).append('\n');
             }
@@ -172,16 +293,59 @@ public class DefineList implements Savable, Cloneable {
         return compiled;
     }
 
+    private TreeMap<String, String> getSorted() {
+        TreeMap<String, String> sorted = new TreeMap<String, String>();
+        for (int slot = 0; slot < values.length; slot++) {
+            if (isSet(slot)) {
+                sorted.put(names.get(slot), values[slot]);
+            }
+        }
+        return sorted;
+    }
+
     @Override
     public boolean equals(Object obj) {
         final DefineList other = (DefineList) obj;
-        return defines.equals(other.defines);
+        if (other.names == names) {
+            // same slots, compare the bitsets then the values
+            int words = Math.max(isSet.length, other.isSet.length);
+            for (int i = 0; i < words; i++) {
+                long mine = i < isSet.length ? isSet[i] : 0;
+                long theirs = i < other.isSet.length ? other.isSet[i] : 0;
+                if (mine != theirs) {
+                    return false;
+                }
+            }
+            for (int slot = 0; slot < values.length; slot++) {
+                if (values[slot] != null && !values[slot].equals(other.values[slot])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        if (size() != other.size()) {
+            return false;
+        }
+        for (int slot = 0; slot < values.length; slot++) {
+            if (isSet(slot) && !values[slot].equals(other.get(names.get(slot)))) {
+                return false;
+            }
+        }
+        return true;
     }
     
     @Override
     public int hashCode() {
         if (cachedHashCode == 0) {
-            cachedHashCode = defines.hashCode();
+            // same as the hash code of a map of the defines
+            int hash = 0;
+            for (int slot = 0; slot < values.length; slot++) {
+                if (isSet(slot)) {
+                    hash += names.get(slot).hashCode() ^ values[slot].hashCode();
+                }
+            }
+            cachedHashCode = hash;
         }
         return cachedHashCode;
     }
@@ -190,6 +354,7 @@ public class DefineList implements Savable, Cloneable {
     public String toString(){
         StringBuilder sb = new StringBuilder();
         int i = 0;
+        TreeMap<String, String> defines = getSorted();
         for (Map.Entry<String, String> entry : defines.entrySet()) {
             sb.append(entry.getKey()).append("=").append(entry.getValue());
             if (i != defines.size() - 1) {
@@ -104,6 +104,15 @@ public final class AppSettings extends HashMap<String, Object> {
      */
     public static final String LWJGL_OPENAL = "LWJGL";
 
+    /**
+     * Use the software mixer for audio, which does not need OpenAL and
+     * plays through Java Sound on desktop.
+     * 
+     * @see AppSettings#setAudioRenderer(java.lang.String) 
+     * @see com.jme3.audio.mixer.SoftwareAudioRenderer
+     */
+    public static final String SOFTWARE_AUDIO = "Software";
+
     static {
         defaults.put("Width", 640);
         defaults.put("Height", 480);
@@ -506,6 +515,7 @@ public final class AppSettings extends HashMap<String, Object> {
      * Set the audio renderer to use. One of:<br>
      * <ul>
      * <li>AppSettings.LWJGL_OPENAL - Default for LWJGL</li>
+     * <li>AppSettings.SOFTWARE_AUDIO - Software mixer</li>
      * <li>null - Disable audio</li>
      * </ul>
      * @param audioRenderer 
@@ -297,6 +297,19 @@ end procedure
         }
     }
     
+    /**
+     * Converts a float to an int whose unsigned order is the order of the
+     * floats, for use in sort keys. Negative and positive zero have the same
+     * key.
+     * 
+     * @param f the float, not NaN
+     * @return the unsigned sort key
+     */
+    public static int floatToSortableInt(float f) {
+        int bits = Float.floatToIntBits(f + 0.0f);
+        return bits < 0 ? ~bits : bits ^ 0x80000000;
+    }
+    
     /**
      * Merge sort
      */
@@ -31,7 +31,9 @@
  */
 package com.jme3.util;
 
+import com.jme3.collision.bih.BIHNode;
 import com.jme3.collision.bih.BIHNode.BIHStackData;
+import com.jme3.collision.bih.BIHTree;
 import com.jme3.math.*;
 import com.jme3.scene.Spatial;
 import java.nio.FloatBuffer;
@@ -218,4 +220,6 @@ public class TempVars {
      */
     public final float[] bihSwapTmp = new float[9];
     public final ArrayList<BIHStackData> bihStack = new ArrayList<BIHStackData>();
+    public final BIHNode[] bihNodeStack = new BIHNode[BIHTree.MAX_TREE_DEPTH * 2];
+    public final float[] bihRangeStack = new float[BIHTree.MAX_TREE_DEPTH * 4];
 }
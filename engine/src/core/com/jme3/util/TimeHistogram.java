@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.util;
+
+/**
+ * <code>TimeHistogram</code> collects durations into logarithmic buckets,
+ * bucket <code>i</code> counting the samples between 2<sup>i</sup> and
+ * 2<sup>i+1</sup> microseconds, bucket 0 also counting the shorter ones. It keeps no per-sample data, so recording
+ * is constant time and does not allocate, which makes it suitable
+ * for timing every frame.
+ * <p>
+ * Percentiles are estimated by interpolating within their bucket and are
+ * therefore accurate to within a factor of two, the minimum, maximum and
+ * mean are exact.
+ * <p>
+ * This class is not thread safe.
+ */
+public class TimeHistogram {
+
+    /**
+     * The number of buckets, the last one also counts all the samples
+     * longer than 2<sup>BUCKETS-1</sup> microseconds.
+     */
+    public static final int BUCKETS = 24;
+
+    private final int[] counts = new int[BUCKETS];
+    private int samples;
+    private long total;
+    private long min;
+    private long max;
+
+    public TimeHistogram() {
+        reset();
+    }
+
+    /**
+     * Records a duration.
+     * 
+     * @param nanos The duration in nanoseconds
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        counts[getBucket(nanos)]++;
+        samples++;
+        total += nanos;
+        min = Math.min(min, nanos);
+        max = Math.max(max, nanos);
+    }
+
+    /**
+     * Removes all the recorded samples.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = 0;
+        }
+        samples = 0;
+        total = 0;
+        min = Long.MAX_VALUE;
+        max = 0;
+    }
+
+    /**
+     * @param nanos A duration in nanoseconds
+     * @return The bucket in which the duration is counted.
+     */
+    public static int getBucket(long nanos) {
+        long micros = nanos / 1000;
+        if (micros <= 1) {
+            return 0;
+        }
+        int bucket = 63 - Long.numberOfLeadingZeros(micros);
+        return Math.min(bucket, BUCKETS - 1);
+    }
+
+    /**
+     * @param bucket The bucket index
+     * @return The shortest duration counted in the bucket, in nanoseconds.
+     */
+    public static long getBucketStart(int bucket) {
+        return bucket == 0 ? 0 : 1000L << bucket;
+    }
+
+    /**
+     * @param bucket The bucket index
+     * @return The number of samples counted in the bucket.
+     */
+    public int getCount(int bucket) {
+        return counts[bucket];
+    }
+
+    /**
+     * @return The number of samples recorded since the last reset.
+     */
+    public int getSampleCount() {
+        return samples;
+    }
+
+    /**
+     * @return The sum of the recorded durations in nanoseconds.
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * @return The shortest recorded duration in nanoseconds, 0 when empty.
+     */
+    public long getMin() {
+        return samples == 0 ? 0 : min;
+    }
+
+    /**
+     * @return The longest recorded duration in nanoseconds.
+     */
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * @return The mean of the recorded durations in nanoseconds.
+     */
+    public long getMean() {
+        return samples == 0 ? 0 : total / samples;
+    }
+
+    /**
+     * Estimates a percentile of the recorded durations.
+     * 
+     * @param percentile The percentile between 0 and 1, e.g. 0.99f
+     * @return The estimated duration in nanoseconds, clamped to the
+     * recorded minimum and maximum.
+     */
+    public long getPercentile(float percentile) {
+        if (samples == 0) {
+            return 0;
+        }
+        float rank = Math.max(0f, Math.min(1f, percentile)) * samples;
+        int seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            if (counts[i] == 0) {
+                continue;
+            }
+            if (seen + counts[i] >= rank) {
+                long start = Math.max(getBucketStart(i), min);
+                long end = i == BUCKETS - 1 ? max : Math.min(getBucketStart(i + 1), max);
+                float fraction = (rank - seen) / counts[i];
+                return start + (long) ((end - start) * fraction);
+            }
+            seen += counts[i];
+        }
+        return max;
+    }
+
+    /**
+     * Adds the samples of another histogram to this one.
+     * 
+     * @param histogram The histogram to merge
+     */
+    public void add(TimeHistogram histogram) {
+        if (histogram.samples == 0) {
+            return;
+        }
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] += histogram.counts[i];
+        }
+        samples += histogram.samples;
+        total += histogram.total;
+        min = Math.min(min, histogram.min);
+        max = Math.max(max, histogram.max);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("TimeHistogram[samples=%d, mean=%.3fms, p50=%.3fms, p99=%.3fms, max=%.3fms]",
+                samples, getMean() / 1e6, getPercentile(0.5f) / 1e6,
+                getPercentile(0.99f) / 1e6, getMax() / 1e6);
+    }
+}
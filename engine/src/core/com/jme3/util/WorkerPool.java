@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.util;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * <code>WorkerPool</code> is the pool of worker threads shared by the
+ * engine subsystems that split their per-frame work across cores,
+ * e.g. parallel scene graph updates or software skinning.
+ * <p>
+ * The pool is created on first use and has one thread less than
+ * the number of processors, since the calling thread is expected to
+ * take a share of the work. Tasks submitted from a worker thread should be
+ * executed inline instead, see {@link #isWorkerThread() }, otherwise 
+ * the pool could run out of threads while tasks wait for each other.
+ */
+public final class WorkerPool {
+
+    private static ExecutorService executor;
+    private static int threadCount;
+    private static final ThreadLocal<Boolean> inline = new ThreadLocal<Boolean>();
+
+    private WorkerPool() {
+    }
+
+    private static final class WorkerThread extends Thread {
+        public WorkerThread(Runnable r, int id) {
+            super(r, "jME3 Worker " + id);
+            setDaemon(true);
+        }
+    }
+
+    private static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            threadCount = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+            executor = Executors.newFixedThreadPool(threadCount, new ThreadFactory() {
+                private int nextId = 0;
+                public Thread newThread(Runnable r) {
+                    return new WorkerThread(r, nextId++);
+                }
+            });
+        }
+        return executor;
+    }
+
+    /**
+     * @return The number of worker threads in the pool.
+     */
+    public static int getThreadCount() {
+        getExecutor();
+        return threadCount;
+    }
+
+    /**
+     * @return true if the current thread belongs to the pool, or acts as
+     * one, see {@link #setInline(boolean) }.
+     */
+    public static boolean isWorkerThread() {
+        return Thread.currentThread() instanceof WorkerThread || inline.get() != null;
+    }
+
+    /**
+     * Makes the current thread act as a worker thread, so that the tasks
+     * it submits with {@link #invokeAll(java.util.List) } are executed inline.
+     * Used while the worker threads are kept busy waiting for work of the 
+     * current thread, and could not execute its tasks.
+     * 
+     * @param enabled true to act as a worker thread
+     * @return the previous value, to restore once done
+     */
+    public static boolean setInline(boolean enabled) {
+        boolean previous = inline.get() != null;
+        if (enabled) {
+            inline.set(Boolean.TRUE);
+        } else {
+            inline.remove();
+        }
+        return previous;
+    }
+
+    /**
+     * Submits a task to the pool.
+     * 
+     * @param task The task to execute
+     * @return The future of the task, see {@link #waitFor(java.util.concurrent.Future[]) }.
+     */
+    public static Future<?> submit(Runnable task) {
+        return getExecutor().submit(task);
+    }
+
+    /**
+     * Executes the given tasks in parallel and waits for them to complete.
+     * The last task is executed on the calling thread. If the calling 
+     * thread is a worker thread, all tasks are executed inline.
+     * 
+     * @param tasks The tasks to execute
+     * @throws RuntimeException the first exception thrown by a task.
+     */
+    public static void invokeAll(List<? extends Runnable> tasks) {
+        int count = tasks.size();
+        if (count == 0) {
+            return;
+        }
+        if (count == 1 || isWorkerThread()) {
+            for (int i = 0; i < count; i++) {
+                tasks.get(i).run();
+            }
+            return;
+        }
+
+        Future[] futures = new Future[count - 1];
+        for (int i = 0; i < count - 1; i++) {
+            futures[i] = submit(tasks.get(i));
+        }
+        try {
+            tasks.get(count - 1).run();
+        } finally {
+            waitFor(futures);
+        }
+    }
+
+    /**
+     * Waits for all the given futures to complete, ignoring null entries.
+     * If a task failed, its exception is rethrown once all futures are done.
+     * 
+     * @param futures The futures to wait for
+     */
+    public static void waitFor(Future[] futures) {
+        boolean interrupted = false;
+        RuntimeException exception = null;
+        Error error = null;
+        for (Future future : futures) {
+            if (future == null) {
+                continue;
+            }
+            while (true) {
+                try {
+                    future.get();
+                    break;
+                } catch (InterruptedException ex) {
+                    interrupted = true;
+                } catch (ExecutionException ex) {
+                    Throwable cause = ex.getCause();
+                    if (cause instanceof Error) {
+                        if (error == null) {
+                            error = (Error) cause;
+                        }
+                    } else if (exception == null) {
+                        exception = cause instanceof RuntimeException 
+                                  ? (RuntimeException) cause 
+                                  : new RuntimeException(cause);
+                    }
+                    break;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (error != null) {
+            throw error;
+        }
+        if (exception != null) {
+            throw exception;
+        }
+    }
+}
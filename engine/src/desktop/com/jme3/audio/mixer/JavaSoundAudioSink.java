@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.audio.mixer;
+
+import java.io.IOException;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
+
+/**
+ * <code>JavaSoundAudioSink</code> plays the output of the 
+ * {@link SoftwareAudioRenderer} on the default Java Sound device.
+ */
+public class JavaSoundAudioSink implements AudioSink {
+
+    private final float latency;
+    private SourceDataLine line;
+
+    /**
+     * Creates a sink with a latency of 0.1 seconds.
+     */
+    public JavaSoundAudioSink() {
+        this(0.1f);
+    }
+
+    /**
+     * @param latency The duration of the buffer of the device, in seconds.
+     */
+    public JavaSoundAudioSink(float latency) {
+        this.latency = latency;
+    }
+
+    public void open(int sampleRate, int channels) throws IOException {
+        AudioFormat format = new AudioFormat(sampleRate, 16, channels, true, false);
+        int bufferSize = (int) (sampleRate * latency) * channels * 2;
+        try {
+            line = AudioSystem.getSourceDataLine(format);
+            line.open(format, bufferSize);
+        } catch (LineUnavailableException ex) {
+            throw new IOException("No audio line available: " + ex.getMessage());
+        } catch (IllegalArgumentException ex) {
+            throw new IOException("Audio format not supported: " + format);
+        }
+        line.start();
+    }
+
+    public void write(byte[] data, int offset, int length) {
+        line.write(data, offset, length);
+    }
+
+    public boolean isRealTime() {
+        return true;
+    }
+
+    public void close() {
+        if (line != null) {
+            line.stop();
+            line.close();
+            line = null;
+        }
+    }
+}
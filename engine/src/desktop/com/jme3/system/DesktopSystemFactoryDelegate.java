@@ -8,6 +8,8 @@ import java.util.logging.Logger;
 import com.jme3.asset.AssetManager;
 import com.jme3.asset.DesktopAssetManager;
 import com.jme3.audio.AudioRenderer;
+import com.jme3.audio.mixer.JavaSoundAudioSink;
+import com.jme3.audio.mixer.SoftwareAudioRenderer;
 import com.jme3.system.JmeContext.Type;
 
 /**
@@ -139,6 +141,10 @@ public class DesktopSystemFactoryDelegate implements ISystemFactoryDelegate {
 	@Override
 	public AudioRenderer newAudioRenderer(AppSettings settings) {
         initialize(settings);
+        if (settings.getAudioRenderer().startsWith(AppSettings.SOFTWARE_AUDIO)) {
+            return new SoftwareAudioRenderer(new JavaSoundAudioSink());
+        }
+
         Class<? extends AudioRenderer> clazz = null;
         try {
             if (settings.getAudioRenderer().startsWith("LWJGL")) {
@@ -37,6 +37,8 @@ import com.jme3.asset.AssetManager;
 import com.jme3.asset.AssetNotFoundException;
 import com.jme3.asset.DesktopAssetManager;
 import com.jme3.audio.AudioRenderer;
+import com.jme3.audio.mixer.JavaSoundAudioSink;
+import com.jme3.audio.mixer.SoftwareAudioRenderer;
 import com.jme3.system.JmeContext.Type;
 import com.jme3.texture.Image;
 import com.jme3.texture.image.DefaultImageRaster;
@@ -252,6 +254,10 @@ public class JmeDesktopSystem extends JmeSystemDelegate {
     @Override
     public AudioRenderer newAudioRenderer(AppSettings settings) {
         initialize(settings);
+        if (settings.getAudioRenderer().startsWith(AppSettings.SOFTWARE_AUDIO)) {
+            return new SoftwareAudioRenderer(new JavaSoundAudioSink());
+        }
+
         Class<? extends AudioRenderer> clazz = null;
         try {
             if (settings.getAudioRenderer().startsWith("LWJGL")) {
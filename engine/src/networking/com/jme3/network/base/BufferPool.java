@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.base;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ *  Thread-local pools of reusable scratch buffers used to serialize
+ *  and frame messages without allocating a full size buffer per
+ *  message.  Scratch buffers are grouped in size classes and are
+ *  only valid until the same thread requests another scratch buffer
+ *  of the same class, so they must never be handed to another thread
+ *  or queued.  Data that outlives the current call is copied into an
+ *  exactly sized buffer with copyOf().
+ *
+ *  <p>The pooled buffers are heap buffers because the connectors and
+ *  endpoints write through the backing array.</p>
+ *
+ *  <p>Allocation counters are kept for all buffers created through
+ *  this class, which makes it easy to verify that steady state 
+ *  messaging does not create large buffers.</p>
+ *
+ *  @version   $Revision$
+ */
+public class BufferPool
+{
+    /**
+     *  The largest framed message supported by the protocol: 
+     *  a short length plus the data.
+     */
+    public static final int MAX_MESSAGE_SIZE = 32767 + 2;
+ 
+    private static final int[] SIZE_CLASSES = { 1024, 8192, MAX_MESSAGE_SIZE, 65536 + 2 };
+    
+    private static final AtomicLong allocationCount = new AtomicLong();
+    private static final AtomicLong allocatedBytes = new AtomicLong();
+    private static final AtomicLong scratchRequests = new AtomicLong();
+    
+    private static final ThreadLocal<ByteBuffer[]> scratchBuffers = new ThreadLocal<ByteBuffer[]>() {
+            @Override
+            protected ByteBuffer[] initialValue() {
+                return new ByteBuffer[SIZE_CLASSES.length];
+            }
+        };
+ 
+    private BufferPool()
+    {
+    }
+ 
+    /**
+     *  Returns a cleared thread-local buffer with a capacity of at
+     *  least the specified size.  The buffer is reused by the next
+     *  call from the same thread for the same size class.
+     */
+    public static ByteBuffer acquireScratch( int minSize )
+    {
+        scratchRequests.incrementAndGet();
+        
+        for( int i = 0; i < SIZE_CLASSES.length; i++ ) {
+            if( SIZE_CLASSES[i] < minSize )
+                continue;
+                
+            ByteBuffer[] buffers = scratchBuffers.get();
+            ByteBuffer buffer = buffers[i];
+            if( buffer == null ) {
+                buffer = allocate( SIZE_CLASSES[i] );
+                buffers[i] = buffer;
+            }
+            buffer.clear();
+            return buffer;
+        }
+        
+        // Larger than any size class, these are not pooled
+        return allocate( minSize );
+    }
+ 
+    /**
+     *  Allocates a new buffer of the specified size, keeping
+     *  track of the allocation.
+     */
+    public static ByteBuffer allocate( int size )
+    {
+        allocationCount.incrementAndGet();
+        allocatedBytes.addAndGet( size );
+        return ByteBuffer.allocate( size );
+    }
+ 
+    /**
+     *  Copies the remaining data of the specified buffer into
+     *  a new, exactly sized buffer.  The position of the source
+     *  buffer is not modified.
+     */
+    public static ByteBuffer copyOf( ByteBuffer source )
+    {
+        ByteBuffer result = allocate( source.remaining() );
+        result.put( source.duplicate() );
+        result.flip();
+        return result;
+    }
+ 
+    /**
+     *  Returns the number of buffers allocated through this class.
+     */
+    public static long getAllocationCount()
+    {
+        return allocationCount.get();
+    }
+    
+    /**
+     *  Returns the total number of bytes allocated through this class.
+     */
+    public static long getAllocatedBytes()
+    {
+        return allocatedBytes.get();
+    }
+    
+    /**
+     *  Returns the number of times a scratch buffer was requested.
+     */
+    public static long getScratchRequestCount()
+    {
+        return scratchRequests.get();
+    }
+    
+    public static void resetStatistics()
+    {
+        allocationCount.set(0);
+        allocatedBytes.set(0);
+        scratchRequests.set(0);
+    }
+}
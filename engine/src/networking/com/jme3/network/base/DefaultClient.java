@@ -65,7 +65,6 @@ public class DefaultClient implements Client
     private static final int CH_UNRELIABLE = 1;
     private static final int CH_FIRST = 2;
         
-    private ThreadLocal<ByteBuffer> dataBuffer = new ThreadLocal<ByteBuffer>();
     
     private int id = -1;
     private boolean isRunning = false;
@@ -226,22 +225,14 @@ public class DefaultClient implements Client
             waitForConnected();
         }
         
-        ByteBuffer buffer = dataBuffer.get();
-        if( buffer == null ) {
-            buffer = ByteBuffer.allocate( 65536 + 2 );
-            dataBuffer.set(buffer);
-        }
-        buffer.clear();        
- 
-        // Convert the message to bytes
+        // Convert the message to bytes using the thread's scratch buffer
+        ByteBuffer buffer = BufferPool.acquireScratch( 65536 + 2 );
         buffer = MessageProtocol.messageToBuffer(message, buffer);
                 
         // Since we share the buffer between invocations, we will need to 
         // copy this message's part out of it.  This is because we actually
         // do the send on a background thread.       
-        byte[] temp = new byte[buffer.remaining()];
-        System.arraycopy(buffer.array(), buffer.position(), temp, 0, buffer.remaining());
-        buffer = ByteBuffer.wrap(temp);
+        buffer = BufferPool.copyOf(buffer);
         
         channels.get(channel).write(buffer);
     }
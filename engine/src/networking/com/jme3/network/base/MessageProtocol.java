@@ -55,18 +55,26 @@ public class MessageProtocol
 {
     private LinkedList<Message> messages = new LinkedList<Message>();
     private ByteBuffer current;
+    private ByteBuffer partial;
     private int size;
     private Byte carry;
  
     /**
      *  Converts a message to a ByteBuffer using the Serializer
      *  and the (short length) + data protocol.  If target is null
-     *  then a 32k byte buffer will be created and filled.
+     *  then the message is serialized into a thread-local scratch
+     *  buffer and a new buffer of exactly the message size is returned.
      */
     public static ByteBuffer messageToBuffer( Message message, ByteBuffer target )
     {
-        // Could let the caller pass their own in       
-        ByteBuffer buffer = target == null ? ByteBuffer.allocate( 32767 + 2 ) : target;
+        if( target == null ) {
+            // Serialize once into reusable storage and only allocate
+            // what the message actually needs.
+            ByteBuffer scratch = BufferPool.acquireScratch( BufferPool.MAX_MESSAGE_SIZE );
+            return BufferPool.copyOf( messageToBuffer( message, scratch ) );
+        }
+        
+        ByteBuffer buffer = target;
         
         try {
             buffer.position( 2 );
@@ -136,9 +144,28 @@ public class MessageProtocol
                     size = buffer.getShort();
                 }               
  
-                // Allocate the buffer into which we'll feed the
+                if( buffer.remaining() >= size ) {
+                    // The whole message is available so it can be read
+                    // straight from a view of the supplied buffer
+                    int end = buffer.position() + size;
+                    int limit = buffer.limit();
+                    buffer.limit( end );
+                    ByteBuffer view = buffer.slice();
+                    buffer.limit( limit );
+                    buffer.position( end );
+                    
+                    createMessage( view );
+                    continue;
+                }
+ 
+                // Reuse the buffer into which we'll feed the
                 // data as we get it               
-                current = ByteBuffer.allocate(size);
+                if( partial == null || partial.capacity() < size ) {
+                    partial = BufferPool.allocate( Math.max(size, 1024) );
+                }
+                partial.clear();
+                partial.limit( size );
+                current = partial;
             } 
 
             if( current.remaining() <= buffer.remaining() ) {
@@ -172,7 +199,8 @@ public class MessageProtocol
  
     /**
      *  Creates a message from the properly sized byte buffer
-     *  and adds it to the messages queue.
+     *  and adds it to the messages queue.  The buffer is only
+     *  valid for the duration of the call and must not be retained.
      */   
     protected void createMessage( ByteBuffer buffer )
     {
@@ -62,7 +62,7 @@ public abstract class Serializer {
     private static final Map<Short, SerializerRegistration> idRegistrations         = new HashMap<Short, SerializerRegistration>();
     private static final Map<Class, SerializerRegistration> classRegistrations      = new HashMap<Class, SerializerRegistration>();
 
-    private static final Serializer                         fieldSerializer         = new FieldSerializer();
+    private static Serializer                               fieldSerializer         = new FieldSerializer();
     private static final Serializer                         serializableSerializer  = new SerializableSerializer();
     private static final Serializer                         arraySerializer         = new ArraySerializer();
 
@@ -144,6 +144,24 @@ public abstract class Serializer {
         strictRegistration = b;
     }
 
+    /**
+     *  Sets the serializer used for classes registered without a
+     *  specific serializer, FieldSerializer by default.  Only classes
+     *  registered after this call are affected, so it should be called
+     *  before any registration.  For example, an AccessorFieldSerializer
+     *  avoids boxing primitive fields and writes the same data as the
+     *  FieldSerializer.
+     */
+    public static void setDefaultFieldSerializer( Serializer serializer ) {
+        if( serializer == null )
+            throw new IllegalArgumentException( "Serializer cannot be null." );
+        fieldSerializer = serializer;
+    }
+    
+    public static Serializer getDefaultFieldSerializer() {
+        return fieldSerializer;
+    }
+
     public static SerializerRegistration registerClass(Class cls) {
         return registerClass(cls, true);
     }
@@ -0,0 +1,304 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.network.serializing.serializers;
+
+import com.jme3.network.serializing.Serializer;
+import com.jme3.network.serializing.SerializerException;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A field serializer that builds a specialized accessor for every field
+ * when a class is registered. Primitive fields are read and written with
+ * the typed {@link Field} accessors and straight to the buffer, without
+ * boxing and without going through the primitive serializers.
+ * Other fields are handled exactly like {@link FieldSerializer} does.
+ * <p>
+ * The wire format is identical to the {@link FieldSerializer}, so both
+ * ends do not need to use the same implementation. Primitive types whose
+ * serializer has been replaced by a custom one use the generic path.
+ * To use this serializer for all classes registered without an explicit
+ * serializer, see {@link Serializer#setDefaultFieldSerializer(com.jme3.network.serializing.Serializer) }.
+ */
+public class AccessorFieldSerializer extends FieldSerializer {
+    
+    private static Map<Class, FieldAccessor[]> accessors = new HashMap<Class, FieldAccessor[]>();
+    
+    @Override
+    public void initialize(Class clazz) {
+        super.initialize(clazz);
+        
+        SavedField[] fields = getSavedFields(clazz);
+        FieldAccessor[] classAccessors = new FieldAccessor[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            classAccessors[i] = createAccessor(fields[i].field, fields[i].serializer);
+        }
+        accessors.put(clazz, classAccessors);
+    }
+    
+    protected FieldAccessor createAccessor(Field field, Serializer serializer) {
+        Class type = field.getType();
+        if (serializer != null && type.isPrimitive()) {
+            Class serializerClass = serializer.getClass();
+            if (type == int.class && serializerClass == IntSerializer.class) {
+                return new IntAccessor(field);
+            } else if (type == float.class && serializerClass == FloatSerializer.class) {
+                return new FloatAccessor(field);
+            } else if (type == boolean.class && serializerClass == BooleanSerializer.class) {
+                return new BooleanAccessor(field);
+            } else if (type == long.class && serializerClass == LongSerializer.class) {
+                return new LongAccessor(field);
+            } else if (type == double.class && serializerClass == DoubleSerializer.class) {
+                return new DoubleAccessor(field);
+            } else if (type == short.class && serializerClass == ShortSerializer.class) {
+                return new ShortAccessor(field);
+            } else if (type == byte.class && serializerClass == ByteSerializer.class) {
+                return new ByteAccessor(field);
+            } else if (type == char.class && serializerClass == CharSerializer.class) {
+                return new CharAccessor(field);
+            }
+        }
+        return new ObjectAccessor(field, serializer);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T readObject(ByteBuffer data, Class<T> c) throws IOException {
+        FieldAccessor[] classAccessors = accessors.get(c);
+        if (classAccessors == null) {
+            return super.readObject(data, c);
+        }
+        
+        // Read the null/non-null marker
+        if (data.get() == 0x0)
+            return null;
+        
+        T object;
+        try {
+            object = c.newInstance();
+        } catch (Exception e) {
+            throw new SerializerException( "Error creating object of type:" + c, e );
+        }
+        
+        try {
+            for (FieldAccessor accessor : classAccessors) {
+                accessor.read(data, object);
+            }
+        } catch (IllegalAccessException e) {
+            throw new SerializerException( "Error reading object", e );
+        }
+        return object;
+    }
+
+    @Override
+    public void writeObject(ByteBuffer buffer, Object object) throws IOException {
+        FieldAccessor[] classAccessors = object != null ? accessors.get(object.getClass()) : null;
+        if (classAccessors == null) {
+            super.writeObject(buffer, object);
+            return;
+        }
+        
+        // Add the null/non-null marker
+        buffer.put( (byte)0x1 );
+        
+        for (FieldAccessor accessor : classAccessors) {
+            try {
+                accessor.write(buffer, object);
+            } catch (BufferOverflowException boe) {
+                throw boe;
+            } catch (Exception e) {
+                throw new SerializerException( "Error writing object for field:" + accessor.field, e );
+            }
+        }
+    }
+    
+    /**
+     * Reads and writes the value of one field.
+     */
+    protected static abstract class FieldAccessor {
+        
+        protected final Field field;
+
+        protected FieldAccessor(Field field) {
+            this.field = field;
+        }
+        
+        public abstract void read(ByteBuffer data, Object target) throws IOException, IllegalAccessException;
+        
+        public abstract void write(ByteBuffer buffer, Object source) throws IOException, IllegalAccessException;
+    }
+    
+    private static final class ObjectAccessor extends FieldAccessor {
+        
+        private final Serializer serializer;
+
+        public ObjectAccessor(Field field, Serializer serializer) {
+            super(field);
+            this.serializer = serializer;
+        }
+
+        public void read(ByteBuffer data, Object target) throws IOException, IllegalAccessException {
+            Object value;
+            if (serializer != null) {
+                value = serializer.readObject(data, field.getType());
+            } else {
+                value = Serializer.readClassAndObject(data);
+            }
+            field.set(target, value);
+        }
+
+        public void write(ByteBuffer buffer, Object source) throws IOException, IllegalAccessException {
+            Object value = field.get(source);
+            if (serializer != null) {
+                serializer.writeObject(buffer, value);
+            } else {
+                Serializer.writeClassAndObject(buffer, value);
+            }
+        }
+    }
+    
+    private static final class BooleanAccessor extends FieldAccessor {
+        public BooleanAccessor(Field field) {
+            super(field);
+        }
+
+        public void read(ByteBuffer data, Object target) throws IllegalAccessException {
+            field.setBoolean(target, data.get() == 1);
+        }
+
+        public void write(ByteBuffer buffer, Object source) throws IllegalAccessException {
+            buffer.put(field.getBoolean(source) ? (byte)1 : (byte)0);
+        }
+    }
+    
+    private static final class ByteAccessor extends FieldAccessor {
+        public ByteAccessor(Field field) {
+            super(field);
+        }
+
+        public void read(ByteBuffer data, Object target) throws IllegalAccessException {
+            field.setByte(target, data.get());
+        }
+
+        public void write(ByteBuffer buffer, Object source) throws IllegalAccessException {
+            buffer.put(field.getByte(source));
+        }
+    }
+    
+    private static final class CharAccessor extends FieldAccessor {
+        public CharAccessor(Field field) {
+            super(field);
+        }
+
+        public void read(ByteBuffer data, Object target) throws IllegalAccessException {
+            field.setChar(target, data.getChar());
+        }
+
+        public void write(ByteBuffer buffer, Object source) throws IllegalAccessException {
+            buffer.putChar(field.getChar(source));
+        }
+    }
+    
+    private static final class ShortAccessor extends FieldAccessor {
+        public ShortAccessor(Field field) {
+            super(field);
+        }
+
+        public void read(ByteBuffer data, Object target) throws IllegalAccessException {
+            field.setShort(target, data.getShort());
+        }
+
+        public void write(ByteBuffer buffer, Object source) throws IllegalAccessException {
+            buffer.putShort(field.getShort(source));
+        }
+    }
+    
+    private static final class IntAccessor extends FieldAccessor {
+        public IntAccessor(Field field) {
+            super(field);
+        }
+
+        public void read(ByteBuffer data, Object target) throws IllegalAccessException {
+            field.setInt(target, data.getInt());
+        }
+
+        public void write(ByteBuffer buffer, Object source) throws IllegalAccessException {
+            buffer.putInt(field.getInt(source));
+        }
+    }
+    
+    private static final class LongAccessor extends FieldAccessor {
+        public LongAccessor(Field field) {
+            super(field);
+        }
+
+        public void read(ByteBuffer data, Object target) throws IllegalAccessException {
+            field.setLong(target, data.getLong());
+        }
+
+        public void write(ByteBuffer buffer, Object source) throws IllegalAccessException {
+            buffer.putLong(field.getLong(source));
+        }
+    }
+    
+    private static final class FloatAccessor extends FieldAccessor {
+        public FloatAccessor(Field field) {
+            super(field);
+        }
+
+        public void read(ByteBuffer data, Object target) throws IllegalAccessException {
+            field.setFloat(target, data.getFloat());
+        }
+
+        public void write(ByteBuffer buffer, Object source) throws IllegalAccessException {
+            buffer.putFloat(field.getFloat(source));
+        }
+    }
+    
+    private static final class DoubleAccessor extends FieldAccessor {
+        public DoubleAccessor(Field field) {
+            super(field);
+        }
+
+        public void read(ByteBuffer data, Object target) throws IllegalAccessException {
+            field.setDouble(target, data.getDouble());
+        }
+
+        public void write(ByteBuffer buffer, Object source) throws IllegalAccessException {
+            buffer.putDouble(field.getDouble(source));
+        }
+    }
+}
@@ -182,7 +182,16 @@ public class FieldSerializer extends Serializer {
         }
     }
 
-    private final class SavedField {
+    /**
+     *  Returns the fields serialized for the specified class in the
+     *  order they are written, or null if the class has not been
+     *  initialized with this serializer.
+     */
+    protected static SavedField[] getSavedFields(Class clazz) {
+        return savedFields.get(clazz);
+    }
+
+    protected static final class SavedField {
         public Field field;
         public Serializer serializer;
     }
@@ -33,15 +33,40 @@ package com.jme3.scene.plugins.ogre;
 
 import com.jme3.animation.Animation;
 import com.jme3.animation.Skeleton;
+import com.jme3.export.InputCapsule;
+import com.jme3.export.JmeExporter;
+import com.jme3.export.JmeImporter;
+import com.jme3.export.OutputCapsule;
+import com.jme3.export.Savable;
+import java.io.IOException;
 import java.util.ArrayList;
 
-public class AnimData {
+public class AnimData implements Savable {
 
-    public final Skeleton skeleton;
-    public final ArrayList<Animation> anims;
+    public Skeleton skeleton;
+    public ArrayList<Animation> anims;
+
+    /**
+     * Serialization only. Do not use.
+     */
+    public AnimData() {
+    }
 
     public AnimData(Skeleton skeleton, ArrayList<Animation> anims) {
         this.skeleton = skeleton;
         this.anims = anims;
     }
+
+    public void write(JmeExporter ex) throws IOException {
+        OutputCapsule oc = ex.getCapsule(this);
+        oc.write(skeleton, "skeleton", null);
+        oc.writeSavableArrayList(anims, "anims", null);
+    }
+
+    @SuppressWarnings("unchecked")
+    public void read(JmeImporter im) throws IOException {
+        InputCapsule ic = im.getCapsule(this);
+        skeleton = (Skeleton) ic.readSavable("skeleton", null);
+        anims = ic.readSavableArrayList("anims", new ArrayList<Animation>());
+    }
 }
@@ -35,6 +35,7 @@ import com.jme3.animation.AnimControl;
 import com.jme3.animation.Animation;
 import com.jme3.animation.SkeletonControl;
 import com.jme3.asset.*;
+import com.jme3.export.Savable;
 import com.jme3.material.Material;
 import com.jme3.material.MaterialList;
 import com.jme3.math.ColorRGBA;
@@ -49,7 +50,9 @@ import com.jme3.util.IntMap;
 import com.jme3.util.IntMap.Entry;
 import com.jme3.util.PlaceholderAssets;
 import static com.jme3.util.xml.SAXUtil.*;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.*;
 import java.util.ArrayList;
@@ -83,6 +86,9 @@ public class MeshLoader extends DefaultHandler implements AssetLoader {
         Type.TexCoord6,
         Type.TexCoord7,
         Type.TexCoord8,};
+    // User data used to keep the material and skeleton names in the cache
+    private static final String CACHE_MATERIAL_NAME = "OgreMaterialName";
+    private static final String CACHE_SKELETON_NAME = "OgreSkeletonName";
     private AssetKey key;
     private String meshName;
     private String folderName;
@@ -108,9 +114,10 @@ public class MeshLoader extends DefaultHandler implements AssetLoader {
     private int texCoordIndex = 0;
     private String ignoreUntilEnd = null;
     private List<Geometry> geoms = new ArrayList<Geometry>();
+    private List<String> materialNames = new ArrayList<String>();
     private ArrayList<Boolean> usesSharedMesh = new ArrayList<Boolean>();
     private IntMap<List<VertexBuffer>> lodLevels = new IntMap<List<VertexBuffer>>();
-    private AnimData animData;
+    private String skeletonName;
 
     public MeshLoader() {
         super();
@@ -119,6 +126,7 @@ public class MeshLoader extends DefaultHandler implements AssetLoader {
     @Override
     public void startDocument() {
         geoms.clear();
+        materialNames.clear();
         lodLevels.clear();
 
         sb = null;
@@ -136,7 +144,7 @@ public class MeshLoader extends DefaultHandler implements AssetLoader {
         texCoordIndex = 0;
         ignoreUntilEnd = null;
 
-        animData = null;
+        skeletonName = null;
 
         actuallyHasWeights = false;
         submeshNamesHack = false;
@@ -283,7 +291,7 @@ public class MeshLoader extends DefaultHandler implements AssetLoader {
             //geom.setUserData(UserData.JME_SHAREDMESH, sharedMesh);
         }
 
-        applyMaterial(geom, matName);
+        materialNames.add(matName);
         geoms.add(geom);
     }
 
@@ -589,12 +597,16 @@ public class MeshLoader extends DefaultHandler implements AssetLoader {
     }
 
     private void startSkeleton(String name) {
-        AssetKey assetKey = new AssetKey(folderName + name + ".xml");
+        skeletonName = name;
+    }
+
+    private AnimData loadSkeleton() {
+        AssetKey assetKey = new AssetKey(folderName + skeletonName + ".xml");
         try {
-            animData = (AnimData) assetManager.loadAsset(assetKey);
+            return (AnimData) assetManager.loadAsset(assetKey);
         } catch (AssetNotFoundException ex){
             logger.log(Level.WARNING, "Cannot locate {0} for model {1}", new Object[]{assetKey, key});
-            animData = null;
+            return null;
         }
     }
 
@@ -756,7 +768,7 @@ public class MeshLoader extends DefaultHandler implements AssetLoader {
     public void characters(char ch[], int start, int length) {
     }
 
-    private Node compileModel() {
+    private Node compileMeshes() {
         Node model = new Node(meshName + "-ogremesh");
 
         for (int i = 0; i < geoms.size(); i++) {
@@ -777,6 +789,57 @@ public class MeshLoader extends DefaultHandler implements AssetLoader {
 
         // Do not attach shared geometry to the node!
 
+        return model;
+    }
+
+    /**
+     * Creates the copy of a model returned by compileMeshes() that is 
+     * written to the cache. Materials and skeleton are not included, 
+     * only their names which are resolved again by compileModel().
+     */
+    private Node createCachedModel(Node model) {
+        Node cached = new Node(model.getName());
+        for (int i = 0; i < geoms.size(); i++) {
+            Geometry g = geoms.get(i);
+            Geometry copy = new Geometry(g.getName(), g.getMesh());
+            copy.setUserData(CACHE_MATERIAL_NAME, materialNames.get(i));
+            cached.attachChild(copy);
+        }
+        if (skeletonName != null) {
+            cached.setUserData(CACHE_SKELETON_NAME, skeletonName);
+        }
+        return cached;
+    }
+
+    /**
+     * Restores the state compileMeshes() would have left from a model
+     * loaded from the cache.
+     */
+    private Node readCachedModel(Node cached) {
+        geoms.clear();
+        materialNames.clear();
+
+        Node model = new Node(cached.getName());
+        for (Spatial child : cached.getChildren()) {
+            Geometry g = new Geometry(child.getName(), ((Geometry) child).getMesh());
+            materialNames.add((String) child.getUserData(CACHE_MATERIAL_NAME));
+            geoms.add(g);
+            model.attachChild(g);
+        }
+        skeletonName = cached.getUserData(CACHE_SKELETON_NAME);
+        return model;
+    }
+
+    private Node compileModel(Node model) {
+        for (int i = 0; i < geoms.size(); i++) {
+            applyMaterial(geoms.get(i), materialNames.get(i));
+        }
+
+        AnimData animData = null;
+        if (skeletonName != null) {
+            animData = loadSkeleton();
+        }
+
         if (animData != null) {
             // This model uses animation
 
@@ -882,17 +945,37 @@ public class MeshLoader extends DefaultHandler implements AssetLoader {
             xr.setContentHandler(this);
             xr.setErrorHandler(this);
             
-            InputStreamReader r = null;
+            Node model = null;
+            InputStream in = null;
             try {
-                r = new InputStreamReader(info.openStream());
-                xr.parse(new InputSource(r));
+                byte[] digest = null;
+                if (OgreBinaryCache.isEnabled()) {
+                    byte[] source = OgreBinaryCache.readSource(info);
+                    digest = OgreBinaryCache.digest(source);
+                    Savable cached = OgreBinaryCache.load(key, digest, assetManager);
+                    if (cached instanceof Node) {
+                        model = readCachedModel((Node) cached);
+                    } else {
+                        in = new ByteArrayInputStream(source);
+                    }
+                } else {
+                    in = info.openStream();
+                }
+                
+                if (model == null) {
+                    xr.parse(new InputSource(new InputStreamReader(in)));
+                    model = compileMeshes();
+                    if (digest != null) {
+                        OgreBinaryCache.save(key, digest, createCachedModel(model));
+                    }
+                }
             } finally {
-                if (r != null){
-                    r.close();
+                if (in != null){
+                    in.close();
                 }
             }
             
-            return compileModel();
+            return compileModel(model);
         } catch (SAXException ex) {
             IOException ioEx = new IOException("Error while parsing Ogre3D mesh.xml");
             ioEx.initCause(ex);
@@ -0,0 +1,262 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.scene.plugins.ogre;
+
+import com.jme3.asset.AssetInfo;
+import com.jme3.asset.AssetKey;
+import com.jme3.asset.AssetManager;
+import com.jme3.export.Savable;
+import com.jme3.export.binary.BinaryExporter;
+import com.jme3.export.binary.BinaryImporter;
+import java.io.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <code>OgreBinaryCache</code> keeps a binary (J3O) copy of every parsed 
+ * Ogre3D mesh.xml and skeleton.xml file in a folder on disk, so that
+ * the next time the same file is loaded the XML parser can be skipped.
+ * <p>
+ * Each cache file is named after the asset key and starts with the SHA-1 
+ * digest of the source file it was created from. A cache file is only
+ * used when the digest of the current source matches, otherwise the 
+ * source is parsed again and the cache file is replaced.
+ * Materials and skeletons referenced by a mesh are not part of its
+ * cache file, they are loaded through the asset manager as usual.
+ * <p>
+ * The cache is disabled until a folder is set with 
+ * {@link #setCacheFolder(java.io.File) }.
+ */
+public final class OgreBinaryCache {
+
+    private static final Logger logger = Logger.getLogger(OgreBinaryCache.class.getName());
+    
+    /**
+     * "OGRC" followed by the version of the cache file format.
+     * The version must be increased whenever the cached data changes.
+     */
+    private static final int SIGNATURE = 0x4F475243;
+    private static final int VERSION = 1;
+    
+    private static File cacheFolder;
+
+    private OgreBinaryCache() {
+    }
+
+    /**
+     * Sets the folder where the cache files are written, the folder
+     * is created if needed. 
+     * 
+     * @param folder The cache folder, or null to disable the cache.
+     */
+    public static synchronized void setCacheFolder(File folder) {
+        cacheFolder = folder;
+    }
+
+    /**
+     * @return The cache folder, or null if the cache is disabled.
+     */
+    public static synchronized File getCacheFolder() {
+        return cacheFolder;
+    }
+
+    /**
+     * @return true if a cache folder is set.
+     */
+    public static boolean isEnabled() {
+        return getCacheFolder() != null;
+    }
+
+    /**
+     * Reads the whole source file of an asset.
+     */
+    static byte[] readSource(AssetInfo info) throws IOException {
+        InputStream in = null;
+        try {
+            in = info.openStream();
+            ByteArrayOutputStream baos = new ByteArrayOutputStream(64 * 1024);
+            byte[] buffer = new byte[64 * 1024];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                baos.write(buffer, 0, n);
+            }
+            return baos.toByteArray();
+        } finally {
+            if (in != null) {
+                in.close();
+            }
+        }
+    }
+
+    /**
+     * Computes the SHA-1 digest of the given data.
+     */
+    static byte[] digest(byte[] data) throws IOException {
+        try {
+            return MessageDigest.getInstance("SHA-1").digest(data);
+        } catch (NoSuchAlgorithmException ex) {
+            IOException ioEx = new IOException("SHA-1 digest is not available");
+            ioEx.initCause(ex);
+            throw ioEx;
+        }
+    }
+
+    private static File getCacheFile(File folder, AssetKey key) throws IOException {
+        byte[] nameDigest = digest(key.getName().getBytes("UTF-8"));
+        StringBuilder sb = new StringBuilder(nameDigest.length * 2 + 4);
+        for (int i = 0; i < nameDigest.length; i++) {
+            sb.append(Character.forDigit((nameDigest[i] >> 4) & 0xF, 16));
+            sb.append(Character.forDigit(nameDigest[i] & 0xF, 16));
+        }
+        sb.append(".j3o");
+        return new File(folder, sb.toString());
+    }
+
+    /**
+     * Loads the cached copy of an asset.
+     * 
+     * @param key The key of the asset
+     * @param sourceDigest The digest of the current source file, see {@link #digest(byte[]) }
+     * @param assetManager The asset manager used to load the cache file
+     * @return The cached object, or null if there is no cache file or if
+     * it was created from a different source file.
+     */
+    static Savable load(AssetKey key, byte[] sourceDigest, AssetManager assetManager) {
+        File folder = getCacheFolder();
+        if (folder == null) {
+            return null;
+        }
+
+        FileInputStream fis = null;
+        try {
+            File file = getCacheFile(folder, key);
+            if (!file.isFile()) {
+                logger.log(Level.FINE, "Cache miss for {0}", key);
+                return null;
+            }
+
+            fis = new FileInputStream(file);
+            // DataInputStream does not buffer, this leaves the stream 
+            // positioned at the J3O data which can then be memory mapped
+            DataInputStream in = new DataInputStream(fis);
+            boolean valid = in.readInt() == SIGNATURE && in.readInt() == VERSION;
+            if (valid) {
+                byte[] digest = new byte[in.readUnsignedByte()];
+                in.readFully(digest);
+                valid = Arrays.equals(digest, sourceDigest);
+            }
+            if (!valid) {
+                logger.log(Level.FINE, "Cache miss for {0}, source has changed", key);
+                return null;
+            }
+
+            BinaryImporter importer = BinaryImporter.getInstance();
+            importer.setAssetManager(assetManager);
+            Savable savable = importer.load(fis);
+            logger.log(Level.FINE, "Cache hit for {0}", key);
+            return savable;
+        } catch (IOException ex) {
+            logger.log(Level.WARNING, "Failed to read cache file for " + key, ex);
+            return null;
+        } finally {
+            if (fis != null) {
+                try {
+                    fis.close();
+                } catch (IOException ex) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the cached copy of an asset, replacing any previous copy.
+     * Failures are logged and otherwise ignored.
+     * 
+     * @param key The key of the asset
+     * @param sourceDigest The digest of the source file, see {@link #digest(byte[]) }
+     * @param savable The object to cache
+     */
+    static void save(AssetKey key, byte[] sourceDigest, Savable savable) {
+        File folder = getCacheFolder();
+        if (folder == null) {
+            return;
+        }
+
+        File temp = null;
+        OutputStream os = null;
+        try {
+            if (!folder.isDirectory() && !folder.mkdirs()) {
+                throw new IOException("Cannot create cache folder " + folder);
+            }
+
+            // Write to a temporary file first, so that other loaders never
+            // see a partially written cache file
+            File file = getCacheFile(folder, key);
+            temp = File.createTempFile("ogre", ".tmp", folder);
+            os = new BufferedOutputStream(new FileOutputStream(temp));
+            DataOutputStream out = new DataOutputStream(os);
+            out.writeInt(SIGNATURE);
+            out.writeInt(VERSION);
+            out.writeByte(sourceDigest.length);
+            out.write(sourceDigest);
+            BinaryExporter.getInstance().save(savable, out);
+            out.flush();
+            os.close();
+            os = null;
+
+            if (!temp.renameTo(file)) {
+                // Windows will not rename over an existing file
+                file.delete();
+                if (!temp.renameTo(file)) {
+                    throw new IOException("Cannot rename " + temp + " to " + file);
+                }
+            }
+            temp = null;
+            logger.log(Level.FINE, "Cached {0}", key);
+        } catch (IOException ex) {
+            logger.log(Level.WARNING, "Failed to write cache file for " + key, ex);
+        } finally {
+            if (os != null) {
+                try {
+                    os.close();
+                } catch (IOException ex) {
+                }
+            }
+            if (temp != null) {
+                temp.delete();
+            }
+        }
+    }
+}
@@ -38,9 +38,11 @@ import com.jme3.animation.Skeleton;
 import com.jme3.asset.AssetInfo;
 import com.jme3.asset.AssetLoader;
 import com.jme3.asset.AssetManager;
+import com.jme3.export.Savable;
 import com.jme3.math.Quaternion;
 import com.jme3.math.Vector3f;
 import com.jme3.util.xml.SAXUtil;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -291,6 +293,20 @@ public class SkeletonLoader extends DefaultHandler implements AssetLoader {
         assetManager = info.getManager();
         InputStream in = null;
         try {
+            if (OgreBinaryCache.isEnabled()) {
+                byte[] source = OgreBinaryCache.readSource(info);
+                byte[] digest = OgreBinaryCache.digest(source);
+                Savable cached = OgreBinaryCache.load(info.getKey(), digest, assetManager);
+                if (cached instanceof AnimData) {
+                    return cached;
+                }
+                
+                in = new ByteArrayInputStream(source);
+                AnimData data = (AnimData) load(in);
+                OgreBinaryCache.save(info.getKey(), digest, data);
+                return data;
+            }
+            
             in = info.openStream();
             return load(in);
         } finally {
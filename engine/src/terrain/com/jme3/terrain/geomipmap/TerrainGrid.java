@@ -125,6 +125,11 @@ public class TerrainGrid extends TerrainQuad {
     protected int[] gridOffset;
     protected boolean runOnce = false;
     protected ExecutorService cacheExecutor;
+    protected TerrainGridTileCache tileCache;
+    protected int prefetchDistance = 0;
+    private Vector3f lastCamLocation;
+    private Vector3f camMotion = new Vector3f();
+    private Vector3f lastPredictedCell;
 
     protected class UpdateQuadCache implements Runnable {
 
@@ -137,35 +142,24 @@ public class TerrainGrid extends TerrainQuad {
         /**
          * This is executed if the camera has moved into a new CameraCell and will load in
          * the new TerrainQuad tiles to be children of this TerrainGrid parent.
-         * It will first check the LRU cache to see if the terrain tile is already there,
-         * if it is not there, it will load it in and then cache that tile.
+         * The tiles are taken from the tile cache, which loads the missing
+         * tiles in parallel, see {@link TerrainGridTileCache}.
          * The terrain tiles get added to the quad tree back on the OGL thread using the
          * attachQuadAt() method. It also resets any cached values in TerrainQuad (such as
          * neighbours).
          */
         public void run() {
+            TerrainGridTileCache tiles = getTileCache();
+            // start loading all the missing tiles at once
+            for (int i = 0; i < quadIndex.length; i++) {
+                tiles.load(location.add(quadIndex[i]));
+            }
             for (int i = 0; i < 4; i++) {
                 for (int j = 0; j < 4; j++) {
                     int quadIdx = i * 4 + j;
                     final Vector3f quadCell = location.add(quadIndex[quadIdx]);
-                    TerrainQuad q = cache.get(quadCell);
-                    if (q == null) {
-                        if (heightMapGrid != null) {
-                            // create the new Quad since it doesn't exist
-                            HeightMap heightMapAt = heightMapGrid.getHeightMapAt(quadCell);
-                            q = new TerrainQuad(getName() + "Quad" + quadCell, patchSize, quadSize, heightMapAt == null ? null : heightMapAt.getHeightMap());
-                            q.setMaterial(material.clone());
-                            log.log(Level.FINE, "Loaded TerrainQuad {0} from HeightMapGrid", q.getName());
-                        } else if (gridTileLoader != null) {
-                            q = gridTileLoader.getTerrainQuadAt(quadCell);
-                            // only clone the material to the quad if it doesn't have a material of its own
-                            if(q.getMaterial()==null) q.setMaterial(material.clone());
-                            log.log(Level.FINE, "Loaded TerrainQuad {0} from TerrainQuadGrid", q.getName());
-                        }
-                    }
-                    cache.put(quadCell, q);
+                    TerrainQuad q = tiles.get(quadCell);
 
-                    
                     final int quadrant = getQuadrant(quadIdx);
                     final TerrainQuad newQuad = q;
                     
@@ -331,6 +325,118 @@ public class TerrainGrid extends TerrainQuad {
     public TerrainGridTileLoader getGridTileLoader() {
         return gridTileLoader;
     }
+
+    /**
+     * @return the cache of the terrain tiles, created on first use
+     */
+    public synchronized TerrainGridTileCache getTileCache() {
+        if (tileCache == null) {
+            tileCache = new TerrainGridTileCache(this, cache);
+        }
+        return tileCache;
+    }
+
+    /**
+     * Sets how many cells ahead of the moving camera the tiles are
+     * prefetched. The tiles are loaded in the background along the direction
+     * the camera moves in, so they are usually in memory by the time
+     * the camera reaches them. The memory cache grows to hold them.
+     * 
+     * @param prefetchDistance the number of cells, 0 to disable prefetching (default)
+     */
+    public void setPrefetchDistance(int prefetchDistance) {
+        this.prefetchDistance = prefetchDistance;
+        // each cell ahead adds at most 7 tiles to the 4x4 grid around the camera
+        LRUCache<Vector3f, TerrainQuad> newCache = new LRUCache<Vector3f, TerrainQuad>(20 + 7 * prefetchDistance);
+        getTileCache().setMemoryCache(newCache);
+        cache = newCache;
+        lastPredictedCell = null;
+    }
+
+    public int getPrefetchDistance() {
+        return prefetchDistance;
+    }
+
+    /**
+     * Prefetches the tiles around the cells the camera is heading to.
+     * Called on every LOD update with the camera location.
+     * 
+     * @param camLocation the location of the camera
+     */
+    protected void prefetchTiles(Vector3f camLocation) {
+        if (prefetchDistance <= 0) {
+            return;
+        }
+        if (lastCamLocation == null) {
+            lastCamLocation = camLocation.clone();
+            return;
+        }
+        // smooth the motion so that jitter does not change the direction
+        float dx = camLocation.x - lastCamLocation.x;
+        float dz = camLocation.z - lastCamLocation.z;
+        camMotion.set(camMotion.x * 0.75f + dx * 0.25f, 0, camMotion.z * 0.75f + dz * 0.25f);
+        lastCamLocation.set(camLocation);
+        
+        float motion = camMotion.length();
+        if (motion < FastMath.ZERO_TOLERANCE) {
+            return;
+        }
+        Vector3f scale = getWorldScale();
+        float step = Math.min(scale.x, scale.z) * quadSize / motion;
+        Vector3f predicted = new Vector3f();
+        predicted.set(camMotion).multLocal(step * prefetchDistance).addLocal(camLocation);
+        Vector3f predictedCell = getCamCell(predicted);
+        if (predictedCell.equals(lastPredictedCell)) {
+            return;
+        }
+        lastPredictedCell = predictedCell;
+        
+        TerrainGridTileCache tiles = getTileCache();
+        for (int k = 1; k <= prefetchDistance; k++) {
+            predicted.set(camMotion).multLocal(step * k).addLocal(camLocation);
+            Vector3f cell = getCamCell(predicted);
+            for (int i = 0; i < quadIndex.length; i++) {
+                tiles.prefetch(cell.add(quadIndex[i]));
+            }
+        }
+    }
+
+    /**
+     * Loads the tile of a cell from the tile loader, or the height map grid.
+     * Called by the tile cache on one of its loading threads.
+     * 
+     * @param quadCell the cell of the tile
+     * @return the new tile
+     */
+    protected TerrainQuad loadQuadAt(Vector3f quadCell) {
+        TerrainQuad q = null;
+        if (heightMapGrid != null) {
+            // create the new Quad since it doesn't exist
+            HeightMap heightMapAt = heightMapGrid.getHeightMapAt(quadCell);
+            q = createQuadAt(quadCell, heightMapAt == null ? null : heightMapAt.getHeightMap());
+            log.log(Level.FINE, "Loaded TerrainQuad {0} from HeightMapGrid", q.getName());
+        } else if (gridTileLoader != null) {
+            q = gridTileLoader.getTerrainQuadAt(quadCell);
+            // only clone the material to the quad if it doesn't have a material of its own
+            if(q.getMaterial()==null) q.setMaterial(material.clone());
+            log.log(Level.FINE, "Loaded TerrainQuad {0} from TerrainQuadGrid", q.getName());
+        }
+        return q;
+    }
+
+    /**
+     * Creates the tile of a cell from its height map, with the 
+     * material of the grid.
+     * 
+     * @param quadCell the cell of the tile
+     * @param heightMap the height map of the tile
+     * @return the new tile
+     */
+    protected TerrainQuad createQuadAt(Vector3f quadCell, float[] heightMap) {
+        TerrainQuad q = new TerrainQuad(getName() + "Quad" + quadCell, patchSize, quadSize, heightMap);
+        q.setMaterial(material.clone());
+        return q;
+    }
     
     protected void removeQuad(TerrainQuad q) {
         if (q != null && ( (q.getQuadrant() > 0 && q.getQuadrant()<5) || q.getParent() != null) ) {
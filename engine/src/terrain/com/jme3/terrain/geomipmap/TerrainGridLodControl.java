@@ -72,6 +72,7 @@ public class TerrainGridLodControl extends TerrainLodControl {
             }
         }
         terrainGrid.runOnce = true;
+        terrainGrid.prefetchTiles(cam);
         super.updateLOD(locations, lodCalculator);
     }
 }
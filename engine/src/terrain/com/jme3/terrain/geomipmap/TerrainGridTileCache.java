@@ -0,0 +1,485 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.terrain.geomipmap;
+
+import com.jme3.math.Vector3f;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The tile cache of a {@link TerrainGrid}. Tiles are looked up in three tiers:
+ * <ol>
+ * <li>memory: an {@link LRUCache} of the most recently used {@link TerrainQuad}s,</li>
+ * <li>disk: the heightmaps of previously loaded tiles, stored in memory-mapped
+ * files in the {@link #setDiskCacheDirectory(java.io.File) disk cache directory}.
+ * Only used for grids loading their tiles from a 
+ * {@link com.jme3.terrain.heightmap.HeightMapGrid},</li>
+ * <li>loader: the tile is generated or loaded by the grid's 
+ * {@link TerrainGridTileLoader} or {@link com.jme3.terrain.heightmap.HeightMapGrid}.</li>
+ * </ol>
+ * Tiles are loaded on a pool of background threads, so that several tiles 
+ * can load at the same time and tiles can be 
+ * {@link #prefetch(com.jme3.math.Vector3f) prefetched} before the camera
+ * reaches them. Requests for a tile that is already loading wait for it
+ * instead of loading it twice.
+ * <p>
+ * Tiles rebuilt from the disk tier get the material of the grid, like the
+ * tiles created from a height map grid. Tiles of a {@link TerrainGridTileLoader}
+ * may have their own material, so they are always loaded again by the loader.
+ */
+public class TerrainGridTileCache {
+
+    private static final Logger logger = Logger.getLogger(TerrainGridTileCache.class.getName());
+    
+    private final TerrainGrid grid;
+    private LRUCache<Vector3f, TerrainQuad> memoryCache;
+    private File diskCacheDirectory;
+    private final ConcurrentHashMap<Vector3f, Future<TerrainQuad>> loading = new ConcurrentHashMap<Vector3f, Future<TerrainQuad>>();
+    private final Set<Vector3f> prefetched = Collections.synchronizedSet(new HashSet<Vector3f>());
+    private ExecutorService executor;
+    private int threadCount = Math.max(2, Runtime.getRuntime().availableProcessors());
+    private boolean concurrentLoading = false;
+    private final Object loaderLock = new Object();
+    
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskLookups = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong loaderLoads = new AtomicLong();
+    private final AtomicLong prefetchRequests = new AtomicLong();
+    private final AtomicLong prefetchHits = new AtomicLong();
+
+    /**
+     * @param grid the grid whose tiles are cached
+     * @param memoryCache the memory tier
+     */
+    public TerrainGridTileCache(TerrainGrid grid, LRUCache<Vector3f, TerrainQuad> memoryCache) {
+        this.grid = grid;
+        this.memoryCache = memoryCache;
+    }
+
+    /**
+     * @return the memory tier of the cache
+     */
+    public LRUCache<Vector3f, TerrainQuad> getMemoryCache() {
+        return memoryCache;
+    }
+
+    /**
+     * Replaces the memory tier, the tiles of the current one are kept.
+     * 
+     * @param memoryCache the new memory tier
+     */
+    public void setMemoryCache(LRUCache<Vector3f, TerrainQuad> memoryCache) {
+        for (Map.Entry<Vector3f, TerrainQuad> entry : this.memoryCache.getAll()) {
+            memoryCache.put(entry.getKey(), entry.getValue());
+        }
+        this.memoryCache = memoryCache;
+    }
+
+    /**
+     * Sets the directory in which the heightmaps of loaded tiles are stored.
+     * Tiles which are no longer in memory are then rebuilt from their
+     * stored heightmap instead of being loaded again. Has no effect if 
+     * the grid uses a {@link TerrainGridTileLoader}.
+     * 
+     * @param diskCacheDirectory the directory, or null to disable the disk tier.
+     */
+    public void setDiskCacheDirectory(File diskCacheDirectory) {
+        if (diskCacheDirectory != null && !diskCacheDirectory.isDirectory() && !diskCacheDirectory.mkdirs()) {
+            throw new IllegalArgumentException("Cannot create the disk cache directory " + diskCacheDirectory);
+        }
+        this.diskCacheDirectory = diskCacheDirectory;
+    }
+
+    /**
+     * @return the directory of the disk tier, or null if it is disabled.
+     */
+    public File getDiskCacheDirectory() {
+        return diskCacheDirectory;
+    }
+
+    /**
+     * Set to true if the tile loader of the grid can load several tiles at 
+     * the same time. Otherwise only one tile is loaded by the loader at a 
+     * time, while other tiles can still be read from the disk tier.
+     * 
+     * @param concurrentLoading true if the tile loader is thread-safe
+     */
+    public void setConcurrentLoading(boolean concurrentLoading) {
+        this.concurrentLoading = concurrentLoading;
+    }
+
+    /**
+     * @return true if the tile loader can load several tiles at the same time.
+     */
+    public boolean isConcurrentLoading() {
+        return concurrentLoading;
+    }
+
+    /**
+     * Sets the number of threads loading tiles. 
+     * Must be called before any tile is loaded.
+     * 
+     * @param threadCount the number of threads
+     */
+    public void setThreadCount(int threadCount) {
+        if (executor != null) {
+            throw new IllegalStateException("The tile cache has already started loading");
+        }
+        this.threadCount = threadCount;
+    }
+
+    private synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(threadCount, new ThreadFactory() {
+                private int nextId = 0;
+                public Thread newThread(Runnable r) {
+                    Thread th = new Thread(r);
+                    th.setName("jME TerrainGrid Loader " + nextId++);
+                    th.setDaemon(true);
+                    return th;
+                }
+            });
+        }
+        return executor;
+    }
+
+    /**
+     * Returns the tile of a cell, loading it if necessary. 
+     * If the tile is being loaded by another thread, waits for it.
+     * 
+     * @param cell the cell of the tile
+     * @return the tile
+     */
+    public TerrainQuad get(Vector3f cell) {
+        requests.incrementAndGet();
+        TerrainQuad quad = memoryCache.get(cell);
+        if (quad != null) {
+            memoryHits.incrementAndGet();
+            if (prefetched.remove(cell)) {
+                prefetchHits.incrementAndGet();
+            }
+            return quad;
+        }
+        
+        Future<TerrainQuad> future = loading.get(cell);
+        if (future == null) {
+            FutureTask<TerrainQuad> task = new FutureTask<TerrainQuad>(new LoadTile(cell));
+            future = loading.putIfAbsent(cell, task);
+            if (future == null) {
+                // load it on this thread
+                task.run();
+                future = task;
+            }
+        } else if (prefetched.remove(cell)) {
+            prefetchHits.incrementAndGet();
+        }
+        return waitFor(future);
+    }
+
+    /**
+     * Starts loading the tile of a cell in the background, if it is 
+     * not in memory.
+     * 
+     * @param cell the cell of the tile
+     * @return the future of the tile, or null if the tile is in memory
+     */
+    public Future<TerrainQuad> load(Vector3f cell) {
+        if (memoryCache.get(cell) != null) {
+            return null;
+        }
+        Future<TerrainQuad> future = loading.get(cell);
+        if (future != null) {
+            return future;
+        }
+        FutureTask<TerrainQuad> task = new FutureTask<TerrainQuad>(new LoadTile(cell));
+        future = loading.putIfAbsent(cell, task);
+        if (future != null) {
+            return future;
+        }
+        getExecutor().execute(task);
+        return task;
+    }
+
+    /**
+     * Loads the tile of a cell in the background, in anticipation of
+     * the camera moving there. 
+     * 
+     * @param cell the cell of the tile
+     */
+    public void prefetch(Vector3f cell) {
+        if (memoryCache.get(cell) != null || loading.containsKey(cell)) {
+            return;
+        }
+        prefetchRequests.incrementAndGet();
+        prefetched.add(cell);
+        load(cell);
+    }
+
+    private TerrainQuad waitFor(Future<TerrainQuad> future) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return future.get();
+                } catch (InterruptedException ex) {
+                    interrupted = true;
+                } catch (ExecutionException ex) {
+                    if (ex.getCause() instanceof RuntimeException) {
+                        throw (RuntimeException) ex.getCause();
+                    }
+                    throw new RuntimeException(ex.getCause());
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Loads a tile from the disk tier or the loader, and puts it in memory.
+     */
+    private class LoadTile implements Callable<TerrainQuad> {
+        
+        private final Vector3f cell;
+
+        LoadTile(Vector3f cell) {
+            this.cell = cell;
+        }
+        
+        public TerrainQuad call() throws Exception {
+            try {
+                TerrainQuad quad = memoryCache.get(cell);
+                if (quad == null) {
+                    quad = loadTile(cell);
+                    memoryCache.put(cell, quad);
+                }
+                return quad;
+            } finally {
+                loading.remove(cell);
+            }
+        }
+    }
+
+    private TerrainQuad loadTile(Vector3f cell) {
+        // the tiles of a tile loader can't be rebuilt from their height map
+        boolean diskTier = diskCacheDirectory != null && grid.heightMapGrid != null;
+        if (diskTier) {
+            diskLookups.incrementAndGet();
+            float[] heightMap = readHeightMap(cell);
+            if (heightMap != null) {
+                diskHits.incrementAndGet();
+                return grid.createQuadAt(cell, heightMap);
+            }
+        }
+        
+        loaderLoads.incrementAndGet();
+        TerrainQuad quad;
+        if (concurrentLoading) {
+            quad = grid.loadQuadAt(cell);
+        } else {
+            synchronized (loaderLock) {
+                quad = grid.loadQuadAt(cell);
+            }
+        }
+        
+        if (diskTier && quad != null) {
+            writeHeightMap(cell, quad.getHeightMap());
+        }
+        return quad;
+    }
+    
+    private File getFile(Vector3f cell) {
+        return new File(diskCacheDirectory, grid.getName() + "_" + (int) cell.x + "_" + (int) cell.z + ".hmap");
+    }
+
+    private float[] readHeightMap(Vector3f cell) {
+        File file = getFile(cell);
+        if (!file.exists()) {
+            return null;
+        }
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(file, "r");
+            FileChannel channel = raf.getChannel();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.nativeOrder());
+            float[] heightMap = new float[buffer.getInt()];
+            buffer.asFloatBuffer().get(heightMap);
+            return heightMap;
+        } catch (IOException ex) {
+            logger.log(Level.WARNING, "Cannot read cached tile " + file, ex);
+            return null;
+        } finally {
+            close(raf);
+        }
+    }
+
+    private void writeHeightMap(Vector3f cell, float[] heightMap) {
+        File file = getFile(cell);
+        File temp = new File(file.getPath() + ".tmp" + Thread.currentThread().getId());
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(temp, "rw");
+            ByteBuffer buffer = ByteBuffer.allocate(4 + heightMap.length * 4).order(ByteOrder.nativeOrder());
+            buffer.putInt(heightMap.length);
+            buffer.asFloatBuffer().put(heightMap);
+            buffer.clear();
+            FileChannel channel = raf.getChannel();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            raf.close();
+            raf = null;
+            // other threads only ever see complete files
+            if (!temp.renameTo(file)) {
+                temp.delete();
+            }
+        } catch (IOException ex) {
+            logger.log(Level.WARNING, "Cannot write cached tile " + file, ex);
+            temp.delete();
+        } finally {
+            close(raf);
+        }
+    }
+    
+    private static void close(RandomAccessFile raf) {
+        if (raf != null) {
+            try {
+                raf.close();
+            } catch (IOException ex) {
+            }
+        }
+    }
+
+    /**
+     * Removes all tiles from the memory tier and deletes the files of 
+     * the disk tier.
+     */
+    public void clear() {
+        memoryCache.clear();
+        if (diskCacheDirectory != null) {
+            File[] files = diskCacheDirectory.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    if (file.getName().startsWith(grid.getName() + "_") && file.getName().endsWith(".hmap")) {
+                        file.delete();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the ratio of requested tiles that were in memory
+     */
+    public float getMemoryHitRate() {
+        long count = requests.get();
+        return count == 0 ? 0 : memoryHits.get() / (float) count;
+    }
+
+    /**
+     * @return the ratio of tiles missing from memory that were found in the
+     * disk tier, including prefetched tiles.
+     */
+    public float getDiskHitRate() {
+        long count = diskLookups.get();
+        return count == 0 ? 0 : diskHits.get() / (float) count;
+    }
+
+    /**
+     * @return the ratio of prefetched tiles that were later requested
+     */
+    public float getPrefetchHitRate() {
+        long count = prefetchRequests.get();
+        return count == 0 ? 0 : prefetchHits.get() / (float) count;
+    }
+
+    /**
+     * @return the number of tiles requested with {@link #get(com.jme3.math.Vector3f) }.
+     */
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    /**
+     * @return the number of tiles which had to be loaded by the tile loader
+     */
+    public long getLoaderLoadCount() {
+        return loaderLoads.get();
+    }
+
+    /**
+     * Resets the statistics of the cache.
+     */
+    public void resetStatistics() {
+        requests.set(0);
+        memoryHits.set(0);
+        diskLookups.set(0);
+        diskHits.set(0);
+        loaderLoads.set(0);
+        prefetchRequests.set(0);
+        prefetchHits.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[requests=" + requests.get() 
+                + ", memory=" + memoryHits.get() 
+                + ", disk=" + diskHits.get() + "/" + diskLookups.get()
+                + ", loaded=" + loaderLoads.get()
+                + ", prefetched=" + prefetchHits.get() + "/" + prefetchRequests.get() + "]";
+    }
+}
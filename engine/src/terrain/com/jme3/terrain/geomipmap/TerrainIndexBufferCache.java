@@ -0,0 +1,307 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.terrain.geomipmap;
+
+import com.jme3.scene.VertexBuffer;
+import com.jme3.scene.VertexBuffer.Format;
+import com.jme3.scene.VertexBuffer.Type;
+import com.jme3.scene.VertexBuffer.Usage;
+import java.nio.IntBuffer;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+
+/**
+ * Shares the index buffers of terrain patches.
+ * <p>
+ * The index buffer of a patch only depends on its size, its LOD and 
+ * the LOD of its neighbours, so all patches of the same size with the same
+ * LOD configuration can use the same {@link VertexBuffer}, 
+ * on the CPU and on the GPU, instead of generating their own.
+ * <p>
+ * Buffers are reference counted: each {@link #acquire(com.jme3.terrain.geomipmap.LODGeomap, int, int, int, int, int, boolean) }
+ * must be matched by a {@link #release(com.jme3.scene.VertexBuffer) } once
+ * the patch stops using the buffer, and a buffer is dropped from the cache
+ * when it is no longer referenced. The shared buffers must not be modified.
+ * <p>
+ * This class is thread-safe, buffers are acquired from the LOD worker 
+ * threads and released on the render thread.
+ */
+public class TerrainIndexBufferCache {
+
+    private static final TerrainIndexBufferCache instance = new TerrainIndexBufferCache();
+    
+    private final HashMap<IndexKey, Entry> entries = new HashMap<IndexKey, Entry>();
+    private final IdentityHashMap<VertexBuffer, Entry> entriesByBuffer = new IdentityHashMap<VertexBuffer, Entry>();
+    private int references = 0;
+    private long memory = 0;
+    private long sharedMemory = 0;
+    private long hits = 0;
+    private long misses = 0;
+
+    /**
+     * Key of an index buffer: the patch size and the LOD stitching configuration.
+     */
+    private static final class IndexKey {
+        
+        private final int size;
+        private final int lod, right, top, left, bottom;
+        private final boolean variable;
+
+        IndexKey(int size, int lod, int right, int top, int left, int bottom, boolean variable) {
+            this.size = size;
+            this.lod = lod;
+            this.right = right;
+            this.top = top;
+            this.left = left;
+            this.bottom = bottom;
+            this.variable = variable;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof IndexKey)) {
+                return false;
+            }
+            IndexKey other = (IndexKey) obj;
+            return size == other.size && lod == other.lod 
+                && right == other.right && top == other.top 
+                && left == other.left && bottom == other.bottom
+                && variable == other.variable;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = size;
+            hash = 31 * hash + lod;
+            hash = 31 * hash + right;
+            hash = 31 * hash + top;
+            hash = 31 * hash + left;
+            hash = 31 * hash + bottom;
+            return 31 * hash + (variable ? 1 : 0);
+        }
+    }
+    
+    private static final class Entry {
+        
+        private final IndexKey key;
+        private final VertexBuffer buffer;
+        private final long size;
+        private int refCount = 0;
+
+        Entry(IndexKey key, VertexBuffer buffer) {
+            this.key = key;
+            this.buffer = buffer;
+            this.size = buffer.getData().capacity() * 4L;
+        }
+    }
+
+    /**
+     * @return the cache shared by all terrain patches
+     */
+    public static TerrainIndexBufferCache getInstance() {
+        return instance;
+    }
+
+    /**
+     * Returns the index buffer of a patch, stitched with its neighbours
+     * as in {@link LODGeomap#writeIndexArrayLodDiff(java.nio.IntBuffer, int, boolean, boolean, boolean, boolean) }
+     * or {@link LODGeomap#writeIndexArrayLodVariable(java.nio.IntBuffer, int, int, int, int, int) },
+     * and increments its reference count.
+     * 
+     * @param geomap the geomap of the patch
+     * @param lod the LOD of the patch
+     * @param rightLod the LOD of the right neighbour
+     * @param topLod the LOD of the top neighbour
+     * @param leftLod the LOD of the left neighbour
+     * @param bottomLod the LOD of the bottom neighbour
+     * @param useVariableLod true to stitch with the exact neighbour LODs
+     * @return the shared index buffer
+     */
+    public VertexBuffer acquire(LODGeomap geomap, int lod, int rightLod, int topLod, int leftLod, int bottomLod, boolean useVariableLod) {
+        IndexKey key;
+        if (useVariableLod) {
+            key = new IndexKey(geomap.getWidth(), lod, rightLod, topLod, leftLod, bottomLod, true);
+        } else {
+            // only whether the neighbour has a lower detail matters
+            key = new IndexKey(geomap.getWidth(), lod, 
+                               rightLod > lod ? 1 : 0, topLod > lod ? 1 : 0, 
+                               leftLod > lod ? 1 : 0, bottomLod > lod ? 1 : 0, false);
+        }
+        
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                hits++;
+                return reference(entry);
+            }
+            misses++;
+        }
+        
+        // generate the buffer outside of the lock
+        IntBuffer data;
+        int pow = (int) Math.pow(2, lod);
+        if (useVariableLod) {
+            data = geomap.writeIndexArrayLodVariable(null, pow, (int) Math.pow(2, rightLod), (int) Math.pow(2, topLod), (int) Math.pow(2, leftLod), (int) Math.pow(2, bottomLod));
+        } else {
+            data = geomap.writeIndexArrayLodDiff(null, pow, rightLod > lod, topLod > lod, leftLod > lod, bottomLod > lod);
+        }
+        VertexBuffer buffer = new VertexBuffer(Type.Index);
+        buffer.setupData(Usage.Static, 3, Format.UnsignedInt, data);
+        
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                // no other thread generated it in the meantime
+                entry = new Entry(key, buffer);
+                entries.put(key, entry);
+                entriesByBuffer.put(buffer, entry);
+                memory += entry.size;
+            }
+            return reference(entry);
+        }
+    }
+    
+    /**
+     * Acquires another reference to a buffer returned by 
+     * {@link #acquire(com.jme3.terrain.geomipmap.LODGeomap, int, int, int, int, int, boolean) },
+     * e.g. for a patch cloned with its mesh.
+     * 
+     * @param buffer the shared index buffer
+     * @return the same buffer
+     */
+    public synchronized VertexBuffer acquire(VertexBuffer buffer) {
+        Entry entry = entriesByBuffer.get(buffer);
+        if (entry == null) {
+            throw new IllegalArgumentException("Buffer is not in the cache: " + buffer);
+        }
+        return reference(entry);
+    }
+    
+    private VertexBuffer reference(Entry entry) {
+        if (entry.refCount > 0) {
+            sharedMemory += entry.size;
+        }
+        entry.refCount++;
+        references++;
+        return entry.buffer;
+    }
+
+    /**
+     * Decrements the reference count of a buffer returned by 
+     * {@link #acquire(com.jme3.terrain.geomipmap.LODGeomap, int, int, int, int, int, boolean) },
+     * the buffer is removed from the cache when it is no longer used.
+     * 
+     * @param buffer the buffer to release
+     */
+    public synchronized void release(VertexBuffer buffer) {
+        Entry entry = entriesByBuffer.get(buffer);
+        if (entry == null) {
+            throw new IllegalArgumentException("Buffer is not in the cache: " + buffer);
+        }
+        entry.refCount--;
+        references--;
+        if (entry.refCount > 0) {
+            sharedMemory -= entry.size;
+        } else {
+            entries.remove(entry.key);
+            entriesByBuffer.remove(buffer);
+            memory -= entry.size;
+        }
+    }
+
+    /**
+     * @return the number of distinct index buffers in the cache
+     */
+    public synchronized int getUniqueBufferCount() {
+        return entries.size();
+    }
+
+    /**
+     * @return the number of patches using a buffer of the cache
+     */
+    public synchronized int getReferenceCount() {
+        return references;
+    }
+
+    /**
+     * @return the number of references to buffers that are also used by
+     * another patch, i.e. the number of buffers that sharing avoided.
+     */
+    public synchronized int getSharedReferenceCount() {
+        return references - entries.size();
+    }
+
+    /**
+     * @return the size in bytes of the distinct index buffers
+     */
+    public synchronized long getMemoryUsage() {
+        return memory;
+    }
+
+    /**
+     * @return the size in bytes the index buffers would use if 
+     * every patch had its own buffer.
+     */
+    public synchronized long getUnsharedMemoryUsage() {
+        return memory + sharedMemory;
+    }
+
+    /**
+     * @return the number of acquired buffers which were already in the cache
+     */
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    /**
+     * @return the number of acquired buffers which had to be generated
+     */
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    /**
+     * Resets the hit and miss counters.
+     */
+    public synchronized void resetStatistics() {
+        hits = 0;
+        misses = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return getClass().getSimpleName() + "[unique=" + entries.size()
+                + ", references=" + references
+                + ", memory=" + memory + "/" + (memory + sharedMemory) + " bytes"
+                + ", hits=" + hits + ", misses=" + misses + "]";
+    }
+}
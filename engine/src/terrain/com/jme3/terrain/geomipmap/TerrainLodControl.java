@@ -46,9 +46,11 @@ import com.jme3.scene.control.Control;
 import com.jme3.terrain.Terrain;
 import com.jme3.terrain.geomipmap.lodcalc.DistanceLodCalculator;
 import com.jme3.terrain.geomipmap.lodcalc.LodCalculator;
+import com.jme3.util.WorkerPool;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
@@ -93,6 +95,14 @@ public class TerrainLodControl extends AbstractControl {
     protected ExecutorService executor;
     protected Future<HashMap<String, UpdatedTerrainPatch>> indexer;
     
+    /**
+     * Minimum number of patches re-indexed by one worker task.
+     */
+    private static final int PATCHES_PER_TASK = 16;
+    
+    private LinkedList<UpdatedTerrainPatch> pendingPatches = new LinkedList<UpdatedTerrainPatch>();
+    private float updateBudget = 0;
+    
     public TerrainLodControl() {
     }
 
@@ -164,6 +174,11 @@ public class TerrainLodControl extends AbstractControl {
         
         // update any existing ones that need updating
         updateQuadLODs();
+        
+        if (!pendingPatches.isEmpty()) {
+            // finish applying the previous LOD before computing a new one
+            return;
+        }
 
         if (lodCalculator.isLodOff()) {
             // we want to calculate the base lod at least once
@@ -212,6 +227,69 @@ public class TerrainLodControl extends AbstractControl {
         return new UpdateLOD(locations, lodCalculator);
     }
 
+
+    /**
+     * Generates the new index buffers of the updated patches.
+     * The patches are split across the {@link WorkerPool} threads 
+     * and the index buffers are shared between patches with the 
+     * same size and LOD configuration, see {@link TerrainIndexBufferCache}.
+     * Called on the LOD thread.
+     */
+    protected void reIndexPatches(final HashMap<String, UpdatedTerrainPatch> updated, final boolean useVariableLod) {
+        final List<TerrainPatch> patches = new ArrayList<TerrainPatch>();
+        for (UpdatedTerrainPatch utp : updated.values()) {
+            if (utp.isReIndexNeeded()) {
+                patches.add(utp.getUpdatedPatch());
+            }
+        }
+        
+        int numTasks = Math.min(WorkerPool.getThreadCount() + 1, 
+                                (patches.size() + PATCHES_PER_TASK - 1) / PATCHES_PER_TASK);
+        List<Runnable> tasks = new ArrayList<Runnable>(numTasks);
+        for (int t = 0; t < numTasks; t++) {
+            final int start = patches.size() * t / numTasks;
+            final int end = patches.size() * (t + 1) / numTasks;
+            tasks.add(new Runnable() {
+                public void run() {
+                    for (int i = start; i < end; i++) {
+                        patches.get(i).reIndexGeometry(updated, useVariableLod);
+                    }
+                }
+            });
+        }
+        WorkerPool.invokeAll(tasks);
+    }
+
+    /**
+     * Sets the time in milliseconds that can be spent each frame to apply
+     * the new LOD to the terrain patches. The patches that do not fit 
+     * in the budget are applied in the next frames, and no new LOD is
+     * calculated until they all are, so the edges of some patches may
+     * not match during a few frames.
+     * 
+     * @param updateBudget the time budget in milliseconds, 0 to apply 
+     * all the patches in the frame their LOD was computed (the default).
+     */
+    public void setUpdateBudget(float updateBudget) {
+        this.updateBudget = updateBudget;
+    }
+
+    /**
+     * @return the time in milliseconds that can be spent each frame to 
+     * apply the new LOD to the terrain patches, or 0 if unlimited.
+     * @see #setUpdateBudget(float) 
+     */
+    public float getUpdateBudget() {
+        return updateBudget;
+    }
+
+    /**
+     * @return the number of patches whose new LOD still has to be applied
+     */
+    public int getPendingPatchCount() {
+        return pendingPatches.size();
+    }
+
     /**
      * Back on the ogl thread: update the terrain patch geometries
      */
@@ -222,10 +300,7 @@ public class TerrainLodControl extends AbstractControl {
                     
                     HashMap<String, UpdatedTerrainPatch> updated = indexer.get();
                     if (updated != null) {
-                        // do the actual geometry update here
-                        for (UpdatedTerrainPatch utp : updated.values()) {
-                            utp.updateAll();
-                        }
+                        pendingPatches.addAll(updated.values());
                     }
                     
                 } catch (InterruptedException ex) {
@@ -237,6 +312,16 @@ public class TerrainLodControl extends AbstractControl {
                 }
             }
         }
+        
+        // do the actual geometry update here, within the time budget
+        long budget = (long) (updateBudget * 1000000);
+        long start = System.nanoTime();
+        while (!pendingPatches.isEmpty()) {
+            pendingPatches.removeFirst().updateAll();
+            if (budget > 0 && System.nanoTime() - start >= budget) {
+                break;
+            }
+        }
         /*synchronized (updatePatchesLock) {
             
             if (updatedPatches == null || updatedPatches.isEmpty())
@@ -299,6 +384,7 @@ public class TerrainLodControl extends AbstractControl {
             }
             TerrainLodControl cloned = new TerrainLodControl((Terrain) spatial, cameraClone);
             cloned.setLodCalculator(lodCalculator.clone());
+            cloned.setUpdateBudget(updateBudget);
             return cloned;
         }
         return null;
@@ -388,7 +474,7 @@ public class TerrainLodControl extends AbstractControl {
 
             terrainQuad.fixEdges(updated); // 'updated' can get added to here
 
-            terrainQuad.reIndexPages(updated, lodCalculator.usesVariableLod());
+            reIndexPatches(updated, lodCalculator.usesVariableLod());
 
             //setUpdateQuadLODs(updated); // set back to main ogl thread
 
@@ -404,6 +490,7 @@ public class TerrainLodControl extends AbstractControl {
         OutputCapsule oc = ex.getCapsule(this);
         oc.write((Node)terrain, "terrain", null);
         oc.write(lodCalculator, "lodCalculator", null);
+        oc.write(updateBudget, "updateBudget", 0);
     }
 
     @Override
@@ -412,6 +499,7 @@ public class TerrainLodControl extends AbstractControl {
         InputCapsule ic = im.getCapsule(this);
         terrain = (Terrain) ic.readSavable("terrain", null);
         lodCalculator = (LodCalculator) ic.readSavable("lodCalculator", new DistanceLodCalculator());
+        updateBudget = ic.readFloat("updateBudget", 0);
     }
 
 }
@@ -44,6 +44,8 @@ import com.jme3.export.OutputCapsule;
 import com.jme3.math.*;
 import com.jme3.scene.Geometry;
 import com.jme3.scene.Mesh;
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
 import com.jme3.scene.VertexBuffer;
 import com.jme3.scene.VertexBuffer.Type;
 import com.jme3.terrain.geomipmap.TerrainQuad.LocationHeight;
@@ -110,6 +112,9 @@ public class TerrainPatch extends Geometry {
     protected Vector3f worldScaleCached;
 
     protected float[] lodEntropy;
+    
+    // index buffer shared with other patches, see TerrainIndexBufferCache
+    protected transient VertexBuffer sharedIndexBuffer;
 
     public TerrainPatch() {
         super("TerrainPatch");
@@ -182,6 +187,7 @@ public class TerrainPatch extends Geometry {
         geomap = new LODGeomap(size, heightMap);
         Mesh m = geomap.createMesh(stepScale, new Vector2f(1,1), offset, offsetAmount, totalSize, false);
         setMesh(m);
+        shareBaseIndexBuffer();
 
     }
 
@@ -234,22 +240,53 @@ public class TerrainPatch extends Geometry {
         UpdatedTerrainPatch utp = updated.get(getName());
 
         if (utp != null && utp.isReIndexNeeded() ) {
-            int pow = (int) Math.pow(2, utp.getNewLod());
-            boolean left = utp.getLeftLod() > utp.getNewLod();
-            boolean top = utp.getTopLod() > utp.getNewLod();
-            boolean right = utp.getRightLod() > utp.getNewLod();
-            boolean bottom = utp.getBottomLod() > utp.getNewLod();
-
-            IntBuffer ib = null;
-            if (useVariableLod)
-                ib = geomap.writeIndexArrayLodVariable(null, pow, (int) Math.pow(2, utp.getRightLod()), (int) Math.pow(2, utp.getTopLod()), (int) Math.pow(2, utp.getLeftLod()), (int) Math.pow(2, utp.getBottomLod()));
-            else
-                ib = geomap.writeIndexArrayLodDiff(null, pow, right, top, left, bottom);
+            VertexBuffer ib = TerrainIndexBufferCache.getInstance().acquire(geomap, utp.getNewLod(), 
+                    utp.getRightLod(), utp.getTopLod(), utp.getLeftLod(), utp.getBottomLod(), useVariableLod);
             utp.setNewIndexBuffer(ib);
         }
 
     }
 
+    /**
+     * Sets an index buffer acquired from the {@link TerrainIndexBufferCache}
+     * in the mesh of this patch, and releases the previous one.
+     * 
+     * @param indexBuffer the shared index buffer
+     */
+    protected void setSharedIndexBuffer(VertexBuffer indexBuffer) {
+        releaseSharedIndexBuffer();
+        sharedIndexBuffer = indexBuffer;
+        getMesh().clearBuffer(Type.Index);
+        getMesh().setBuffer(indexBuffer);
+    }
+
+    /**
+     * Releases the shared index buffer of this patch, the mesh
+     * keeps using it but will not share it with new patches.
+     */
+    protected void releaseSharedIndexBuffer() {
+        if (sharedIndexBuffer != null) {
+            TerrainIndexBufferCache.getInstance().release(sharedIndexBuffer);
+            sharedIndexBuffer = null;
+        }
+    }
+
+    /**
+     * Shares the index buffer of the full detail LOD, as created by 
+     * {@link LODGeomap#createMesh(com.jme3.math.Vector3f, com.jme3.math.Vector2f, com.jme3.math.Vector2f, float, int, boolean) }.
+     */
+    private void shareBaseIndexBuffer() {
+        setSharedIndexBuffer(TerrainIndexBufferCache.getInstance().acquire(geomap, 0, 0, 0, 0, 0, false));
+    }
+
+    @Override
+    protected void setParent(Node parent) {
+        super.setParent(parent);
+        if (parent == null) {
+            // the patch is removed from the terrain
+            releaseSharedIndexBuffer();
+        }
+    }
 
     public Vector2f getTex(float x, float z, Vector2f store) {
         if (x < 0 || z < 0 || x >= size || z >= size) {
@@ -913,6 +950,7 @@ public class TerrainPatch extends Geometry {
         
         Mesh regen = geomap.createMesh(stepScale, new Vector2f(1,1), offset, offsetAmount, totalSize, false);
         setMesh(regen);
+        shareBaseIndexBuffer();
         //TangentBinormalGenerator.generate(this); // note that this will be removed
         ensurePositiveVolumeBBox();
     }
@@ -934,10 +972,31 @@ public class TerrainPatch extends Geometry {
         clone.setLocalTranslation(getLocalTranslation().clone());
         Mesh m = clone.geomap.createMesh(clone.stepScale, Vector2f.UNIT_XY, clone.offset, clone.offsetAmount, clone.totalSize, false);
         clone.setMesh(m);
+        clone.shareBaseIndexBuffer();
         clone.setMaterial(material.clone());
         return clone;
     }
 
+    @Override
+    public TerrainPatch clone(boolean cloneMaterial) {
+        TerrainPatch clone = (TerrainPatch) super.clone(cloneMaterial);
+        // the clone shares the mesh, it needs its own reference
+        // to the shared index buffer
+        clone.sharedIndexBuffer = null;
+        if (sharedIndexBuffer != null && clone.getMesh().getBuffer(Type.Index) == sharedIndexBuffer) {
+            clone.sharedIndexBuffer = TerrainIndexBufferCache.getInstance().acquire(sharedIndexBuffer);
+        }
+        return clone;
+    }
+
+    @Override
+    public Spatial deepClone() {
+        TerrainPatch clone = (TerrainPatch) super.deepClone();
+        // the mesh of the clone has its own copy of the index buffer
+        clone.releaseSharedIndexBuffer();
+        return clone;
+    }
+
     protected void ensurePositiveVolumeBBox() {
         if (getModelBound() instanceof BoundingBox) {
             if (((BoundingBox)getModelBound()).getYExtent() < 0.001f) {
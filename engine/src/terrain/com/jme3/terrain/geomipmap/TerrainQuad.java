@@ -55,6 +55,7 @@ import com.jme3.terrain.geomipmap.picking.BresenhamTerrainPicker;
 import com.jme3.terrain.geomipmap.picking.TerrainPickData;
 import com.jme3.terrain.geomipmap.picking.TerrainPicker;
 import com.jme3.util.TangentBinormalGenerator;
+import com.jme3.util.WorkerPool;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -232,8 +233,23 @@ public class TerrainQuad extends Node implements Terrain {
     protected void updateNormals() {
 
         if (needToRecalculateNormals()) {
-            //TODO background-thread this if it ends up being expensive
-            fixNormals(affectedAreaBBox); // the affected patches
+            // the affected patches, split across the worker threads
+            final List<TerrainPatch> patches = new ArrayList<TerrainPatch>();
+            findAffectedPatches(affectedAreaBBox, patches);
+            int numTasks = Math.min(WorkerPool.getThreadCount() + 1, patches.size());
+            List<Runnable> tasks = new ArrayList<Runnable>(numTasks);
+            for (int t = 0; t < numTasks; t++) {
+                final int start = patches.size() * t / numTasks;
+                final int end = patches.size() * (t + 1) / numTasks;
+                tasks.add(new Runnable() {
+                    public void run() {
+                        for (int i = start; i < end; i++) {
+                            patches.get(i).updateNormals(); // recalculate the patch's normals
+                        }
+                    }
+                });
+            }
+            WorkerPool.invokeAll(tasks);
             fixNormalEdges(affectedAreaBBox); // the edges between the patches
             
             setNormalRecalcNeeded(null); // set to false
@@ -1580,6 +1596,30 @@ public class TerrainQuad extends Node implements Terrain {
         }
     }
 
+    /**
+     * Find what terrain patches need normal recalculations, in the same
+     * way as {@link #fixNormals(com.jme3.bounding.BoundingBox) }.
+     * The world transforms of the patches are updated so that their 
+     * normals can then be computed from other threads.
+     */
+    protected void findAffectedPatches(BoundingBox affectedArea, List<TerrainPatch> store) {
+        if (children == null)
+            return;
+
+        for (int x = children.size(); --x >= 0;) {
+            Spatial child = children.get(x);
+            if (child instanceof TerrainQuad) {
+                if (affectedArea != null && affectedArea.intersects(((TerrainQuad) child).getWorldBound()) )
+                    ((TerrainQuad) child).findAffectedPatches(affectedArea, store);
+            } else if (child instanceof TerrainPatch) {
+                if (affectedArea != null && affectedArea.intersects(((TerrainPatch) child).getWorldBound()) ) {
+                    child.getWorldScale();
+                    store.add((TerrainPatch) child);
+                }
+            }
+        }
+    }
+
     /**
      * fix the normals on the edge of the terrain patches.
      */
@@ -1774,6 +1814,27 @@ public class TerrainQuad extends Node implements Terrain {
 
         return quadClone;
     }
+
+    /**
+     * Node.deepClone() starts from a shallow clone and discards its
+     * children, whose patches hold references to the shared index buffers
+     * of the {@link TerrainIndexBufferCache}. Here they are released
+     * before the children are replaced with deep clones.
+     */
+    @Override
+    public Spatial deepClone() {
+        TerrainQuad quadClone = clone(true);
+        List<TerrainPatch> shallowPatches = new ArrayList<TerrainPatch>();
+        quadClone.getAllTerrainPatches(shallowPatches);
+        for (TerrainPatch patch : shallowPatches) {
+            patch.releaseSharedIndexBuffer();
+        }
+        quadClone.detachAllChildren();
+        for (Spatial child : children) {
+            quadClone.attachChild(child.deepClone());
+        }
+        return quadClone;
+    }
     
     public int getMaxLod() {
         if (maxLod < 0)
@@ -31,8 +31,7 @@
  */
 package com.jme3.terrain.geomipmap;
 
-import com.jme3.scene.VertexBuffer.Type;
-import java.nio.IntBuffer;
+import com.jme3.scene.VertexBuffer;
 
 /**
  * Stores a terrain patch's details so the LOD background thread can update
@@ -47,7 +46,7 @@ public class UpdatedTerrainPatch {
     private int newLod;
     private int previousLod;
     private int rightLod,topLod,leftLod,bottomLod;
-    private IntBuffer newIndexBuffer;
+    private VertexBuffer newIndexBuffer;
     //private boolean reIndexNeeded = false;
     private boolean fixEdges = false;
 
@@ -89,11 +88,15 @@ public class UpdatedTerrainPatch {
             throw new IllegalArgumentException("newLod cannot be less than zero, was: "+newLod);
     }
 
-    /*protected IntBuffer getNewIndexBuffer() {
+    /*protected VertexBuffer getNewIndexBuffer() {
         return newIndexBuffer;
     }*/
 
-    protected void setNewIndexBuffer(IntBuffer newIndexBuffer) {
+    /**
+     * @param newIndexBuffer the index buffer acquired from the 
+     * {@link TerrainIndexBufferCache}, released when the patch replaces it.
+     */
+    protected void setNewIndexBuffer(VertexBuffer newIndexBuffer) {
         this.newIndexBuffer = newIndexBuffer;
     }
 
@@ -173,8 +176,7 @@ public class UpdatedTerrainPatch {
         updatedPatch.setLodBottom(bottomLod);
         if (newIndexBuffer != null && isReIndexNeeded()) {
             updatedPatch.setPreviousLod(previousLod);
-            updatedPatch.getMesh().clearBuffer(Type.Index);
-            updatedPatch.getMesh().setBuffer(Type.Index, 3, newIndexBuffer);
+            updatedPatch.setSharedIndexBuffer(newIndexBuffer);
         }
     }
     
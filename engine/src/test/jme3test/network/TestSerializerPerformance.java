@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package jme3test.network;
+
+import com.jme3.math.Vector3f;
+import com.jme3.network.AbstractMessage;
+import com.jme3.network.serializing.Serializable;
+import com.jme3.network.serializing.Serializer;
+import com.jme3.network.serializing.serializers.AccessorFieldSerializer;
+import com.jme3.network.serializing.serializers.FieldSerializer;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Compares the reflective {@link FieldSerializer} with the 
+ * {@link AccessorFieldSerializer} on typical position update messages,
+ * and verifies that both produce the same data.
+ */
+public class TestSerializerPerformance {
+
+    private static final int ITERATIONS = 2000000;
+    
+    @Serializable
+    public static class PositionMessage extends AbstractMessage {
+        public int entityId;
+        public float x, y, z;
+        public float qx, qy, qz, qw;
+        public long timestamp;
+        public boolean moving;
+        
+        public PositionMessage() {
+            setReliable(false);
+        }
+    }
+    
+    @Serializable
+    public static class StateMessage extends AbstractMessage {
+        public int entityId;
+        public short health;
+        public String name;
+        public Vector3f velocity;
+        
+        public StateMessage() {
+        }
+    }
+    
+    private static AbstractMessage[] createMessages() {
+        PositionMessage pos = new PositionMessage();
+        pos.entityId = 42;
+        pos.x = 1.5f; pos.y = -2f; pos.z = 100.25f;
+        pos.qw = 1f;
+        pos.timestamp = System.currentTimeMillis();
+        pos.moving = true;
+        
+        StateMessage state = new StateMessage();
+        state.entityId = 42;
+        state.health = 87;
+        state.name = "Player";
+        state.velocity = new Vector3f(0, 1, 2);
+        
+        return new AbstractMessage[]{ pos, state };
+    }
+    
+    private static void verify(Serializer a, Serializer b, Object message) throws IOException {
+        ByteBuffer bufferA = ByteBuffer.allocate(1024);
+        ByteBuffer bufferB = ByteBuffer.allocate(1024);
+        a.writeObject(bufferA, message);
+        b.writeObject(bufferB, message);
+        bufferA.flip();
+        bufferB.flip();
+        if (!bufferA.equals(bufferB)) {
+            throw new RuntimeException("Serialized data differs for:" + message);
+        }
+        
+        // Read with the other serializer and write again
+        Object copy = b.readObject(bufferA, message.getClass());
+        ByteBuffer bufferC = ByteBuffer.allocate(1024);
+        a.writeObject(bufferC, copy);
+        bufferC.flip();
+        bufferB.rewind();
+        if (!bufferB.equals(bufferC)) {
+            throw new RuntimeException("Read data differs for:" + message);
+        }
+    }
+    
+    private static long run(Serializer serializer, Object message) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        Class<?> type = message.getClass();
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            buffer.clear();
+            serializer.writeObject(buffer, message);
+            buffer.flip();
+            serializer.readObject(buffer, type);
+        }
+        return System.nanoTime() - start;
+    }
+    
+    public static void main(String[] args) throws IOException {
+        Serializer.registerClasses(PositionMessage.class, StateMessage.class);
+        
+        Serializer reflective = new FieldSerializer();
+        Serializer accessor = new AccessorFieldSerializer();
+        reflective.initialize(PositionMessage.class);
+        reflective.initialize(StateMessage.class);
+        accessor.initialize(PositionMessage.class);
+        accessor.initialize(StateMessage.class);
+        
+        AbstractMessage[] messages = createMessages();
+        for (AbstractMessage message : messages) {
+            verify(reflective, accessor, message);
+            verify(accessor, reflective, message);
+        }
+        
+        for (int pass = 0; pass < 3; pass++) {
+            System.out.println("Pass " + pass);
+            for (AbstractMessage message : messages) {
+                long reflectiveTime = run(reflective, message);
+                long accessorTime = run(accessor, message);
+                System.out.println("  " + message.getClass().getSimpleName()
+                                 + " FieldSerializer: " + (reflectiveTime / ITERATIONS) + " ns/op"
+                                 + ", AccessorFieldSerializer: " + (accessorTime / ITERATIONS) + " ns/op");
+            }
+        }
+    }
+}
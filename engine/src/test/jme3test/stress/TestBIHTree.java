@@ -0,0 +1,229 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package jme3test.stress;
+
+import com.jme3.bounding.BoundingVolume;
+import com.jme3.collision.CollisionResults;
+import com.jme3.collision.bih.BIHTree;
+import com.jme3.export.binary.BinaryExporter;
+import com.jme3.export.binary.BinaryImporter;
+import com.jme3.math.FastMath;
+import com.jme3.math.Matrix4f;
+import com.jme3.math.Ray;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.VertexBuffer.Type;
+import com.jme3.util.BufferUtils;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Benchmark of the {@link BIHTree} of a large terrain-like mesh.
+ * Reports the construction time, the number of rays per second,
+ * the time to refit the tree after deforming the mesh compared to
+ * constructing a new tree, and the time to save and load the tree.
+ * The queries of the refitted and loaded trees are checked against
+ * a newly constructed tree.
+ * <p>
+ * Large meshes are constructed in parallel, run with e.g.
+ * -XX:ActiveProcessorCount=1 to compare with a single thread.
+ */
+public class TestBIHTree {
+
+    private static final int GRID_SIZE = 400;
+    private static final float CELL_SIZE = 1f;
+    private static final int RAYS = 50000;
+    private static final int RUNS = 3;
+
+    private static Mesh createGrid() {
+        int verts = GRID_SIZE + 1;
+        FloatBuffer pb = BufferUtils.createFloatBuffer(verts * verts * 3);
+        IntBuffer ib = BufferUtils.createIntBuffer(GRID_SIZE * GRID_SIZE * 6);
+        for (int z = 0; z < verts; z++) {
+            for (int x = 0; x < verts; x++) {
+                pb.put(x * CELL_SIZE).put(0).put(z * CELL_SIZE);
+            }
+        }
+        for (int z = 0; z < GRID_SIZE; z++) {
+            for (int x = 0; x < GRID_SIZE; x++) {
+                int i = z * verts + x;
+                ib.put(i).put(i + verts).put(i + 1);
+                ib.put(i + 1).put(i + verts).put(i + verts + 1);
+            }
+        }
+        Mesh mesh = new Mesh();
+        mesh.setBuffer(Type.Position, 3, pb);
+        mesh.setBuffer(Type.Index, 3, ib);
+        deform(mesh, 0f);
+        return mesh;
+    }
+
+    /**
+     * Sets the heights of the grid to a few waves.
+     */
+    private static void deform(Mesh mesh, float phase) {
+        FloatBuffer pb = mesh.getFloatBuffer(Type.Position);
+        for (int i = 0; i < pb.limit(); i += 3) {
+            float x = pb.get(i), z = pb.get(i + 2);
+            float y = 8f * FastMath.sin(x * 0.05f + phase) 
+                    + 5f * FastMath.cos(z * 0.07f - phase)
+                    + 1f * FastMath.sin((x + z) * 0.3f);
+            pb.put(i + 1, y);
+        }
+        mesh.getBuffer(Type.Position).updateData(pb);
+        mesh.updateBound();
+    }
+
+    private static Ray[] createRays() {
+        Random random = new Random(42);
+        float size = GRID_SIZE * CELL_SIZE;
+        Ray[] rays = new Ray[RAYS];
+        for (int i = 0; i < RAYS; i++) {
+            // picking rays from above, at varying angles
+            Vector3f origin = new Vector3f(random.nextFloat() * size, 40f, random.nextFloat() * size);
+            Vector3f target = new Vector3f(random.nextFloat() * size, 0f, random.nextFloat() * size);
+            target.interpolate(origin, target, 0.1f + 0.9f * random.nextFloat());
+            rays[i] = new Ray(origin, target.subtractLocal(origin).normalizeLocal());
+        }
+        return rays;
+    }
+
+    /**
+     * Casts the rays and stores the closest distance of each ray, or -1.
+     */
+    private static void castRays(Mesh mesh, Ray[] rays, float[] distances) {
+        CollisionResults results = new CollisionResults();
+        BoundingVolume bound = mesh.getBound();
+        for (int i = 0; i < rays.length; i++) {
+            results.clear();
+            mesh.collideWith(rays[i], Matrix4f.IDENTITY, bound, results);
+            distances[i] = results.size() > 0 ? results.getClosestCollision().getDistance() : -1f;
+        }
+    }
+
+    /**
+     * @return The median time to cast the rays in ms.
+     */
+    private static double timeRays(Mesh mesh, Ray[] rays, float[] distances, double[] times) {
+        for (int run = 0; run < times.length; run++) {
+            long start = System.nanoTime();
+            castRays(mesh, rays, distances);
+            times[run] = (System.nanoTime() - start) / 1e6;
+        }
+        return median(times);
+    }
+
+    private static int countMismatches(float[] expected, float[] distances) {
+        int mismatches = 0;
+        for (int i = 0; i < expected.length; i++) {
+            if (Math.abs(expected[i] - distances[i]) > 1e-3f) {
+                mismatches++;
+            }
+        }
+        return mismatches;
+    }
+
+    private static double median(double[] times) {
+        double[] sorted = times.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    public static void main(String[] args) throws IOException {
+        Logger.getLogger("").setLevel(Level.WARNING);
+        Mesh mesh = createGrid();
+        Ray[] rays = createRays();
+        float[] expected = new float[RAYS];
+        float[] distances = new float[RAYS];
+        System.out.println(mesh.getTriangleCount() + " triangles, " 
+                + Runtime.getRuntime().availableProcessors() + " processors");
+
+        double[] times = new double[RUNS];
+        for (int run = 0; run < RUNS; run++) {
+            long start = System.nanoTime();
+            mesh.createCollisionData();
+            times[run] = (System.nanoTime() - start) / 1e6;
+        }
+        System.out.printf("construct: median %.1f ms%n", median(times));
+
+        double rayTime = timeRays(mesh, rays, distances, times);
+        int hits = 0;
+        for (float distance : distances) {
+            if (distance >= 0) {
+                hits++;
+            }
+        }
+        System.out.printf("rays: median %.1f ms, %.0f rays/s, %d of %d hit%n", 
+                rayTime, RAYS / (rayTime / 1000.0), hits, RAYS);
+
+        // refit against constructing a new tree after deforming the mesh
+        double[] refitTimes = new double[RUNS];
+        for (int run = 0; run < RUNS; run++) {
+            deform(mesh, (run + 1) * 0.1f);
+            long start = System.nanoTime();
+            mesh.updateCollisionData();
+            refitTimes[run] = (System.nanoTime() - start) / 1e6;
+        }
+        double refitRayTime = timeRays(mesh, rays, distances, times);
+        long start = System.nanoTime();
+        mesh.createCollisionData();
+        double constructTime = (System.nanoTime() - start) / 1e6;
+        double constructRayTime = timeRays(mesh, rays, expected, times);
+        System.out.printf("refit: median %.1f ms, %.0f rays/s, %d mismatches against a new tree%n",
+                median(refitTimes), RAYS / (refitRayTime / 1000.0), countMismatches(expected, distances));
+        System.out.printf("new tree: %.1f ms, %.0f rays/s%n",
+                constructTime, RAYS / (constructRayTime / 1000.0));
+
+        // save and load the mesh with its tree
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        start = System.nanoTime();
+        BinaryExporter.getInstance().save(mesh, out);
+        double saveTime = (System.nanoTime() - start) / 1e6;
+        byte[] data = out.toByteArray();
+        start = System.nanoTime();
+        Mesh loaded = (Mesh) BinaryImporter.getInstance().load(new ByteArrayInputStream(data));
+        double loadTime = (System.nanoTime() - start) / 1e6;
+        castRays(loaded, rays, distances);
+        System.out.printf("saved %d KB in %.1f ms, loaded in %.1f ms, %d mismatches against the saved tree%n",
+                data.length / 1024, saveTime, loadTime, countMismatches(expected, distances));
+        start = System.nanoTime();
+        loaded.updateCollisionData();
+        System.out.printf("refit of the loaded tree: %.1f ms%n", (System.nanoTime() - start) / 1e6);
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package jme3test.stress;
+
+import com.jme3.asset.AssetManager;
+import com.jme3.material.Material;
+import com.jme3.math.FastMath;
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+import com.jme3.renderer.Camera;
+import com.jme3.renderer.Caps;
+import com.jme3.renderer.RenderManager;
+import com.jme3.renderer.Statistics;
+import com.jme3.renderer.ViewPort;
+import com.jme3.renderer.queue.RenderQueue.Bucket;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Node;
+import com.jme3.scene.shape.Box;
+import com.jme3.system.JmeSystem;
+import com.jme3.system.NullRenderer;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jme3tools.optimize.OctreeGrouping;
+
+/**
+ * Headless benchmark of the frustum culling of the {@link RenderManager}.
+ * Culls a large static scene with a still and a turning camera, with and
+ * without {@link RenderManager#setCoherentCulling(boolean) coherent culling},
+ * for a flat scene and for the same scene split into octants by
+ * {@link OctreeGrouping}. Reports the time spent flattening the scene into
+ * the render queue, and the number of spatials checked and bounds tested.
+ */
+public class TestCoherentCulling {
+
+    private static final int GEOMETRIES = 20000;
+    private static final float FIELD_SIZE = 2000f;
+    private static final int FRAMES = 200;
+
+    /**
+     * Renderer that counts the draw calls.
+     */
+    private static class RecordingRenderer extends NullRenderer {
+
+        private final EnumSet<Caps> caps = EnumSet.of(Caps.OpenGL20, 
+                Caps.GLSL100, Caps.GLSL110, Caps.GLSL120);
+        private int drawCalls;
+
+        @Override
+        public EnumSet<Caps> getCaps() {
+            return caps;
+        }
+
+        @Override
+        public void renderMesh(Mesh mesh, int lod, int count) {
+            drawCalls++;
+        }
+    }
+
+    private static Node createScene(Material mat) {
+        Random random = new Random(1);
+        Node scene = new Node("Scene");
+        Box box = new Box(1f, 1f, 1f);
+        for (int i = 0; i < GEOMETRIES; i++) {
+            Geometry geom = new Geometry("Box" + i, box);
+            geom.setMaterial(mat);
+            geom.setLocalTranslation(random.nextFloat() * FIELD_SIZE, random.nextFloat() * 20f,
+                                     random.nextFloat() * FIELD_SIZE);
+            scene.attachChild(geom);
+        }
+        scene.updateGeometricState();
+        return scene;
+    }
+
+    private static void run(String name, Node scene, boolean coherent, boolean turning,
+                            RecordingRenderer renderer, RenderManager rm, ViewPort vp) {
+        rm.setCoherentCulling(coherent);
+        Camera cam = vp.getCamera();
+        Statistics stats = renderer.getStatistics();
+        String[] labels = stats.getLabels();
+        int[] data = new int[labels.length];
+        int spatials = Arrays.asList(labels).indexOf("Culling (S)");
+        int tests = Arrays.asList(labels).indexOf("Culling (T)");
+
+        long[] times = new long[FRAMES];
+        long totalSpatials = 0, totalTests = 0, totalVisible = 0;
+        Quaternion rotation = new Quaternion();
+        for (int frame = 0; frame < FRAMES; frame++) {
+            if (turning || frame == 0) {
+                rotation.fromAngles(0.3f, FastMath.TWO_PI * frame / FRAMES, 0);
+                cam.setRotation(rotation);
+            }
+            stats.clearFrame();
+            long start = System.nanoTime();
+            rm.renderScene(scene, vp);
+            times[frame] = System.nanoTime() - start;
+
+            renderer.drawCalls = 0;
+            vp.getQueue().renderQueue(Bucket.Opaque, rm, cam, true);
+            stats.getData(data);
+            totalSpatials += data[spatials];
+            totalTests += data[tests];
+            totalVisible += renderer.drawCalls;
+            vp.getQueue().clear();
+        }
+        Arrays.sort(times);
+        System.out.printf("%-26s median %.3f ms, per frame: %d spatials, %d bound tests, %d visible%n",
+                name, times[FRAMES / 2] / 1e6, totalSpatials / FRAMES, totalTests / FRAMES, 
+                totalVisible / FRAMES);
+    }
+
+    public static void main(String[] args) {
+        Logger.getLogger("").setLevel(Level.WARNING);
+        AssetManager assetManager = JmeSystem.newAssetManager(
+                TestCoherentCulling.class.getResource("/com/jme3/asset/Desktop.cfg"));
+        RecordingRenderer renderer = new RecordingRenderer();
+        RenderManager rm = new RenderManager(renderer);
+        Material mat = new Material(assetManager, "Common/MatDefs/Misc/Unshaded.j3md");
+
+        Camera cam = new Camera(640, 480);
+        cam.setFrustumPerspective(60f, 640f / 480f, 1f, 500f);
+        cam.setLocation(new Vector3f(FIELD_SIZE / 2f, 50f, FIELD_SIZE / 2f));
+        ViewPort vp = new ViewPort("Main", cam);
+        rm.setCamera(cam, false);
+
+        Node flat = createScene(mat);
+        Node grouped = OctreeGrouping.group(createScene(mat));
+
+        // the first round warms up
+        for (int round = 0; round < 2; round++) {
+            if (round == 1) {
+                System.out.println(GEOMETRIES + " geometries, " + FRAMES + " frames");
+            }
+            for (int camera = 0; camera < 2; camera++) {
+                boolean turning = camera == 1;
+                String suffix = turning ? ", turning" : ", still";
+                run("flat" + suffix, flat, false, turning, renderer, rm, vp);
+                run("flat, coherent" + suffix, flat, true, turning, renderer, rm, vp);
+                run("octree" + suffix, grouped, false, turning, renderer, rm, vp);
+                run("octree, coherent" + suffix, grouped, true, turning, renderer, rm, vp);
+            }
+        }
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package jme3test.stress;
+
+import com.jme3.profile.FrameProfiler;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * Headless benchmark of the {@link FrameProfiler}. Simulates frames made
+ * of nested sections around some busy work and compares their duration 
+ * with and without profiling to measure the cost of a marker. Checks 
+ * that the recorded hierarchy matches the simulated one after the ring
+ * buffers wrapped around.
+ * <p>
+ * Pass a directory name to also write the recorded frames there as
+ * profile.csv and profile.json, the latter can be loaded in chrome://tracing.
+ */
+public class TestFrameProfiler {
+
+    private static final int FRAMES = 2000;
+    private static final int VIEWPORTS = 4;
+    private static final int FILTERS = 6;
+    private static final int WORK = 2000;
+    private static final int RUNS = 5;
+    private static final String[] VIEWPORT_NAMES = new String[VIEWPORTS];
+    private static final String[] FILTER_NAMES = new String[FILTERS];
+
+    static {
+        for (int i = 0; i < VIEWPORTS; i++) {
+            VIEWPORT_NAMES[i] = "ViewPort " + i;
+        }
+        for (int i = 0; i < FILTERS; i++) {
+            FILTER_NAMES[i] = "Filter " + i;
+        }
+    }
+
+    private static long sink;
+
+    private static void work(int iterations) {
+        long x = sink + 1;
+        for (int i = 0; i < iterations; i++) {
+            x ^= x << 13;
+            x ^= x >>> 7;
+            x ^= x << 17;
+        }
+        sink = x;
+    }
+
+    /**
+     * A frame shaped like the one of a SimpleApplication.
+     * @return The number of sections
+     */
+    private static int frame(FrameProfiler p) {
+        int sections = 0;
+        if (p != null) p.beginFrame();
+        if (p != null) p.begin("AppStates update");
+        work(WORK);
+        if (p != null) p.end();
+        if (p != null) p.begin("updateGeometricState");
+        work(WORK);
+        if (p != null) p.end();
+        if (p != null) p.begin("Render");
+        sections += 3;
+        for (int v = 0; v < VIEWPORTS; v++) {
+            if (p != null) p.begin(VIEWPORT_NAMES[v]);
+            if (p != null) p.begin("Cull");
+            work(WORK / 4);
+            if (p != null) p.end();
+            if (p != null) p.begin("Opaque");
+            if (p != null) p.begin("Sort");
+            work(WORK / 8);
+            if (p != null) p.end();
+            work(WORK / 4);
+            if (p != null) p.end();
+            if (p != null) p.begin("postFrame");
+            for (int f = 0; f < FILTERS; f++) {
+                if (p != null) p.begin(FILTER_NAMES[f]);
+                work(WORK / 16);
+                if (p != null) p.end();
+            }
+            if (p != null) p.end();
+            if (p != null) p.end();
+            sections += 5 + FILTERS;
+        }
+        if (p != null) p.end();
+        return sections;
+    }
+
+    private static double run(FrameProfiler profiler) {
+        long start = System.nanoTime();
+        for (int i = 0; i < FRAMES; i++) {
+            frame(profiler);
+        }
+        if (profiler != null) {
+            profiler.endFrame();
+        }
+        return (System.nanoTime() - start) / 1e3 / FRAMES;
+    }
+
+    private static double median(double[] values) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    private static int check(FrameProfiler profiler, int sectionsPerFrame) {
+        int errors = 0;
+        for (int f = 0; f < profiler.getFrameCount(); f++) {
+            if (profiler.getSectionCount(f) != sectionsPerFrame) {
+                errors++;
+                continue;
+            }
+            // a section lies within its parent
+            long[] parentEnd = new long[FrameProfiler.MAX_DEPTH];
+            parentEnd[0] = profiler.getFrameEnd(f);
+            for (int s = 0; s < sectionsPerFrame; s++) {
+                int depth = profiler.getSectionDepth(f, s);
+                long start = profiler.getSectionStart(f, s);
+                long end = profiler.getSectionEnd(f, s);
+                if (start > end || start < profiler.getFrameStart(f) || end > parentEnd[depth]) {
+                    errors++;
+                }
+                if (depth + 1 < parentEnd.length) {
+                    parentEnd[depth + 1] = end;
+                }
+            }
+            if (!"ViewPort 0".equals(profiler.getSectionName(f, 3)) 
+                    || profiler.getSectionDepth(f, 3) != 1) {
+                errors++;
+            }
+        }
+        return errors;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int sectionsPerFrame = frame(null);
+        // small buffers to wrap around many times
+        FrameProfiler profiler = new FrameProfiler(sectionsPerFrame * 100 + 7, 64);
+
+        run(null);
+        run(profiler);
+        double[] plain = new double[RUNS];
+        double[] profiled = new double[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            plain[i] = run(null);
+            profiled[i] = run(profiler);
+        }
+
+        double overhead = median(profiled) - median(plain);
+        System.out.println(sectionsPerFrame + " sections per frame, " + FRAMES + " frames");
+        System.out.printf("Without profiler: %.1f us/frame%n", median(plain));
+        System.out.printf("With profiler:    %.1f us/frame, %.1f ns per section%n", 
+                median(profiled), Math.max(0, overhead) * 1000 / sectionsPerFrame);
+        System.out.println("Frames kept: " + profiler.getFrameCount() 
+                + ", errors: " + check(profiler, sectionsPerFrame));
+
+        StringWriter csv = new StringWriter();
+        profiler.writeCsv(csv);
+        StringWriter trace = new StringWriter();
+        profiler.writeChromeTrace(trace);
+        System.out.println("CSV: " + csv.getBuffer().length() + " chars, trace: " 
+                + trace.getBuffer().length() + " chars");
+
+        if (args.length > 0) {
+            File dir = new File(args[0]);
+            Writer out = new FileWriter(new File(dir, "profile.csv"));
+            try {
+                profiler.writeCsv(out);
+            } finally {
+                out.close();
+            }
+            out = new FileWriter(new File(dir, "profile.json"));
+            try {
+                profiler.writeChromeTrace(out);
+            } finally {
+                out.close();
+            }
+        }
+    }
+}
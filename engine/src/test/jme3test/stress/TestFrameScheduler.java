@@ -0,0 +1,300 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package jme3test.stress;
+
+import com.jme3.app.state.AbstractAppState;
+import com.jme3.app.state.AppStateManager;
+import com.jme3.app.state.FrameJob;
+import com.jme3.app.state.FrameScheduler;
+import com.jme3.app.state.FrameScheduler.Phase;
+import com.jme3.app.state.ParallelAppState;
+import com.jme3.util.TimeHistogram;
+import com.jme3.util.WorkerPool;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Headless benchmark of the {@link FrameScheduler}. Updates a set of 
+ * {@link ParallelAppState}s standing for AI agents, interleaved with 
+ * regular states, and executes a graph of animation jobs joined by 
+ * a dependent job, first serially and then on the worker threads.
+ * Some of the jobs split their own work with {@link WorkerPool#invokeAll(java.util.List) }.
+ * Checks that both runs compute the same results and that no job started
+ * before its dependencies, and prints the per-phase histograms.
+ */
+public class TestFrameScheduler {
+
+    private static final int AGENT_STATES = 24;
+    private static final int ANIMATION_JOBS = 16;
+    private static final int WORK = 60000;
+    private static final int FRAMES = 300;
+    private static final int RUNS = 3;
+
+    /**
+     * Deterministic busy work returning a checksum.
+     */
+    private static long work(long seed, int iterations) {
+        long x = seed;
+        for (int i = 0; i < iterations; i++) {
+            x ^= x << 13;
+            x ^= x >>> 7;
+            x ^= x << 17;
+        }
+        return x;
+    }
+
+    private static class AgentState extends AbstractAppState implements ParallelAppState {
+
+        private final int id;
+        long checksum;
+
+        AgentState(int id) {
+            this.id = id;
+        }
+
+        @Override
+        public void update(float tpf) {
+            checksum = work(checksum + id + 1, WORK);
+        }
+    }
+
+    /**
+     * A regular state reading what the previous parallel states computed.
+     */
+    private static class GatherState extends AbstractAppState {
+
+        private final AgentState[] agents;
+        long checksum;
+
+        GatherState(AgentState[] agents) {
+            this.agents = agents;
+        }
+
+        @Override
+        public void update(float tpf) {
+            for (AgentState agent : agents) {
+                checksum = checksum * 31 + agent.checksum;
+            }
+        }
+    }
+
+    private static class WorkJob extends FrameJob {
+
+        private final AtomicInteger clock;
+        private final int seed;
+        private final int parts;
+        volatile int finishedAt;
+        int violations;
+        long checksum;
+
+        WorkJob(String name, Phase phase, AtomicInteger clock, int seed) {
+            this(name, phase, clock, seed, 1);
+        }
+
+        /**
+         * @param parts the number of tasks the work is split into
+         */
+        WorkJob(String name, Phase phase, AtomicInteger clock, int seed, int parts) {
+            super(name, phase);
+            this.clock = clock;
+            this.seed = seed;
+            this.parts = parts;
+        }
+
+        @Override
+        public void run(float tpf) {
+            int startedAt = clock.incrementAndGet();
+            for (FrameJob dependency : getDependencies()) {
+                WorkJob job = (WorkJob) dependency;
+                if (job.finishedAt == 0 || job.finishedAt > startedAt) {
+                    violations++;
+                }
+                checksum = checksum * 31 + job.checksum;
+            }
+            if (parts == 1) {
+                checksum = work(checksum + seed, WORK);
+            } else {
+                final long start = checksum + seed;
+                final long[] results = new long[parts];
+                ArrayList<Runnable> tasks = new ArrayList<Runnable>();
+                for (int i = 0; i < parts; i++) {
+                    final int part = i;
+                    tasks.add(new Runnable() {
+                        public void run() {
+                            results[part] = work(start + part, WORK / parts);
+                        }
+                    });
+                }
+                WorkerPool.invokeAll(tasks);
+                for (long result : results) {
+                    checksum = checksum * 31 + result;
+                }
+            }
+            finishedAt = clock.incrementAndGet();
+        }
+    }
+
+    private static class Scene {
+
+        final AppStateManager stateManager = new AppStateManager(null);
+        final ArrayList<WorkJob> jobs = new ArrayList<WorkJob>();
+        final ArrayList<GatherState> gathers = new ArrayList<GatherState>();
+        final AtomicInteger clock = new AtomicInteger();
+
+        Scene(boolean parallel) {
+            stateManager.getScheduler().setParallel(parallel);
+
+            // two groups of parallel agents, each followed by a regular state
+            for (int group = 0; group < 2; group++) {
+                AgentState[] agents = new AgentState[AGENT_STATES / 2];
+                for (int i = 0; i < agents.length; i++) {
+                    agents[i] = new AgentState(group * agents.length + i);
+                    stateManager.attach(agents[i]);
+                }
+                GatherState gather = new GatherState(agents);
+                gathers.add(gather);
+                stateManager.attach(gather);
+            }
+
+            FrameScheduler scheduler = stateManager.getScheduler();
+            WorkJob input = new WorkJob("Input", Phase.PreUpdate, clock, 1);
+            jobs.add(input);
+            
+            // animation jobs, the second half depends on the first half
+            // and a final job joins them all, the jobs of the first half 
+            // split their work like the skinning of large meshes
+            WorkJob join = new WorkJob("Join", Phase.Update, clock, 2);
+            WorkJob[] animations = new WorkJob[ANIMATION_JOBS];
+            for (int i = 0; i < ANIMATION_JOBS; i++) {
+                int parts = i < ANIMATION_JOBS / 2 ? 3 : 1;
+                animations[i] = new WorkJob("Animation " + i, Phase.Update, clock, 10 + i, parts);
+                if (i >= ANIMATION_JOBS / 2) {
+                    animations[i].addDependency(animations[i - ANIMATION_JOBS / 2]);
+                }
+                join.addDependency(animations[i]);
+            }
+            // attach the join first, the scheduler has to reorder it
+            jobs.add(join);
+            jobs.addAll(Arrays.asList(animations));
+            
+            WorkJob cull = new WorkJob("Cull", Phase.PreRender, clock, 3);
+            WorkJob stats = new WorkJob("Stats", Phase.PostRender, clock, 4);
+            jobs.add(cull);
+            jobs.add(stats);
+            for (WorkJob job : jobs) {
+                scheduler.attach(job);
+            }
+        }
+
+        void frame(float tpf) {
+            stateManager.update(tpf);
+            stateManager.render(null);
+            stateManager.postRender();
+        }
+
+        long checksum() {
+            long checksum = 0;
+            for (GatherState gather : gathers) {
+                checksum = checksum * 31 + gather.checksum;
+            }
+            for (WorkJob job : jobs) {
+                checksum = checksum * 31 + job.checksum;
+            }
+            return checksum;
+        }
+
+        int violations() {
+            int violations = 0;
+            for (WorkJob job : jobs) {
+                violations += job.violations;
+            }
+            return violations;
+        }
+    }
+
+    private static double run(Scene scene) {
+        scene.stateManager.getScheduler().resetHistograms();
+        long start = System.nanoTime();
+        for (int i = 0; i < FRAMES; i++) {
+            scene.frame(1f / 60f);
+        }
+        return (System.nanoTime() - start) / 1e6 / FRAMES;
+    }
+
+    private static double median(double[] values) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    private static void printHistograms(Scene scene) {
+        FrameScheduler scheduler = scene.stateManager.getScheduler();
+        for (Phase phase : Phase.values()) {
+            TimeHistogram histogram = scheduler.getHistogram(phase);
+            System.out.printf("  %-10s mean %7.3f ms  p50 %7.3f ms  p99 %7.3f ms  max %7.3f ms%n",
+                    phase, histogram.getMean() / 1e6, histogram.getPercentile(0.5f) / 1e6,
+                    histogram.getPercentile(0.99f) / 1e6, histogram.getMax() / 1e6);
+        }
+    }
+
+    public static void main(String[] args) {
+        Logger.getLogger("").setLevel(Level.WARNING);
+        System.out.println("Processors: " + Runtime.getRuntime().availableProcessors()
+                + ", worker threads: " + WorkerPool.getThreadCount());
+        System.out.println(AGENT_STATES + " parallel states, " + (ANIMATION_JOBS + 4) 
+                + " jobs, " + FRAMES + " frames");
+
+        Scene serial = new Scene(false);
+        Scene parallel = new Scene(true);
+        // warm up
+        run(serial);
+        run(parallel);
+
+        double[] serialTimes = new double[RUNS];
+        double[] parallelTimes = new double[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            serialTimes[i] = run(serial);
+            parallelTimes[i] = run(parallel);
+        }
+
+        System.out.printf("Serial:   %.3f ms/frame%n", median(serialTimes));
+        printHistograms(serial);
+        System.out.printf("Parallel: %.3f ms/frame (%.2fx)%n", median(parallelTimes),
+                median(serialTimes) / median(parallelTimes));
+        printHistograms(parallel);
+        System.out.println("Results match: " + (serial.checksum() == parallel.checksum())
+                + ", dependency violations: " + (serial.violations() + parallel.violations()));
+    }
+}
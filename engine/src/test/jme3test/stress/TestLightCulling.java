@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package jme3test.stress;
+
+import com.jme3.asset.AssetManager;
+import com.jme3.light.AmbientLight;
+import com.jme3.light.PointLight;
+import com.jme3.material.Material;
+import com.jme3.math.ColorRGBA;
+import com.jme3.math.FastMath;
+import com.jme3.math.Vector3f;
+import com.jme3.renderer.Camera;
+import com.jme3.renderer.Caps;
+import com.jme3.renderer.RenderManager;
+import com.jme3.renderer.Statistics;
+import com.jme3.renderer.ViewPort;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Node;
+import com.jme3.scene.shape.Box;
+import com.jme3.system.JmeSystem;
+import com.jme3.system.NullRenderer;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Headless benchmark of the light culling of the {@link RenderManager}.
+ * Renders a night scene lit by hundreds of flickering torches into a 
+ * renderer that only counts the draw calls, with and without 
+ * {@link RenderManager#setLightCulling(boolean) light culling}.
+ */
+public class TestLightCulling {
+
+    private static final int TILES = 40;
+    private static final float TILE_SIZE = 5f;
+    private static final int TORCHES = 400;
+    private static final float TORCH_RADIUS = 8f;
+    private static final int FRAMES = 100;
+
+    /**
+     * Renderer that supports GLSL 1.0 and counts the draw calls.
+     */
+    private static class RecordingRenderer extends NullRenderer {
+
+        private final EnumSet<Caps> caps = EnumSet.of(Caps.OpenGL20, 
+                Caps.GLSL100, Caps.GLSL110, Caps.GLSL120);
+        private int drawCalls;
+
+        @Override
+        public EnumSet<Caps> getCaps() {
+            return caps;
+        }
+
+        @Override
+        public void renderMesh(Mesh mesh, int lod, int count) {
+            drawCalls++;
+        }
+    }
+
+    public static void main(String[] args) {
+        Logger.getLogger("").setLevel(Level.WARNING);
+        AssetManager assetManager = JmeSystem.newAssetManager(
+                TestLightCulling.class.getResource("/com/jme3/asset/Desktop.cfg"));
+        RecordingRenderer renderer = new RecordingRenderer();
+        RenderManager rm = new RenderManager(renderer);
+
+        Camera cam = new Camera(640, 480);
+        cam.setFrustumPerspective(60f, 640f / 480f, 1f, 1000f);
+        float center = TILES * TILE_SIZE / 2f;
+        cam.setLocation(new Vector3f(center, 150f, -50f));
+        cam.lookAt(new Vector3f(center, 0, center), Vector3f.UNIT_Y);
+        ViewPort vp = new ViewPort("Main", cam);
+
+        Node scene = new Node("Scene");
+        Material mat = new Material(assetManager, "Common/MatDefs/Light/Lighting.j3md");
+        Box tile = new Box(TILE_SIZE / 2f, 0.5f, TILE_SIZE / 2f);
+        for (int z = 0; z < TILES; z++) {
+            for (int x = 0; x < TILES; x++) {
+                Geometry geom = new Geometry("Tile", tile);
+                geom.setMaterial(mat);
+                geom.setLocalTranslation(x * TILE_SIZE, 0, z * TILE_SIZE);
+                scene.attachChild(geom);
+            }
+        }
+
+        AmbientLight moon = new AmbientLight();
+        moon.setColor(new ColorRGBA(0.05f, 0.05f, 0.1f, 1f));
+        scene.addLight(moon);
+        Random random = new Random(1);
+        PointLight[] torches = new PointLight[TORCHES];
+        Vector3f[] positions = new Vector3f[TORCHES];
+        for (int i = 0; i < TORCHES; i++) {
+            positions[i] = new Vector3f(random.nextFloat() * TILES * TILE_SIZE, 2f, 
+                                        random.nextFloat() * TILES * TILE_SIZE);
+            torches[i] = new PointLight();
+            torches[i].setColor(ColorRGBA.Orange);
+            torches[i].setRadius(TORCH_RADIUS);
+            torches[i].setPosition(positions[i]);
+            scene.addLight(torches[i]);
+        }
+        vp.attachScene(scene);
+
+        Statistics stats = renderer.getStatistics();
+        String[] labels = stats.getLabels();
+        int[] data = new int[labels.length];
+        int considered = Arrays.asList(labels).indexOf("Lights (C)");
+        int applied = Arrays.asList(labels).indexOf("Lights (A)");
+        Vector3f flicker = new Vector3f();
+
+        // the first two passes warm up
+        for (int pass = 0; pass < 4; pass++) {
+            boolean culling = (pass & 1) == 1;
+            rm.setLightCulling(culling);
+            long[] times = new long[FRAMES];
+            for (int frame = 0; frame < FRAMES; frame++) {
+                for (int i = 0; i < TORCHES; i++) {
+                    flicker.set(FastMath.sin(frame * 0.3f + i), 0, FastMath.cos(frame * 0.2f + i));
+                    torches[i].setPosition(flicker.multLocal(0.2f).addLocal(positions[i]));
+                }
+                scene.updateGeometricState();
+                renderer.drawCalls = 0;
+                stats.clearFrame();
+
+                long start = System.nanoTime();
+                rm.renderViewPort(vp, 0.016f);
+                times[frame] = System.nanoTime() - start;
+            }
+            // skip the first frames, where the shaders are loaded
+            Arrays.sort(times, FRAMES / 4, FRAMES);
+            if (pass < 2) {
+                continue;
+            }
+            stats.getData(data);
+            System.out.printf("Light culling %s: %d draw calls, %d lights considered, %d applied, "
+                    + "median frame %.3f ms%n", culling ? "on " : "off", renderer.drawCalls, 
+                    data[considered], data[applied], times[FRAMES / 4 + (FRAMES - FRAMES / 4) / 2] / 1e6);
+        }
+    }
+}
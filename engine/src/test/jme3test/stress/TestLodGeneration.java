@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package jme3test.stress;
+
+import com.jme3.math.FastMath;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Node;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.scene.VertexBuffer.Format;
+import com.jme3.scene.VertexBuffer.Type;
+import com.jme3.scene.VertexBuffer.Usage;
+import com.jme3.scene.mesh.IndexBuffer;
+import com.jme3.scene.shape.Sphere;
+import com.jme3.scene.shape.Torus;
+import com.jme3.util.BufferUtils;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import jme3tools.optimize.LodGenerator;
+import jme3tools.optimize.LodGenerator.ReductionMethod;
+
+/**
+ * Headless benchmark of {@link LodGenerator}. Generates the LOD levels of 
+ * a few closed and open meshes, one mesh at a time and then all meshes
+ * in parallel, and prints the triangle count of each level.
+ */
+public class TestLodGeneration {
+
+    private static final float[] RATIOS = {0.5f, 0.75f, 0.9f};
+    private static final float[] ERRORS = {0.01f, 0.05f, 0.2f};
+    
+    /**
+     * An open, bumpy grid with a texture seam in the middle.
+     */
+    private static Mesh createTerrain(int size) {
+        int half = size / 2;
+        int columns = size + 2;
+        FloatBuffer positions = BufferUtils.createFloatBuffer(columns * (size + 1) * 3);
+        FloatBuffer texCoords = BufferUtils.createFloatBuffer(columns * (size + 1) * 2);
+        for (int z = 0; z <= size; z++) {
+            for (int i = 0; i < columns; i++) {
+                // the middle column is duplicated with other texture coordinates
+                int x = i <= half ? i : i - 1;
+                float y = FastMath.sin(x * 0.2f) * FastMath.cos(z * 0.15f) * 2f;
+                positions.put(x).put(y).put(z);
+                texCoords.put(i <= half ? x / (float) half : (x - half) / (float) half).put(z / (float) size);
+            }
+        }
+        IntBuffer indices = BufferUtils.createIntBuffer(size * size * 6);
+        for (int z = 0; z < size; z++) {
+            for (int x = 0; x < size; x++) {
+                int i = x < half ? x : x + 1;
+                int v = z * columns + i;
+                indices.put(v).put(v + columns).put(v + 1);
+                indices.put(v + 1).put(v + columns).put(v + columns + 1);
+            }
+        }
+        Mesh mesh = new Mesh();
+        mesh.setBuffer(Type.Position, 3, positions);
+        mesh.setBuffer(Type.TexCoord, 2, texCoords);
+        mesh.setBuffer(Type.Index, 3, indices);
+        mesh.updateBound();
+        return mesh;
+    }
+    
+    private static Node createScene() {
+        Node scene = new Node("Scene");
+        scene.attachChild(new Geometry("Sphere", new Sphere(128, 128, 5)));
+        scene.attachChild(new Geometry("Torus", new Torus(128, 64, 1, 4)));
+        scene.attachChild(new Geometry("Terrain", createTerrain(256)));
+        scene.attachChild(new Geometry("Skinned Sphere", createSkinnedSphere()));
+        return scene;
+    }
+    
+    private static Mesh createSkinnedSphere() {
+        Sphere mesh = new Sphere(96, 96, 5);
+        int vertexCount = mesh.getVertexCount();
+        FloatBuffer positions = mesh.getFloatBuffer(Type.Position);
+        FloatBuffer weights = BufferUtils.createFloatBuffer(vertexCount * 4);
+        java.nio.ByteBuffer indices = BufferUtils.createByteBuffer(vertexCount * 4);
+        for (int i = 0; i < vertexCount; i++) {
+            // one bone per quarter of the sphere along the Z axis
+            int bone = Math.min(3, (int) ((positions.get(i * 3 + 2) + 5) / 2.5f));
+            indices.put(i * 4, (byte) bone);
+            weights.put(i * 4, 1f);
+        }
+        VertexBuffer weightsBuf = new VertexBuffer(Type.BoneWeight);
+        weightsBuf.setupData(Usage.CpuOnly, 4, Format.Float, weights);
+        mesh.setBuffer(weightsBuf);
+        VertexBuffer indicesBuf = new VertexBuffer(Type.BoneIndex);
+        indicesBuf.setupData(Usage.CpuOnly, 4, Format.UnsignedByte, indices);
+        mesh.setBuffer(indicesBuf);
+        return mesh;
+    }
+    
+    private static void print(Node scene) {
+        for (int i = 0; i < scene.getQuantity(); i++) {
+            Mesh mesh = ((Geometry) scene.getChild(i)).getMesh();
+            StringBuilder sb = new StringBuilder("  ").append(scene.getChild(i).getName()).append(':');
+            for (int lod = 0; lod < mesh.getNumLodLevels(); lod++) {
+                IndexBuffer indices = IndexBuffer.wrapIndexBuffer(mesh.getLodLevel(lod).getData());
+                for (int j = 0; j < indices.size(); j++) {
+                    if (indices.get(j) < 0 || indices.get(j) >= mesh.getVertexCount()) {
+                        throw new RuntimeException("Invalid index in LOD " + lod + " of " + scene.getChild(i));
+                    }
+                }
+                sb.append(' ').append(mesh.getTriangleCount(lod));
+            }
+            System.out.println(sb);
+        }
+    }
+    
+    private static long bakeSerial(Node scene, ReductionMethod method, float[] values) {
+        long start = System.nanoTime();
+        for (int i = 0; i < scene.getQuantity(); i++) {
+            new LodGenerator(((Geometry) scene.getChild(i)).getMesh()).bakeLods(method, values);
+        }
+        return System.nanoTime() - start;
+    }
+    
+    private static long bakeParallel(Node scene, ReductionMethod method, float[] values) {
+        long start = System.nanoTime();
+        LodGenerator.bakeLods(scene, method, values);
+        return System.nanoTime() - start;
+    }
+    
+    public static void main(String[] args) {
+        Node serial = createScene();
+        Node parallel = createScene();
+        
+        for (int pass = 0; pass < 3; pass++) {
+            long serialTime = bakeSerial(serial, ReductionMethod.Proportional, RATIOS);
+            long parallelTime = bakeParallel(parallel, ReductionMethod.Proportional, RATIOS);
+            System.out.println("Pass " + pass + " proportional, serial: " + (serialTime / 1000000) + " ms"
+                             + ", parallel: " + (parallelTime / 1000000) + " ms");
+        }
+        print(parallel);
+        
+        long errorTime = bakeParallel(parallel, ReductionMethod.ConstantError, ERRORS);
+        System.out.println("Constant error: " + (errorTime / 1000000) + " ms");
+        print(parallel);
+    }
+}
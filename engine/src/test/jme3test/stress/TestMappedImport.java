@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package jme3test.stress;
+
+import com.jme3.export.Savable;
+import com.jme3.export.binary.BinaryExporter;
+import com.jme3.export.binary.BinaryImporter;
+import com.jme3.math.FastMath;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Node;
+import com.jme3.scene.VertexBuffer.Type;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Headless benchmark of the memory mapped {@link BinaryImporter}. Exports
+ * a scene with a lot of vertex data to a temporary J3O file, then compares
+ * the load time and the peak heap usage of the streaming importer with the
+ * mapped one, with and without zero-copy buffers. The peak heap usage is
+ * only as precise as the memory pools of the garbage collector, so the
+ * bytes allocated by the loading thread are reported as well when the JVM
+ * supports it. The loaded scenes are exported again and must be identical 
+ * to the file.
+ * <p>
+ * Pass the number of geometries to change the size of the file.
+ */
+public class TestMappedImport {
+
+    private static final int VERTICES = 16384;
+    private static final int RUNS = 5;
+
+    private static Mesh createMesh(Random random) {
+        float[] positions = new float[VERTICES * 3];
+        float[] normals = new float[VERTICES * 3];
+        float[] texCoords = new float[VERTICES * 2];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = random.nextFloat() * 100f;
+            normals[i] = random.nextFloat() * 2f - 1f;
+        }
+        for (int i = 0; i < texCoords.length; i++) {
+            texCoords[i] = random.nextFloat();
+        }
+        int[] indices = new int[VERTICES * 3];
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = random.nextInt(VERTICES);
+        }
+        Mesh mesh = new Mesh();
+        mesh.setBuffer(Type.Position, 3, positions);
+        mesh.setBuffer(Type.Normal, 3, normals);
+        mesh.setBuffer(Type.TexCoord, 2, texCoords);
+        mesh.setBuffer(Type.Index, 3, indices);
+        mesh.updateBound();
+        return mesh;
+    }
+
+    private static Node createScene(int geometries) {
+        Random random = new Random(42);
+        Node root = new Node("Root");
+        Node group = null;
+        for (int i = 0; i < geometries; i++) {
+            if (i % 16 == 0) {
+                group = new Node("Group " + i / 16);
+                root.attachChild(group);
+            }
+            Geometry geom = new Geometry("Geometry " + i, createMesh(random));
+            geom.setLocalTranslation(random.nextFloat(), random.nextFloat(), random.nextFloat());
+            geom.getLocalRotation().fromAngleAxis(random.nextFloat() * FastMath.TWO_PI, 
+                    geom.getLocalTranslation().normalize());
+            geom.setUserData("index", i);
+            group.attachChild(geom);
+        }
+        return root;
+    }
+
+    private static byte[] export(Savable savable) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryExporter.getInstance().save(savable, out);
+        return out.toByteArray();
+    }
+
+    private static BinaryImporter createImporter(int mode) {
+        BinaryImporter importer = new BinaryImporter();
+        importer.setMemoryMapped(mode > 0);
+        importer.setZeroCopyBuffers(mode > 1);
+        return importer;
+    }
+
+    private static long usedHeap() {
+        long used = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                used += pool.getUsage().getUsed();
+            }
+        }
+        return used;
+    }
+
+    private static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    private static void resetPeakHeap() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    /**
+     * @return The bytes allocated by the current thread so far, or -1.
+     */
+    private static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(
+                    Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    private static double median(double[] values) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    public static void main(String[] args) throws IOException {
+        Logger.getLogger("").setLevel(Level.WARNING);
+        int geometries = args.length > 0 ? Integer.parseInt(args[0]) : 128;
+
+        File file = File.createTempFile("TestMappedImport", ".j3o");
+        file.deleteOnExit();
+        Node scene = createScene(geometries);
+        BinaryExporter.getInstance().save(scene, file);
+        scene = null;
+        System.out.printf("%d geometries, %.1f MB%n", geometries, file.length() / 1048576.0);
+
+        String[] names = {"Stream", "Mapped", "Mapped, zero-copy"};
+        byte[] reference = export(createImporter(0).load(file));
+        for (int mode = 0; mode < names.length; mode++) {
+            // warm up
+            createImporter(mode).load(file);
+
+            double[] times = new double[RUNS];
+            double[] peaks = new double[RUNS];
+            double[] allocated = new double[RUNS];
+            Savable loaded = null;
+            for (int i = 0; i < RUNS; i++) {
+                loaded = null;
+                System.gc();
+                long before = usedHeap();
+                resetPeakHeap();
+                long allocatedBefore = allocatedBytes();
+                long start = System.nanoTime();
+                loaded = createImporter(mode).load(file);
+                times[i] = (System.nanoTime() - start) / 1e6;
+                allocated[i] = (allocatedBytes() - allocatedBefore) / 1048576.0;
+                peaks[i] = (peakHeap() - before) / 1048576.0;
+            }
+            boolean identical = Arrays.equals(reference, export(loaded));
+            List<?> children = ((Node) loaded).getChildren();
+            System.out.printf("%-18s %7.1f ms, peak heap +%6.1f MB, allocated %6.1f MB, "
+                    + "%d groups, identical: %b%n", names[mode] + ":", median(times), 
+                    median(peaks), median(allocated), children.size(), identical);
+        }
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package jme3test.stress;
+
+import com.jme3.asset.AssetManager;
+import com.jme3.light.PointLight;
+import com.jme3.material.Material;
+import com.jme3.material.TechniqueDef;
+import com.jme3.math.ColorRGBA;
+import com.jme3.math.Vector3f;
+import com.jme3.renderer.Camera;
+import com.jme3.renderer.Caps;
+import com.jme3.renderer.RenderManager;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Node;
+import com.jme3.scene.shape.Box;
+import com.jme3.shader.Shader;
+import com.jme3.system.JmeSystem;
+import com.jme3.system.NullRenderer;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Headless benchmark of the material technique and shader variant 
+ * selection. Renders a scene of lit geometries into a renderer that only
+ * records calls, alternating a forced pre-shadow pass and the default pass
+ * every frame while toggling define parameters on a few materials, and
+ * reports the time per frame and the state of the shader variant caches.
+ */
+public class TestMaterialVariants {
+
+    private static final int GEOMETRIES = 5000;
+    private static final int MATERIALS = 256;
+    private static final int FRAMES = 300;
+
+    /**
+     * Renderer that supports GLSL 1.0 and counts the calls made to it.
+     */
+    private static class RecordingRenderer extends NullRenderer {
+
+        private final EnumSet<Caps> caps = EnumSet.of(Caps.OpenGL20, 
+                Caps.GLSL100, Caps.GLSL110, Caps.GLSL120);
+        private int shaderSwitches;
+        private int drawCalls;
+
+        @Override
+        public EnumSet<Caps> getCaps() {
+            return caps;
+        }
+
+        @Override
+        public void setShader(Shader shader) {
+            shaderSwitches++;
+        }
+
+        @Override
+        public void renderMesh(Mesh mesh, int lod, int count) {
+            drawCalls++;
+        }
+    }
+
+    public static void main(String[] args) {
+        Logger.getLogger("").setLevel(Level.WARNING);
+        AssetManager assetManager = JmeSystem.newAssetManager(
+                TestMaterialVariants.class.getResource("/com/jme3/asset/Desktop.cfg"));
+        RecordingRenderer renderer = new RecordingRenderer();
+        RenderManager rm = new RenderManager(renderer);
+        Camera cam = new Camera(640, 480);
+        cam.setFrustumPerspective(45f, 640f / 480f, 1f, 1000f);
+        rm.setCamera(cam, false);
+
+        Material[] materials = new Material[MATERIALS];
+        for (int i = 0; i < MATERIALS; i++) {
+            Material mat = new Material(assetManager, "Common/MatDefs/Light/Lighting.j3md");
+            mat.setBoolean("UseMaterialColors", (i & 1) != 0);
+            mat.setBoolean("Minnaert", (i & 2) != 0);
+            mat.setBoolean("LowQuality", (i & 4) != 0);
+            mat.setFloat("Shininess", 8f);
+            mat.setFloat("AlphaDiscardThreshold", 0.5f);
+            mat.setColor("Diffuse", ColorRGBA.randomColor());
+            mat.setBoolean("VertexLighting", false);
+            materials[i] = mat;
+        }
+
+        Node scene = new Node("Scene");
+        PointLight light = new PointLight();
+        light.setPosition(new Vector3f(0, 10, 0));
+        light.setRadius(100f);
+        scene.addLight(light);
+        Box box = new Box(0.5f, 0.5f, 0.5f);
+        Geometry[] geoms = new Geometry[GEOMETRIES];
+        for (int i = 0; i < GEOMETRIES; i++) {
+            Geometry geom = new Geometry("Box" + i, box);
+            geom.setMaterial(materials[i % MATERIALS]);
+            geom.setLocalTranslation(i % 100, 0, i / 100);
+            scene.attachChild(geom);
+            geoms[i] = geom;
+        }
+        scene.updateGeometricState();
+
+        long[] times = new long[FRAMES];
+        for (int frame = 0; frame < FRAMES; frame++) {
+            long start = System.nanoTime();
+            // toggle a define on half of the materials, so the technique
+            // of each must select another shader variant
+            for (int i = frame & 1; i < MATERIALS; i += 2) {
+                Material mat = materials[i];
+                mat.setBoolean("VertexLighting", !mat.getParam("VertexLighting").getValue().equals(Boolean.TRUE));
+            }
+            rm.setForcedTechnique("PreShadow");
+            for (Geometry geom : geoms) {
+                rm.renderGeometry(geom);
+            }
+            rm.setForcedTechnique(null);
+            for (Geometry geom : geoms) {
+                rm.renderGeometry(geom);
+            }
+            times[frame] = System.nanoTime() - start;
+        }
+
+        // skip the first frames, where the shaders are loaded
+        long[] measured = new long[FRAMES - FRAMES / 4];
+        System.arraycopy(times, FRAMES / 4, measured, 0, measured.length);
+        Arrays.sort(measured);
+        System.out.printf("%d geometries, %d materials, %d frames%n", GEOMETRIES, MATERIALS, FRAMES);
+        System.out.printf("Frame time: median %.3f ms, best %.3f ms%n", 
+                measured[measured.length / 2] / 1e6, measured[0] / 1e6);
+        System.out.printf("Shader switches: %d, draw calls: %d%n", 
+                renderer.shaderSwitches, renderer.drawCalls);
+        printCache(materials[0].getActiveTechnique().getDef());
+        printCache(materials[0].getMaterialDef().getTechniqueDef("PreShadow"));
+    }
+
+    private static void printCache(TechniqueDef def) {
+        System.out.printf("Technique %s: %d shader variants, %d cache misses%n",
+                def.getName(), def.getShaderCacheSize(), def.getShaderCacheMisses());
+    }
+}
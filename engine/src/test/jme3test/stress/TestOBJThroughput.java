@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package jme3test.stress;
+
+import com.jme3.asset.AssetInfo;
+import com.jme3.asset.AssetManager;
+import com.jme3.asset.ModelKey;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.plugins.OBJLoader;
+import com.jme3.system.JmeSystem;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Headless benchmark of the {@link OBJLoader} throughput. Writes a grid 
+ * shaped like a photogrammetry scan, with positions, texture coordinates
+ * and normals, to a temporary OBJ file and reports how many MB per second 
+ * are loaded, along with the bytes allocated per load.
+ * <p>
+ * Pass the number of cells per side of the grid, or an OBJ file to load.
+ */
+public class TestOBJThroughput {
+
+    private static final int RUNS = 5;
+
+    private static void writeGrid(File file, int size) throws IOException {
+        Random random = new Random(42);
+        Writer out = new BufferedWriter(new FileWriter(file), 65536);
+        out.write("# " + size + " x " + size + " grid\n");
+        for (int y = 0; y <= size; y++) {
+            for (int x = 0; x <= size; x++) {
+                out.write(String.format(Locale.US, "v %.6f %.6f %.6f\n", 
+                        x * 0.01f, random.nextFloat() * 0.1f, y * 0.01f));
+            }
+        }
+        for (int y = 0; y <= size; y++) {
+            for (int x = 0; x <= size; x++) {
+                out.write(String.format(Locale.US, "vt %.6f %.6f\n", 
+                        x / (float) size, y / (float) size));
+            }
+        }
+        for (int y = 0; y <= size; y++) {
+            for (int x = 0; x <= size; x++) {
+                out.write(String.format(Locale.US, "vn %.4f %.4f %.4f\n", 
+                        random.nextFloat() * 0.2f, 1f, random.nextFloat() * 0.2f));
+            }
+        }
+        out.write("g grid\n");
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                int a = y * (size + 1) + x + 1;
+                int b = a + 1;
+                int c = a + size + 2;
+                int d = a + size + 1;
+                out.write("f " + a + "/" + a + "/" + a + " " + b + "/" + b + "/" + b + " " 
+                        + c + "/" + c + "/" + c + "\n");
+                out.write("f " + a + "/" + a + "/" + a + " " + c + "/" + c + "/" + c + " " 
+                        + d + "/" + d + "/" + d + "\n");
+            }
+        }
+        out.close();
+    }
+
+    private static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(
+                    Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    private static double median(double[] values) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    public static void main(String[] args) throws IOException {
+        Logger.getLogger("").setLevel(Level.WARNING);
+        final AssetManager assetManager = JmeSystem.newAssetManager(
+                TestOBJThroughput.class.getResource("/com/jme3/asset/Desktop.cfg"));
+
+        final File file;
+        if (args.length > 0 && args[0].toLowerCase().endsWith(".obj")) {
+            file = new File(args[0]);
+        } else {
+            int size = args.length > 0 ? Integer.parseInt(args[0]) : 400;
+            file = File.createTempFile("TestOBJThroughput", ".obj");
+            file.deleteOnExit();
+            writeGrid(file, size);
+        }
+        double megabytes = file.length() / 1048576.0;
+        AssetInfo info = new AssetInfo(assetManager, new ModelKey(file.getName())) {
+            @Override
+            public InputStream openStream() {
+                try {
+                    return new FileInputStream(file);
+                } catch (FileNotFoundException ex) {
+                    throw new RuntimeException(ex);
+                }
+            }
+        };
+
+        OBJLoader loader = new OBJLoader();
+        // warm up
+        Spatial model = (Spatial) loader.load(info);
+        System.out.printf("%.1f MB, %d vertices, %d triangles%n", megabytes, 
+                model.getVertexCount(), model.getTriangleCount());
+        model = null;
+
+        double[] times = new double[RUNS];
+        double[] allocated = new double[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            System.gc();
+            long allocatedBefore = allocatedBytes();
+            long start = System.nanoTime();
+            loader.load(info);
+            times[i] = (System.nanoTime() - start) / 1e9;
+            allocated[i] = (allocatedBytes() - allocatedBefore) / 1048576.0;
+        }
+        System.out.printf("%.1f ms, %.1f MB/s, %.1f MB allocated per load%n", 
+                median(times) * 1000, megabytes / median(times), median(allocated));
+    }
+}
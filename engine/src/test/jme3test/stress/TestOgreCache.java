@@ -0,0 +1,245 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package jme3test.stress;
+
+import com.jme3.animation.AnimControl;
+import com.jme3.animation.Bone;
+import com.jme3.animation.Skeleton;
+import com.jme3.asset.AssetKey;
+import com.jme3.asset.DesktopAssetManager;
+import com.jme3.asset.ModelKey;
+import com.jme3.export.Savable;
+import com.jme3.export.binary.BinaryExporter;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.scene.plugins.ogre.OgreBinaryCache;
+import com.jme3.system.JmeSystem;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Benchmark of the binary cache of Ogre3D mesh.xml and skeleton.xml files,
+ * see {@link OgreBinaryCache}. Compares the time to load a few of the test
+ * models by parsing the XML files, when the cache is empty and when the 
+ * cache is filled, and checks that all of them load the same models.
+ * Materials and textures are only loaded once, they are not cached.
+ * <p>
+ * The models are compared part by part, a J3O round trip changes the order
+ * of the vertex buffers of a mesh and of the children of a bone.
+ */
+public class TestOgreCache {
+
+    private static final String[] MODELS = {
+        "Models/Elephant/Elephant.mesh.xml",
+        "Models/Sinbad/Sinbad.mesh.xml",
+        "Models/Oto/Oto.mesh.xml",
+        "Models/Ninja/Ninja.mesh.xml",
+        "Models/Tree/Tree.mesh.xml",
+        "Models/Teapot/Teapot.mesh.xml",
+    };
+    private static final int RUNS = 5;
+
+    private static byte[] export(Savable savable) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryExporter.getInstance().save(savable, out);
+        return out.toByteArray();
+    }
+
+    private static boolean sameData(Savable a, Savable b) throws IOException {
+        return Arrays.equals(export(a), export(b));
+    }
+
+    private static boolean sameMesh(Mesh a, Mesh b) throws IOException {
+        if (a.getMode() != b.getMode() || a.getVertexCount() != b.getVertexCount()
+                || a.getMaxNumWeights() != b.getMaxNumWeights()
+                || !sameData(a.getBound(), b.getBound())
+                || a.getBufferList().size() != b.getBufferList().size()
+                || a.getNumLodLevels() != b.getNumLodLevels()) {
+            return false;
+        }
+        for (VertexBuffer vb : a.getBufferList()) {
+            VertexBuffer other = b.getBuffer(vb.getBufferType());
+            if (other == null || !sameData(vb, other)) {
+                return false;
+            }
+        }
+        for (int i = 0; i < a.getNumLodLevels(); i++) {
+            if (!sameData(a.getLodLevel(i), b.getLodLevel(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean sameSkeleton(Skeleton a, Skeleton b) {
+        if (a.getBoneCount() != b.getBoneCount()) {
+            return false;
+        }
+        for (int i = 0; i < a.getBoneCount(); i++) {
+            Bone boneA = a.getBone(i);
+            Bone boneB = b.getBone(i);
+            int parentA = boneA.getParent() == null ? -1 : a.getBoneIndex(boneA.getParent());
+            int parentB = boneB.getParent() == null ? -1 : b.getBoneIndex(boneB.getParent());
+            if (!boneA.getName().equals(boneB.getName()) || parentA != parentB
+                    || !boneA.getLocalPosition().equals(boneB.getLocalPosition())
+                    || !boneA.getLocalRotation().equals(boneB.getLocalRotation())
+                    || !boneA.getLocalScale().equals(boneB.getLocalScale())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean sameModel(Node a, Node b) throws IOException {
+        if (!a.getName().equals(b.getName()) || a.getQuantity() != b.getQuantity()) {
+            return false;
+        }
+        for (int i = 0; i < a.getQuantity(); i++) {
+            Geometry geomA = (Geometry) a.getChild(i);
+            Geometry geomB = (Geometry) b.getChild(i);
+            if (!geomA.getName().equals(geomB.getName())
+                    || geomA.getQueueBucket() != geomB.getQueueBucket()
+                    || !sameData(geomA.getMaterial(), geomB.getMaterial())
+                    || !sameMesh(geomA.getMesh(), geomB.getMesh())) {
+                return false;
+            }
+        }
+
+        AnimControl controlA = a.getControl(AnimControl.class);
+        AnimControl controlB = b.getControl(AnimControl.class);
+        if (controlA == null || controlB == null) {
+            return controlA == controlB && a.getNumControls() == b.getNumControls();
+        }
+        if (!controlA.getAnimationNames().equals(controlB.getAnimationNames())
+                || !sameSkeleton(controlA.getSkeleton(), controlB.getSkeleton())) {
+            return false;
+        }
+        for (String name : controlA.getAnimationNames()) {
+            if (!sameData(controlA.getAnim(name), controlB.getAnim(name))) {
+                return false;
+            }
+        }
+        return a.getNumControls() == b.getNumControls();
+    }
+
+    private static Spatial[] loadAll(DesktopAssetManager assetManager) {
+        // make sure the models and skeletons are loaded again, materials
+        // and textures stay in the asset cache
+        Spatial[] models = new Spatial[MODELS.length];
+        for (int i = 0; i < MODELS.length; i++) {
+            String skeleton = MODELS[i].replace(".mesh.xml", ".skeleton.xml");
+            assetManager.deleteFromCache(new ModelKey(MODELS[i]));
+            assetManager.deleteFromCache(new AssetKey<Object>(skeleton));
+            models[i] = assetManager.loadModel(MODELS[i]);
+        }
+        return models;
+    }
+
+    private static void clearFolder(File folder) {
+        File[] files = folder.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+    }
+
+    private static long folderSize(File folder) {
+        long size = 0;
+        File[] files = folder.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                size += file.length();
+            }
+        }
+        return size;
+    }
+
+    private static double median(double[] values) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    public static void main(String[] args) throws IOException {
+        // the test models log a lot of warnings about bone weights and materials
+        Logger.getLogger("").setLevel(Level.SEVERE);
+        DesktopAssetManager assetManager = (DesktopAssetManager) JmeSystem.newAssetManager(
+                TestOgreCache.class.getResource("/com/jme3/asset/Desktop.cfg"));
+
+        File folder = File.createTempFile("ogrecache", "");
+        folder.delete();
+        folder.mkdirs();
+
+        Spatial[] reference = loadAll(assetManager);
+
+        String[] names = {"XML", "Cache miss", "Cache hit"};
+        try {
+            for (int mode = 0; mode < 3; mode++) {
+                OgreBinaryCache.setCacheFolder(mode == 0 ? null : folder);
+                // warm up
+                clearFolder(folder);
+                loadAll(assetManager);
+
+                double[] times = new double[RUNS];
+                Spatial[] models = null;
+                for (int i = 0; i < RUNS; i++) {
+                    if (mode == 1) {
+                        clearFolder(folder);
+                    }
+                    long start = System.nanoTime();
+                    models = loadAll(assetManager);
+                    times[i] = (System.nanoTime() - start) / 1e6;
+                }
+
+                boolean same = true;
+                for (int i = 0; i < MODELS.length; i++) {
+                    same &= sameModel((Node) reference[i], (Node) models[i]);
+                }
+                System.out.printf("%-12s %7.1f ms, same models: %b%n", names[mode] + ":",
+                        median(times), same);
+            }
+            System.out.printf("Cache size: %.1f MB%n", folderSize(folder) / 1048576.0);
+        } finally {
+            OgreBinaryCache.setCacheFolder(null);
+            clearFolder(folder);
+            folder.delete();
+        }
+    }
+}
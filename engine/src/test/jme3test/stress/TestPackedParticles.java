@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package jme3test.stress;
+
+import com.jme3.bounding.BoundingBox;
+import com.jme3.effect.Particle;
+import com.jme3.effect.ParticleEmitter;
+import com.jme3.effect.ParticleMesh.Type;
+import com.jme3.effect.shapes.EmitterSphereShape;
+import com.jme3.math.ColorRGBA;
+import com.jme3.math.FastMath;
+import com.jme3.math.Vector3f;
+import com.jme3.renderer.Camera;
+import com.jme3.renderer.ViewPort;
+import com.jme3.scene.control.Control;
+import java.util.Arrays;
+
+/**
+ * Headless benchmark of {@link ParticleEmitter} simulation and mesh 
+ * updates, comparing {@link Particle} objects with 
+ * {@link ParticleEmitter#setPackedParticles(boolean) packed particles}.
+ * Both emitters use the same random sequence and their live particles
+ * and bounds are checked to be identical.
+ */
+public class TestPackedParticles {
+
+    private static final int PARTICLES = 100000;
+    private static final int FRAMES = 300;
+    private static final float TPF = 1f / 60f;
+    
+    private static ParticleEmitter createEmitter(boolean packed) {
+        ParticleEmitter emitter = new ParticleEmitter("Emitter", Type.Triangle, PARTICLES);
+        emitter.setPackedParticles(packed);
+        emitter.setShape(new EmitterSphereShape(Vector3f.ZERO, 2f));
+        emitter.setParticlesPerSec(PARTICLES / 3f);
+        emitter.setLowLife(1f);
+        emitter.setHighLife(4f);
+        emitter.setStartColor(new ColorRGBA(1f, 0.8f, 0.2f, 1f));
+        emitter.setEndColor(new ColorRGBA(0.2f, 0.2f, 0.2f, 0f));
+        emitter.setImagesX(2);
+        emitter.setImagesY(2);
+        emitter.setRotateSpeed(2f);
+        emitter.getParticleInfluencer().setInitialVelocity(new Vector3f(0, 3, 0));
+        emitter.getParticleInfluencer().setVelocityVariation(0.5f);
+        emitter.updateGeometricState();
+        return emitter;
+    }
+    
+    private static long[] run(ParticleEmitter emitter, ViewPort vp, long seed) {
+        Control control = emitter.getControl(ParticleEmitter.ParticleEmitterControl.class);
+        FastMath.rand.setSeed(seed);
+        long update = 0, render = 0;
+        for (int frame = 0; frame < FRAMES; frame++) {
+            long start = System.nanoTime();
+            control.update(TPF);
+            long mid = System.nanoTime();
+            control.render(null, vp);
+            long end = System.nanoTime();
+            update += mid - start;
+            render += end - mid;
+        }
+        return new long[]{ update, render };
+    }
+    
+    private static float[] sortedLiveData(ParticleEmitter emitter) {
+        Particle[] particles = emitter.getParticles();
+        float[] data = new float[emitter.getNumVisibleParticles() * 5];
+        int n = 0;
+        for (Particle p : particles) {
+            if (p.life > 0) {
+                data[n++] = p.position.x + p.position.y * 3 + p.position.z * 7;
+                data[n++] = p.life;
+                data[n++] = p.size;
+                data[n++] = p.angle;
+                data[n++] = p.color.asIntABGR();
+            }
+        }
+        if (n != data.length) {
+            throw new RuntimeException("Visible particle count is wrong");
+        }
+        Arrays.sort(data);
+        return data;
+    }
+    
+    private static void verify(ParticleEmitter objects, ParticleEmitter packed) {
+        if (objects.getNumVisibleParticles() != packed.getNumVisibleParticles()) {
+            throw new RuntimeException("Particle counts differ");
+        }
+        BoundingBox a = (BoundingBox) objects.getMesh().getBound();
+        BoundingBox b = (BoundingBox) packed.getMesh().getBound();
+        if (!a.getCenter().equals(b.getCenter()) || !a.getExtent(null).equals(b.getExtent(null))) {
+            throw new RuntimeException("Bounds differ");
+        }
+        if (!Arrays.equals(sortedLiveData(objects), sortedLiveData(packed))) {
+            throw new RuntimeException("Particles differ");
+        }
+    }
+    
+    public static void main(String[] args) {
+        ViewPort vp = new ViewPort("Test", new Camera(640, 480));
+        for (int pass = 0; pass < 3; pass++) {
+            ParticleEmitter objects = createEmitter(false);
+            ParticleEmitter packed = createEmitter(true);
+            long[] objectTime = run(objects, vp, pass);
+            long[] packedTime = run(packed, vp, pass);
+            verify(objects, packed);
+            System.out.println("Pass " + pass + ", " + packed.getNumVisibleParticles() + " particles"
+                             + " objects: " + (objectTime[0] / FRAMES / 1000) + " us update, " 
+                                            + (objectTime[1] / FRAMES / 1000) + " us mesh"
+                             + " packed: " + (packedTime[0] / FRAMES / 1000) + " us update, " 
+                                           + (packedTime[1] / FRAMES / 1000) + " us mesh");
+        }
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package jme3test.stress;
+
+import com.jme3.asset.AssetManager;
+import com.jme3.asset.plugins.FileLocator;
+import com.jme3.export.Savable;
+import com.jme3.export.binary.BinaryExporter;
+import com.jme3.export.binary.BinaryImporter;
+import com.jme3.material.Material;
+import com.jme3.math.ColorRGBA;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Node;
+import com.jme3.scene.shape.Box;
+import com.jme3.scene.shape.Sphere;
+import com.jme3.system.JmeSystem;
+import com.jme3.util.WorkerPool;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Benchmark of the parallel loading of chunked J3O files, see
+ * {@link BinaryExporter#setChunked(boolean) }. Compares the load time
+ * with and without parallel loading and checks that both scenes are the
+ * same, by exporting them again.
+ * <p>
+ * Without arguments a scene of a hundred areas, which share a few meshes
+ * and materials, is generated. Pass a J3O file to benchmark it instead, 
+ * the file is exported again with a table of chunks first.
+ */
+public class TestParallelImport {
+
+    private static final int AREAS = 100;
+    private static final int OBJECTS = 64;
+    private static final int RUNS = 5;
+
+    private static Node createScene(AssetManager assetManager) {
+        Random random = new Random(42);
+        Mesh sharedMesh = new Box(1, 1, 1);
+        Material sharedMaterial = new Material(assetManager, "Common/MatDefs/Light/Lighting.j3md");
+        sharedMaterial.setColor("Diffuse", ColorRGBA.Gray);
+
+        Node root = new Node("World");
+        for (int a = 0; a < AREAS; a++) {
+            Node area = new Node("Area " + a);
+            area.setLocalTranslation(a * 100, 0, 0);
+            Material material = new Material(assetManager, "Common/MatDefs/Light/Lighting.j3md");
+            material.setColor("Diffuse", new ColorRGBA(random.nextFloat(), random.nextFloat(), random.nextFloat(), 1));
+            material.setFloat("Shininess", random.nextFloat() * 64);
+            Mesh areaMesh = new Sphere(8 + random.nextInt(16), 8 + random.nextInt(16), 1);
+            for (int i = 0; i < OBJECTS; i++) {
+                Node object = new Node("Object " + i);
+                object.setLocalTranslation(random.nextFloat() * 100, 0, random.nextFloat() * 100);
+                object.setUserData("id", a * OBJECTS + i);
+                Geometry geom;
+                if (i % 4 == 0) {
+                    geom = new Geometry("Crate", sharedMesh);
+                    geom.setMaterial(sharedMaterial);
+                } else {
+                    geom = new Geometry("Rock", areaMesh);
+                    geom.setMaterial(material);
+                }
+                object.attachChild(geom);
+                area.attachChild(object);
+            }
+            root.attachChild(area);
+        }
+        return root;
+    }
+
+    private static byte[] export(Savable savable, boolean chunked) throws IOException {
+        BinaryExporter exporter = new BinaryExporter();
+        exporter.setChunked(chunked);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exporter.save(savable, out);
+        return out.toByteArray();
+    }
+
+    private static Savable load(AssetManager assetManager, byte[] data, boolean parallel) throws IOException {
+        BinaryImporter importer = new BinaryImporter();
+        importer.setAssetManager(assetManager);
+        importer.setParallel(parallel);
+        return importer.load(data);
+    }
+
+    private static double median(double[] values) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    public static void main(String[] args) throws IOException {
+        Logger.getLogger("").setLevel(Level.WARNING);
+        AssetManager assetManager = JmeSystem.newAssetManager(
+                TestParallelImport.class.getResource("/com/jme3/asset/Desktop.cfg"));
+
+        Savable scene;
+        if (args.length > 0) {
+            File file = new File(args[0]);
+            File directory = file.getAbsoluteFile().getParentFile();
+            assetManager.registerLocator(directory.getPath(), FileLocator.class);
+            BinaryImporter importer = new BinaryImporter();
+            importer.setAssetManager(assetManager);
+            scene = importer.load(file);
+        } else {
+            scene = createScene(assetManager);
+        }
+        byte[] data = export(scene, true);
+        System.out.printf("%.1f MB, %d bytes of chunk table, %d worker threads%n",
+                data.length / 1048576.0, data.length - export(scene, false).length, 
+                WorkerPool.getThreadCount());
+        byte[] reference = export(load(assetManager, data, false), false);
+
+        String[] names = {"Single-threaded", "Parallel"};
+        for (int mode = 0; mode < 2; mode++) {
+            boolean parallel = mode == 1;
+            // warm up
+            load(assetManager, data, parallel);
+            load(assetManager, data, parallel);
+
+            double[] times = new double[RUNS];
+            Savable loaded = null;
+            for (int i = 0; i < RUNS; i++) {
+                long start = System.nanoTime();
+                loaded = load(assetManager, data, parallel);
+                times[i] = (System.nanoTime() - start) / 1e6;
+            }
+            boolean identical = Arrays.equals(reference, export(loaded, false));
+            System.out.printf("%-16s %7.1f ms, identical: %b%n", names[mode] + ":", 
+                    median(times), identical);
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package jme3test.stress;
+
+import com.jme3.bounding.BoundingBox;
+import com.jme3.bounding.BoundingVolume;
+import com.jme3.light.PointLight;
+import com.jme3.math.FastMath;
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.shape.Box;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Headless benchmark of {@link Node#updateGeometricState() } on a 
+ * 50k spatial scene, comparing the serial update with the 
+ * {@link Node#setParallelUpdate(boolean) parallel update mode}.
+ * Both scenes receive the same changes and their world transforms
+ * and bounds are checked to be identical.
+ */
+public class TestParallelSceneUpdate {
+
+    private static final int GROUPS = 16;
+    private static final int NODES_PER_GROUP = 64;
+    private static final int GEOMETRIES_PER_NODE = 48;
+    private static final int FRAMES = 200;
+    
+    private static Node createScene(Mesh mesh) {
+        Node root = new Node("Root");
+        root.addLight(new PointLight());
+        for (int g = 0; g < GROUPS; g++) {
+            Node group = new Node("Group " + g);
+            group.setLocalTranslation(g * 100, 0, 0);
+            for (int n = 0; n < NODES_PER_GROUP; n++) {
+                Node node = new Node("Node " + n);
+                node.setLocalTranslation(0, n * 5, 0);
+                for (int i = 0; i < GEOMETRIES_PER_NODE; i++) {
+                    Geometry geom = new Geometry("Box " + i, mesh);
+                    geom.setLocalTranslation(i * 2, 0, 0);
+                    node.attachChild(geom);
+                }
+                group.attachChild(node);
+            }
+            root.attachChild(group);
+        }
+        root.updateGeometricState();
+        return root;
+    }
+    
+    private static void animate(Node root, int frame) {
+        Quaternion rot = new Quaternion();
+        for (Spatial group : root.getChildren()) {
+            rot.fromAngles(0, frame * 0.01f, 0);
+            group.setLocalRotation(rot);
+        }
+        root.setLocalTranslation(FastMath.sin(frame * 0.1f), 0, 0);
+    }
+    
+    private static long run(Node root) {
+        long total = 0;
+        for (int frame = 0; frame < FRAMES; frame++) {
+            animate(root, frame);
+            long start = System.nanoTime();
+            root.updateGeometricState();
+            total += System.nanoTime() - start;
+        }
+        return total;
+    }
+    
+    private static List<Geometry> collect(Node root) {
+        final List<Geometry> result = new ArrayList<Geometry>();
+        for (Spatial group : root.getChildren()) {
+            for (Spatial node : ((Node) group).getChildren()) {
+                for (Spatial geom : ((Node) node).getChildren()) {
+                    result.add((Geometry) geom);
+                }
+            }
+        }
+        return result;
+    }
+    
+    private static boolean sameBound(BoundingVolume a, BoundingVolume b) {
+        BoundingBox boxA = (BoundingBox) a;
+        BoundingBox boxB = (BoundingBox) b;
+        return boxA.getCenter().equals(boxB.getCenter())
+            && boxA.getExtent(null).equals(boxB.getExtent(null));
+    }
+    
+    private static void verify(Node serial, Node parallel) {
+        if (!sameBound(serial.getWorldBound(), parallel.getWorldBound())) {
+            throw new RuntimeException("Root bounds differ");
+        }
+        List<Geometry> a = collect(serial);
+        List<Geometry> b = collect(parallel);
+        for (int i = 0; i < a.size(); i++) {
+            Vector3f ta = a.get(i).getWorldTranslation();
+            Vector3f tb = b.get(i).getWorldTranslation();
+            if (!ta.equals(tb) 
+             || !sameBound(a.get(i).getWorldBound(), b.get(i).getWorldBound())
+             || a.get(i).getWorldLightList().size() != b.get(i).getWorldLightList().size()) {
+                throw new RuntimeException("Geometry " + i + " differs");
+            }
+        }
+    }
+    
+    public static void main(String[] args) {
+        Mesh mesh = new Box(0.5f, 0.5f, 0.5f);
+        Node serial = createScene(mesh);
+        Node parallel = createScene(mesh);
+        parallel.setParallelUpdate(true);
+        parallel.setParallelUpdateThreshold(1000);
+        
+        System.out.println("Spatials: " + serial.getSubtreeSize());
+        for (int pass = 0; pass < 3; pass++) {
+            long serialTime = run(serial);
+            long parallelTime = run(parallel);
+            verify(serial, parallel);
+            System.out.println("Pass " + pass 
+                             + " serial: " + (serialTime / FRAMES / 1000) + " us/frame"
+                             + ", parallel: " + (parallelTime / FRAMES / 1000) + " us/frame");
+        }
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package jme3test.stress;
+
+import com.jme3.animation.Bone;
+import com.jme3.animation.Skeleton;
+import com.jme3.animation.SkeletonControl;
+import com.jme3.math.FastMath;
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Node;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.scene.VertexBuffer.Format;
+import com.jme3.scene.VertexBuffer.Type;
+import com.jme3.scene.VertexBuffer.Usage;
+import com.jme3.scene.shape.Sphere;
+import com.jme3.util.TangentBinormalGenerator;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+
+/**
+ * Headless benchmark of software skinning in {@link SkeletonControl},
+ * comparing the serial skinning with the 
+ * {@link SkeletonControl#setParallelSkinning(boolean) parallel skinning}.
+ * Both models are posed identically and their position, normal and 
+ * tangent buffers are checked to be identical.
+ */
+public class TestParallelSkinning {
+
+    private static final int MESHES = 4;
+    private static final int BONES = 8;
+    private static final int FRAMES = 100;
+    
+    private static Mesh createMesh(int seed) {
+        Sphere mesh = new Sphere(128, 128, 5);
+        TangentBinormalGenerator.generate(mesh);
+        
+        int vertexCount = mesh.getVertexCount();
+        FloatBuffer weights = FloatBuffer.allocate(vertexCount * 4);
+        ByteBuffer indices = ByteBuffer.allocate(vertexCount * 4);
+        FloatBuffer positions = mesh.getFloatBuffer(Type.Position);
+        for (int i = 0; i < vertexCount; i++) {
+            // blend the two bones nearest to the vertex along the Z axis
+            float z = (positions.get(i * 3 + 2) / 10f + 0.5f) * (BONES - 1);
+            int bone = Math.min(BONES - 2, (int) z);
+            float blend = FastMath.clamp(z - bone, 0, 1);
+            indices.put(i * 4, (byte) bone);
+            indices.put(i * 4 + 1, (byte) (bone + 1));
+            weights.put(i * 4, 1f - blend);
+            weights.put(i * 4 + 1, blend);
+        }
+        // leave a few vertices unweighted
+        for (int i = seed; i < vertexCount; i += 97) {
+            weights.put(i * 4, 0f);
+            weights.put(i * 4 + 1, 0f);
+        }
+        
+        VertexBuffer weightsBuf = new VertexBuffer(Type.BoneWeight);
+        weightsBuf.setupData(Usage.CpuOnly, 4, Format.Float, weights);
+        mesh.setBuffer(weightsBuf);
+        VertexBuffer indicesBuf = new VertexBuffer(Type.BoneIndex);
+        indicesBuf.setupData(Usage.CpuOnly, 4, Format.UnsignedByte, indices);
+        mesh.setBuffer(indicesBuf);
+        mesh.setMaxNumWeights(2);
+        mesh.generateBindPose(true);
+        return mesh;
+    }
+    
+    private static Skeleton createSkeleton() {
+        Bone[] bones = new Bone[BONES];
+        for (int i = 0; i < BONES; i++) {
+            bones[i] = new Bone("Bone " + i);
+            bones[i].setBindTransforms(new Vector3f(0, 0, i == 0 ? -5 : 10f / (BONES - 1)),
+                                       Quaternion.IDENTITY, Vector3f.UNIT_XYZ);
+            bones[i].setUserControl(true);
+            if (i > 0) {
+                bones[i - 1].addChild(bones[i]);
+            }
+        }
+        Skeleton skeleton = new Skeleton(bones);
+        skeleton.setBindingPose();
+        return skeleton;
+    }
+    
+    private static SkeletonControl createModel() {
+        Node model = new Node("Model");
+        for (int i = 0; i < MESHES; i++) {
+            model.attachChild(new Geometry("Mesh " + i, createMesh(i)));
+        }
+        SkeletonControl control = new SkeletonControl(createSkeleton());
+        model.addControl(control);
+        return control;
+    }
+    
+    private static void pose(Skeleton skeleton, int frame) {
+        Quaternion rot = new Quaternion();
+        for (int i = 1; i < skeleton.getBoneCount(); i++) {
+            rot.fromAngles(FastMath.sin(frame * 0.1f + i) * 0.3f, 0, 0);
+            skeleton.getBone(i).setUserTransforms(Vector3f.ZERO, rot, Vector3f.UNIT_XYZ);
+        }
+        skeleton.updateWorldVectors();
+    }
+    
+    private static long run(SkeletonControl control) {
+        long total = 0;
+        for (int frame = 0; frame < FRAMES; frame++) {
+            pose(control.getSkeleton(), frame);
+            control.update(0);
+            long start = System.nanoTime();
+            control.render(null, null);
+            total += System.nanoTime() - start;
+        }
+        return total;
+    }
+    
+    private static void verify(SkeletonControl serial, SkeletonControl parallel) {
+        Type[] types = { Type.Position, Type.Normal, Type.Tangent };
+        for (int i = 0; i < serial.getTargets().length; i++) {
+            for (Type type : types) {
+                FloatBuffer a = serial.getTargets()[i].getFloatBuffer(type);
+                FloatBuffer b = parallel.getTargets()[i].getFloatBuffer(type);
+                for (int j = 0; j < a.limit(); j++) {
+                    if (Float.floatToIntBits(a.get(j)) != Float.floatToIntBits(b.get(j))) {
+                        throw new RuntimeException(type + " of mesh " + i + " differs at " + j);
+                    }
+                }
+            }
+        }
+    }
+    
+    public static void main(String[] args) {
+        SkeletonControl serial = createModel();
+        SkeletonControl parallel = createModel();
+        parallel.setParallelSkinning(true);
+        
+        int vertices = 0;
+        for (Mesh mesh : serial.getTargets()) {
+            vertices += mesh.getVertexCount();
+        }
+        System.out.println("Vertices: " + vertices);
+        for (int pass = 0; pass < 3; pass++) {
+            long serialTime = run(serial);
+            long parallelTime = run(parallel);
+            verify(serial, parallel);
+            System.out.println("Pass " + pass 
+                             + " serial: " + (serialTime / FRAMES / 1000) + " us/frame"
+                             + ", parallel: " + (parallelTime / FRAMES / 1000) + " us/frame"
+                             + " (" + (vertices * (long) FRAMES * 1000000000L / parallelTime / 1000) + "k vertices/s)");
+        }
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package jme3test.stress;
+
+import com.jme3.collision.CollisionResults;
+import com.jme3.collision.RayBatch;
+import com.jme3.math.FastMath;
+import com.jme3.math.Quaternion;
+import com.jme3.math.Ray;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Node;
+import com.jme3.scene.shape.Box;
+import com.jme3.scene.shape.Sphere;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Benchmark of {@link RayBatch} against casting the rays one by one with
+ * {@link Node#collideWith(com.jme3.collision.Collidable, com.jme3.collision.CollisionResults) }.
+ * Casts line of sight rays between random points of a scene of rotated 
+ * and scaled boxes and spheres, reports the rays per second and the 
+ * garbage collections during the queries, and checks that the batch finds 
+ * the same closest intersections.
+ */
+public class TestRayBatch {
+
+    private static final int OBJECTS = 1000;
+    private static final float FIELD_SIZE = 500f;
+    private static final int RAYS = 20000;
+    private static final int RUNS = 5;
+
+    private static Node createScene() {
+        Random random = new Random(7);
+        Mesh box = new Box(1, 1, 1);
+        Mesh sphere = new Sphere(16, 16, 1);
+        Node root = new Node("Root");
+        for (int i = 0; i < OBJECTS; i++) {
+            Geometry geom = new Geometry("Object " + i, i % 2 == 0 ? box : sphere);
+            geom.setLocalTranslation(random.nextFloat() * FIELD_SIZE, 
+                                     random.nextFloat() * 20f, 
+                                     random.nextFloat() * FIELD_SIZE);
+            geom.setLocalRotation(new Quaternion().fromAngles(random.nextFloat() * FastMath.TWO_PI, 
+                                                              random.nextFloat() * FastMath.TWO_PI, 0));
+            geom.setLocalScale(1f + random.nextFloat() * 4f, 
+                               1f + random.nextFloat() * 4f, 
+                               1f + random.nextFloat() * 4f);
+            root.attachChild(geom);
+        }
+        root.updateGeometricState();
+        return root;
+    }
+
+    private static double median(double[] times) {
+        double[] sorted = times.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    private static long getCollectionCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += gc.getCollectionCount();
+        }
+        return count;
+    }
+
+    private static void report(String name, double[] times, long collections) {
+        double time = median(times);
+        System.out.printf("%-18s median %.1f ms, %.0f rays/s, %d collections%n", 
+                name, time, RAYS / (time / 1000.0), collections);
+    }
+
+    private static void runBatch(String name, RayBatch batch, Node scene, double[] times) {
+        long collections = getCollectionCount();
+        int hits = 0;
+        for (int run = 0; run < RUNS; run++) {
+            long start = System.nanoTime();
+            hits = batch.collideWith(scene);
+            times[run] = (System.nanoTime() - start) / 1e6;
+        }
+        report(name + " (" + hits + " hits)", times, getCollectionCount() - collections);
+    }
+
+    public static void main(String[] args) {
+        Logger.getLogger("").setLevel(Level.WARNING);
+        Node scene = createScene();
+
+        Random random = new Random(11);
+        Ray[] rays = new Ray[RAYS];
+        RayBatch batch = new RayBatch(RAYS);
+        for (int i = 0; i < RAYS; i++) {
+            Vector3f from = new Vector3f(random.nextFloat() * FIELD_SIZE, 10f, random.nextFloat() * FIELD_SIZE);
+            Vector3f to = new Vector3f(random.nextFloat() * FIELD_SIZE, 10f, random.nextFloat() * FIELD_SIZE);
+            Vector3f direction = to.subtract(from);
+            float distance = direction.length();
+            direction.divideLocal(distance);
+            rays[i] = new Ray(from, direction);
+            rays[i].setLimit(distance);
+            batch.addRay(from, direction, distance);
+        }
+        System.out.println(OBJECTS + " objects, " + RAYS + " rays, " 
+                + Runtime.getRuntime().availableProcessors() + " processors");
+
+        // the first round warms up
+        double[] times = new double[RUNS];
+        float[] expected = new float[RAYS];
+        for (int round = 0; round < 2; round++) {
+            CollisionResults results = new CollisionResults();
+            long collections = getCollectionCount();
+            for (int run = 0; run < RUNS; run++) {
+                long start = System.nanoTime();
+                for (int i = 0; i < RAYS; i++) {
+                    results.clear();
+                    scene.collideWith(rays[i], results);
+                    expected[i] = results.size() > 0 
+                                ? results.getClosestCollision().getDistance() 
+                                : Float.POSITIVE_INFINITY;
+                    if (expected[i] >= rays[i].getLimit()) {
+                        // the single ray can report intersections beyond its limit
+                        expected[i] = Float.POSITIVE_INFINITY;
+                    }
+                }
+                times[run] = (System.nanoTime() - start) / 1e6;
+            }
+            if (round == 0) {
+                continue;
+            }
+            report("single rays", times, getCollectionCount() - collections);
+
+            batch.setMode(RayBatch.Mode.Closest);
+            batch.setParallel(false);
+            runBatch("batch", batch, scene, times);
+
+            int mismatches = 0;
+            for (int i = 0; i < RAYS; i++) {
+                float distance = batch.isHit(i) ? batch.getDistance(i) : Float.POSITIVE_INFINITY;
+                if (Math.abs(distance - expected[i]) > 1e-3f * Math.max(1f, expected[i])
+                        && !(Float.isInfinite(distance) && Float.isInfinite(expected[i]))) {
+                    mismatches++;
+                }
+            }
+            System.out.println(mismatches + " mismatches against single rays");
+
+            batch.setParallel(true);
+            runBatch("batch, parallel", batch, scene, times);
+
+            batch.setMode(RayBatch.Mode.Any);
+            batch.setParallel(false);
+            runBatch("batch, any hit", batch, scene, times);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package jme3test.stress;
+
+import com.jme3.material.Material;
+import com.jme3.math.FastMath;
+import com.jme3.math.Vector3f;
+import com.jme3.renderer.Camera;
+import com.jme3.renderer.queue.GeometryComparator;
+import com.jme3.renderer.queue.GeometryList;
+import com.jme3.renderer.queue.OpaqueComparator;
+import com.jme3.renderer.queue.TransparentComparator;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.shape.Box;
+import java.util.Random;
+
+/**
+ * Headless benchmark of the render queue sort. Records the opaque and 
+ * transparent queues of a moving camera, then sorts each recorded queue
+ * with the comparators and with the sort keys of 
+ * {@link GeometryList#setUseSortKeys(boolean) }, checking that both give
+ * a valid order.
+ */
+public class TestRenderQueueSort {
+
+    private static final int GEOMETRIES = 20000;
+    private static final int MATERIALS = 64;
+    private static final int FRAMES = 60;
+    
+    /**
+     * A material with a fixed sort ID, as it would have once its 
+     * technique is selected by the renderer.
+     */
+    private static class SortedMaterial extends Material {
+        
+        private final int sortId;
+
+        SortedMaterial(int sortId) {
+            this.sortId = sortId;
+        }
+
+        @Override
+        public int getSortId() {
+            return sortId;
+        }
+    }
+    
+    private static Geometry[] createScene() {
+        Random random = new Random(1);
+        Material[] materials = new Material[MATERIALS];
+        for (int i = 0; i < MATERIALS; i++) {
+            materials[i] = new SortedMaterial((i % 8) * 1000 + i);
+        }
+        Box box = new Box(0.5f, 0.5f, 0.5f);
+        Geometry[] geoms = new Geometry[GEOMETRIES];
+        for (int i = 0; i < GEOMETRIES; i++) {
+            geoms[i] = new Geometry("Box " + i, box);
+            geoms[i].setMaterial(materials[random.nextInt(MATERIALS)]);
+            geoms[i].setLocalTranslation(random.nextFloat() * 400 - 200, random.nextFloat() * 20, random.nextFloat() * 400 - 200);
+            geoms[i].updateGeometricState();
+        }
+        return geoms;
+    }
+    
+    private static Vector3f[] recordCameraPath() {
+        Vector3f[] path = new Vector3f[FRAMES];
+        for (int i = 0; i < FRAMES; i++) {
+            float angle = i * FastMath.TWO_PI / FRAMES;
+            path[i] = new Vector3f(FastMath.cos(angle) * 150, 10, FastMath.sin(angle) * 150);
+        }
+        return path;
+    }
+    
+    private static long sort(GeometryList list, GeometryComparator comparator, Geometry[] geoms, Vector3f[] path, boolean check) {
+        Camera cam = new Camera(1280, 720);
+        long total = 0;
+        for (Vector3f location : path) {
+            cam.setLocation(location);
+            cam.lookAt(Vector3f.ZERO, Vector3f.UNIT_Y);
+            list.clear();
+            for (Geometry geom : geoms) {
+                geom.queueDistance = Float.NEGATIVE_INFINITY;
+                list.add(geom);
+            }
+            list.setCamera(cam);
+            long start = System.nanoTime();
+            list.sort();
+            total += System.nanoTime() - start;
+            if (check) {
+                check(list, comparator);
+            }
+        }
+        return total;
+    }
+    
+    private static void check(GeometryList list, GeometryComparator comparator) {
+        for (int i = 1; i < list.size(); i++) {
+            if (comparator.compare(list.get(i - 1), list.get(i)) > 0) {
+                throw new RuntimeException("Geometries " + (i - 1) + " and " + i + " are out of order");
+            }
+        }
+    }
+    
+    private static void run(String name, GeometryComparator comparator, Geometry[] geoms, Vector3f[] path) {
+        GeometryList list = new GeometryList(comparator);
+        for (int pass = 0; pass < 5; pass++) {
+            list.setUseSortKeys(false);
+            long comparatorTime = sort(list, comparator, geoms, path, pass == 0);
+            list.setUseSortKeys(true);
+            long keyTime = sort(list, comparator, geoms, path, pass == 0);
+            System.out.println(name + " pass " + pass 
+                             + " comparator: " + (comparatorTime / FRAMES / 1000) + " us/frame"
+                             + ", keys: " + (keyTime / FRAMES / 1000) + " us/frame");
+        }
+    }
+    
+    public static void main(String[] args) {
+        Geometry[] geoms = createScene();
+        Vector3f[] path = recordCameraPath();
+        System.out.println(GEOMETRIES + " geometries, " + FRAMES + " recorded frames");
+        run("Opaque", new OpaqueComparator(), geoms, path);
+        run("Transparent", new TransparentComparator(), geoms, path);
+    }
+}
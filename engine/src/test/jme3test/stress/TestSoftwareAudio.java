@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package jme3test.stress;
+
+import com.jme3.audio.AudioBuffer;
+import com.jme3.audio.AudioContext;
+import com.jme3.audio.AudioKey;
+import com.jme3.audio.AudioNode;
+import com.jme3.audio.AudioStream;
+import com.jme3.audio.Listener;
+import com.jme3.audio.mixer.AudioSink;
+import com.jme3.audio.mixer.NullAudioSink;
+import com.jme3.audio.mixer.SoftwareAudioRenderer;
+import com.jme3.audio.mixer.WaveFileAudioSink;
+import com.jme3.math.FastMath;
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Node;
+import com.jme3.util.BufferUtils;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Headless benchmark of the {@link SoftwareAudioRenderer}. Plays thousands
+ * of looping positional sounds, a stream of music and instances fired 
+ * every frame while the listener moves, mixing as fast as possible
+ * into a {@link NullAudioSink}. Reports the mixer load and the voice 
+ * counts with voice virtualization and with every voice mixed.
+ * <p>
+ * Pass a file name to also record the first run to a WAV file.
+ */
+public class TestSoftwareAudio {
+
+    private static final int SAMPLE_RATE = 22050;
+    private static final int SOUNDS = 3000;
+    private static final float FIELD_SIZE = 400f;
+    private static final float SECONDS = 20f;
+    private static final float TPF = 1f / 60f;
+
+    private static byte[] createTone(float seconds, int channels, float frequency) {
+        int frames = (int) (seconds * SAMPLE_RATE);
+        byte[] data = new byte[frames * channels * 2];
+        for (int i = 0, b = 0; i < frames; i++) {
+            // fade in and out so that the loops do not click
+            float envelope = FastMath.sin(FastMath.PI * i / frames);
+            short s = (short) (envelope * 8000 * FastMath.sin(FastMath.TWO_PI * frequency * i / SAMPLE_RATE));
+            for (int c = 0; c < channels; c++) {
+                data[b++] = (byte) s;
+                data[b++] = (byte) (s >> 8);
+            }
+        }
+        return data;
+    }
+
+    private static AudioBuffer createBuffer(float seconds, float frequency) {
+        byte[] data = createTone(seconds, 1, frequency);
+        ByteBuffer buffer = BufferUtils.createByteBuffer(data.length);
+        buffer.put(data).flip();
+        AudioBuffer audioBuffer = new AudioBuffer();
+        audioBuffer.setupFormat(1, 16, SAMPLE_RATE);
+        audioBuffer.updateData(buffer);
+        return audioBuffer;
+    }
+
+    private static void run(String name, int maxVoices, AudioSink sink) {
+        SoftwareAudioRenderer renderer = new SoftwareAudioRenderer(sink, false);
+        renderer.setMaxVoices(maxVoices);
+        renderer.initialize();
+        AudioContext.setAudioRenderer(renderer);
+        Listener listener = new Listener();
+        renderer.setListener(listener);
+
+        Random random = new Random(3);
+        Node root = new Node("Root");
+        AudioBuffer[] buffers = {
+            createBuffer(0.5f, 220f), createBuffer(0.8f, 330f), createBuffer(1.3f, 440f)
+        };
+        for (int i = 0; i < SOUNDS; i++) {
+            AudioNode sound = new AudioNode(buffers[i % buffers.length], new AudioKey("Sound " + i));
+            sound.setPositional(true);
+            sound.setLooping(true);
+            sound.setRefDistance(2f);
+            sound.setMaxDistance(200f);
+            sound.setPitch(0.8f + random.nextFloat() * 0.4f);
+            sound.setLocalTranslation(random.nextFloat() * FIELD_SIZE, 0, random.nextFloat() * FIELD_SIZE);
+            root.attachChild(sound);
+        }
+        AudioNode shot = new AudioNode(buffers[0], new AudioKey("Shot"));
+        shot.setPositional(true);
+        shot.setRefDistance(5f);
+        root.attachChild(shot);
+        root.updateGeometricState();
+        for (int i = 0; i < SOUNDS; i++) {
+            ((AudioNode) root.getChild(i)).play();
+        }
+
+        AudioStream stream = new AudioStream();
+        stream.setupFormat(2, 16, SAMPLE_RATE);
+        stream.updateData(new ByteArrayInputStream(createTone(SECONDS + 1f, 2, 110f)), SECONDS + 1f);
+        AudioNode music = new AudioNode(stream, new AudioKey("Music", true));
+        music.setPositional(false);
+        music.setVolume(0.5f);
+        music.play();
+
+        long updateTime = 0;
+        int frames = (int) (SECONDS / TPF);
+        Quaternion rotation = new Quaternion();
+        for (int frame = 0; frame < frames; frame++) {
+            float t = frame * TPF;
+            listener.setLocation(new Vector3f(FIELD_SIZE / 2f + 150f * FastMath.cos(t * 0.2f), 0,
+                                              FIELD_SIZE / 2f + 150f * FastMath.sin(t * 0.2f)));
+            listener.setRotation(rotation.fromAngleAxis(t * 0.5f, Vector3f.UNIT_Y));
+            shot.setLocalTranslation(random.nextFloat() * FIELD_SIZE, 0, random.nextFloat() * FIELD_SIZE);
+            root.updateGeometricState();
+            shot.playInstance();
+
+            long start = System.nanoTime();
+            renderer.update(TPF);
+            updateTime += System.nanoTime() - start;
+        }
+
+        double audioSeconds = renderer.getMixedFrames() / (double) SAMPLE_RATE;
+        System.out.printf("%-14s %d voices, %d mixed, %d virtual, mixing %.1f ms per second of audio, "
+                        + "load %.3f, update %.3f ms per frame, %d underruns%n",
+                name, renderer.getVoiceCount(), renderer.getMixedVoiceCount(), 
+                renderer.getVirtualVoiceCount(), renderer.getMixTime() / 1e6 / audioSeconds,
+                renderer.getMixLoad(), updateTime / 1e6 / frames - renderer.getMixTime() / 1e6 / frames,
+                renderer.getUnderrunCount());
+        renderer.cleanup();
+    }
+
+    public static void main(String[] args) {
+        Logger.getLogger("").setLevel(Level.WARNING);
+        System.out.println(SOUNDS + " looping sounds, " + SECONDS + " seconds at " + SAMPLE_RATE + " Hz");
+        // the first round warms up
+        for (int round = 0; round < 2; round++) {
+            AudioSink sink = new NullAudioSink();
+            if (round == 1 && args.length > 0) {
+                sink = new WaveFileAudioSink(new File(args[0]));
+            }
+            run("32 voices", 32, sink);
+            run("all voices", Integer.MAX_VALUE, new NullAudioSink());
+        }
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package jme3test.stress;
+
+import com.jme3.export.binary.BinaryExporter;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Node;
+import com.jme3.scene.VertexBuffer.Type;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Headless benchmark of the streaming {@link BinaryExporter}. Exports a
+ * scene with a lot of vertex data, where some meshes are copies of others,
+ * with and without streaming, compares the export time and the peak heap
+ * usage, and checks that both files are identical.
+ * <p>
+ * Pass the number of geometries to change the size of the scene.
+ */
+public class TestStreamingExport {
+
+    private static final int VERTICES = 16384;
+    private static final int RUNS = 5;
+
+    private static Mesh createMesh(Random random) {
+        float[] positions = new float[VERTICES * 3];
+        float[] texCoords = new float[VERTICES * 2];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = random.nextFloat() * 100f;
+        }
+        for (int i = 0; i < texCoords.length; i++) {
+            texCoords[i] = random.nextFloat();
+        }
+        short[] indices = new short[VERTICES * 3];
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = (short) random.nextInt(VERTICES);
+        }
+        Mesh mesh = new Mesh();
+        mesh.setBuffer(Type.Position, 3, positions);
+        mesh.setBuffer(Type.TexCoord, 2, texCoords);
+        mesh.setBuffer(Type.Index, 3, indices);
+        mesh.updateBound();
+        return mesh;
+    }
+
+    private static Node createScene(int geometries) {
+        Random random = new Random(42);
+        Node root = new Node("Root");
+        Mesh previous = null;
+        for (int i = 0; i < geometries; i++) {
+            // every fourth mesh is a copy of the previous one, its data
+            // is only written once
+            Mesh mesh = i % 4 == 3 ? previous.deepClone() : createMesh(random);
+            Geometry geom = new Geometry("Geometry " + i, mesh);
+            geom.setLocalTranslation(i, 0, 0);
+            geom.setUserData("index", i);
+            root.attachChild(geom);
+            previous = mesh;
+        }
+        return root;
+    }
+
+    private static long usedHeap() {
+        long used = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                used += pool.getUsage().getUsed();
+            }
+        }
+        return used;
+    }
+
+    private static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+                pool.resetPeakUsage();
+            }
+        }
+        return peak;
+    }
+
+    private static double median(double[] values) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    private static boolean sameContent(File a, File b) throws IOException {
+        if (a.length() != b.length()) {
+            return false;
+        }
+        InputStream inA = new FileInputStream(a);
+        InputStream inB = new FileInputStream(b);
+        try {
+            byte[] bufferA = new byte[65536];
+            byte[] bufferB = new byte[65536];
+            while (true) {
+                int n = inA.read(bufferA);
+                if (n < 0) {
+                    return true;
+                }
+                int read = 0;
+                while (read < n) {
+                    read += inB.read(bufferB, read, n - read);
+                }
+                for (int i = 0; i < n; i++) {
+                    if (bufferA[i] != bufferB[i]) {
+                        return false;
+                    }
+                }
+            }
+        } finally {
+            inA.close();
+            inB.close();
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        Logger.getLogger("").setLevel(Level.WARNING);
+        int geometries = args.length > 0 ? Integer.parseInt(args[0]) : 128;
+        Node scene = createScene(geometries);
+
+        File[] files = new File[2];
+        String[] names = {"In memory", "Streaming"};
+        for (int mode = 0; mode < 2; mode++) {
+            files[mode] = File.createTempFile("TestStreamingExport", ".j3o");
+            files[mode].deleteOnExit();
+            BinaryExporter exporter = new BinaryExporter();
+            exporter.setStreaming(mode == 1);
+            // warm up
+            exporter.save(scene, files[mode]);
+
+            double[] times = new double[RUNS];
+            double[] peaks = new double[RUNS];
+            for (int i = 0; i < RUNS; i++) {
+                System.gc();
+                long before = usedHeap();
+                peakHeap();
+                long start = System.nanoTime();
+                exporter.save(scene, files[mode]);
+                times[i] = (System.nanoTime() - start) / 1e6;
+                peaks[i] = (peakHeap() - before) / 1048576.0;
+            }
+            System.out.printf("%-10s %7.1f ms, peak heap +%6.1f MB, %.1f MB written%n", 
+                    names[mode] + ":", median(times), median(peaks), 
+                    files[mode].length() / 1048576.0);
+        }
+        System.out.println("Identical: " + sameContent(files[0], files[1]));
+    }
+}
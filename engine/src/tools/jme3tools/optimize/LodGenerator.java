@@ -0,0 +1,824 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package jme3tools.optimize;
+
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Mesh.Mode;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.scene.VertexBuffer.Format;
+import com.jme3.scene.VertexBuffer.Type;
+import com.jme3.scene.VertexBuffer.Usage;
+import com.jme3.scene.mesh.IndexBuffer;
+import com.jme3.util.WorkerPool;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * <code>LodGenerator</code> computes the LOD levels of a triangle mesh
+ * by repeatedly collapsing the edge with the smallest quadric error
+ * (Garland and Heckbert), and stores them with 
+ * {@link Mesh#setLodLevels(com.jme3.scene.VertexBuffer[]) } so they can be
+ * used by a {@link com.jme3.scene.control.LodControl}.
+ * <p>
+ * The edges are collapsed onto one of their vertices, so the LOD levels are
+ * index buffers into the original vertex data. Vertices that share a position
+ * but differ in any other vertex buffer (seams) are only collapsed
+ * along the seam, open borders and seams are kept in place by additional
+ * quadrics, and vertices are not collapsed onto vertices influenced mainly
+ * by another bone. Collapses that would flip a triangle are rejected.
+ * <p>
+ * The amount of reduction of each level is given either as the 
+ * {@link ReductionMethod#Proportional ratio} of triangles to remove, or as
+ * the {@link ReductionMethod#ConstantError maximum error} of the collapses.
+ * 
+ * <pre>
+ * LodGenerator.bakeLods(model, ReductionMethod.Proportional, 0.5f, 0.75f, 0.9f);
+ * </pre>
+ */
+public class LodGenerator {
+
+    /**
+     * The way the reduction values of the LOD levels are interpreted.
+     */
+    public enum ReductionMethod {
+        /**
+         * The values are the ratio of triangles removed from the mesh,
+         * between 0 and 1, e.g. 0.75 keeps a quarter of the triangles.
+         */
+        Proportional,
+        /**
+         * The values are the maximum error of the collapses, in the units of
+         * the mesh. The error of a collapse is the root mean square distance 
+         * of the collapsed vertex to the original surface around it.
+         */
+        ConstantError;
+    }
+
+    /**
+     * Weight of the planes keeping borders and seams in place, relative
+     * to the planes of the triangles.
+     */
+    private static final float BORDER_WEIGHT = 10f;
+    
+    private final Mesh mesh;
+    private int vertexCount;
+    private int triCount;
+    private int liveTris;
+    private int[] tris;
+    private boolean[] triRemoved;
+    
+    // vertices with the same position belong to the same group, 
+    // edges are collapsed between groups
+    private int groupCount;
+    private int[] groupOf;
+    private float[] groupPos;
+    private int[][] groupTris;
+    private int[] groupTriCount;
+    private boolean[] groupRemoved;
+    private double[] quadrics;
+    private double[] areas;
+    private int[] dominantBone;
+    
+    private int[] bestTarget;
+    private float[] bestError;
+    private int[] version;
+    private PriorityQueue<Collapse> queue;
+    
+    // scratch data of the collapse evaluation
+    private int[] mapTarget;
+    private int[] mapStamp;
+    private int[] groupStamp;
+    private int stamp = 0;
+    private final Vector3f v0 = new Vector3f(), v1 = new Vector3f(), v2 = new Vector3f();
+    private final Vector3f e1 = new Vector3f(), e2 = new Vector3f();
+    private final Vector3f n1 = new Vector3f(), n2 = new Vector3f();
+
+    private static class Collapse implements Comparable<Collapse> {
+
+        final int group;
+        final float error;
+        final int version;
+
+        Collapse(int group, float error, int version) {
+            this.group = group;
+            this.error = error;
+            this.version = version;
+        }
+
+        public int compareTo(Collapse other) {
+            return Float.compare(error, other.error);
+        }
+    }
+
+    /**
+     * Creates a LOD generator for the given mesh.
+     * 
+     * @param mesh a mesh in {@link Mode#Triangles} mode
+     */
+    public LodGenerator(Mesh mesh) {
+        if (mesh.getMode() != Mode.Triangles) {
+            throw new UnsupportedOperationException("Only meshes in Triangles mode are supported");
+        }
+        if (mesh.getBuffer(Type.Position) == null) {
+            throw new IllegalArgumentException("The mesh has no positions");
+        }
+        this.mesh = mesh;
+    }
+
+    /**
+     * @return the mesh of this generator
+     */
+    public Mesh getMesh() {
+        return mesh;
+    }
+
+    /**
+     * Computes the LOD levels of the mesh. The first level is the 
+     * original index buffer of the mesh, followed by one level per value.
+     * 
+     * @param method how the values are interpreted
+     * @param values the reduction of each level, in increasing order
+     * @return the LOD levels
+     */
+    public VertexBuffer[] computeLods(ReductionMethod method, float... values) {
+        float[] sorted = values.clone();
+        Arrays.sort(sorted);
+        
+        init();
+        
+        VertexBuffer[] lods = new VertexBuffer[sorted.length + 1];
+        lods[0] = mesh.getBuffer(Type.Index);
+        if (lods[0] == null) {
+            lods[0] = createIndexBuffer(false);
+        }
+        
+        int level = 0;
+        while (level < sorted.length) {
+            Collapse collapse = queue.peek();
+            if (collapse != null && collapse.version != version[collapse.group]) {
+                queue.poll();
+                continue;
+            }
+            boolean done;
+            if (collapse == null) {
+                done = true;
+            } else if (method == ReductionMethod.Proportional) {
+                done = liveTris <= triCount * (1f - sorted[level]);
+            } else {
+                done = collapse.error > sorted[level];
+            }
+            if (done) {
+                lods[++level] = createIndexBuffer(true);
+                continue;
+            }
+            queue.poll();
+            if (!collapse(collapse.group, bestTarget[collapse.group])) {
+                // the target changed since the group was evaluated
+                evaluate(collapse.group);
+            }
+        }
+        
+        // release the work data
+        tris = null;
+        groupTris = null;
+        queue = null;
+        return lods;
+    }
+
+    /**
+     * Computes the LOD levels of the mesh and sets them on the mesh.
+     * 
+     * @param method how the values are interpreted
+     * @param values the reduction of each level, in increasing order
+     * @see #computeLods(jme3tools.optimize.LodGenerator.ReductionMethod, float[]) 
+     */
+    public void bakeLods(ReductionMethod method, float... values) {
+        mesh.setLodLevels(computeLods(method, values));
+    }
+
+    /**
+     * Computes and sets the LOD levels of all the triangle meshes of a
+     * scene. The meshes are processed in parallel, meshes shared by several
+     * geometries are only processed once.
+     * 
+     * @param scene the scene
+     * @param method how the values are interpreted
+     * @param values the reduction of each level, in increasing order
+     */
+    public static void bakeLods(Spatial scene, final ReductionMethod method, final float... values) {
+        List<Geometry> geoms = new ArrayList<Geometry>();
+        GeometryBatchFactory.gatherGeoms(scene, geoms);
+        
+        IdentityHashMap<Mesh, Mesh> meshes = new IdentityHashMap<Mesh, Mesh>();
+        List<Runnable> tasks = new ArrayList<Runnable>();
+        for (Geometry geom : geoms) {
+            final Mesh m = geom.getMesh();
+            if (m.getMode() != Mode.Triangles || meshes.put(m, m) != null) {
+                continue;
+            }
+            tasks.add(new Runnable() {
+                public void run() {
+                    new LodGenerator(m).bakeLods(method, values);
+                }
+            });
+        }
+        WorkerPool.invokeAll(tasks);
+    }
+
+    private void init() {
+        vertexCount = mesh.getVertexCount();
+        FloatBuffer positions = mesh.getFloatBuffer(Type.Position);
+        
+        // vertices with the same attributes are the same vertex
+        int[] canonical = weldVertices();
+        
+        IndexBuffer indices = mesh.getIndexBuffer();
+        int indexCount = indices != null ? indices.size() : vertexCount;
+        triCount = indexCount / 3;
+        tris = new int[triCount * 3];
+        for (int i = 0; i < tris.length; i++) {
+            tris[i] = canonical[indices != null ? indices.get(i) : i];
+        }
+        
+        // group the vertices by position
+        groupOf = new int[vertexCount];
+        HashMap<VertexKey, Integer> positionGroups = new HashMap<VertexKey, Integer>();
+        float[] pos = new float[vertexCount * 3];
+        groupCount = 0;
+        for (int i = 0; i < vertexCount; i++) {
+            VertexKey p = new VertexKey(new float[]{positions.get(i * 3), positions.get(i * 3 + 1), positions.get(i * 3 + 2)});
+            Integer group = positionGroups.get(p);
+            if (group == null) {
+                group = groupCount++;
+                positionGroups.put(p, group);
+                System.arraycopy(p.data, 0, pos, group * 3, 3);
+            }
+            groupOf[i] = group;
+        }
+        groupPos = pos;
+        
+        groupTriCount = new int[groupCount];
+        groupRemoved = new boolean[groupCount];
+        quadrics = new double[groupCount * 10];
+        areas = new double[groupCount];
+        triRemoved = new boolean[triCount];
+        liveTris = 0;
+        for (int t = 0; t < triCount; t++) {
+            int g0 = groupOf[tris[t * 3]], g1 = groupOf[tris[t * 3 + 1]], g2 = groupOf[tris[t * 3 + 2]];
+            if (g0 == g1 || g1 == g2 || g2 == g0) {
+                // degenerate, never rendered
+                triRemoved[t] = true;
+                continue;
+            }
+            liveTris++;
+            groupTriCount[g0]++;
+            groupTriCount[g1]++;
+            groupTriCount[g2]++;
+        }
+        groupTris = new int[groupCount][];
+        for (int g = 0; g < groupCount; g++) {
+            groupTris[g] = new int[groupTriCount[g]];
+            groupTriCount[g] = 0;
+        }
+        for (int t = 0; t < triCount; t++) {
+            if (triRemoved[t]) {
+                continue;
+            }
+            for (int c = 0; c < 3; c++) {
+                int g = groupOf[tris[t * 3 + c]];
+                groupTris[g][groupTriCount[g]++] = t;
+            }
+            addTriangleQuadric(t);
+        }
+        addBorderQuadrics();
+        initBones();
+        
+        mapTarget = new int[vertexCount];
+        mapStamp = new int[vertexCount];
+        groupStamp = new int[groupCount];
+        stamp = 0;
+        
+        bestTarget = new int[groupCount];
+        bestError = new float[groupCount];
+        version = new int[groupCount];
+        queue = new PriorityQueue<Collapse>(Math.max(1, groupCount));
+        for (int g = 0; g < groupCount; g++) {
+            evaluate(g);
+        }
+    }
+
+    /**
+     * @return for each vertex, the first vertex with the same data in
+     * every vertex buffer.
+     */
+    private int[] weldVertices() {
+        List<VertexBuffer> attributes = new ArrayList<VertexBuffer>();
+        int size = 0;
+        for (VertexBuffer vb : mesh.getBufferList().getArray()) {
+            if (vb.getBufferType() == Type.Index || vb.getBufferType() == Type.InterleavedData
+                    || vb.getData() == null || vb.getNumElements() != vertexCount) {
+                continue;
+            }
+            attributes.add(vb);
+            size += componentCount(vb);
+        }
+        
+        int[] canonical = new int[vertexCount];
+        HashMap<VertexKey, Integer> vertices = new HashMap<VertexKey, Integer>();
+        for (int v = 0; v < vertexCount; v++) {
+            float[] data = new float[size];
+            int offset = 0;
+            for (VertexBuffer vb : attributes) {
+                int components = componentCount(vb);
+                Buffer buffer = vb.getData();
+                for (int c = 0; c < components; c++) {
+                    data[offset++] = getComponent(buffer, v * components + c);
+                }
+            }
+            VertexKey key = new VertexKey(data);
+            Integer first = vertices.get(key);
+            if (first == null) {
+                vertices.put(key, v);
+                canonical[v] = v;
+            } else {
+                canonical[v] = first;
+            }
+        }
+        return canonical;
+    }
+
+    /**
+     * @return the number of values of an element in the data of the buffer.
+     */
+    private static int componentCount(VertexBuffer vb) {
+        return vb.getFormat() == Format.Half ? vb.getNumComponents() * 2 : vb.getNumComponents();
+    }
+
+    private static float getComponent(Buffer buffer, int index) {
+        if (buffer instanceof FloatBuffer) {
+            return ((FloatBuffer) buffer).get(index);
+        } else if (buffer instanceof ByteBuffer) {
+            return ((ByteBuffer) buffer).get(index);
+        } else if (buffer instanceof ShortBuffer) {
+            return ((ShortBuffer) buffer).get(index);
+        } else if (buffer instanceof IntBuffer) {
+            return ((IntBuffer) buffer).get(index);
+        } else if (buffer instanceof DoubleBuffer) {
+            return (float) ((DoubleBuffer) buffer).get(index);
+        }
+        throw new UnsupportedOperationException("Unsupported buffer: " + buffer);
+    }
+
+    private static class VertexKey {
+
+        private final float[] data;
+        private final int hash;
+
+        VertexKey(float[] data) {
+            this.data = data;
+            this.hash = Arrays.hashCode(data);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof VertexKey && Arrays.equals(data, ((VertexKey) obj).data);
+        }
+    }
+
+    private void initBones() {
+        dominantBone = null;
+        VertexBuffer indexBuffer = mesh.getBuffer(Type.BoneIndex);
+        VertexBuffer weightBuffer = mesh.getBuffer(Type.BoneWeight);
+        if (indexBuffer == null || weightBuffer == null) {
+            return;
+        }
+        ByteBuffer boneIndices = (ByteBuffer) indexBuffer.getData();
+        FloatBuffer boneWeights = (FloatBuffer) weightBuffer.getData();
+        dominantBone = new int[vertexCount];
+        for (int v = 0; v < vertexCount; v++) {
+            int bone = -1;
+            float max = 0;
+            for (int i = 0; i < 4; i++) {
+                float weight = boneWeights.get(v * 4 + i);
+                if (weight > max) {
+                    max = weight;
+                    bone = boneIndices.get(v * 4 + i) & 0xff;
+                }
+            }
+            dominantBone[v] = bone;
+        }
+    }
+
+    private void addTriangleQuadric(int t) {
+        getPosition(tris[t * 3], v0);
+        getPosition(tris[t * 3 + 1], v1);
+        getPosition(tris[t * 3 + 2], v2);
+        v1.subtract(v0, e1);
+        v2.subtract(v0, e2);
+        e1.cross(e2, n1);
+        float length = n1.length();
+        if (length == 0) {
+            return;
+        }
+        n1.divideLocal(length);
+        float area = length * 0.5f;
+        for (int c = 0; c < 3; c++) {
+            int g = groupOf[tris[t * 3 + c]];
+            addPlane(g, n1, -n1.dot(v0), area);
+            areas[g] += area;
+        }
+    }
+
+    /**
+     * Adds planes perpendicular to the triangles along the open borders
+     * and the seams of the mesh, so that collapses moving them are expensive.
+     */
+    private void addBorderQuadrics() {
+        HashMap<Long, int[]> edges = new HashMap<Long, int[]>();
+        for (int t = 0; t < triCount; t++) {
+            if (triRemoved[t]) {
+                continue;
+            }
+            for (int c = 0; c < 3; c++) {
+                int a = tris[t * 3 + c];
+                int b = tris[t * 3 + (c + 1) % 3];
+                int ga = groupOf[a], gb = groupOf[b];
+                long key = ga < gb ? ((long) ga << 32) | gb : ((long) gb << 32) | ga;
+                int[] edge = edges.get(key);
+                if (edge == null) {
+                    // triangle, vertices, use count, seam flag
+                    edges.put(key, new int[]{t, a, b, 1, 0});
+                } else {
+                    edge[3]++;
+                    // the same edge in the other direction uses the same vertices, unless on a seam
+                    if (edge[1] != b || edge[2] != a) {
+                        edge[4] = 1;
+                    }
+                }
+            }
+        }
+        for (int[] edge : edges.values()) {
+            if (edge[3] != 1 && edge[4] == 0) {
+                continue;
+            }
+            int t = edge[0];
+            getPosition(tris[t * 3], v0);
+            getPosition(tris[t * 3 + 1], v1);
+            getPosition(tris[t * 3 + 2], v2);
+            v1.subtract(v0, e1);
+            v2.subtract(v0, e2);
+            e1.cross(e2, n1);
+            getPosition(edge[1], v0);
+            getPosition(edge[2], v1);
+            v1.subtract(v0, e1);
+            float weight = e1.lengthSquared() * BORDER_WEIGHT;
+            e1.cross(n1, n2);
+            if (n2.lengthSquared() == 0) {
+                continue;
+            }
+            n2.normalizeLocal();
+            float d = -n2.dot(v0);
+            addPlane(groupOf[edge[1]], n2, d, weight);
+            addPlane(groupOf[edge[2]], n2, d, weight);
+        }
+    }
+
+    private void addPlane(int g, Vector3f n, float d, float weight) {
+        int i = g * 10;
+        quadrics[i] += weight * n.x * n.x;
+        quadrics[i + 1] += weight * n.x * n.y;
+        quadrics[i + 2] += weight * n.x * n.z;
+        quadrics[i + 3] += weight * n.x * d;
+        quadrics[i + 4] += weight * n.y * n.y;
+        quadrics[i + 5] += weight * n.y * n.z;
+        quadrics[i + 6] += weight * n.y * d;
+        quadrics[i + 7] += weight * n.z * n.z;
+        quadrics[i + 8] += weight * n.z * d;
+        quadrics[i + 9] += weight * d * d;
+    }
+
+    private void getPosition(int vertex, Vector3f store) {
+        int g = groupOf[vertex] * 3;
+        store.set(groupPos[g], groupPos[g + 1], groupPos[g + 2]);
+    }
+
+    /**
+     * Finds the cheapest valid collapse of a group and queues it.
+     */
+    private void evaluate(int u) {
+        version[u]++;
+        bestTarget[u] = -1;
+        bestError[u] = Float.POSITIVE_INFINITY;
+        if (groupRemoved[u]) {
+            return;
+        }
+        
+        // gather the neighbours first, the evaluation reuses the stamps
+        int neighbourStamp = ++stamp;
+        int[] neighbours = new int[groupTriCount[u] * 2];
+        int count = 0;
+        for (int i = 0; i < groupTriCount[u]; i++) {
+            int t = groupTris[u][i];
+            if (triRemoved[t]) {
+                continue;
+            }
+            for (int c = 0; c < 3; c++) {
+                int g = groupOf[tris[t * 3 + c]];
+                if (g != u && groupStamp[g] != neighbourStamp) {
+                    groupStamp[g] = neighbourStamp;
+                    neighbours[count++] = g;
+                }
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            int v = neighbours[i];
+            float error = computeError(u, v, bestError[u]);
+            if (error < bestError[u]) {
+                bestError[u] = error;
+                bestTarget[u] = v;
+            }
+        }
+        if (bestTarget[u] != -1) {
+            queue.add(new Collapse(u, bestError[u], version[u]));
+        }
+    }
+
+    /**
+     * Computes the error of collapsing group u onto group v, and the vertex
+     * each vertex of u is replaced with in {@link #mapTarget}.
+     * 
+     * @param limit the collapse is not checked if its error is larger
+     * @return the error, or infinity if the collapse is not allowed.
+     */
+    private float computeError(int u, int v, float limit) {
+        int vp = v * 3;
+        double x = groupPos[vp], y = groupPos[vp + 1], z = groupPos[vp + 2];
+        int qu = u * 10, qv = v * 10;
+        double quadric = (quadrics[qu] + quadrics[qv]) * x * x
+                + 2 * (quadrics[qu + 1] + quadrics[qv + 1]) * x * y
+                + 2 * (quadrics[qu + 2] + quadrics[qv + 2]) * x * z
+                + 2 * (quadrics[qu + 3] + quadrics[qv + 3]) * x
+                + (quadrics[qu + 4] + quadrics[qv + 4]) * y * y
+                + 2 * (quadrics[qu + 5] + quadrics[qv + 5]) * y * z
+                + 2 * (quadrics[qu + 6] + quadrics[qv + 6]) * y
+                + (quadrics[qu + 7] + quadrics[qv + 7]) * z * z
+                + 2 * (quadrics[qu + 8] + quadrics[qv + 8]) * z
+                + (quadrics[qu + 9] + quadrics[qv + 9]);
+        double area = areas[u] + areas[v];
+        float error = quadric <= 0 || area == 0 ? 0 : (float) Math.sqrt(quadric / area);
+        if (error > limit) {
+            return Float.POSITIVE_INFINITY;
+        }
+        
+        if (dominantBone != null) {
+            int ub = -1, vb = -1;
+            for (int i = 0; i < groupTriCount[u] && (ub == -1 || vb == -1); i++) {
+                int t = groupTris[u][i];
+                if (triRemoved[t]) {
+                    continue;
+                }
+                for (int c = 0; c < 3; c++) {
+                    int vertex = tris[t * 3 + c];
+                    if (groupOf[vertex] == u) {
+                        ub = dominantBone[vertex];
+                    } else if (groupOf[vertex] == v) {
+                        vb = dominantBone[vertex];
+                    }
+                }
+            }
+            if (ub != vb) {
+                return Float.POSITIVE_INFINITY;
+            }
+        }
+        
+        int mapStampValue = ++stamp;
+        // the triangles around the edge tell which vertex of v replaces each vertex of u
+        for (int i = 0; i < groupTriCount[u]; i++) {
+            int t = groupTris[u][i];
+            if (triRemoved[t]) {
+                continue;
+            }
+            int uVertex = -1, vVertex = -1;
+            for (int c = 0; c < 3; c++) {
+                int vertex = tris[t * 3 + c];
+                if (groupOf[vertex] == u) {
+                    uVertex = vertex;
+                } else if (groupOf[vertex] == v) {
+                    vVertex = vertex;
+                }
+            }
+            if (mapStamp[uVertex] != mapStampValue) {
+                mapStamp[uVertex] = mapStampValue;
+                mapTarget[uVertex] = vVertex;
+            } else if (vVertex != -1) {
+                if (mapTarget[uVertex] == -1) {
+                    mapTarget[uVertex] = vVertex;
+                } else if (mapTarget[uVertex] != vVertex) {
+                    // the vertex is on both sides of a seam of v
+                    return Float.POSITIVE_INFINITY;
+                }
+            }
+        }
+        
+        v2.set(groupPos[vp], groupPos[vp + 1], groupPos[vp + 2]);
+        for (int i = 0; i < groupTriCount[u]; i++) {
+            int t = groupTris[u][i];
+            if (triRemoved[t]) {
+                continue;
+            }
+            int corner = -1;
+            boolean hasV = false;
+            for (int c = 0; c < 3; c++) {
+                int g = groupOf[tris[t * 3 + c]];
+                if (g == u) {
+                    corner = c;
+                } else if (g == v) {
+                    hasV = true;
+                }
+            }
+            if (hasV) {
+                continue;
+            }
+            if (mapTarget[tris[t * 3 + corner]] == -1) {
+                // a vertex of u has no counterpart in v, it is on a seam not along the edge
+                return Float.POSITIVE_INFINITY;
+            }
+            
+            // reject the collapse if the triangle flips
+            int a = tris[t * 3 + (corner + 1) % 3];
+            int b = tris[t * 3 + (corner + 2) % 3];
+            getPosition(a, v0);
+            getPosition(b, v1);
+            v1.subtract(v0, e1);
+            getPosition(tris[t * 3 + corner], e2);
+            e2.subtractLocal(v0);
+            e1.cross(e2, n1);
+            e2.set(v2).subtractLocal(v0);
+            e1.cross(e2, n2);
+            if (n1.dot(n2) <= 0) {
+                return Float.POSITIVE_INFINITY;
+            }
+        }
+        
+        return error;
+    }
+
+    /**
+     * @return false if the collapse is not allowed anymore, the group 
+     * then needs to be evaluated again.
+     */
+    private boolean collapse(int u, int v) {
+        // fills mapTarget
+        if (groupRemoved[v] || computeError(u, v, Float.POSITIVE_INFINITY) == Float.POSITIVE_INFINITY) {
+            return false;
+        }
+        
+        for (int i = 0; i < groupTriCount[u]; i++) {
+            int t = groupTris[u][i];
+            if (triRemoved[t]) {
+                continue;
+            }
+            boolean hasV = false;
+            for (int c = 0; c < 3; c++) {
+                if (groupOf[tris[t * 3 + c]] == v) {
+                    hasV = true;
+                }
+            }
+            if (hasV) {
+                triRemoved[t] = true;
+                liveTris--;
+                continue;
+            }
+            for (int c = 0; c < 3; c++) {
+                int vertex = tris[t * 3 + c];
+                if (groupOf[vertex] == u) {
+                    tris[t * 3 + c] = mapTarget[vertex];
+                }
+            }
+            addGroupTriangle(v, t);
+        }
+        
+        for (int i = 0; i < 10; i++) {
+            quadrics[v * 10 + i] += quadrics[u * 10 + i];
+        }
+        areas[v] += areas[u];
+        groupRemoved[u] = true;
+        groupTris[u] = null;
+        groupTriCount[u] = 0;
+        version[u]++;
+        
+        compactGroup(v);
+        evaluate(v);
+        int[] vTris = groupTris[v];
+        int neighbourStamp = ++stamp;
+        int[] neighbours = new int[groupTriCount[v] * 2];
+        int count = 0;
+        for (int i = 0; i < groupTriCount[v]; i++) {
+            int t = vTris[i];
+            for (int c = 0; c < 3; c++) {
+                int g = groupOf[tris[t * 3 + c]];
+                if (g != v && groupStamp[g] != neighbourStamp) {
+                    groupStamp[g] = neighbourStamp;
+                    neighbours[count++] = g;
+                }
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            compactGroup(neighbours[i]);
+            evaluate(neighbours[i]);
+        }
+        return true;
+    }
+
+    private void addGroupTriangle(int g, int t) {
+        if (groupTriCount[g] == groupTris[g].length) {
+            int[] grown = new int[Math.max(4, groupTris[g].length * 2)];
+            System.arraycopy(groupTris[g], 0, grown, 0, groupTriCount[g]);
+            groupTris[g] = grown;
+        }
+        groupTris[g][groupTriCount[g]++] = t;
+    }
+
+    /**
+     * Removes the collapsed triangles from the list of a group.
+     */
+    private void compactGroup(int g) {
+        int[] list = groupTris[g];
+        int count = 0;
+        for (int i = 0; i < groupTriCount[g]; i++) {
+            if (!triRemoved[list[i]]) {
+                list[count++] = list[i];
+            }
+        }
+        groupTriCount[g] = count;
+    }
+
+    /**
+     * @param current true to create the buffer of the remaining triangles,
+     * false for all the triangles of the mesh.
+     */
+    private VertexBuffer createIndexBuffer(boolean current) {
+        int count = current ? liveTris : triCount;
+        IndexBuffer buffer = IndexBuffer.createIndexBuffer(vertexCount, count * 3);
+        int index = 0;
+        for (int t = 0; t < triCount; t++) {
+            if (current && triRemoved[t]) {
+                continue;
+            }
+            for (int c = 0; c < 3; c++) {
+                buffer.put(index++, current ? tris[t * 3 + c] : t * 3 + c);
+            }
+        }
+        VertexBuffer vb = new VertexBuffer(Type.Index);
+        Format format = buffer.getBuffer() instanceof IntBuffer ? Format.UnsignedInt : Format.UnsignedShort;
+        vb.setupData(Usage.Static, 3, format, buffer.getBuffer());
+        return vb;
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2009-2012 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package jme3tools.optimize;
+
+import com.jme3.bounding.BoundingBox;
+import com.jme3.bounding.BoundingVolume;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits the children of a node into a hierarchy of octant nodes, 
+ * subdividing the cube around the node like the cells of an {@link Octree}.
+ * <p>
+ * The {@link com.jme3.renderer.RenderManager} culls a scene node by node, 
+ * so once a large node of static geometries is grouped, a whole octant 
+ * outside of the camera frustum is culled with a single bound test instead
+ * of testing each of its geometries. The octant nodes have an identity
+ * transform, no lights and no controls, so the world transforms and light 
+ * lists of the children are not changed. Each child is put into the octant
+ * containing the center of its bound, the bound of an octant node 
+ * therefore grows to contain its children.
+ * <p>
+ * The grouping is meant for static children, a child that moves stays in 
+ * its octant, making the octant bound larger. 
+ */
+public class OctreeGrouping {
+
+    /**
+     * Splits the children of the node into octants of at most 8 children, 
+     * up to 6 levels deep.
+     * 
+     * @param node The node to split
+     * @return The node
+     */
+    public static Node group(Node node) {
+        return group(node, 8, 6);
+    }
+
+    /**
+     * Splits the children of the node into octants.
+     * 
+     * @param node The node to split
+     * @param maxChildren The number of children under which an octant
+     * is not split further
+     * @param maxDepth The maximum number of octant levels
+     * @return The node
+     */
+    public static Node group(Node node, int maxChildren, int maxDepth) {
+        if (maxChildren < 1) {
+            throw new IllegalArgumentException("maxChildren must be at least 1");
+        }
+        if (node.getQuantity() <= maxChildren) {
+            return node;
+        }
+        node.updateGeometricState();
+
+        List<Spatial> children = new ArrayList<Spatial>(node.getChildren());
+        Vector3f[] centers = new Vector3f[children.size()];
+        BoundingBox bbox = new BoundingBox();
+        for (int i = 0; i < centers.length; i++) {
+            Spatial child = children.get(i);
+            BoundingVolume bv = child.getWorldBound();
+            if (bv != null) {
+                centers[i] = bv.getCenter().clone();
+                bbox.mergeLocal(bv);
+            } else {
+                centers[i] = child.getWorldTranslation().clone();
+            }
+        }
+
+        // use a cube, as the octree does
+        float extent = Math.max(bbox.getXExtent(), Math.max(bbox.getYExtent(), bbox.getZExtent()));
+        List<Integer> indices = new ArrayList<Integer>(children.size());
+        for (int i = 0; i < children.size(); i++) {
+            indices.add(i);
+        }
+
+        node.detachAllChildren();
+        split(node, children, centers, indices, bbox.getCenter().clone(), extent, 
+              maxChildren, maxDepth);
+        node.updateGeometricState();
+        return node;
+    }
+
+    private static void split(Node parent, List<Spatial> children, Vector3f[] centers,
+                              List<Integer> indices, Vector3f center, float extent,
+                              int maxChildren, int depth) {
+        if (indices.size() <= maxChildren || depth == 0) {
+            for (Integer index : indices) {
+                parent.attachChild(children.get(index));
+            }
+            return;
+        }
+
+        List<List<Integer>> octants = new ArrayList<List<Integer>>(8);
+        for (int i = 0; i < 8; i++) {
+            octants.add(new ArrayList<Integer>());
+        }
+        for (Integer index : indices) {
+            Vector3f c = centers[index];
+            int octant = (c.x >= center.x ? 1 : 0)
+                       | (c.y >= center.y ? 2 : 0)
+                       | (c.z >= center.z ? 4 : 0);
+            octants.get(octant).add(index);
+        }
+
+        float half = extent / 2f;
+        for (int i = 0; i < 8; i++) {
+            List<Integer> octant = octants.get(i);
+            if (octant.isEmpty()) {
+                continue;
+            }
+            if (octant.size() == 1) {
+                parent.attachChild(children.get(octant.get(0)));
+                continue;
+            }
+            Vector3f octantCenter = new Vector3f(
+                    center.x + ((i & 1) != 0 ? half : -half),
+                    center.y + ((i & 2) != 0 ? half : -half),
+                    center.z + ((i & 4) != 0 ? half : -half));
+            Node octantNode = new Node(parent.getName() + "-" + i);
+            parent.attachChild(octantNode);
+            split(octantNode, children, centers, octant, octantCenter, half, 
+                  maxChildren, depth - 1);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.jme3.asset.cache;
+
+import com.jme3.asset.AssetKey;
+import com.jme3.asset.TextureKey;
+import com.jme3.texture.Image;
+import com.jme3.texture.Image.Format;
+import com.jme3.texture.Texture2D;
+import com.jme3.util.BufferUtils;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class MemoryBudgetAssetCacheTest {
+
+    private static Image createImage(int bytes){
+        return new Image(Format.Luminance8, bytes, 1, BufferUtils.createByteBuffer(bytes));
+    }
+    
+    @Test
+    public void testLRUEviction(){
+        MemoryBudgetAssetCache cache = new MemoryBudgetAssetCache(300, MemoryBudgetAssetCache.LRU);
+        AssetKey<Image> a = new AssetKey<Image>("a.png");
+        AssetKey<Image> b = new AssetKey<Image>("b.png");
+        AssetKey<Image> c = new AssetKey<Image>("c.png");
+        
+        cache.addToCache(a, createImage(100));
+        cache.addToCache(b, createImage(100));
+        assertNotNull(cache.getFromCache(a));
+        cache.addToCache(c, createImage(150));
+        
+        // b is least recently used
+        assertNull(cache.getFromCache(b));
+        assertNotNull(cache.getFromCache(a));
+        assertNotNull(cache.getFromCache(c));
+        assertEquals(250, cache.getMemoryUsage());
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(3, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+    
+    @Test
+    public void testLFUEviction(){
+        MemoryBudgetAssetCache cache = new MemoryBudgetAssetCache(200, MemoryBudgetAssetCache.LFU);
+        AssetKey<Image> a = new AssetKey<Image>("a.png");
+        AssetKey<Image> b = new AssetKey<Image>("b.png");
+        AssetKey<Image> c = new AssetKey<Image>("c.png");
+        
+        cache.addToCache(a, createImage(100));
+        cache.addToCache(b, createImage(100));
+        cache.getFromCache(a);
+        cache.getFromCache(a);
+        cache.getFromCache(b);
+        cache.addToCache(c, createImage(100));
+        
+        assertNotNull(cache.getFromCache(a));
+        assertNull(cache.getFromCache(b));
+        assertNotNull(cache.getFromCache(c));
+    }
+    
+    @Test
+    public void testPinning(){
+        MemoryBudgetAssetCache cache = new MemoryBudgetAssetCache(200, MemoryBudgetAssetCache.LRU);
+        AssetKey<Image> a = new AssetKey<Image>("a.png");
+        AssetKey<Image> b = new AssetKey<Image>("b.png");
+        AssetKey<Image> c = new AssetKey<Image>("c.png");
+        
+        cache.pin(a);
+        cache.addToCache(a, createImage(100));
+        cache.addToCache(b, createImage(100));
+        cache.addToCache(c, createImage(100));
+        
+        assertNotNull(cache.getFromCache(a));
+        assertNull(cache.getFromCache(b));
+        assertNotNull(cache.getFromCache(c));
+        
+        // Assets larger than the budget are not cached unless pinned
+        AssetKey<Image> big = new AssetKey<Image>("big.png");
+        cache.addToCache(big, createImage(500));
+        assertNull(cache.getFromCache(big));
+    }
+    
+    @Test
+    public void testQuota(){
+        MemoryBudgetAssetCache cache = new MemoryBudgetAssetCache(1000, MemoryBudgetAssetCache.LRU);
+        cache.setQuota(TextureKey.class, 150);
+        
+        AssetKey<Image> a = new AssetKey<Image>("a.png");
+        TextureKey t1 = new TextureKey("t1.png");
+        TextureKey t2 = new TextureKey("t2.png");
+        
+        cache.addToCache(a, createImage(100));
+        cache.addToCache(t1, new Texture2D(createImage(100)));
+        cache.addToCache(t2, new Texture2D(createImage(100)));
+        
+        assertNotNull(cache.getFromCache(a));
+        assertNull(cache.getFromCache(t1));
+        assertNotNull(cache.getFromCache(t2));
+        assertEquals(100, cache.getMemoryUsage(TextureKey.class));
+        assertEquals(200, cache.getMemoryUsage());
+    }
+    
+}
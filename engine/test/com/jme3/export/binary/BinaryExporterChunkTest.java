@@ -0,0 +1,51 @@
+package com.jme3.export.binary;
+
+import com.jme3.asset.DesktopAssetManager;
+import com.jme3.asset.ModelKey;
+import com.jme3.scene.AssetLinkNode;
+import com.jme3.scene.Node;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class BinaryExporterChunkTest {
+
+    private static byte[] save(Node root) throws IOException {
+        BinaryExporter exporter = new BinaryExporter();
+        exporter.setChunked(true);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertTrue(exporter.save(root, out));
+        return out.toByteArray();
+    }
+
+    private static Object load(byte[] data) throws IOException {
+        BinaryImporter importer = new BinaryImporter();
+        importer.setAssetManager(new DesktopAssetManager());
+        return importer.load(new ByteArrayInputStream(data));
+    }
+
+    @Test
+    public void testChunkedNode() throws IOException {
+        Node root = new Node("root");
+        for (int i = 0; i < 4; i++){
+            root.attachChild(new Node("child" + i));
+        }
+        
+        Node loaded = (Node) load(save(root));
+        assertEquals(4, loaded.getQuantity());
+        assertEquals("child3", loaded.getChild(3).getName());
+    }
+
+    @Test
+    public void testChunkedAssetLinkNode() throws IOException {
+        // the linked children are not written, only their keys
+        AssetLinkNode root = new AssetLinkNode("root", new ModelKey("Models/A.j3o"));
+        root.attachLinkedChild(new Node("B"), new ModelKey("Models/B.j3o"));
+        
+        AssetLinkNode loaded = (AssetLinkNode) load(save(root));
+        assertEquals(2, loaded.getAssetLoaderKeys().size());
+        assertEquals("Models/B.j3o", loaded.getAssetLoaderKeys().get(1).getName());
+    }
+}
@@ -0,0 +1,87 @@
+package com.jme3.scene.plugins;
+
+import com.jme3.asset.AssetInfo;
+import com.jme3.asset.AssetManager;
+import com.jme3.asset.ModelKey;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.VertexBuffer.Type;
+import com.jme3.system.JmeSystem;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.FloatBuffer;
+import java.util.Random;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class OBJLoaderTest {
+
+    /**
+     * Loads triangles with the given coordinates and returns their positions.
+     */
+    private static FloatBuffer loadPositions(String[] coordinates) throws IOException {
+        StringBuilder obj = new StringBuilder();
+        for (int i = 0; i < coordinates.length; i += 3){
+            obj.append("v ").append(coordinates[i]).append(' ').append(coordinates[i + 1])
+               .append(' ').append(coordinates[i + 2]).append('\n');
+        }
+        for (int i = 1; i <= coordinates.length / 3; i += 3){
+            obj.append("f ").append(i).append(' ').append(i + 1).append(' ').append(i + 2).append('\n');
+        }
+        final byte[] data = obj.toString().getBytes("ISO-8859-1");
+        
+        AssetManager assetManager = JmeSystem.newAssetManager(
+                OBJLoaderTest.class.getResource("/com/jme3/asset/Desktop.cfg"));
+        AssetInfo info = new AssetInfo(assetManager, new ModelKey("test.obj")) {
+            @Override
+            public InputStream openStream() {
+                return new ByteArrayInputStream(data);
+            }
+        };
+        Spatial model = (Spatial) new OBJLoader().load(info);
+        Geometry geom = (Geometry) (model instanceof Node ? ((Node) model).getChild(0) : model);
+        return geom.getMesh().getFloatBuffer(Type.Position);
+    }
+
+    private static void assertParsed(String[] coordinates) throws IOException {
+        FloatBuffer positions = loadPositions(coordinates);
+        assertEquals(coordinates.length, positions.limit());
+        for (int i = 0; i < coordinates.length; i++){
+            float expected = Float.parseFloat(coordinates[i]);
+            assertEquals(coordinates[i], Float.floatToIntBits(expected), Float.floatToIntBits(positions.get(i)));
+        }
+    }
+
+    @Test
+    public void testDoubleRounding() throws IOException {
+        // the nearest double is halfway between two floats
+        assertParsed(new String[]{
+            "6.639230012893677", "-6.639230012893677", "0",
+            "1", "0", "6.639230012893677",
+            "0", "1", "0"
+        });
+    }
+
+    @Test
+    public void testRandomFloats() throws IOException {
+        Random random = new Random(1);
+        String[] coordinates = new String[3 * 3000];
+        for (int i = 0; i < coordinates.length; i++){
+            double value = (random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(12) - 6);
+            switch (random.nextInt(3)){
+                case 0:
+                    coordinates[i] = Double.toString(value);
+                    break;
+                case 1:
+                    coordinates[i] = Float.toString((float) value);
+                    break;
+                default:
+                    coordinates[i] = String.format("%.6f", value);
+                    break;
+            }
+        }
+        assertParsed(coordinates);
+    }
+}
@@ -0,0 +1,41 @@
+package com.jme3.terrain.geomipmap;
+
+import com.jme3.scene.Spatial;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class TerrainPatchCloneTest {
+
+    private static void removePatches(TerrainQuad quad){
+        List<TerrainPatch> patches = new ArrayList<TerrainPatch>();
+        quad.getAllTerrainPatches(patches);
+        for (TerrainPatch patch : patches){
+            patch.removeFromParent();
+        }
+    }
+    
+    @Test
+    public void testCloneAndRelease(){
+        TerrainIndexBufferCache cache = TerrainIndexBufferCache.getInstance();
+        int references = cache.getReferenceCount();
+        
+        TerrainQuad quad = new TerrainQuad("terrain", 17, 33, new float[33 * 33]);
+        assertEquals(references + 4, cache.getReferenceCount());
+        
+        // a clone shares the meshes, and the index buffers with them
+        TerrainQuad clone = quad.clone(false);
+        assertEquals(references + 8, cache.getReferenceCount());
+        
+        // a deep clone has its own index buffers
+        Spatial deepClone = quad.deepClone();
+        assertEquals(references + 8, cache.getReferenceCount());
+        
+        removePatches(quad);
+        assertEquals(references + 4, cache.getReferenceCount());
+        removePatches(clone);
+        removePatches((TerrainQuad) deepClone);
+        assertEquals(references, cache.getReferenceCount());
+    }
+}